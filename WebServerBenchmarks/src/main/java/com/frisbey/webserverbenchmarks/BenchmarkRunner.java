@@ -0,0 +1,55 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverbenchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the server's benchmarks with the GC profiler attached, so that the allocation rate of each benchmark is reported
+ * next to its throughput.
+ *
+ * <p>The benchmarks to run may be limited by passing one or more regular expressions that are matched against the
+ * benchmark names. When no arguments are given every benchmark is run. Use the JMH command line in the shaded
+ * {@code benchmarks.jar} directly for options that are not covered here.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args Regular expressions that select the benchmarks to run.
+     * @throws RunnerException thrown if a benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+
+        if (args.length == 0) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+
+        for (String include : args) {
+            options.include(include);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
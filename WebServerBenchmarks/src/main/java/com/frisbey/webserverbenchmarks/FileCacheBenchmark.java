@@ -0,0 +1,228 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserverbenchmarks;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.OffHeapFileCache;
+import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.BodySource;
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.FileBodySource;
+import com.frisbey.webserver.response.OffHeapBodySource;
+import com.frisbey.webserver.response.WebServerResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serving a large working set of small files from the heap {@link com.frisbey.webserver.cache.FileCache}
+ * with serving it from the {@link com.frisbey.webserver.cache.OffHeapFileCache}. The heap is kept small so that the
+ * cached contents make up most of it; the GC profiler's gc.count and gc.time results show what the heap cache costs
+ * the collector, which the off-heap cache avoids. Responses are written to an output that discards its data.
+ *
+ * @author Mark Frisbey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class FileCacheBenchmark {
+
+    // the number of files in the working set
+    private static final int kFileCount = 4096;
+
+    // the size of the largest file in the working set. files are between 1 KB and this size
+    private static final int kMaxFileSize = 64 * 1024;
+
+    // the capacity of either cache, which holds the entire working set
+    private static final long kCacheSize = 512L * 1024 * 1024;
+
+    // with churn, one request in this many finds its file changed and loads it again
+    private static final int kChurnInterval = 64;
+
+    // the cache that holds the files
+    @Param({"heap", "offheap"})
+    public String cache;
+
+    // the directory that holds the working set
+    private File directory;
+
+    // the attributes of every file in the working set
+    private FileMetadata[] files;
+
+    // the heap cache, when it is being measured
+    private FileCache heapCache;
+
+    // the off-heap cache, when it is being measured
+    private OffHeapFileCache offHeapCache;
+
+    // discards the data that is written to it
+    private OutputStream output;
+
+    // discards the data that is written to it
+    private WritableByteChannel channel;
+
+    // chooses the file that each request asks for
+    private Random random;
+
+    // the number of requests that have been served
+    private long requests;
+
+    /**
+     * Creates the working set and loads all of it into the cache being measured.
+     *
+     * @throws IOException thrown if the files cannot be written or read.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random sizes = new Random(42);
+        this.directory = Files.createTempDirectory("webserver-benchmark").toFile();
+        this.files = new FileMetadata[kFileCount];
+
+        for (int i = 0; i < kFileCount; i++) {
+            byte[] content = new byte[1024 + sizes.nextInt(kMaxFileSize - 1024 + 1)];
+            Arrays.fill(content, (byte) ('a' + i % 26));
+
+            File file = new File(this.directory, "file" + i + ".html");
+            Files.write(file.toPath(), content);
+            this.files[i] = FileMetadata.read(file.getAbsolutePath());
+        }
+
+        if ("heap".equals(this.cache)) {
+            this.heapCache = new FileCache(kCacheSize, kMaxFileSize);
+        } else {
+            this.offHeapCache = new OffHeapFileCache(kCacheSize, OffHeapFileCache.kDefaultSlabSize);
+        }
+
+        this.output = OutputStream.nullOutputStream();
+        this.channel = Channels.newChannel(this.output);
+        this.random = new Random(7);
+
+        for (FileMetadata file : this.files) {
+            createBody(file).readInto(ByteBuffer.allocate(kMaxFileSize));
+        }
+    }
+
+    /**
+     * Deletes the working set.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : this.directory.listFiles()) {
+            file.delete();
+        }
+
+        this.directory.delete();
+
+        if (this.offHeapCache != null) {
+            this.offHeapCache.clear();
+        }
+    }
+
+    /**
+     * Creates the body of a response that sends a file from the cache being measured.
+     *
+     * @param file The file to send.
+     * @return A body source.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    private BodySource createBody(FileMetadata file) throws IOException {
+        if (this.heapCache != null) {
+            return new ByteArrayBodySource(this.heapCache.getFile(file).getContent());
+        }
+
+        return new OffHeapBodySource(this.offHeapCache, file, 0, -1, new FileBodySource(file.getPath(), 0, -1));
+    }
+
+    /**
+     * Writes a 200 OK response that sends a file from the cache being measured.
+     *
+     * @param file The file to send.
+     * @return The response that was written.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    private WebServerResponse serve(FileMetadata file) throws IOException {
+        WebServerHeader header = new WebServerHeader();
+        header.setValue("Content-Type", "text/html");
+        header.setValue("Content-Length", Long.toString(file.getLength()));
+
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, header);
+        response.setBody(createBody(file));
+        response.writeResponse(this.output, this.channel);
+
+        return response;
+    }
+
+    /**
+     * Serves a randomly chosen file that is already cached.
+     *
+     * @return The response that was written.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    @Benchmark
+    public WebServerResponse serveCachedFile() throws IOException {
+        return serve(this.files[this.random.nextInt(kFileCount)]);
+    }
+
+    /**
+     * Serves a randomly chosen file, where every so often the file has left the cache and is loaded again. On the heap
+     * this replaces a long lived array, which is what promotes garbage into the old generation.
+     *
+     * @return The response that was written.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    @Benchmark
+    public WebServerResponse serveWithChurn() throws IOException {
+        FileMetadata file = this.files[this.random.nextInt(kFileCount)];
+
+        if (++this.requests % kChurnInterval == 0) {
+            if (this.heapCache != null) {
+                this.heapCache.invalidate(file.getPath());
+            } else {
+                this.offHeapCache.invalidate(file.getPath());
+            }
+        }
+
+        return serve(file);
+    }
+}
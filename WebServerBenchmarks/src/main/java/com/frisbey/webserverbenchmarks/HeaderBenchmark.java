@@ -0,0 +1,86 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverbenchmarks;
+
+import com.frisbey.webserver.exception.InvalidHeaderException;
+import com.frisbey.webserver.request.WebServerHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding raw header lines to a {@link com.frisbey.webserver.request.WebServerHeader}, which is done for every
+ * header line of every request that is read through a buffered reader.
+ *
+ * @author Mark Frisbey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderBenchmark {
+
+    // the header lines of a request as sent by a typical browser
+    private static final String[] kHeaderLines = {
+            "Host: www.example.com",
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0",
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8",
+            "Accept-Language: en-US,en;q=0.5",
+            "Accept-Encoding: gzip, deflate, br",
+            "Connection: keep-alive"
+    };
+
+    /**
+     * Adds a single header line to an empty header.
+     *
+     * @return The header that was built.
+     * @throws InvalidHeaderException never thrown for the valid header line.
+     */
+    @Benchmark
+    public WebServerHeader addRawValue() throws InvalidHeaderException {
+        WebServerHeader header = new WebServerHeader(false);
+        header.addRawValue(kHeaderLines[0]);
+
+        return header;
+    }
+
+    /**
+     * Builds the complete header of a typical request.
+     *
+     * @return The header that was built.
+     * @throws InvalidHeaderException never thrown for the valid header lines.
+     */
+    @Benchmark
+    public WebServerHeader addRawValues() throws InvalidHeaderException {
+        WebServerHeader header = new WebServerHeader(false);
+
+        for (String line : kHeaderLines) {
+            header.addRawValue(line);
+        }
+
+        return header;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverbenchmarks;
+
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.utility.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the path handling that is performed for every request: resolving the requested URI against the server's
+ * root and choosing a content type from the file's extension.
+ *
+ * @author Mark Frisbey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+    // the root directory of the server
+    private static final String kRoot = "/var/www/site";
+
+    // the URI of the requested resource. the extensions are common, less common and unknown
+    @Param({"/index.html", "/images/photos/summer/beach.jpeg", "/downloads/archive.unknown"})
+    public String uri;
+
+    // the bundled content type registry
+    private MimeTypeRegistry registry = MimeTypeRegistry.getDefault();
+
+    /**
+     * Resolves the requested URI against the server's root.
+     *
+     * @return The local path of the resource.
+     */
+    @Benchmark
+    public String buildPath() {
+        return StringUtils.buildPath(kRoot, this.uri);
+    }
+
+    /**
+     * Determines the content type of the requested resource.
+     *
+     * @return The content type of the resource.
+     */
+    @Benchmark
+    public String getContentType() {
+        return this.registry.getContentType(this.uri);
+    }
+}
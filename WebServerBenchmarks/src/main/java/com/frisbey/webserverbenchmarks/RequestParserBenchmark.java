@@ -0,0 +1,125 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverbenchmarks;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.request.HttpRequestParser;
+import com.frisbey.webserver.request.WebServerRequest;
+import com.frisbey.webserver.request.WebServerRequestFactory;
+import com.frisbey.webserver.utility.StreamUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a request through a {@link java.io.BufferedReader}, as the server originally did, against reading
+ * it with a reused {@link com.frisbey.webserver.request.HttpRequestParser}. The request is typical of what a browser
+ * sends for a page.
+ *
+ * @author Mark Frisbey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParserBenchmark {
+
+    // a request as sent by a typical browser
+    private static final String kRequest = "GET /images/logo.png HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0\r\n" +
+            "Accept: image/avif,image/webp,*/*\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Referer: http://www.example.com/index.html\r\n" +
+            "\r\n";
+
+    // the raw bytes of the request
+    private byte[] requestData;
+
+    // the configuration of the server that received the request
+    private WebServerContext context;
+
+    // the parser reused by each invocation, as a connection would reuse it
+    private HttpRequestParser parser;
+
+    /**
+     * Prepares the request data and the parser.
+     */
+    @Setup
+    public void setup() {
+        this.requestData = kRequest.getBytes(Charset.forName("ISO-8859-1"));
+        this.context = new WebServerContext(System.getProperty("java.io.tmpdir"));
+        this.parser = new HttpRequestParser();
+    }
+
+    /**
+     * Reads the request through a buffered reader, splitting the request line and matching each header line.
+     *
+     * @return The request that was read.
+     * @throws IOException never thrown for in-memory data.
+     * @throws InvalidRequestException never thrown for the valid request.
+     */
+    @Benchmark
+    public WebServerRequest bufferedReader() throws IOException, InvalidRequestException {
+        return WebServerRequestFactory.getRequest(StreamUtils.getStreamReader(new ByteArrayInputStream(this.requestData)), this.context);
+    }
+
+    /**
+     * Reads the request with the byte-level parser.
+     *
+     * @return The request that was read.
+     * @throws InvalidRequestException never thrown for the valid request.
+     */
+    @Benchmark
+    public WebServerRequest byteParser() throws InvalidRequestException {
+        this.parser.reset();
+        this.parser.parse(ByteBuffer.wrap(this.requestData));
+
+        return WebServerRequestFactory.getRequest(this.parser, this.context);
+    }
+
+    /**
+     * Reads the request with the byte-level parser and looks up a single header without building the full header,
+     * which is all that some callers need.
+     *
+     * @return The value of the header.
+     */
+    @Benchmark
+    public String byteParserLookup() {
+        this.parser.reset();
+        this.parser.parse(ByteBuffer.wrap(this.requestData));
+
+        return this.parser.getHeaderValue("Connection");
+    }
+}
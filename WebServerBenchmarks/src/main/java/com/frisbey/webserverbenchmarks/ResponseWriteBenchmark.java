@@ -0,0 +1,209 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverbenchmarks;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.HeaderEncoder;
+import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.utility.DirectBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a complete 200 OK response, with small, medium and large bodies. Responses are written to an output
+ * that discards its data so that only the server's own work is measured.
+ *
+ * @author Mark Frisbey
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriteBenchmark {
+
+    // the size of the response body
+    @Param({"small", "medium", "large"})
+    public String bodySize;
+
+    // the content of the body
+    private byte[] body;
+
+    // a file holding the content of the body
+    private File bodyFile;
+
+    // discards the data that is written to it
+    private OutputStream output;
+
+    // a prepared header, used to measure serialization without the cost of building the header
+    private WebServerHeader header;
+
+    // receives serialized headers
+    private ByteBuffer headerBuffer;
+
+    // discards the data that is written to it. not a file channel, so file bodies are copied rather than transferred
+    private WritableByteChannel channel;
+
+    /**
+     * Creates the body content and the file that holds it.
+     *
+     * @throws IOException thrown if the body file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.body = new byte[getBodyLength(this.bodySize)];
+        Arrays.fill(this.body, (byte) 'x');
+
+        this.bodyFile = File.createTempFile("webserver-benchmark", ".html");
+        Files.write(this.bodyFile.toPath(), this.body);
+
+        this.output = OutputStream.nullOutputStream();
+        this.channel = Channels.newChannel(this.output);
+        this.header = createHeader();
+        this.headerBuffer = ByteBuffer.allocateDirect(DirectBufferPool.kDefaultBufferSize);
+    }
+
+    /**
+     * Deletes the body file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.bodyFile.delete();
+    }
+
+    /**
+     * Converts a named body size to a number of bytes.
+     *
+     * @param size small, medium or large.
+     * @return The number of bytes in a body of the given size.
+     */
+    private static int getBodyLength(String size) {
+        switch (size) {
+            case "small":
+                return 1024;
+            case "medium":
+                return 64 * 1024;
+            default:
+                return 1024 * 1024;
+        }
+    }
+
+    /**
+     * Creates the header that a GET request produces.
+     *
+     * @return A header describing the body.
+     */
+    private WebServerHeader createHeader() {
+        WebServerHeader header = new WebServerHeader();
+        header.setValue("Content-Type", "text/html");
+        header.setValue("Content-Length", Integer.toString(this.body.length));
+        header.setValue("Connection", "keep-alive");
+        header.setValue("Keep-Alive", "timeout=5, max=100");
+
+        return header;
+    }
+
+    /**
+     * Creates a response with the header that a GET request produces.
+     *
+     * @return A 200 OK response without a body.
+     */
+    private WebServerResponse createResponse() {
+        return new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, createHeader());
+    }
+
+    /**
+     * Writes only the status line and header of a response, which shows the cost of header serialization on its own.
+     *
+     * @return The response that was written.
+     * @throws IOException never thrown by the discarding output.
+     */
+    @Benchmark
+    public WebServerResponse headerOnly() throws IOException {
+        WebServerResponse response = createResponse();
+        response.writeResponse(this.output, this.channel);
+
+        return response;
+    }
+
+    /**
+     * Serializes a prepared status line and header into a reused buffer.
+     *
+     * @return The buffer holding the serialized header.
+     */
+    @Benchmark
+    public ByteBuffer serializeHeader() {
+        this.headerBuffer.clear();
+        HeaderEncoder.encode(HttpVersion.HTTP_1_1, HttpResponse.OK, this.header, this.headerBuffer);
+
+        return this.headerBuffer;
+    }
+
+    /**
+     * Writes a response whose body is held in memory, as it is when the file is in the file cache.
+     *
+     * @return The response that was written.
+     * @throws IOException never thrown by the discarding output.
+     */
+    @Benchmark
+    public WebServerResponse cachedBody() throws IOException {
+        WebServerResponse response = createResponse();
+        response.setBody(new ByteArrayBodySource(this.body));
+        response.writeResponse(this.output, this.channel);
+
+        return response;
+    }
+
+    /**
+     * Writes a response whose body is read from the file system.
+     *
+     * @return The response that was written.
+     * @throws IOException thrown if the body file cannot be read.
+     */
+    @Benchmark
+    public WebServerResponse fileBody() throws IOException {
+        WebServerResponse response = createResponse();
+        response.setBodyUri(this.bodyFile.getAbsolutePath());
+        response.writeResponse(this.output, this.channel);
+
+        return response;
+    }
+}
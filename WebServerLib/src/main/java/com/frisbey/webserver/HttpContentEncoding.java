@@ -0,0 +1,122 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver;
+
+import java.util.Locale;
+
+/**
+ * Enumeration representing the content encodings in which the server can send a resource. A resource is only sent
+ * encoded when a precompressed copy of it, such as "app.js.gz" next to "app.js", exists on disk. The constants are
+ * declared in order of preference, so the first encoding that a client accepts is the one that will be used.
+ *
+ * @author Mark Frisbey
+ */
+public enum HttpContentEncoding {
+
+    /**
+     * The content is compressed with Brotli.
+     */
+    BROTLI("br", ".br"),
+
+    /**
+     * The content is compressed with gzip.
+     */
+    GZIP("gzip", ".gz");
+
+    // the name of the encoding as it appears in Accept-Encoding and Content-Encoding headers
+    private String token;
+
+    // the extension that is appended to a file name to find its precompressed copy
+    private String extension;
+
+    HttpContentEncoding(String token, String extension) {
+        this.token = token;
+        this.extension = extension;
+    }
+
+    /**
+     * Retrieves the name of the encoding as it appears in Accept-Encoding and Content-Encoding headers.
+     *
+     * @return The encoding's token.
+     */
+    public String getToken() {
+        return this.token;
+    }
+
+    /**
+     * Retrieves the path of the precompressed copy of a file.
+     *
+     * @param filePath The full path to the uncompressed file.
+     * @return The path at which a copy compressed with this encoding would be stored.
+     */
+    public String getSidecarPath(String filePath) {
+        return filePath + this.extension;
+    }
+
+    /**
+     * Determines whether an Accept-Encoding header allows this encoding. An encoding is allowed when it is listed
+     * without a quality value of 0, or when it is not listed and a "*" entry with a quality above 0 is.
+     *
+     * @param acceptEncoding The value of an Accept-Encoding header. May be null.
+     * @return true if the client accepts content in this encoding.
+     */
+    public boolean isAcceptedBy(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        boolean isWildcardAccepted = false;
+
+        for (String element : acceptEncoding.split(",")) {
+            int parameters = element.indexOf(';');
+            String coding = (parameters < 0 ? element : element.substring(0, parameters)).trim().toLowerCase(Locale.ENGLISH);
+            boolean isAccepted = parameters < 0 || getQuality(element.substring(parameters + 1)) > 0;
+
+            if (coding.equals(this.token)) {
+                return isAccepted;
+            }
+
+            if (coding.equals("*")) {
+                isWildcardAccepted = isAccepted;
+            }
+        }
+
+        return isWildcardAccepted;
+    }
+
+    /**
+     * Reads the quality value from the parameters of an Accept-Encoding element.
+     *
+     * @param parameters The text that follows the coding, for example "q=0.5".
+     * @return The quality value, 1 if none was given, or 0 if it is malformed.
+     */
+    private static float getQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.trim();
+
+            if (parameter.length() > 1 && Character.toLowerCase(parameter.charAt(0)) == 'q' && parameter.charAt(1) == '=') {
+                try {
+                    return Float.parseFloat(parameter.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
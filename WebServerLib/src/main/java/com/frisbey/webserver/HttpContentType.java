@@ -16,12 +16,17 @@
 
 package com.frisbey.webserver;
 
-import com.frisbey.webserver.utility.StringUtils;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Enumeration representing various HTTP content types that the server can provide. The enumeration can be easily
  * extended to support additional content types. A content type consists of a string description.
  *
+ * <p>The enumeration only covers a handful of types. The Content-Type header of a response is chosen by the server's
+ * {@link com.frisbey.webserver.MimeTypeRegistry}, which knows many more types and can be extended at startup.</p>
+ *
  * @author Mark Frisbey
  */
 public enum HttpContentType {
@@ -67,6 +72,17 @@ public enum HttpContentType {
     // the extensions that will result in the content type
     private String[] extensions;
 
+    // the content types keyed by the lower case extension, without its leading dot
+    private static final Map<String, HttpContentType> kTypesByExtension = new HashMap<String, HttpContentType>();
+
+    static {
+        for (HttpContentType type : values()) {
+            for (String extension : type.extensions) {
+                kTypesByExtension.put(extension.substring(1).toLowerCase(Locale.ENGLISH), type);
+            }
+        }
+    }
+
     HttpContentType(String content, String[] extensions) {
         this.content = content;
         this.extensions = extensions;
@@ -89,19 +105,9 @@ public enum HttpContentType {
      * @return The content type for a file.
      */
     public static HttpContentType fromFilePath(String filePath) {
-        HttpContentType finalContent = TEXT_HTML;
-
-        if (!StringUtils.isNullOrEmpty(filePath)) {
-            for (HttpContentType t : HttpContentType.values()) {
-                for (String extension : t.extensions) {
-                    if (filePath.length() >= extension.length() && filePath.substring(filePath.length() - extension.length()).compareToIgnoreCase(extension) == 0) {
-                        finalContent = t;
-                        break;
-                    }
-                }
-            }
-        }
+        String extension = MimeTypeRegistry.getExtension(filePath);
+        HttpContentType type = (extension != null) ? kTypesByExtension.get(extension.toLowerCase(Locale.ENGLISH)) : null;
 
-        return finalContent;
+        return (type != null) ? type : TEXT_HTML;
     }
 }
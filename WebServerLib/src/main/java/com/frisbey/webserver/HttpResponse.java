@@ -29,11 +29,27 @@ public enum HttpResponse {
      */
     OK(200, "OK"),
 
+    /**
+     * A Partial Content response, meaning that the body contains only the byte ranges that the client requested.
+     */
+    PartialContent(206, "Partial Content"),
+
+    /**
+     * A Not Modified response, meaning that the copy of the resource that the client already holds is still current.
+     * The response never has a body.
+     */
+    NotModified(304, "Not Modified"),
+
     /**
      * A Not Found response, meaning that the web server was unable to locate the URI in the request.
      */
     NotFound(404, "Not Found"),
 
+    /**
+     * None of the byte ranges that the client requested lie within the requested resource.
+     */
+    RangeNotSatisfiable(416, "Range Not Satisfiable"),
+
     /**
      * An internal server error response, meaning that the web server encountered an error and was unable to
      * process the request.
@@ -48,7 +64,12 @@ public enum HttpResponse {
     /**
      * The server does not support the functionality required to fulfill the request.
      */
-    NotImplemented(501, "Not Implemented");
+    NotImplemented(501, "Not Implemented"),
+
+    /**
+     * The server is currently unable to handle the request because it is overloaded. The client may try again later.
+     */
+    ServiceUnavailable(503, "Service Unavailable");
 
     // the code portion of the response
     private int code;
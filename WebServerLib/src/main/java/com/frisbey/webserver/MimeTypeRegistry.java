@@ -0,0 +1,262 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver;
+
+import com.frisbey.webserver.utility.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps file extensions to the content types that are sent in the Content-Type header. The extension of a path is
+ * extracted once and looked up in a hash table, so the cost of a lookup does not grow with the number of known types.
+ * Extensions are matched without regard to case.
+ *
+ * <p>A registry is populated from files in the {@code mime.types} format used by Apache httpd and nginx: each line
+ * holds a content type followed by the extensions that map to it, and lines starting with '#' are comments. The
+ * {@link #createDefault()} registry holds the types bundled with the server, and a site's own file can be loaded on top
+ * of it at startup to add types or override the bundled ones.</p>
+ *
+ * <p>A registry is not synchronized. It should be fully populated before it is shared with the threads that serve
+ * requests, after which any number of threads may read it at once.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.WebServerContext#getMimeTypeRegistry()
+ */
+public class MimeTypeRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MimeTypeRegistry.class);
+
+    // the classpath resource that holds the content types bundled with the server
+    public static final String kDefaultResource = "mime.types";
+
+    // the content type of files whose extension is not known, which matches the server's historical behaviour
+    public static final String kDefaultContentType = "text/html";
+
+    // the bundled registry, loaded the first time it is requested. never modified once loaded
+    private static volatile MimeTypeRegistry defaultRegistry;
+
+    // the content types keyed by the lower case extension, without its leading dot
+    private Map<String, String> types;
+
+    // the content type of files whose extension is not known
+    private String defaultContentType;
+
+    /**
+     * Initializes an empty registry. Every path will resolve to the default content type until types are added.
+     */
+    public MimeTypeRegistry() {
+        this.types = new HashMap<String, String>();
+        this.defaultContentType = kDefaultContentType;
+    }
+
+    /**
+     * Creates a new registry that holds the content types bundled with the server. The registry belongs to the caller,
+     * so additional types can be loaded into it without affecting other registries.
+     *
+     * @return A new registry.
+     */
+    public static MimeTypeRegistry createDefault() {
+        MimeTypeRegistry registry = new MimeTypeRegistry();
+        InputStream stream = MimeTypeRegistry.class.getResourceAsStream(kDefaultResource);
+
+        if (stream == null) {
+            logger.warn("bundled content types {} could not be found", kDefaultResource);
+            return registry;
+        }
+
+        try {
+            registry.load(stream);
+        } catch (IOException ex) {
+            logger.warn("unable to read bundled content types", ex);
+        }
+
+        return registry;
+    }
+
+    /**
+     * Retrieves a shared registry that holds the content types bundled with the server. It is used by requests that
+     * are not tied to a server context, and must not be modified.
+     *
+     * @return The shared bundled registry.
+     */
+    public static MimeTypeRegistry getDefault() {
+        MimeTypeRegistry registry = defaultRegistry;
+
+        if (registry == null) {
+            synchronized (MimeTypeRegistry.class) {
+                registry = defaultRegistry;
+
+                if (registry == null) {
+                    registry = createDefault();
+                    defaultRegistry = registry;
+                }
+            }
+        }
+
+        return registry;
+    }
+
+    /**
+     * Adds the content types in a file to the registry. Extensions that are already known are mapped to the type in
+     * the file.
+     *
+     * @param path The full local path to a file in the mime.types format.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    public void load(String path) throws IOException {
+        load(new FileInputStream(path));
+    }
+
+    /**
+     * Adds the content types in a stream to the registry, and closes the stream. Extensions that are already known are
+     * mapped to the type in the stream.
+     *
+     * @param stream A stream of data in the mime.types format.
+     * @throws IOException thrown if the stream cannot be read.
+     */
+    public void load(InputStream stream) throws IOException {
+        BufferedReader reader = StreamUtils.getStreamReader(stream);
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+
+                String[] parts = line.trim().split("\\s+");
+
+                if (parts.length < 2) {
+                    continue;
+                }
+
+                for (int i = 1; i < parts.length; i++) {
+                    // nginx terminates each entry with a semicolon
+                    String extension = parts[i].endsWith(";") ? parts[i].substring(0, parts[i].length() - 1) : parts[i];
+
+                    if (!extension.isEmpty()) {
+                        register(extension, parts[0]);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Maps an extension to a content type, replacing any existing mapping for the extension.
+     *
+     * @param extension The extension, with or without its leading dot.
+     * @param contentType The content type, such as "image/svg+xml".
+     */
+    public void register(String extension, String contentType) {
+        if (extension == null || extension.isEmpty() || contentType == null || contentType.isEmpty()) {
+            throw new IllegalArgumentException("Extension and content type must not be empty");
+        }
+
+        if (extension.charAt(0) == '.') {
+            extension = extension.substring(1);
+        }
+
+        this.types.put(extension.toLowerCase(Locale.ENGLISH), contentType);
+    }
+
+    /**
+     * Retrieves the content type of a file from its extension.
+     *
+     * @param path The path or URI of the file.
+     * @return The content type registered for the file's extension, or the default content type if the file has no
+     *         extension or its extension is not known.
+     */
+    public String getContentType(String path) {
+        String extension = getExtension(path);
+        String contentType = (extension != null) ? this.types.get(extension.toLowerCase(Locale.ENGLISH)) : null;
+
+        return (contentType != null) ? contentType : this.defaultContentType;
+    }
+
+    /**
+     * Extracts the extension from a path. Only the last segment of the path is considered, so a dot in a directory name
+     * is never mistaken for the start of an extension.
+     *
+     * @param path The path or URI of a file.
+     * @return The text after the last dot of the file name, or null if the file name has no extension.
+     */
+    public static String getExtension(String path) {
+        if (path == null) {
+            return null;
+        }
+
+        for (int i = path.length() - 1; i >= 0; i--) {
+            char current = path.charAt(i);
+
+            if (current == '.') {
+                return (i < path.length() - 1) ? path.substring(i + 1) : null;
+            }
+
+            if (current == '/' || current == '\\') {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves the content type of files whose extension is not known.
+     *
+     * @return A content type.
+     */
+    public String getDefaultContentType() {
+        return this.defaultContentType;
+    }
+
+    /**
+     * Sets the content type of files whose extension is not known. Servers that host mostly downloads may prefer
+     * "application/octet-stream".
+     *
+     * @param defaultContentType A content type. Must not be empty.
+     */
+    public void setDefaultContentType(String defaultContentType) {
+        if (defaultContentType == null || defaultContentType.isEmpty()) {
+            throw new IllegalArgumentException("Default content type must not be empty");
+        }
+
+        this.defaultContentType = defaultContentType;
+    }
+
+    /**
+     * Retrieves the number of extensions that the registry knows about.
+     *
+     * @return A number of extensions.
+     */
+    public int size() {
+        return this.types.size();
+    }
+}
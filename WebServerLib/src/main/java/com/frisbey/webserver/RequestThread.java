@@ -16,12 +16,16 @@
 
 package com.frisbey.webserver;
 
+import com.frisbey.webserver.accesslog.AccessLog;
 import com.frisbey.webserver.exception.InvalidMethodException;
 import com.frisbey.webserver.exception.InvalidRequestException;
-import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.metrics.ServerMetrics;
+import com.frisbey.webserver.request.HttpRequestParser;
 import com.frisbey.webserver.request.WebServerRequest;
 import com.frisbey.webserver.request.WebServerRequestFactory;
+import com.frisbey.webserver.response.ResponseOutput;
 import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.response.WebServerResponseFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +33,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 
 /**
@@ -44,11 +50,14 @@ public class RequestThread implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(WebServerRequestFactory.class);
 
+    // the number of bytes that are read from the client at a time
+    private static final int kReadBufferSize = 8192;
+
     // the socket on which the original request was received.
     private Socket clientSocket = null;
 
-    // the full path to the root directory of the web server.
-    private String webServerRoot;
+    // the configuration of the server that accepted the connection
+    private WebServerContext context;
 
     /**
      * Initializes a new thread using the provided information.
@@ -59,47 +68,118 @@ public class RequestThread implements Runnable {
      *                      requested in the URI portion of the request.
      */
     public RequestThread(Socket clientSocket, String webServerRoot) {
-        this.clientSocket = clientSocket;
-        this.webServerRoot = webServerRoot;
+        // a context created for a single connection would never reuse anything it cached
+        this(clientSocket, new WebServerContext(webServerRoot, false));
     }
 
     /**
-     * Performs the work of reading a request and producing a response. The request will be read from the thread's
-     * socket and the response will be written back to the same socket.
+     * Initializes a new thread using the provided information.
      *
-     * @return The response that the server generated for the received request.
-     * @throws Exception thrown if there are issues reading the request and creating the response.
+     * @param clientSocket The socket on which the original request was received. Will be used to read the request and
+     *                     write the response.
+     * @param context The configuration of the server that accepted the connection.
+     */
+    public RequestThread(Socket clientSocket, WebServerContext context) {
+        this.clientSocket = clientSocket;
+        this.context = context;
+    }
+
+    /**
+     * Performs the work of reading requests and producing responses. Requests will be read from the thread's socket
+     * and the responses will be written back to the same socket. If the client supports persistent connections then
+     * the socket will be reused for additional requests until the client closes it, the connection sits idle for
+     * longer than the configured timeout, or the configured maximum number of requests has been served.
      */
     @Override
     public void run() {
         logger.debug("entering");
-        WebServerResponse response = null;
+        int requestsServed = 0;
+        ServerMetrics metrics = this.context.getMetrics();
+        AccessLog accessLog = this.context.getAccessLog();
+        metrics.connectionOpened();
         try {
             OutputStream output = clientSocket.getOutputStream();
+            InputStream input = null;
+            HttpRequestParser parser = new HttpRequestParser();
+            boolean keepAlive = true;
 
-            try {
-                // grab streams from the socket
-                InputStream input = clientSocket.getInputStream();
-
-                // interpret the request and generate a response
-                WebServerRequest request = getRequest(input, this.webServerRoot);
-                response = request.getResponse();
-            } catch (InvalidMethodException ex) {
-                logger.info("server provided invalid method exception", ex);
-                response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.NotImplemented, new WebServerHeader());
-            } catch (InvalidRequestException ex) {
-                logger.info("server provided invalid request exception", ex);
-                response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.BadRequest, new WebServerHeader());
-            } catch (Exception ex) {
-                logger.error("There was an unhandled exception while processing the request and an internal server error response is being sent.", ex);
-                response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.InternalServerError, new WebServerHeader());
-            }
+            // bytes received from the client that have not been parsed yet, such as a pipelined request. the same
+            // buffer and parser are used for every request on the connection. the buffer is kept ready for reading
+            ByteBuffer received = ByteBuffer.allocate(kReadBufferSize);
+            received.flip();
+
+            // limit how long the thread will wait on a client that has stopped sending data
+            clientSocket.setSoTimeout(this.context.getKeepAliveTimeout());
+            clientSocket.setTcpNoDelay(this.context.isTcpNoDelay());
+
+            // sockets accepted through a channel allow the body to be transferred without copying it through the JVM
+            ResponseOutput responseOutput = new ResponseOutput(output, clientSocket.getChannel());
+            responseOutput.setGatherWriteThreshold(this.context.getGatherWriteThreshold());
+
+            while (keepAlive) {
+                WebServerResponse response = null;
+                HttpVersion clientVersion = null;
+                HttpMethod method = null;
+                long startTime = System.nanoTime();
+                keepAlive = false;
 
-            // write the response back to the socket
-            response.writeResponse(output);
+                try {
+                    if (input == null) {
+                        input = clientSocket.getInputStream();
+                    }
+
+                    // forget the previous request, so that a failure to read the next one is not logged as it
+                    parser.reset();
+
+                    if (requestsServed > 0 && !awaitNextRequest(input, received)) {
+                        logger.debug("persistent connection closed after {} requests", requestsServed);
+                        break;
+                    }
+
+                    // time spent waiting on an idle persistent connection is not part of the request's latency
+                    if (requestsServed > 0) {
+                        startTime = System.nanoTime();
+                    }
+
+                    // interpret the request and generate a response
+                    readRequest(input, received, parser);
+
+                    WebServerRequest request = getRequest(parser, this.context);
+                    response = request.getResponse();
+                    clientVersion = request.getVersion();
+                    method = request.getMethod();
+                    requestsServed++;
+
+                    keepAlive = request.isKeepAlive() && requestsServed < this.context.getMaxKeepAliveRequests();
+                } catch (SocketTimeoutException ex) {
+                    logger.debug("client did not finish sending its request within {} ms", this.context.getKeepAliveTimeout());
+                    break;
+                } catch (Exception ex) {
+                    response = WebServerResponseFactory.getErrorResponse(ex);
+                }
+
+                keepAlive = WebServerResponseFactory.setTransferHeaders(response, this.context, clientVersion) && keepAlive;
+                WebServerResponseFactory.setConnectionHeaders(response, this.context, keepAlive, requestsServed);
+
+                // write the response back to the socket
+                long bytesBefore = responseOutput.getBytesWritten();
+                response.writeResponse(responseOutput);
+
+                long bytesWritten = responseOutput.getBytesWritten() - bytesBefore;
+                long elapsed = System.nanoTime() - startTime;
+                metrics.recordRequest(method, response.getResponse(), bytesWritten, elapsed);
+
+                if (accessLog != null) {
+                    // access logs report the size of the body, without the header
+                    long bodyBytes = Math.max(0, bytesWritten - response.getHeaderLength());
+                    accessLog.log(clientSocket.getInetAddress(), parser, response.getResponse(), bodyBytes, elapsed);
+                }
+            }
         } catch (Exception ex) {
             logger.error("something went very wrong and the server was unable to provide a response to the client", ex);
         } finally {
+            metrics.connectionClosed();
+
             // close the socket when finished
             try {
                 this.clientSocket.close();
@@ -110,16 +190,78 @@ public class RequestThread implements Runnable {
     }
 
     /**
-     * Creates a request instance from the raw data provided in the given input stream.
+     * Waits for the client to begin sending its next request over a persistent connection.
      *
-     * @param input The input to be read when creating the request.
-     * @param webServerRoot The full path to the root directory of the web server. Will be used to retrieve resources
-     *                      requested in the URI portion of the request.
-     * @return The request represented by the raw data in the given input.
-     * @throws IOException thrown if there are issues reading from the input stream.
-     * @throws InvalidRequestException thrown if the raw request in the input stream is invalid.
+     * @param input The stream from which the next request will be read.
+     * @param received Bytes that have been received but not parsed yet.
+     * @return true if data is available, false if the client closed the connection or the idle timeout expired.
+     * @throws IOException thrown if there are issues reading from the connection.
+     */
+    protected boolean awaitNextRequest(InputStream input, ByteBuffer received) throws IOException {
+        if (received.hasRemaining()) {
+            // a pipelining client has already sent its next request
+            return true;
+        }
+
+        try {
+            return receive(input, received) > 0;
+        } catch (SocketTimeoutException ex) {
+            logger.debug("persistent connection was idle for longer than {} ms", this.context.getKeepAliveTimeout());
+            return false;
+        }
+    }
+
+    /**
+     * Feeds data from the client to a parser until the parser has read an entire request. Any bytes that follow the
+     * request are left in the buffer for the next request.
+     *
+     * @param input The stream from which the request will be read.
+     * @param received Bytes that have been received but not parsed yet. Will be refilled from the stream as needed.
+     * @param parser The parser that will read the request.
+     * @throws IOException thrown if there are issues reading from the connection.
+     */
+    protected void readRequest(InputStream input, ByteBuffer received, HttpRequestParser parser) throws IOException {
+        while (!parser.parse(received)) {
+            if (receive(input, received) < 0) {
+                parser.endOfInput();
+            }
+        }
+    }
+
+    /**
+     * Reads the next available bytes from the client into a buffer.
+     *
+     * @param input The stream to read.
+     * @param received The buffer that will receive the bytes. Unparsed bytes already in the buffer are kept.
+     * @return The number of bytes read, or -1 if the client closed the connection.
+     * @throws IOException thrown if there are issues reading from the connection.
+     */
+    private int receive(InputStream input, ByteBuffer received) throws IOException {
+        received.compact();
+
+        try {
+            int read = input.read(received.array(), received.arrayOffset() + received.position(), received.remaining());
+
+            if (read > 0) {
+                received.position(received.position() + read);
+            }
+
+            return read;
+        } finally {
+            received.flip();
+        }
+    }
+
+    /**
+     * Creates a request instance from a parser that has finished reading a request.
+     *
+     * @param parser The parser that read the request.
+     * @param context The configuration of the server. Will be used to retrieve resources requested in the URI portion
+     *                of the request.
+     * @return The request represented by the parsed data.
+     * @throws InvalidRequestException thrown if the parsed request is invalid.
      */
-    protected WebServerRequest getRequest(InputStream input, String webServerRoot) throws IOException, InvalidRequestException, InvalidMethodException {
-        return WebServerRequestFactory.getRequest(input, webServerRoot);
+    protected WebServerRequest getRequest(HttpRequestParser parser, WebServerContext context) throws InvalidRequestException, InvalidMethodException {
+        return WebServerRequestFactory.getRequest(parser, context);
     }
 }
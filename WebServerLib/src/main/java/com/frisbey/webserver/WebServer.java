@@ -16,18 +16,24 @@
 
 package com.frisbey.webserver;
 
+import com.frisbey.webserver.metrics.MetricsSnapshot;
+import com.frisbey.webserver.metrics.ServerMetrics;
 import com.frisbey.webserver.request.WebServerRequestFactory;
 import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.response.WebServerResponseFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * A very simple web server that, when running, will listen on a given port. Whenever data is received on the port, the
@@ -38,10 +44,14 @@ import java.util.concurrent.Future;
  * machine running the server process. The {@link com.frisbey.webserver.WebServerFactory} provides various means
  * for retrieving an instance of a WebServer.</p>
  *
+ * <p>If the thread pool refuses a connection because its queue is full, the server immediately answers the client with
+ * a 503 Service Unavailable response from the listening thread and closes the connection. This keeps a traffic spike
+ * from piling up connections that would only be served long after their clients gave up.</p>
+ *
  * @author Mark Frisbey
  * @see com.frisbey.webserver.WebServerFactory
  */
-public class WebServer implements Runnable {
+public class WebServer implements WebServerEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(WebServerRequestFactory.class);
 
@@ -54,11 +64,15 @@ public class WebServer implements Runnable {
     // the thread pool that the server will use to launch threads
     private ExecutorService serverThreadPool;
 
-    // the full path to the local directory where the server will look for files
-    private String webServerRoot;
+    // the configuration shared with the threads that the server launches
+    private WebServerContext context;
+
+    // the runtime numbers recorded by the server and its threads, including the connections it has accepted and
+    // turned away
+    private ServerMetrics metrics;
 
-    // stores the total number of requests that have been received by the server
-    private int requestsProcessed;
+    // the serialized response that is sent to connections that are turned away
+    private byte[] rejectionData;
 
     /**
      * Initializes a new server using the given information. The server will be in a stopped state after initialization.
@@ -70,11 +84,26 @@ public class WebServer implements Runnable {
      *                     of the socket and will close it when it has finished with it.
      */
     public WebServer(String webServerRoot, ExecutorService threadPool, ServerSocket listenSocket){
+        this(new WebServerContext(webServerRoot), threadPool, listenSocket);
+    }
+
+    /**
+     * Initializes a new server using the given configuration. The server will be in a stopped state after
+     * initialization.
+     *
+     * @param context The configuration that the server and the threads it launches will use.
+     * @param threadPool The pool that the server will use to launch its child threads. The server will assume ownership
+     *                   of the thread pool and will shut down the pool when it is finished with it.
+     * @param listenSocket The socket that the server will use to listen for requests. The server will assume ownership
+     *                     of the socket and will close it when it has finished with it.
+     */
+    public WebServer(WebServerContext context, ExecutorService threadPool, ServerSocket listenSocket){
         this.serverThreadPool = threadPool;
-        this.webServerRoot = webServerRoot;
+        this.context = context;
         this.isStopped = false;
         this.serverSocket = null;
-        this.requestsProcessed = 0;
+        this.metrics = context.getMetrics();
+        this.rejectionData = WebServerResponseFactory.getServiceUnavailableData(context);
         this.serverSocket = listenSocket;
     }
 
@@ -109,26 +138,105 @@ public class WebServer implements Runnable {
             }
 
             if (!isStopped()) {
-                this.requestsProcessed++;
-                logger.debug("received request. adding thread for request {} to thread pool.", this.requestsProcessed);
-                getThreadPool().execute(new RequestThread(clientSocket, this.webServerRoot));
+                this.metrics.connectionAccepted();
+                logger.debug("received request. adding thread for request {} to thread pool.", this.metrics.getConnectionsAccepted());
+
+                try {
+                    getThreadPool().execute(new RequestThread(clientSocket, this.context));
+                } catch (RejectedExecutionException ex) {
+                    rejectConnection(clientSocket);
+                }
             }
         }
-        logger.debug("shutting down after processing {} requests", this.requestsProcessed);
+        logger.debug("shutting down after processing {} requests", this.metrics.getConnectionsAccepted());
     }
 
     /**
-     * Retrieves the number of requests that the server has processed so far.
+     * Retrieves the number of requests that the server has processed so far. Each accepted connection counts as one
+     * request, no matter how many requests its client sends over it. Connections that were turned away are not counted;
+     * {@link #getMetricsSnapshot()} counts the requests themselves.
      *
      * @return The number of processed requests.
      */
+    @Override
     public int getRequestsProcessed() {
-        return this.requestsProcessed;
+        return (int) (this.metrics.getConnectionsAccepted() - this.metrics.getConnectionsRejected());
+    }
+
+    /**
+     * Turns a client away by sending it a 503 Service Unavailable response and closing its connection. The response
+     * is small enough to fit in the socket's send buffer, so writing it will not hold up the listening thread.
+     *
+     * @param clientSocket The connection that could not be served.
+     */
+    private void rejectConnection(Socket clientSocket) {
+        this.metrics.connectionRejected();
+        logger.warn("thread pool is full, rejecting connection {}", this.metrics.getConnectionsAccepted());
+
+        try {
+            OutputStream output = clientSocket.getOutputStream();
+            output.write(this.rejectionData);
+            output.flush();
+        } catch (IOException ex) {
+            logger.debug("unable to send service unavailable response to rejected connection", ex);
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (IOException ex) {
+                logger.debug("unable to close rejected connection", ex);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of connections that were turned away because the thread pool was full.
+     *
+     * @return A number of connections.
+     */
+    @Override
+    public int getRejectedConnections() {
+        return (int) this.metrics.getConnectionsRejected();
+    }
+
+    /**
+     * Retrieves the number of accepted connections that are waiting for a thread from the pool. Pools that do not
+     * expose a queue are reported as having no waiting connections.
+     *
+     * @return The current depth of the thread pool's queue.
+     */
+    @Override
+    public int getQueuedConnections() {
+        if (getThreadPool() instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) getThreadPool()).getQueue().size();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Takes a snapshot of the metrics recorded by the server and its threads.
+     *
+     * @return The server's current metrics.
+     */
+    @Override
+    public MetricsSnapshot getMetricsSnapshot() {
+        return this.metrics.snapshot(getQueuedConnections());
+    }
+
+    /**
+     * Retrieves the port on which the server is listening.
+     *
+     * @return A port number.
+     */
+    @Override
+    public int getLocalPort() {
+        return this.serverSocket.getLocalPort();
     }
 
     /**
      * Instructs the server to stop listening for requests.
      */
+    @Override
     public void stop() throws IOException{
         setIsStopped(true);
         try {
@@ -157,6 +265,7 @@ public class WebServer implements Runnable {
      *
      * @return true if the server is NOT running, false if the server is currently running.
      */
+    @Override
     public boolean isStopped() {
         return this.isStopped;
     }
@@ -0,0 +1,545 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver;
+
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.FileMetadataCache;
+import com.frisbey.webserver.cache.MappedFileCache;
+import com.frisbey.webserver.cache.OffHeapFileCache;
+import com.frisbey.webserver.metrics.ServerMetrics;
+
+/**
+ * Holds the configuration that is shared by a {@link com.frisbey.webserver.WebServer} and the threads that it
+ * launches. A context is created once when the server is configured and handed to every connection that the server
+ * accepts, so the values should not be modified once the server has been started.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.WebServerFactory
+ */
+public class WebServerContext {
+
+    // the default number of milliseconds that an idle persistent connection will be kept open
+    public static final int kDefaultKeepAliveTimeout = 5000;
+
+    // the default number of requests that will be served over a single persistent connection
+    public static final int kDefaultMaxKeepAliveRequests = 100;
+
+    // the default number of accepted connections that may wait for a free thread before new ones are turned away
+    public static final int kDefaultMaxQueuedConnections = 50;
+
+    // the default number of seconds that a client that was turned away is asked to wait before trying again
+    public static final int kDefaultRetryAfter = 1;
+
+    // the default size, in bytes, of the largest body that is sent in the same write as its response header
+    public static final int kDefaultGatherWriteThreshold = 8 * 1024;
+
+    // the default number of bytes of data in each chunk of a body that is sent with the chunked transfer coding
+    public static final int kDefaultChunkSize = 8 * 1024;
+
+    // the largest number of remaining requests whose Keep-Alive header value is built ahead of time
+    private static final int kMaxPrebuiltKeepAliveValues = 1024;
+
+    // the full path to the local directory where the server will look for files
+    private String webServerRoot;
+
+    // the number of milliseconds that an idle persistent connection will be kept open
+    private int keepAliveTimeout;
+
+    // the maximum number of requests that will be served over a single connection
+    private int maxKeepAliveRequests;
+
+    // the start of every Keep-Alive header value, up to the number of remaining requests
+    private String keepAlivePrefix;
+
+    // the complete Keep-Alive header values, indexed by the number of remaining requests
+    private String[] keepAliveValues;
+
+    // the maximum number of accepted connections that may wait for a free thread
+    private int maxQueuedConnections;
+
+    // the number of seconds that a client that was turned away is asked to wait before trying again
+    private int retryAfter;
+
+    // the cache that requests use to avoid reading files from disk, or null if caching is disabled
+    private FileCache fileCache;
+
+    // the cache that requests use to avoid examining files on every request, or null if caching is disabled
+    private FileMetadataCache metadataCache;
+
+    // the cache that shares open files between requests, or null if every request opens the file it sends
+    private FileChannelCache channelCache;
+
+    // the cache that maps large files into memory, or null if files are never mapped
+    private MappedFileCache mappedFileCache;
+
+    // the cache that holds small files in direct memory, or null if files are only cached on the heap
+    private OffHeapFileCache offHeapFileCache;
+
+    // the largest body, in bytes, that is sent in the same write as its response header
+    private int gatherWriteThreshold;
+
+    // whether Nagle's algorithm is disabled on client connections
+    private boolean tcpNoDelay;
+
+    // whether precompressed copies of files are served to clients that accept their encoding
+    private boolean precompressedEnabled;
+
+    // the cache of files that are compressed as they are requested, or null if dynamic compression is disabled
+    private CompressedFileCache compressedFileCache;
+
+    // the number of bytes of data in each chunk of a chunked body
+    private int chunkSize;
+
+    // maps file extensions to the content types that are sent with them
+    private MimeTypeRegistry mimeTypeRegistry;
+
+    // the runtime numbers recorded by the server and its threads
+    private ServerMetrics metrics;
+
+    // records every answered request. null when access logging is disabled
+    private AccessLog accessLog;
+
+    /**
+     * Initializes a context that uses the default settings.
+     *
+     * @param webServerRoot The full path to the local directory where the server will look for requested resources.
+     */
+    public WebServerContext(String webServerRoot) {
+        this(webServerRoot, true);
+    }
+
+    /**
+     * Initializes a context that uses the default settings, with or without caches. A context that only lives as long
+     * as a single connection or request should not cache files, since no later request would find them.
+     *
+     * @param webServerRoot The full path to the local directory where the server will look for requested resources.
+     * @param isCachingEnabled true to create the default caches, false to have requests read the file system directly.
+     */
+    public WebServerContext(String webServerRoot, boolean isCachingEnabled) {
+        this.webServerRoot = webServerRoot;
+        this.keepAliveTimeout = kDefaultKeepAliveTimeout;
+        this.maxKeepAliveRequests = kDefaultMaxKeepAliveRequests;
+        buildKeepAliveValues();
+        this.maxQueuedConnections = kDefaultMaxQueuedConnections;
+        this.retryAfter = kDefaultRetryAfter;
+        this.fileCache = isCachingEnabled ? new FileCache() : null;
+        this.metadataCache = isCachingEnabled ? new FileMetadataCache() : null;
+        this.gatherWriteThreshold = kDefaultGatherWriteThreshold;
+        this.tcpNoDelay = true;
+        this.precompressedEnabled = true;
+        this.chunkSize = kDefaultChunkSize;
+        this.mimeTypeRegistry = MimeTypeRegistry.getDefault();
+        this.metrics = new ServerMetrics();
+    }
+
+    /**
+     * Retrieves the full path to the local directory where the server will look for requested resources.
+     *
+     * @return A local directory path.
+     */
+    public String getWebServerRoot() {
+        return this.webServerRoot;
+    }
+
+    /**
+     * Retrieves the number of milliseconds that a persistent connection may sit idle before the server closes it. The
+     * same value limits how long the server will wait for a client to finish sending a request.
+     *
+     * @return A timeout in milliseconds.
+     */
+    public int getKeepAliveTimeout() {
+        return this.keepAliveTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds that a persistent connection may sit idle before the server closes it.
+     *
+     * @param keepAliveTimeout A timeout in milliseconds. Must be greater than 0.
+     */
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        if (keepAliveTimeout <= 0) {
+            throw new IllegalArgumentException("Keep alive timeout must be greater than 0");
+        }
+
+        this.keepAliveTimeout = keepAliveTimeout;
+        buildKeepAliveValues();
+    }
+
+    /**
+     * Retrieves the maximum number of requests that will be served over a single connection before the server
+     * closes it.
+     *
+     * @return A number of requests.
+     */
+    public int getMaxKeepAliveRequests() {
+        return this.maxKeepAliveRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests that will be served over a single connection. A value of 1 or less
+     * disables persistent connections.
+     *
+     * @param maxKeepAliveRequests A number of requests.
+     */
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+        buildKeepAliveValues();
+    }
+
+    /**
+     * Retrieves the value of the Keep-Alive header sent with a response on a persistent connection. The values are
+     * built when the keep alive settings change, so sending a response does not format a string.
+     *
+     * @param remainingRequests The number of requests that may still be served over the connection.
+     * @return A value such as "timeout=5, max=99".
+     */
+    public String getKeepAliveValue(int remainingRequests) {
+        if (remainingRequests >= 0 && remainingRequests < this.keepAliveValues.length) {
+            return this.keepAliveValues[remainingRequests];
+        }
+
+        return this.keepAlivePrefix + remainingRequests;
+    }
+
+    /**
+     * Builds the Keep-Alive header values for the current timeout and request limit. Very large limits only have their
+     * smallest values built ahead of time.
+     */
+    private void buildKeepAliveValues() {
+        String prefix = "timeout=" + ((this.keepAliveTimeout + 999) / 1000) + ", max=";
+        String[] values = new String[Math.max(0, Math.min(this.maxKeepAliveRequests, kMaxPrebuiltKeepAliveValues)) + 1];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = prefix + i;
+        }
+
+        this.keepAlivePrefix = prefix;
+        this.keepAliveValues = values;
+    }
+
+    /**
+     * Retrieves the maximum number of accepted connections that may wait for a free thread. When the limit is reached
+     * the server answers new connections with a 503 Service Unavailable response instead of queuing them.
+     *
+     * @return A number of connections.
+     */
+    public int getMaxQueuedConnections() {
+        return this.maxQueuedConnections;
+    }
+
+    /**
+     * Sets the maximum number of accepted connections that may wait for a free thread. A value of 0 means that a
+     * connection is only accepted when a thread is immediately available to serve it.
+     *
+     * @param maxQueuedConnections A number of connections. Must not be negative.
+     */
+    public void setMaxQueuedConnections(int maxQueuedConnections) {
+        if (maxQueuedConnections < 0) {
+            throw new IllegalArgumentException("Max queued connections must not be negative");
+        }
+
+        this.maxQueuedConnections = maxQueuedConnections;
+    }
+
+    /**
+     * Retrieves the number of seconds that a client that was turned away is asked to wait before trying again. The
+     * value is sent in the Retry-After header of 503 Service Unavailable responses.
+     *
+     * @return A number of seconds.
+     */
+    public int getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    /**
+     * Sets the number of seconds that a client that was turned away is asked to wait before trying again.
+     *
+     * @param retryAfter A number of seconds. Must not be negative.
+     */
+    public void setRetryAfter(int retryAfter) {
+        if (retryAfter < 0) {
+            throw new IllegalArgumentException("Retry after must not be negative");
+        }
+
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Retrieves the cache that requests use to avoid reading static files from disk.
+     *
+     * @return The server's file cache, or null if caching is disabled.
+     */
+    public FileCache getFileCache() {
+        return this.fileCache;
+    }
+
+    /**
+     * Sets the cache that requests use to avoid reading static files from disk.
+     *
+     * @param fileCache The cache to use, or null to disable caching.
+     */
+    public void setFileCache(FileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    /**
+     * Retrieves the cache that requests use to find out whether a file exists and how large it is.
+     *
+     * @return The server's metadata cache, or null if file attributes are read for every request.
+     */
+    public FileMetadataCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * Sets the cache that requests use to find out whether a file exists and how large it is.
+     *
+     * @param metadataCache The cache to use, or null to read file attributes for every request.
+     */
+    public void setMetadataCache(FileMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Retrieves the cache that shares open files between requests, so that files that are not held in memory are not
+     * opened and closed for every request. Disabled by default, since the cache holds descriptors open until they are
+     * idle; it should only be set on a context that lives as long as its server, and cleared when the server stops.
+     *
+     * @return The server's open file cache, or null if every request opens the file it sends.
+     */
+    public FileChannelCache getChannelCache() {
+        return this.channelCache;
+    }
+
+    /**
+     * Sets the cache that shares open files between requests.
+     *
+     * @param channelCache The cache to use, or null to open the file for every request.
+     */
+    public void setChannelCache(FileChannelCache channelCache) {
+        this.channelCache = channelCache;
+    }
+
+    /**
+     * Retrieves the cache that maps large files into memory, so that every response sending the same large file shares
+     * one mapping. Disabled by default.
+     *
+     * @return The server's mapped file cache, or null if files are never mapped.
+     */
+    public MappedFileCache getMappedFileCache() {
+        return this.mappedFileCache;
+    }
+
+    /**
+     * Sets the cache that maps large files into memory.
+     *
+     * @param mappedFileCache The cache to use, or null to never map files.
+     */
+    public void setMappedFileCache(MappedFileCache mappedFileCache) {
+        this.mappedFileCache = mappedFileCache;
+    }
+
+    /**
+     * Retrieves the cache that holds the contents of small files in direct memory, outside the garbage collected heap.
+     * Files that are held in the heap file cache are sent from there instead. Disabled by default.
+     *
+     * @return The server's off-heap file cache, or null if it is disabled.
+     */
+    public OffHeapFileCache getOffHeapFileCache() {
+        return this.offHeapFileCache;
+    }
+
+    /**
+     * Sets the cache that holds the contents of small files in direct memory.
+     *
+     * @param offHeapFileCache The cache to use, or null to disable it.
+     */
+    public void setOffHeapFileCache(OffHeapFileCache offHeapFileCache) {
+        this.offHeapFileCache = offHeapFileCache;
+    }
+
+    /**
+     * Retrieves the size of the largest body that is sent in the same write as its response header. Larger bodies are
+     * sent in a separate write, from the file system directly when possible.
+     *
+     * @return A size in bytes.
+     */
+    public int getGatherWriteThreshold() {
+        return this.gatherWriteThreshold;
+    }
+
+    /**
+     * Sets the size of the largest body that is sent in the same write as its response header.
+     *
+     * @param gatherWriteThreshold A size in bytes. Must not be negative. 0 sends every body in a separate write.
+     */
+    public void setGatherWriteThreshold(int gatherWriteThreshold) {
+        if (gatherWriteThreshold < 0) {
+            throw new IllegalArgumentException("Gather write threshold must not be negative");
+        }
+
+        this.gatherWriteThreshold = gatherWriteThreshold;
+    }
+
+    /**
+     * Retrieves a value indicating whether Nagle's algorithm is disabled on client connections. With Nagle's algorithm
+     * enabled, a response that is sent in more than one write can be held back until the client acknowledges the first
+     * write, which clients often delay.
+     *
+     * @return true if TCP_NODELAY is set on client connections.
+     */
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * Sets a value indicating whether Nagle's algorithm is disabled on client connections.
+     *
+     * @param tcpNoDelay true to set TCP_NODELAY on client connections.
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * Retrieves a value indicating whether precompressed copies of files are served. When enabled, a request for
+     * "app.js" from a client that accepts gzip is answered with "app.js.gz" if that file exists.
+     *
+     * @return true if precompressed copies are served.
+     * @see com.frisbey.webserver.HttpContentEncoding
+     */
+    public boolean isPrecompressedEnabled() {
+        return this.precompressedEnabled;
+    }
+
+    /**
+     * Sets a value indicating whether precompressed copies of files are served.
+     *
+     * @param precompressedEnabled true to serve precompressed copies to clients that accept their encoding.
+     */
+    public void setPrecompressedEnabled(boolean precompressedEnabled) {
+        this.precompressedEnabled = precompressedEnabled;
+    }
+
+    /**
+     * Retrieves the cache of files that are gzip compressed as they are requested. Compression is only used for files
+     * that have no precompressed copy.
+     *
+     * @return The server's compressed file cache, or null if dynamic compression is disabled.
+     */
+    public CompressedFileCache getCompressedFileCache() {
+        return this.compressedFileCache;
+    }
+
+    /**
+     * Sets the cache of files that are gzip compressed as they are requested.
+     *
+     * @param compressedFileCache The cache to use, or null to disable dynamic compression.
+     */
+    public void setCompressedFileCache(CompressedFileCache compressedFileCache) {
+        this.compressedFileCache = compressedFileCache;
+    }
+
+    /**
+     * Retrieves the number of bytes of data in each chunk of a body that is sent with the chunked transfer coding.
+     * Bodies are chunked when their length is not known ahead of time and the client understands HTTP/1.1.
+     *
+     * @return A size in bytes.
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Sets the number of bytes of data in each chunk of a chunked body. Larger chunks mean fewer writes, smaller ones
+     * mean the client starts receiving data sooner.
+     *
+     * @param chunkSize A size in bytes. Must be greater than 0.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Retrieves the registry that maps file extensions to the content types that are sent with them. By default the
+     * shared registry of bundled types is used.
+     *
+     * @return The server's content type registry.
+     */
+    public MimeTypeRegistry getMimeTypeRegistry() {
+        return this.mimeTypeRegistry;
+    }
+
+    /**
+     * Sets the registry that maps file extensions to content types. The registry must be fully populated before the
+     * server is started.
+     *
+     * @param mimeTypeRegistry The registry to use. Must not be null.
+     */
+    public void setMimeTypeRegistry(MimeTypeRegistry mimeTypeRegistry) {
+        if (mimeTypeRegistry == null) {
+            throw new IllegalArgumentException("Content type registry must not be null");
+        }
+
+        this.mimeTypeRegistry = mimeTypeRegistry;
+    }
+
+    /**
+     * Retrieves the metrics that the server and the threads it launches record as they serve requests. Unlike the rest
+     * of the context, the metrics change while the server is running.
+     *
+     * @return The server's metrics.
+     */
+    public ServerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Retrieves the log in which every answered request is recorded.
+     *
+     * @return The server's access log, or null if access logging is disabled.
+     */
+    public AccessLog getAccessLog() {
+        return this.accessLog;
+    }
+
+    /**
+     * Sets the log in which every answered request is recorded. Access logging is disabled by default.
+     *
+     * @param accessLog The access log to use, or null to disable access logging. The caller remains responsible for
+     *                  closing the log once the server has stopped.
+     */
+    public void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Retrieves a value indicating whether the server will keep connections open between requests.
+     *
+     * @return true if persistent connections are enabled.
+     */
+    public boolean isKeepAliveEnabled() {
+        return this.maxKeepAliveRequests > 1;
+    }
+}
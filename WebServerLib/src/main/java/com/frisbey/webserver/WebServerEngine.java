@@ -0,0 +1,86 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver;
+
+import com.frisbey.webserver.metrics.MetricsSnapshot;
+
+import java.io.IOException;
+
+/**
+ * The contract shared by every kind of server that can be launched by the web server process. An engine is started
+ * by running it on a thread of its own, and keeps serving requests until it is stopped.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.WebServer
+ * @see com.frisbey.webserver.nio.NioWebServer
+ */
+public interface WebServerEngine extends Runnable {
+
+    /**
+     * Retrieves the number of requests that the server has processed so far. Every engine counts each accepted
+     * connection as one request, no matter how many requests its client sends over it. Connections that were turned
+     * away are not counted; {@link #getRejectedConnections()} reports them.
+     *
+     * @return The number of processed requests.
+     */
+    int getRequestsProcessed();
+
+    /**
+     * Retrieves the port on which the server is listening. This is useful when the server was asked to listen on
+     * port 0 and the operating system chose the port.
+     *
+     * @return A port number.
+     */
+    int getLocalPort();
+
+    /**
+     * Retrieves the number of clients that have been turned away with a 503 Service Unavailable response because the
+     * server had no capacity left to serve them.
+     *
+     * @return A number of connections.
+     */
+    int getRejectedConnections();
+
+    /**
+     * Retrieves the number of accepted connections or requests that are currently waiting for a free thread.
+     *
+     * @return The current depth of the server's queue.
+     */
+    int getQueuedConnections();
+
+    /**
+     * Takes a snapshot of the server's metrics, including requests by method and status, bytes sent, open and queued
+     * connections, and request latency. Snapshots are cheap enough to take periodically while the server is busy.
+     *
+     * @return The server's current metrics.
+     */
+    MetricsSnapshot getMetricsSnapshot();
+
+    /**
+     * Instructs the server to stop listening for requests and release its resources.
+     *
+     * @throws IOException thrown if there are issues closing the server's listening socket.
+     */
+    void stop() throws IOException;
+
+    /**
+     * Returns a value indicating whether the server is running or not.
+     *
+     * @return true if the server is NOT running, false if the server is currently running.
+     */
+    boolean isStopped();
+}
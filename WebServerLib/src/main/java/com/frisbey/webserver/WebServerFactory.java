@@ -16,9 +16,22 @@
 
 package com.frisbey.webserver;
 
+import com.frisbey.webserver.metrics.AdminServer;
+import com.frisbey.webserver.nio.NioWebServer;
+
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides various methods for retrieving {@link com.frisbey.webserver.WebServer} instances that have been
@@ -29,6 +42,9 @@ import java.util.concurrent.Executors;
  */
 public class WebServerFactory {
 
+    // the name of the method that creates an executor running each task on its own virtual thread (Java 21 and later)
+    private static final String kVirtualThreadExecutorMethod = "newVirtualThreadPerTaskExecutor";
+
     /**
      * Retrieves a web server that will used a fixed thread pool of a given size. The server will also listen on the
      * provided port and look in the given directory for resources that have been requested.
@@ -41,6 +57,176 @@ public class WebServerFactory {
      * @throws IOException thrown if there issues initializing a thread pool for the server.
      */
     public static WebServer getFixedThreadPoolServer(int port, int poolSize, String webServerRoot) throws IOException {
-        return new WebServer(webServerRoot, Executors.newFixedThreadPool(poolSize), new ServerSocket(port));
+        return getFixedThreadPoolServer(port, poolSize, new WebServerContext(webServerRoot));
+    }
+
+    /**
+     * Retrieves a web server that will used a fixed thread pool of a given size. The server will also listen on the
+     * provided port and behave according to the given configuration.
+     *
+     * @param port The port on which the server will listen.
+     * @param poolSize The number of threads that the web server can execute at one time. Because a thread is occupied
+     *                 for as long as its connection remains open, this is also the maximum number of concurrent
+     *                 connections.
+     * @param context The configuration that the server will use. At most
+     *                {@link WebServerContext#getMaxQueuedConnections()} connections will wait for a free thread; any
+     *                more are turned away with a 503 Service Unavailable response.
+     * @return A web server configured with a fixed thread pool.
+     * @throws IOException thrown if there issues initializing a thread pool for the server.
+     */
+    public static WebServer getFixedThreadPoolServer(int port, int poolSize, WebServerContext context) throws IOException {
+        return new WebServer(context, createBoundedThreadPool(poolSize, context.getMaxQueuedConnections()), createServerSocket(port));
+    }
+
+    /**
+     * Retrieves a web server that runs every connection on its own virtual thread. Virtual threads are cheap to create
+     * and give up their carrier thread while they wait on a socket, so the simple blocking request handling can serve
+     * a very large number of concurrent connections without a thread pool limiting them.
+     *
+     * <p>Every accepted connection is started immediately, so the queue limit in the context does not apply to this
+     * kind of server.</p>
+     *
+     * <p>Virtual threads are only available when the server is running on Java 21 or later. Use
+     * {@link #isVirtualThreadSupported()} to check before calling this method.</p>
+     *
+     * @param port The port on which the server will listen.
+     * @param context The configuration that the server will use.
+     * @return A web server that runs each connection on a virtual thread.
+     * @throws IOException thrown if there are issues opening the server's socket.
+     * @throws UnsupportedOperationException thrown if the running Java version does not provide virtual threads.
+     */
+    public static WebServer getVirtualThreadServer(int port, WebServerContext context) throws IOException {
+        ExecutorService executor = createVirtualThreadExecutor();
+
+        if (executor == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, but the server is running on Java " + System.getProperty("java.version"));
+        }
+
+        try {
+            return new WebServer(context, executor, createServerSocket(port));
+        } catch (IOException ex) {
+            executor.shutdown();
+            throw ex;
+        }
+    }
+
+    /**
+     * Retrieves a value indicating whether the running Java version is able to provide a server that uses virtual
+     * threads.
+     *
+     * @return true if {@link #getVirtualThreadServer(int, WebServerContext)} can be used.
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod(kVirtualThreadExecutorMethod);
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves a web server that uses non-blocking I/O. Connections are watched by a small number of event loop
+     * threads, and only complete requests are handed to the worker pool, so the number of open connections is not
+     * limited by the number of workers.
+     *
+     * @param port The port on which the server will listen.
+     * @param workerPoolSize The number of requests that the web server can process at one time.
+     * @param eventLoopCount The number of threads that will watch connections for incoming data.
+     * @param context The configuration that the server will use. At most
+     *                {@link WebServerContext#getMaxQueuedConnections()} requests will wait for a free worker; any more
+     *                are turned away with a 503 Service Unavailable response.
+     * @return A web server that uses non-blocking I/O.
+     * @throws IOException thrown if there are issues opening the server's channel or event loops.
+     */
+    public static NioWebServer getNonBlockingServer(int port, int workerPoolSize, int eventLoopCount, WebServerContext context) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+
+            return new NioWebServer(context, createBoundedThreadPool(workerPoolSize, context.getMaxQueuedConnections()), channel, eventLoopCount);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Retrieves an admin server that publishes a server's metrics in the Prometheus text format at
+     * {@link com.frisbey.webserver.metrics.AdminServer#kMetricsPath}. The admin server listens on a port of its own so
+     * that the metrics can be kept away from the main server's clients.
+     *
+     * @param port The port on which the admin server will listen. Should not be reachable from outside the network.
+     * @param server The server whose metrics will be published.
+     * @return An admin server, which will begin answering scrapes once it is run.
+     * @throws IOException thrown if there are issues opening the admin server's socket.
+     */
+    public static AdminServer getAdminServer(int port, WebServerEngine server) throws IOException {
+        return new AdminServer(server, createServerSocket(port));
+    }
+
+    /**
+     * Creates a fixed size thread pool whose queue can only hold a limited number of tasks. Once the queue is full the
+     * pool throws a {@link java.util.concurrent.RejectedExecutionException} instead of accepting more work, which
+     * allows the server to turn clients away rather than letting them wait indefinitely.
+     *
+     * @param poolSize The number of threads in the pool.
+     * @param maxQueued The number of tasks that may wait for a free thread. When 0 a task is only accepted if a
+     *                  thread is immediately available.
+     * @return A bounded thread pool.
+     */
+    private static ExecutorService createBoundedThreadPool(int poolSize, int maxQueued) {
+        BlockingQueue<Runnable> queue;
+
+        if (maxQueued > 0) {
+            queue = new ArrayBlockingQueue<Runnable>(maxQueued);
+        } else {
+            queue = new SynchronousQueue<Runnable>();
+        }
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, queue);
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task. The method is looked up at runtime so that
+     * the library can still be built for, and run on, Java versions that do not provide virtual threads.
+     *
+     * @return A virtual thread executor, or null if the running Java version does not provide virtual threads.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod(kVirtualThreadExecutorMethod);
+
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        } catch (InvocationTargetException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a listening socket that is backed by a {@link java.nio.channels.ServerSocketChannel}. Sockets accepted
+     * by a channel-backed server socket expose their own channel, which allows response bodies to be transferred
+     * directly from the file system to the client.
+     *
+     * @param port The port on which the socket will listen.
+     * @return A bound server socket.
+     * @throws IOException thrown if the socket cannot be opened or bound to the port.
+     */
+    protected static ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        return channel.socket();
     }
 }
@@ -0,0 +1,426 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.request.HttpRequestParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records every request that the server answers in a log, without making the threads that serve requests wait on the
+ * disk. Logging a request only copies a few values into a slot of a preallocated ring buffer; a single background
+ * thread drains the buffer and hands the records to an {@link com.frisbey.webserver.accesslog.AccessLogSink}, which
+ * writes them in large batches.
+ *
+ * <p>The buffer is a bounded multi-producer, single-consumer queue. Producers claim a position with a single
+ * compare-and-set and publish the slot by writing its sequence number, so threads serving requests never take a lock.
+ * The writer is the only thread that reads slots and uses the sink. When the writer falls behind and
+ * the buffer fills up, the {@link com.frisbey.webserver.accesslog.OverflowPolicy} decides whether requests go unlogged
+ * or wait for room.</p>
+ *
+ * <p>A {@link com.frisbey.webserver.accesslog.TextLogSink} writes lines in one of the
+ * {@link com.frisbey.webserver.accesslog.AccessLogFormat}s, all of which are readable by tools that understand the
+ * Common Log Format. A {@link com.frisbey.webserver.accesslog.BinaryLogSink} writes a compact binary form instead.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class AccessLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLog.class);
+
+    /**
+     * The default number of records that the buffer can hold.
+     */
+    public static final int kDefaultCapacity = 8192;
+
+    // the largest number of records that the writer hands to the sink before flushing it
+    private static final int kBatchSize = 4096;
+
+    // how long the writer sleeps when the buffer is empty, in nanoseconds
+    private static final long kIdleParkNanos = 10000000L;
+
+    // how long a producer waits for room before checking again when the buffer is full, in nanoseconds
+    private static final long kBlockParkNanos = 50000L;
+
+    // set in the tail when the log is closed. claiming a position compares the whole tail, so once the bit is set no
+    // position can be claimed and the writer knows exactly which records it still has to write
+    private static final long kClosedBit = 1L << 62;
+
+    // the slots of the ring buffer. the number of slots is a power of two so that a position is mapped to its slot
+    // with a mask
+    private AccessLogRecord[] slots;
+
+    // converts a position in the buffer's sequence into the index of its slot
+    private int mask;
+
+    // the next position that a producer will claim, with kClosedBit set once the log is closed
+    private AtomicLong tail;
+
+    // the next position that the writer will read. only used by the writer thread
+    private long head;
+
+    // the destination of the records. only used by the writer thread once it has started
+    private AccessLogSink sink;
+
+    // what happens when a request finishes while the buffer is full
+    private OverflowPolicy overflowPolicy;
+
+    // the thread that drains the buffer
+    private Thread writer;
+
+    // the number of records written to the log
+    private LongAdder loggedCount;
+
+    // the number of records that were dropped because the buffer was full
+    private LongAdder droppedCount;
+
+    /**
+     * Initializes an access log that writes lines of text. Records are buffered but not written until the log is
+     * started.
+     *
+     * @param output The stream to which lines will be written. The log will assume ownership of the stream and will
+     *               close it when the log is closed.
+     * @param format The layout of each line.
+     * @param capacity The number of records that the buffer can hold. Rounded up to a power of two.
+     * @param overflowPolicy What happens when a request finishes while the buffer is full.
+     */
+    public AccessLog(OutputStream output, AccessLogFormat format, int capacity, OverflowPolicy overflowPolicy) {
+        this(new TextLogSink(output, format), capacity, overflowPolicy);
+    }
+
+    /**
+     * Initializes an access log. Records are buffered but not written until the log is started.
+     *
+     * @param sink The destination of the records. The log will assume ownership of the sink and will close it when the
+     *             log is closed.
+     * @param capacity The number of records that the buffer can hold. Rounded up to a power of two.
+     * @param overflowPolicy What happens when a request finishes while the buffer is full.
+     */
+    public AccessLog(AccessLogSink sink, int capacity, OverflowPolicy overflowPolicy) {
+        if (sink == null || overflowPolicy == null) {
+            throw new IllegalArgumentException("A sink and an overflow policy are required");
+        }
+
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 30));
+        }
+
+        int size = Integer.highestOneBit(capacity);
+
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.slots = new AccessLogRecord[size];
+        this.mask = size - 1;
+        this.tail = new AtomicLong(0);
+        this.head = 0;
+        this.sink = sink;
+        this.overflowPolicy = overflowPolicy;
+        this.loggedCount = new LongAdder();
+        this.droppedCount = new LongAdder();
+
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new AccessLogRecord(i);
+        }
+    }
+
+    /**
+     * Opens an access log that appends to a file and starts its writer.
+     *
+     * @param path The path of the log file. The file is created if it does not exist.
+     * @param format The layout of each line.
+     * @param capacity The number of records that the buffer can hold. Rounded up to a power of two.
+     * @param overflowPolicy What happens when a request finishes while the buffer is full.
+     * @return A started access log.
+     * @throws IOException thrown if the file cannot be opened.
+     */
+    public static AccessLog open(String path, AccessLogFormat format, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        return open(new TextLogSink(new FileOutputStream(path, true), format), capacity, overflowPolicy);
+    }
+
+    /**
+     * Opens an access log that writes to a sink and starts its writer.
+     *
+     * @param sink The destination of the records. The log will assume ownership of the sink.
+     * @param capacity The number of records that the buffer can hold. Rounded up to a power of two.
+     * @param overflowPolicy What happens when a request finishes while the buffer is full.
+     * @return A started access log.
+     */
+    public static AccessLog open(AccessLogSink sink, int capacity, OverflowPolicy overflowPolicy) {
+        AccessLog log = new AccessLog(sink, capacity, overflowPolicy);
+        log.start();
+
+        return log;
+    }
+
+    /**
+     * Starts the thread that writes buffered records to the log. The thread is a daemon, so an access log that is never
+     * closed does not keep the process alive, although its last records may be lost.
+     */
+    public synchronized void start() {
+        if (this.writer != null) {
+            return;
+        }
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "webserver-access-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Logs a request that has been answered. The values that describe the request are taken from the parser that read
+     * it, so the parser must not be reset until the method returns.
+     *
+     * @param remoteAddress The address of the client, or null if it is unknown.
+     * @param parser The parser that read the request. If it did not finish reading a valid request, the request line
+     *               is logged as "-".
+     * @param status The status of the response.
+     * @param bytes The number of bytes of the response's body that were written, not counting its header.
+     * @param latencyNanos The time taken to answer the request, in nanoseconds.
+     * @return true if the request was logged, false if it was dropped because the buffer was full or the log is closed.
+     */
+    public boolean log(InetAddress remoteAddress, HttpRequestParser parser, HttpResponse status, long bytes, long latencyNanos) {
+        if (parser == null || !parser.isComplete()) {
+            return log(remoteAddress, null, null, null, null, null, status.getCode(), bytes, latencyNanos);
+        }
+
+        return log(remoteAddress, parser.getRawMethod(), parser.getTarget(), parser.getRawVersion(),
+                parser.getHeaderValue("Referer"), parser.getHeaderValue("User-Agent"), status.getCode(), bytes, latencyNanos);
+    }
+
+    /**
+     * Logs a request that has been answered.
+     *
+     * @param remoteAddress The address of the client, or null if it is unknown.
+     * @param method The method exactly as the client sent it, or null if the request could not be read.
+     * @param target The request target exactly as the client sent it.
+     * @param version The version exactly as the client sent it.
+     * @param referer The value of the request's Referer header, or null.
+     * @param userAgent The value of the request's User-Agent header, or null.
+     * @param status The status code of the response.
+     * @param bytes The number of bytes of the response's body that were written, not counting its header.
+     * @param latencyNanos The time taken to answer the request, in nanoseconds.
+     * @return true if the request was logged, false if it was dropped because the buffer was full or the log is closed.
+     */
+    public boolean log(InetAddress remoteAddress, String method, String target, String version, String referer,
+                       String userAgent, int status, long bytes, long latencyNanos) {
+        long position = claim();
+
+        if (position < 0) {
+            return false;
+        }
+
+        AccessLogRecord record = this.slots[(int) position & this.mask];
+        record.timestamp = System.currentTimeMillis();
+        record.remoteAddress = remoteAddress;
+        record.method = method;
+        record.target = target;
+        record.version = version;
+        record.referer = referer;
+        record.userAgent = userAgent;
+        record.status = status;
+        record.bytes = bytes;
+        record.latencyNanos = latencyNanos;
+
+        // publish the record to the writer
+        record.sequence = position + 1;
+
+        return true;
+    }
+
+    /**
+     * Claims the next position in the buffer for a producer.
+     *
+     * @return The claimed position, or -1 if the record must be dropped.
+     */
+    private long claim() {
+        long position = this.tail.get();
+
+        while ((position & kClosedBit) == 0) {
+            long available = this.slots[(int) position & this.mask].sequence - position;
+
+            if (available == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (available < 0) {
+                // the slot still holds a record from the previous lap that the writer has not read
+                if (this.overflowPolicy == OverflowPolicy.DROP) {
+                    this.droppedCount.increment();
+                    return -1;
+                }
+
+                LockSupport.unpark(this.writer);
+                LockSupport.parkNanos(this, kBlockParkNanos);
+            }
+
+            position = this.tail.get();
+        }
+
+        this.droppedCount.increment();
+        return -1;
+    }
+
+    /**
+     * Drains the buffer until the log is closed. Runs on the writer thread.
+     */
+    private void writeLoop() {
+        while (true) {
+            // records claimed before the log was closed are still written. a producer may have claimed a position
+            // without having published its record yet, so the writer waits until it has read every claimed position
+            long tail = this.tail.get();
+            boolean closing = (tail & kClosedBit) != 0;
+            int drained = drain();
+
+            if (drained > 0) {
+                try {
+                    this.sink.flush();
+                } catch (IOException ex) {
+                    logger.error("unable to write to access log", ex);
+                }
+            } else if (closing && this.head == (tail & ~kClosedBit)) {
+                break;
+            } else {
+                LockSupport.parkNanos(this, closing ? kBlockParkNanos : kIdleParkNanos);
+            }
+        }
+
+        try {
+            this.sink.close();
+        } catch (IOException ex) {
+            logger.error("unable to close access log", ex);
+        }
+    }
+
+    /**
+     * Hands published records to the sink until the buffer is empty or a batch is full.
+     *
+     * @return The number of records taken from the buffer.
+     */
+    private int drain() {
+        IOException failure = null;
+        int count = 0;
+
+        while (count < kBatchSize) {
+            AccessLogRecord record = this.slots[(int) this.head & this.mask];
+
+            if (record.sequence != this.head + 1) {
+                break;
+            }
+
+            try {
+                this.sink.write(record);
+            } catch (IOException ex) {
+                failure = ex;
+            }
+
+            record.clear();
+
+            // hand the slot back to the producers for the next lap
+            record.sequence = this.head + this.slots.length;
+            this.head++;
+            count++;
+        }
+
+        this.loggedCount.add(count);
+
+        // a failing disk would otherwise report the same problem for every record
+        if (failure != null) {
+            logger.error("unable to write to access log", failure);
+        }
+
+        return count;
+    }
+
+    /**
+     * Retrieves the number of records that have been written to the log.
+     *
+     * @return A number of records.
+     */
+    public long getLoggedCount() {
+        return this.loggedCount.sum();
+    }
+
+    /**
+     * Retrieves the number of requests that were not logged because the buffer was full or the log was closed.
+     *
+     * @return A number of requests.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.sum();
+    }
+
+    /**
+     * Retrieves the number of records that the buffer can hold.
+     *
+     * @return A number of records.
+     */
+    public int getCapacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Stops accepting records, waits for the writer to write every record that was accepted before the log was
+     * closed, including records that other threads are still publishing, and closes the log's stream.
+     *
+     * @throws IOException thrown if the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        long tail = this.tail.get();
+
+        // seal the tail, so that producers that have not claimed a position yet drop their records
+        while ((tail & kClosedBit) == 0 && !this.tail.compareAndSet(tail, tail | kClosedBit)) {
+            tail = this.tail.get();
+        }
+
+        Thread thread;
+
+        synchronized (this) {
+            thread = this.writer;
+        }
+
+        if (thread == null) {
+            this.sink.close();
+            return;
+        }
+
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
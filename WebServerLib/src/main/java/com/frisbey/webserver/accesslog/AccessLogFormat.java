@@ -0,0 +1,140 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+/**
+ * The layouts in which an {@link com.frisbey.webserver.accesslog.AccessLog} can write its lines. Every layout begins
+ * with the fields of the Common Log Format, so existing log analysis tools can read any of them.
+ *
+ * @author Mark Frisbey
+ */
+public enum AccessLogFormat {
+
+    /**
+     * The Common Log Format: {@code host ident user [time] "request" status bytes}, where bytes is the size of the
+     * response body, or "-" if the response had no body.
+     */
+    COMMON(false, false),
+
+    /**
+     * The Combined Log Format, which adds the quoted Referer and User-Agent headers to the Common Log Format.
+     */
+    COMBINED(true, false),
+
+    /**
+     * The Combined Log Format followed by the time taken to answer the request in microseconds, like Apache's %D.
+     */
+    TIMED(true, true);
+
+    // whether the referer and user agent are written
+    private boolean includeHeaders;
+
+    // whether the latency is written
+    private boolean includeLatency;
+
+    /**
+     * Initializes a format.
+     *
+     * @param includeHeaders Whether the Referer and User-Agent headers are written.
+     * @param includeLatency Whether the time taken to answer the request is written.
+     */
+    AccessLogFormat(boolean includeHeaders, boolean includeLatency) {
+        this.includeHeaders = includeHeaders;
+        this.includeLatency = includeLatency;
+    }
+
+    /**
+     * Retrieves the format with the given name, ignoring case.
+     *
+     * @param name The name of the format, such as "combined".
+     * @return The format, or null if there is no format with the name.
+     */
+    public static AccessLogFormat fromString(String name) {
+        for (AccessLogFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes one record as a line of the log.
+     *
+     * @param record The record to write.
+     * @param time The record's timestamp, already formatted as {@code [10/Oct/2000:13:55:36 -0700]}.
+     * @param out The buffer to which the line, including its line feed, is appended.
+     */
+    void append(AccessLogRecord record, String time, StringBuilder out) {
+        out.append(record.remoteAddress != null ? record.remoteAddress.getHostAddress() : "-").append(" - - ")
+                .append(time).append(" \"");
+
+        if (record.method != null) {
+            appendEscaped(record.method, out);
+            out.append(' ');
+            appendEscaped(record.target, out);
+            out.append(' ');
+            appendEscaped(record.version, out);
+        } else {
+            out.append('-');
+        }
+
+        out.append("\" ").append(record.status).append(' ');
+
+        if (record.bytes > 0) {
+            out.append(record.bytes);
+        } else {
+            out.append('-');
+        }
+
+        if (this.includeHeaders) {
+            out.append(" \"");
+            appendEscaped(record.referer != null ? record.referer : "-", out);
+            out.append("\" \"");
+            appendEscaped(record.userAgent != null ? record.userAgent : "-", out);
+            out.append('"');
+        }
+
+        if (this.includeLatency) {
+            out.append(' ').append(record.latencyNanos / 1000);
+        }
+
+        out.append('\n');
+    }
+
+    /**
+     * Appends a value that came from the client. Quotes, backslashes and control characters are escaped so that a
+     * client cannot break a line apart or forge a line of its own.
+     *
+     * @param value The value to append.
+     * @param out The buffer to append to.
+     */
+    private static void appendEscaped(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                out.append("\\x").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+import java.net.InetAddress;
+
+/**
+ * A single answered request, as recorded by an {@link com.frisbey.webserver.accesslog.AccessLog}. Records are the
+ * slots of the log's ring buffer: they are created once, when the log is opened, and are filled in by the threads that
+ * serve requests and emptied by the log's writer, so logging a request creates no objects beyond the strings that
+ * describe it. A record handed to an {@link com.frisbey.webserver.accesslog.AccessLogSink} is only valid until the
+ * sink's write method returns.
+ *
+ * <p>The sequence number tells producers and the writer who owns the slot. A producer may fill the slot when its
+ * sequence equals the producer's claimed position; the writer may read it once the sequence is one past that position.
+ * Writing the sequence last publishes the other fields to the thread that reads it next.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class AccessLogRecord {
+
+    // the position in the buffer's sequence at which the slot may next be filled or read
+    volatile long sequence;
+
+    // when the request finished, in milliseconds since the epoch
+    long timestamp;
+
+    // the address of the client
+    InetAddress remoteAddress;
+
+    // the method exactly as the client sent it, or null if the request could not be read
+    String method;
+
+    // the request target exactly as the client sent it
+    String target;
+
+    // the version exactly as the client sent it
+    String version;
+
+    // the status code of the response
+    int status;
+
+    // the number of bytes of the response's body that were written, not counting its header
+    long bytes;
+
+    // the time taken to answer the request, in nanoseconds
+    long latencyNanos;
+
+    // the value of the request's Referer header, or null
+    String referer;
+
+    // the value of the request's User-Agent header, or null
+    String userAgent;
+
+    /**
+     * Initializes an empty slot.
+     *
+     * @param sequence The position at which the slot will first be filled.
+     */
+    AccessLogRecord(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Retrieves when the request finished.
+     *
+     * @return A time in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Retrieves the address of the client.
+     *
+     * @return An address, or null if it is unknown.
+     */
+    public InetAddress getRemoteAddress() {
+        return this.remoteAddress;
+    }
+
+    /**
+     * Retrieves the method of the request exactly as the client sent it.
+     *
+     * @return The method, or null if the request could not be read.
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Retrieves the target of the request exactly as the client sent it, including any query string.
+     *
+     * @return The target, or null if the request could not be read.
+     */
+    public String getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Retrieves the version of the request exactly as the client sent it.
+     *
+     * @return The version, or null if the request could not be read.
+     */
+    public String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Retrieves the status code of the response.
+     *
+     * @return A status code.
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Retrieves the number of bytes of the response's body that were written, not counting its header.
+     *
+     * @return A number of bytes.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Retrieves the time taken to answer the request.
+     *
+     * @return A time in nanoseconds.
+     */
+    public long getLatencyNanos() {
+        return this.latencyNanos;
+    }
+
+    /**
+     * Retrieves the value of the request's Referer header.
+     *
+     * @return The value, or null if the request did not have one.
+     */
+    public String getReferer() {
+        return this.referer;
+    }
+
+    /**
+     * Retrieves the value of the request's User-Agent header.
+     *
+     * @return The value, or null if the request did not have one.
+     */
+    public String getUserAgent() {
+        return this.userAgent;
+    }
+
+    /**
+     * Releases the strings held by the slot once it has been written, so that the buffer does not keep them alive.
+     */
+    void clear() {
+        this.remoteAddress = null;
+        this.method = null;
+        this.target = null;
+        this.version = null;
+        this.referer = null;
+        this.userAgent = null;
+    }
+}
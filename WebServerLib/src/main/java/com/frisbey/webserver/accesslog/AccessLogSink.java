@@ -0,0 +1,48 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The destination of an {@link com.frisbey.webserver.accesslog.AccessLog}'s records. A sink is only ever used by the
+ * log's writer thread, so implementations do not need to be thread safe, and may buffer as much as they like between
+ * calls to {@link #flush()}.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.accesslog.TextLogSink
+ * @see com.frisbey.webserver.accesslog.BinaryLogSink
+ */
+public interface AccessLogSink extends Closeable {
+
+    /**
+     * Writes a record. The record is reused once the method returns, so the sink must copy anything that it keeps.
+     *
+     * @param record The record to write.
+     * @throws IOException thrown if the record cannot be written.
+     */
+    void write(AccessLogRecord record) throws IOException;
+
+    /**
+     * Writes any buffered records to their destination. Called by the writer each time it has emptied the log's
+     * buffer.
+     *
+     * @throws IOException thrown if the records cannot be written.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,194 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+import com.frisbey.webserver.utility.VarIntUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a segment written by a {@link com.frisbey.webserver.accesslog.BinaryLogSink}. The segment is
+ * mapped into memory, so reading a record copies nothing but the bytes of the client's address, and strings are
+ * decoded once per segment rather than once per record.
+ *
+ * <p>A segment that was not finished, because the server stopped unexpectedly, is read up to its last complete
+ * record.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class BinaryLogReader implements Closeable {
+
+    // the channel of the segment
+    private FileChannel channel;
+
+    // the mapped contents of the segment
+    private ByteBuffer buffer;
+
+    // the segment's dictionary, where index 0 stands for a missing value
+    private List<String> dictionary;
+
+    // the record returned by every call to next
+    private AccessLogRecord record;
+
+    // the timestamp of the last record read
+    private long lastTimestamp;
+
+    /**
+     * Opens a segment for reading.
+     *
+     * @param file The segment to read.
+     * @throws IOException thrown if the file cannot be read or is not a segment.
+     */
+    public BinaryLogReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+
+            if (this.buffer.remaining() < BinaryLogSink.kHeaderSize || this.buffer.getInt() != BinaryLogSink.kMagic) {
+                throw new IOException(file + " is not an access log segment");
+            }
+
+            byte version = this.buffer.get();
+
+            if (version != BinaryLogSink.kVersion) {
+                throw new IOException(file + " uses unsupported access log format version " + version);
+            }
+
+            this.buffer.position(this.buffer.position() + 3);
+            this.lastTimestamp = this.buffer.getLong();
+        } catch (IOException ex) {
+            this.channel.close();
+            throw ex;
+        }
+
+        this.dictionary = new ArrayList<String>();
+        this.dictionary.add(null);
+        this.record = new AccessLogRecord(0);
+    }
+
+    /**
+     * Reads the next record in the segment.
+     *
+     * @return The record, or null if the segment has no more records. The same instance is returned by every call, so
+     *         its values are only valid until the next call.
+     * @throws IOException thrown if the segment is corrupt.
+     */
+    public AccessLogRecord next() throws IOException {
+        while (this.buffer.hasRemaining()) {
+            int start = this.buffer.position();
+            int length;
+
+            try {
+                length = (int) VarIntUtils.getVarLong(this.buffer);
+            } catch (BufferUnderflowException ex) {
+                return null;
+            }
+
+            // an empty entry marks the end of the segment, and a short one was cut off when the server stopped
+            if (length <= 0 || length > this.buffer.remaining()) {
+                this.buffer.position(start);
+                return null;
+            }
+
+            int end = this.buffer.position() + length;
+            byte tag = this.buffer.get();
+
+            try {
+                if (tag == BinaryLogSink.kStringTag) {
+                    this.dictionary.add(StandardCharsets.UTF_8.decode(this.buffer.slice().limit(end - this.buffer.position())).toString());
+                } else if (tag == BinaryLogSink.kRequestTag) {
+                    readRequest();
+                    this.buffer.position(end);
+                    return this.record;
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+                throw new IOException("Corrupt access log entry at offset " + start, ex);
+            }
+
+            // entries with unknown tags are skipped
+            this.buffer.position(end);
+        }
+
+        return null;
+    }
+
+    /**
+     * Closes the segment.
+     *
+     * @throws IOException thrown if the segment cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Decodes a request entry into the reader's record. The buffer is positioned just after the entry's tag.
+     *
+     * @throws IOException thrown if the client's address is invalid.
+     */
+    private void readRequest() throws IOException {
+        AccessLogRecord current = this.record;
+
+        this.lastTimestamp += VarIntUtils.getSignedVarLong(this.buffer);
+        current.timestamp = this.lastTimestamp;
+
+        int addressLength = this.buffer.get();
+
+        if (addressLength > 0) {
+            byte[] address = new byte[addressLength];
+            this.buffer.get(address);
+            current.remoteAddress = InetAddress.getByAddress(address);
+        } else {
+            current.remoteAddress = null;
+        }
+
+        current.method = lookup(VarIntUtils.getVarLong(this.buffer));
+        current.target = lookup(VarIntUtils.getVarLong(this.buffer));
+        current.version = lookup(VarIntUtils.getVarLong(this.buffer));
+        current.status = (int) VarIntUtils.getVarLong(this.buffer);
+        current.bytes = VarIntUtils.getVarLong(this.buffer);
+        current.latencyNanos = VarIntUtils.getVarLong(this.buffer) * 1000;
+        current.referer = lookup(VarIntUtils.getVarLong(this.buffer));
+        current.userAgent = lookup(VarIntUtils.getVarLong(this.buffer));
+    }
+
+    /**
+     * Finds a string in the segment's dictionary.
+     *
+     * @param number The number of the string.
+     * @return The string, or null if the number is 0.
+     */
+    private String lookup(long number) {
+        if (number < 0 || number >= this.dictionary.size()) {
+            throw new IllegalArgumentException("Reference to unknown string " + number);
+        }
+
+        return this.dictionary.get((int) number);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+/**
+ * Describes what happens when a request finishes while the access log's buffer is full because its writer has fallen
+ * behind.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.accesslog.AccessLog
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The request is not logged, and the access log counts it as dropped. Serving requests never waits on the disk.
+     */
+    DROP,
+
+    /**
+     * The thread that served the request waits until the writer has made room. Every request is logged, but a slow
+     * disk slows down the server.
+     */
+    BLOCK
+}
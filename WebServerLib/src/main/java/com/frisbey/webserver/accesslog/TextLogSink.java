@@ -0,0 +1,139 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.accesslog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Writes access log records as lines of text in one of the
+ * {@link com.frisbey.webserver.accesslog.AccessLogFormat}s. Lines are collected in memory and written to the stream in
+ * large batches.
+ *
+ * @author Mark Frisbey
+ */
+public class TextLogSink implements AccessLogSink {
+
+    // the number of characters that are collected before they are written to the stream
+    private static final int kBatchSize = 64 * 1024;
+
+    // the layout of the time in each line. the zone is the server's, as in Apache's logs
+    private static final DateTimeFormatter kTimeFormat = DateTimeFormatter.ofPattern("'['dd/MMM/yyyy:HH:mm:ss Z']'", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+    // the stream to which lines are written
+    private OutputStream output;
+
+    // the layout of each line
+    private AccessLogFormat format;
+
+    // the lines that have not been written to the stream yet
+    private StringBuilder pending;
+
+    // the second of the last formatted time
+    private long lastSecond;
+
+    // the last formatted time
+    private String lastTime;
+
+    /**
+     * Initializes a sink.
+     *
+     * @param output The stream to which lines will be written. The sink will close it when the sink is closed.
+     * @param format The layout of each line.
+     */
+    public TextLogSink(OutputStream output, AccessLogFormat format) {
+        if (output == null || format == null) {
+            throw new IllegalArgumentException("An output and a format are required");
+        }
+
+        this.output = output;
+        this.format = format;
+        this.pending = new StringBuilder(kBatchSize + 1024);
+        this.lastSecond = -1;
+    }
+
+    /**
+     * Formats a record as a line, writing the collected lines to the stream if the batch is full.
+     *
+     * @param record The record to write.
+     * @throws IOException thrown if the lines cannot be written.
+     */
+    @Override
+    public void write(AccessLogRecord record) throws IOException {
+        this.format.append(record, formatTime(record.timestamp), this.pending);
+
+        if (this.pending.length() >= kBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the collected lines to the stream.
+     *
+     * @throws IOException thrown if the lines cannot be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.pending.length() == 0) {
+            return;
+        }
+
+        try {
+            this.output.write(this.pending.toString().getBytes(StandardCharsets.UTF_8));
+            this.output.flush();
+        } finally {
+            // lines that could not be written are discarded rather than retried forever
+            this.pending.setLength(0);
+        }
+    }
+
+    /**
+     * Writes the collected lines and closes the stream.
+     *
+     * @throws IOException thrown if the lines cannot be written or the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.output.close();
+        }
+    }
+
+    /**
+     * Formats the time of a record. Consecutive records usually share a second, so the last formatted second is reused.
+     *
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return The time as it appears in the log.
+     */
+    private String formatTime(long timestamp) {
+        long second = Math.floorDiv(timestamp, 1000L);
+
+        if (second != this.lastSecond) {
+            this.lastTime = kTimeFormat.format(Instant.ofEpochSecond(second));
+            this.lastSecond = second;
+        }
+
+        return this.lastTime;
+    }
+}
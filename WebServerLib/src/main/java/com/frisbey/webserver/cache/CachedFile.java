@@ -0,0 +1,112 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+/**
+ * A file that is held by a {@link com.frisbey.webserver.cache.FileCache}. The entry records the size and modification
+ * time that the file had when it was loaded so that the cache can tell when the file has changed on disk. Files that
+ * are too large to keep in memory are still tracked, but only their metadata is retained.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileCache
+ */
+public class CachedFile {
+
+    // the full local path of the file
+    private String path;
+
+    // the size of the file, in bytes, when it was loaded
+    private long length;
+
+    // the modification time of the file, in milliseconds since the epoch, when it was loaded
+    private long lastModified;
+
+    // the contents of the file, or null if the file is too large to keep in memory
+    private byte[] content;
+
+    /**
+     * Initializes a new entry.
+     *
+     * @param path The full local path of the file.
+     * @param length The size of the file in bytes.
+     * @param lastModified The modification time of the file in milliseconds since the epoch.
+     * @param content The contents of the file, or null if the contents are not held in memory.
+     */
+    public CachedFile(String path, long length, long lastModified, byte[] content) {
+        this.path = path;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.content = content;
+    }
+
+    /**
+     * Retrieves the full local path of the file.
+     *
+     * @return A local file path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Retrieves the size of the file when it was loaded.
+     *
+     * @return A size in bytes.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Retrieves the modification time of the file when it was loaded.
+     *
+     * @return A time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Retrieves the contents of the file. The returned array is shared by every request that uses the entry and must
+     * not be modified.
+     *
+     * @return The contents of the file, or null if the file is too large to keep in memory.
+     */
+    public byte[] getContent() {
+        return this.content;
+    }
+
+    /**
+     * Retrieves a value indicating whether the contents of the file are held in memory.
+     *
+     * @return true if {@link #getContent()} will return the file's data.
+     */
+    public boolean isContentCached() {
+        return this.content != null;
+    }
+
+    /**
+     * Determines whether the entry still describes a file with the given attributes.
+     *
+     * @param length The current size of the file.
+     * @param lastModified The current modification time of the file.
+     * @return true if the file has not changed since the entry was loaded.
+     */
+    public boolean matches(long length, long lastModified) {
+        return this.length == length && this.lastModified == lastModified;
+    }
+}
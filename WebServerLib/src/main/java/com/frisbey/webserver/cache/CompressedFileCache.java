@@ -0,0 +1,522 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import com.frisbey.webserver.utility.DeflaterPool;
+import com.frisbey.webserver.utility.GzipUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, size bounded cache of gzip compressed copies of static files, keyed by their full local path. Each
+ * file is compressed once, the first time a client that accepts gzip requests it, and every later request is answered
+ * from memory until the file's size or modification time changes. A file that is requested by several clients at once
+ * is still only compressed once: the first request compresses it while the others wait for the result.
+ *
+ * <p>Only files of an allowed content type whose size falls between a minimum and a maximum are compressed. Tiny files
+ * gain nothing from compression, and large files would take too long to compress while the client waits. Files that
+ * do not get smaller when compressed are remembered, so they are not compressed again on every request. Like the
+ * {@link com.frisbey.webserver.cache.FileCache}, the least recently used entries are evicted once the compressed data
+ * exceeds the cache's budget.</p>
+ *
+ * <p>Files of an allowed type that are too large to cache can instead be compressed while they are sent (see
+ * {@link #isStreamable(String, long)}), using the cache's deflaters. Their compressed
+ * length is unknown, so they are sent with the chunked transfer coding.</p>
+ *
+ * <p>The cache records how many files it has compressed, how many bytes went in and came out, and how much CPU time
+ * the compression took, so the benefit of dynamic compression can be weighed against its cost.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.utility.GzipUtils
+ */
+public class CompressedFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressedFileCache.class);
+
+    // the default number of bytes of compressed data that the cache may hold
+    public static final long kDefaultMaxSize = 16 * 1024 * 1024;
+
+    // the default size of the smallest file that will be compressed
+    public static final long kDefaultMinFileSize = 1024;
+
+    // the default size of the largest file that will be compressed
+    public static final long kDefaultMaxFileSize = 1024 * 1024;
+
+    // the default compression level. level 6 is the usual balance between speed and size
+    public static final int kDefaultCompressionLevel = 6;
+
+    // the content types that are compressed unless another list is provided. all of them are text based
+    public static final Set<String> kDefaultCompressibleTypes = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "text/html", "text/css", "text/plain", "text/xml", "application/javascript", "application/json", "image/svg+xml")));
+
+    // an estimate of the memory used by an entry in addition to the compressed data
+    private static final int kEntryOverhead = 128;
+
+    // used to measure the CPU time spent compressing
+    private static final ThreadMXBean kThreadBean = ManagementFactory.getThreadMXBean();
+
+    // the compressed files in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, Entry> entries;
+
+    // the compressions that are in progress, keyed by the path of the file. all access must be synchronized on the cache
+    private HashMap<String, FutureTask<Entry>> compressing;
+
+    // the pool of deflaters used to compress files
+    private DeflaterPool deflaterPool;
+
+    // the content types that will be compressed
+    private Set<String> compressibleTypes;
+
+    // the number of bytes of compressed data that the cache may hold
+    private long maxSize;
+
+    // the size of the smallest file that will be compressed
+    private long minFileSize;
+
+    // the size of the largest file that will be compressed
+    private long maxFileSize;
+
+    // whether files larger than the largest cached file are compressed while they are sent
+    private boolean streamingEnabled;
+
+    // the number of bytes that the cache is currently using
+    private long currentSize;
+
+    // the number of lookups that were answered from memory
+    private AtomicLong hits;
+
+    // the number of files that have been compressed
+    private AtomicLong compressions;
+
+    // the total size of the files that have been compressed
+    private AtomicLong uncompressedBytes;
+
+    // the total size of the compressed data that has been produced
+    private AtomicLong compressedBytes;
+
+    // the CPU time, in nanoseconds, spent compressing files
+    private AtomicLong compressionTime;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public CompressedFileCache() {
+        this(kDefaultMaxSize, kDefaultMinFileSize, kDefaultMaxFileSize, kDefaultCompressionLevel);
+    }
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param maxSize The number of bytes of compressed data that the cache may hold. Must be greater than 0.
+     * @param minFileSize The size of the smallest file that will be compressed.
+     * @param maxFileSize The size of the largest file that will be compressed.
+     * @param level The compression level, from 1 (fastest) to 9 (smallest).
+     */
+    public CompressedFileCache(long maxSize, long minFileSize, long maxFileSize, int level) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+
+        if (minFileSize < 0 || maxFileSize < minFileSize) {
+            throw new IllegalArgumentException("File size limits must not be negative and the minimum must not exceed the maximum");
+        }
+
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.compressing = new HashMap<String, FutureTask<Entry>>();
+        this.deflaterPool = new DeflaterPool(level, DeflaterPool.kDefaultMaxPooled);
+        this.compressibleTypes = kDefaultCompressibleTypes;
+        this.maxSize = maxSize;
+        this.minFileSize = minFileSize;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+        this.streamingEnabled = true;
+        this.currentSize = 0;
+        this.hits = new AtomicLong(0);
+        this.compressions = new AtomicLong(0);
+        this.uncompressedBytes = new AtomicLong(0);
+        this.compressedBytes = new AtomicLong(0);
+        this.compressionTime = new AtomicLong(0);
+    }
+
+    /**
+     * Determines whether a file would be compressed by the cache.
+     *
+     * @param contentType The content type of the file, such as "text/css".
+     * @param length The size of the file.
+     * @return true if the type is allowed and the size is within the cache's limits.
+     */
+    public boolean isCompressible(String contentType, long length) {
+        return this.compressibleTypes.contains(contentType) && length >= this.minFileSize && length <= this.maxFileSize;
+    }
+
+    /**
+     * Determines whether a file is too large to be cached but should be compressed while it is sent.
+     *
+     * @param contentType The content type of the file, such as "text/css".
+     * @param length The size of the file.
+     * @return true if the type is allowed, the file is larger than the largest cached file, and streaming is enabled.
+     */
+    public boolean isStreamable(String contentType, long length) {
+        return this.streamingEnabled && this.compressibleTypes.contains(contentType) && length > this.maxFileSize;
+    }
+
+    /**
+     * Retrieves the compressed copy of a file, compressing it if it is not cached or has changed since it was cached.
+     * The file's contents are taken from a file cache when one is provided, so a file that is already in memory is not
+     * read from disk again. If the file is already being compressed for another request, the result of that
+     * compression is waited for and shared rather than compressing the file again.
+     *
+     * @param metadata The current attributes of the file.
+     * @param sourceCache The cache that holds uncompressed files, or null to read the file from disk.
+     * @return An entry whose length and content describe the compressed data, or null if the file is not a regular
+     *         file, is not within the size limits, or does not get smaller when compressed.
+     * @throws IOException thrown if there are issues reading the file.
+     */
+    public CachedFile getFile(final FileMetadata metadata, final FileCache sourceCache) throws IOException {
+        String path = metadata.getPath();
+
+        if (!metadata.isRegularFile() || metadata.getLength() < this.minFileSize || metadata.getLength() > this.maxFileSize) {
+            return null;
+        }
+
+        FutureTask<Entry> task;
+        boolean isOwner = false;
+
+        synchronized (this) {
+            Entry entry = this.entries.get(path);
+
+            if (entry != null && entry.matches(metadata.getLength(), metadata.getLastModified())) {
+                this.hits.incrementAndGet();
+                return entry.compressed;
+            }
+
+            task = this.compressing.get(path);
+
+            if (task == null) {
+                task = new FutureTask<Entry>(new Callable<Entry>() {
+                    @Override
+                    public Entry call() throws IOException {
+                        return compress(metadata, sourceCache);
+                    }
+                });
+
+                this.compressing.put(path, task);
+                isOwner = true;
+            }
+        }
+
+        if (!isOwner) {
+            logger.debug("waiting for {} to be compressed by another request", path);
+            return getResult(task).compressed;
+        }
+
+        try {
+            task.run();
+
+            Entry entry = getResult(task);
+            put(path, entry);
+
+            return entry.compressed;
+        } finally {
+            synchronized (this) {
+                this.compressing.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Waits for a compression to finish and retrieves its entry.
+     *
+     * @param task The compression.
+     * @return The entry that the compression produced.
+     * @throws IOException thrown if the compression failed to read the file or the wait was interrupted.
+     */
+    private static Entry getResult(FutureTask<Entry> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a file to be compressed");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException("Unable to compress file", cause);
+        }
+    }
+
+    /**
+     * Compresses a file so that it can be added to the cache. The work is done without holding the cache's lock, so
+     * lookups of other files are not held up while a file is compressed.
+     *
+     * @param metadata The attributes of the file.
+     * @param sourceCache The cache that holds uncompressed files, or null to read the file from disk.
+     * @return A new entry for the file.
+     * @throws IOException thrown if there are issues reading the file.
+     */
+    private Entry compress(FileMetadata metadata, FileCache sourceCache) throws IOException {
+        CachedFile source = (sourceCache != null) ? sourceCache.getFile(metadata) : null;
+        byte[] content = (source != null && source.isContentCached()) ? source.getContent() : Files.readAllBytes(Paths.get(metadata.getPath()));
+
+        long startTime = getCpuTime();
+        byte[] compressed = GzipUtils.compress(content, 0, content.length, this.deflaterPool);
+        long elapsed = getCpuTime() - startTime;
+
+        this.compressions.incrementAndGet();
+        this.uncompressedBytes.addAndGet(content.length);
+        this.compressedBytes.addAndGet(compressed.length);
+        this.compressionTime.addAndGet(elapsed);
+
+        logger.debug("compressed {} from {} to {} bytes", metadata.getPath(), content.length, compressed.length);
+
+        if (compressed.length >= content.length) {
+            // remember that the file is not worth compressing so that it is not tried again
+            return new Entry(metadata.getLength(), metadata.getLastModified(), null);
+        }
+
+        return new Entry(metadata.getLength(), metadata.getLastModified(),
+                new CachedFile(metadata.getPath(), compressed.length, metadata.getLastModified(), compressed));
+    }
+
+    /**
+     * Retrieves the CPU time used by the current thread, or the elapsed time if the JVM cannot measure CPU time.
+     *
+     * @return A time in nanoseconds.
+     */
+    private static long getCpuTime() {
+        return kThreadBean.isCurrentThreadCpuTimeSupported() ? kThreadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Adds an entry to the cache, replacing any existing entry for the same file, and evicts the least recently used
+     * entries until the cache is within its size budget.
+     *
+     * @param path The full local path of the file.
+     * @param entry The entry to add.
+     */
+    private synchronized void put(String path, Entry entry) {
+        Entry previous = this.entries.put(path, entry);
+
+        if (previous != null) {
+            this.currentSize -= previous.getWeight();
+        }
+
+        this.currentSize += entry.getWeight();
+
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+
+        while (this.currentSize > this.maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+
+            if (eldest == entry) {
+                continue;
+            }
+
+            iterator.remove();
+            this.currentSize -= eldest.getWeight();
+        }
+    }
+
+    /**
+     * Removes every file from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.currentSize = 0;
+    }
+
+    /**
+     * Retrieves the content types that will be compressed.
+     *
+     * @return A set of content types.
+     */
+    public Set<String> getCompressibleTypes() {
+        return this.compressibleTypes;
+    }
+
+    /**
+     * Sets the content types that will be compressed. Types such as images and zip files are already compressed and
+     * should not be included.
+     *
+     * @param compressibleTypes The content types to compress, such as "text/css". Must not be null.
+     */
+    public void setCompressibleTypes(Set<String> compressibleTypes) {
+        if (compressibleTypes == null) {
+            throw new IllegalArgumentException("Compressible types must not be null");
+        }
+
+        this.compressibleTypes = Collections.unmodifiableSet(new HashSet<String>(compressibleTypes));
+    }
+
+    /**
+     * Retrieves a value indicating whether files too large to cache are compressed while they are sent.
+     *
+     * @return true if large files are compressed as they are streamed.
+     */
+    public boolean isStreamingEnabled() {
+        return this.streamingEnabled;
+    }
+
+    /**
+     * Sets a value indicating whether files too large to cache are compressed while they are sent.
+     *
+     * @param streamingEnabled true to compress large files as they are streamed, false to send them uncompressed.
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * Retrieves the pool of deflaters that the cache compresses with. Files that are compressed while they are sent
+     * borrow their deflaters from the same pool.
+     *
+     * @return The cache's deflater pool.
+     */
+    public DeflaterPool getDeflaterPool() {
+        return this.deflaterPool;
+    }
+
+    /**
+     * Retrieves the size of the smallest file that will be compressed.
+     *
+     * @return A size in bytes.
+     */
+    public long getMinFileSize() {
+        return this.minFileSize;
+    }
+
+    /**
+     * Retrieves the number of bytes of compressed data that the cache is currently holding.
+     *
+     * @return A size in bytes.
+     */
+    public synchronized long getSize() {
+        return this.currentSize;
+    }
+
+    /**
+     * Retrieves the number of lookups that were answered without compressing the file.
+     *
+     * @return A number of lookups.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of times that a file has been compressed.
+     *
+     * @return A number of compressions.
+     */
+    public long getCompressionCount() {
+        return this.compressions.get();
+    }
+
+    /**
+     * Retrieves the total size of the files that have been compressed.
+     *
+     * @return A number of bytes.
+     */
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes.get();
+    }
+
+    /**
+     * Retrieves the total size of the compressed data that has been produced.
+     *
+     * @return A number of bytes.
+     */
+    public long getCompressedBytes() {
+        return this.compressedBytes.get();
+    }
+
+    /**
+     * Retrieves the overall compression ratio, the size of the compressed data divided by the size of the original
+     * files. Lower is better.
+     *
+     * @return A ratio between 0 and about 1, or 0 if nothing has been compressed.
+     */
+    public double getCompressionRatio() {
+        long uncompressed = this.uncompressedBytes.get();
+
+        return uncompressed > 0 ? (double) this.compressedBytes.get() / uncompressed : 0;
+    }
+
+    /**
+     * Retrieves the CPU time spent compressing files. When the JVM cannot measure CPU time the elapsed time is
+     * recorded instead.
+     *
+     * @return A time in nanoseconds.
+     */
+    public long getCompressionTime() {
+        return this.compressionTime.get();
+    }
+
+    /**
+     * A compressed file held by the cache, along with the attributes of the original file when it was compressed.
+     */
+    private static class Entry {
+
+        // the size of the original file when it was compressed
+        private long sourceLength;
+
+        // the modification time of the original file when it was compressed
+        private long sourceLastModified;
+
+        // the compressed data, or null if the file did not get smaller when compressed
+        private CachedFile compressed;
+
+        Entry(long sourceLength, long sourceLastModified, CachedFile compressed) {
+            this.sourceLength = sourceLength;
+            this.sourceLastModified = sourceLastModified;
+            this.compressed = compressed;
+        }
+
+        boolean matches(long length, long lastModified) {
+            return this.sourceLength == length && this.sourceLastModified == lastModified;
+        }
+
+        long getWeight() {
+            return this.compressed != null ? this.compressed.getLength() + kEntryOverhead : kEntryOverhead;
+        }
+    }
+}
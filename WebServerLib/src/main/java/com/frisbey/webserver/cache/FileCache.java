@@ -0,0 +1,294 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, size bounded cache of static files, keyed by their full local path. Keeping frequently requested
+ * files in memory saves the server from opening and reading them again for every request.
+ *
+ * <p>Every lookup compares the file's size and modification time with the cached entry, and an entry is reloaded as
+ * soon as either one changes. When the attributes come from a {@link com.frisbey.webserver.cache.FileMetadataCache},
+ * changes are noticed once the attributes expire. The total size of the cached contents is limited to a fixed budget; when the budget is exceeded the
+ * least recently used entries are evicted. Files larger than a configurable limit are never read into memory, but
+ * their metadata is still cached so that they can be served directly from disk.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.CachedFile
+ */
+public class FileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCache.class);
+
+    // the default number of bytes that the cache may use
+    public static final long kDefaultMaxSize = 32 * 1024 * 1024;
+
+    // the default size of the largest file whose contents will be kept in memory
+    public static final long kDefaultMaxFileSize = 1024 * 1024;
+
+    // an estimate of the memory used by an entry in addition to the file's contents
+    private static final int kEntryOverhead = 128;
+
+    // the cached files in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, CachedFile> entries;
+
+    // the number of bytes that the cache may use
+    private long maxSize;
+
+    // the size of the largest file whose contents will be kept in memory
+    private long maxFileSize;
+
+    // the number of bytes that the cache is currently using
+    private long currentSize;
+
+    // the number of lookups that were answered from memory
+    private AtomicLong hits;
+
+    // the number of lookups that required the file to be loaded
+    private AtomicLong misses;
+
+    // the number of entries that were removed to stay within the size budget
+    private AtomicLong evictions;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public FileCache() {
+        this(kDefaultMaxSize, kDefaultMaxFileSize);
+    }
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param maxSize The number of bytes that the cache may use. Must be greater than 0.
+     * @param maxFileSize The size of the largest file whose contents will be kept in memory. Files that are larger are
+     *                    only tracked by their metadata. Limited to the size of the cache.
+     */
+    public FileCache(long maxSize, long maxFileSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+
+        this.entries = new LinkedHashMap<String, CachedFile>(16, 0.75f, true);
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, maxSize - kEntryOverhead);
+        this.currentSize = 0;
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+    }
+
+    /**
+     * Retrieves a file from the cache, loading it if it is not cached or has changed since it was cached.
+     *
+     * @param path The full local path of the file.
+     * @return The cached file, or null if the path does not refer to an existing regular file.
+     * @throws IOException thrown if there are issues reading the file.
+     */
+    public CachedFile getFile(String path) throws IOException {
+        return getFile(FileMetadata.read(path));
+    }
+
+    /**
+     * Retrieves a file from the cache using attributes that have already been read, for example from a
+     * {@link com.frisbey.webserver.cache.FileMetadataCache}. The file is loaded if it is not cached or if the
+     * attributes show that it has changed since it was cached.
+     *
+     * @param metadata The current attributes of the file.
+     * @return The cached file, or null if the attributes do not describe an existing regular file.
+     * @throws IOException thrown if there are issues reading the file.
+     */
+    public CachedFile getFile(FileMetadata metadata) throws IOException {
+        String path = metadata.getPath();
+
+        if (!metadata.isRegularFile()) {
+            invalidate(path);
+            return null;
+        }
+
+        long length = metadata.getLength();
+        long lastModified = metadata.getLastModified();
+
+        CachedFile cached;
+
+        synchronized (this) {
+            cached = this.entries.get(path);
+        }
+
+        if (cached != null && cached.matches(length, lastModified)) {
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        this.misses.incrementAndGet();
+
+        cached = load(path, length, lastModified);
+        put(cached);
+
+        return cached;
+    }
+
+    /**
+     * Reads a file so that it can be added to the cache. The file is read without holding the cache's lock, so
+     * several threads may load the same file at once; the last one to finish wins.
+     *
+     * @param path The full local path of the file.
+     * @param length The size of the file.
+     * @param lastModified The modification time of the file.
+     * @return A new entry for the file.
+     * @throws IOException thrown if there are issues reading the file.
+     */
+    private CachedFile load(String path, long length, long lastModified) throws IOException {
+        if (length > this.maxFileSize) {
+            logger.debug("file {} is too large to cache, caching metadata only", path);
+            return new CachedFile(path, length, lastModified, null);
+        }
+
+        logger.debug("loading file {} into cache", path);
+        byte[] content = Files.readAllBytes(Paths.get(path));
+
+        // the file may have changed while it was being read. the entry describes what was actually read, and the
+        // stale modification time will cause it to be reloaded on the next lookup
+        return new CachedFile(path, content.length, lastModified, content);
+    }
+
+    /**
+     * Adds an entry to the cache, replacing any existing entry for the same file, and evicts the least recently used
+     * entries until the cache is within its size budget.
+     *
+     * @param cached The entry to add.
+     */
+    private synchronized void put(CachedFile cached) {
+        CachedFile previous = this.entries.put(cached.getPath(), cached);
+
+        if (previous != null) {
+            this.currentSize -= getWeight(previous);
+        }
+
+        this.currentSize += getWeight(cached);
+
+        Iterator<Map.Entry<String, CachedFile>> iterator = this.entries.entrySet().iterator();
+
+        while (this.currentSize > this.maxSize && iterator.hasNext()) {
+            CachedFile eldest = iterator.next().getValue();
+
+            if (eldest == cached) {
+                continue;
+            }
+
+            iterator.remove();
+            this.currentSize -= getWeight(eldest);
+            this.evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a file from the cache.
+     *
+     * @param path The full local path of the file.
+     */
+    public synchronized void invalidate(String path) {
+        CachedFile removed = this.entries.remove(path);
+
+        if (removed != null) {
+            this.currentSize -= getWeight(removed);
+        }
+    }
+
+    /**
+     * Removes every file from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.currentSize = 0;
+    }
+
+    /**
+     * Retrieves the number of bytes that an entry counts against the cache's budget.
+     *
+     * @param cached The entry to measure.
+     * @return A size in bytes.
+     */
+    private static long getWeight(CachedFile cached) {
+        return cached.isContentCached() ? cached.getContent().length + kEntryOverhead : kEntryOverhead;
+    }
+
+    /**
+     * Retrieves the number of bytes that the cache may use.
+     *
+     * @return A size in bytes.
+     */
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Retrieves the number of bytes that the cache is currently using.
+     *
+     * @return A size in bytes.
+     */
+    public synchronized long getSize() {
+        return this.currentSize;
+    }
+
+    /**
+     * Retrieves the number of files that are currently cached.
+     *
+     * @return A number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Retrieves the number of lookups that were answered without loading the file.
+     *
+     * @return A number of lookups.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of lookups that required the file to be loaded, either because it was not cached or because
+     * it had changed.
+     *
+     * @return A number of lookups.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Retrieves the number of entries that were removed to keep the cache within its size budget.
+     *
+     * @return A number of entries.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe cache of open files, keyed by their full local path. Opening and closing a file costs two system calls
+ * per request, which dominate the cost of sending a small file. The cache keeps popular files open and shares a single
+ * descriptor between every request that is sending the same file, since each request reads the file by position.
+ *
+ * <p>Files are reference counted: {@link #acquire(FileMetadata)} must be paired with {@link #release(OpenFile)}. A
+ * file whose size or modification time has changed is reopened by the next request that acquires it, and the old
+ * descriptor is closed once the last request using it releases it. Files that have not been used for longer than the
+ * idle timeout are closed, so that deleted files do not keep their disk space.</p>
+ *
+ * <p>The number of files held open is bounded, so that the server stays well within the process's descriptor limit.
+ * When the limit is reached the least recently used idle file is closed. If every cached file is in use, the request
+ * is given a file that is closed as soon as it is released.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.OpenFile
+ */
+public class FileChannelCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileChannelCache.class);
+
+    // the default number of files that may be held open
+    public static final int kDefaultMaxOpenFiles = 1000;
+
+    // the default number of milliseconds that an unused file is held open
+    public static final long kDefaultIdleTimeout = 60000;
+
+    // the open files in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, OpenFile> entries;
+
+    // the number of files that may be held open
+    private int maxOpenFiles;
+
+    // the number of nanoseconds that an unused file is held open
+    private long idleTimeout;
+
+    // the value of System.nanoTime() at which idle files will next be looked for. guarded by the cache
+    private long nextExpiry;
+
+    // the number of acquisitions that reused an open file
+    private AtomicLong hits;
+
+    // the number of acquisitions that opened the file
+    private AtomicLong misses;
+
+    // the number of files that were closed to stay within the limit, or because they were idle
+    private AtomicLong evictions;
+
+    // the number of acquisitions that could not be cached because every cached file was in use
+    private AtomicLong overflows;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public FileChannelCache() {
+        this(kDefaultMaxOpenFiles, kDefaultIdleTimeout);
+    }
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param maxOpenFiles The number of files that may be held open. Must be greater than 0.
+     * @param idleTimeout The number of milliseconds that an unused file is held open. Must be greater than 0.
+     */
+    public FileChannelCache(int maxOpenFiles, long idleTimeout) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("Max open files must be greater than 0");
+        }
+
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be greater than 0");
+        }
+
+        this.entries = new LinkedHashMap<String, OpenFile>(16, 0.75f, true);
+        this.maxOpenFiles = maxOpenFiles;
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.nextExpiry = System.nanoTime() + this.idleTimeout;
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+        this.overflows = new AtomicLong(0);
+    }
+
+    /**
+     * Retrieves an open file, opening it if it is not cached or has changed since it was opened. The caller must
+     * release the file once it is done with it.
+     *
+     * @param metadata The current attributes of the file. Must describe a regular file.
+     * @return The open file.
+     * @throws IOException thrown if the file cannot be opened.
+     */
+    public OpenFile acquire(FileMetadata metadata) throws IOException {
+        String path = metadata.getPath();
+        long length = metadata.getLength();
+        long lastModified = metadata.getLastModified();
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            if (now - this.nextExpiry >= 0) {
+                expireIdle(now);
+            }
+
+            OpenFile cached = this.entries.get(path);
+
+            if (cached != null && cached.matches(length, lastModified)) {
+                cached.references++;
+                cached.lastUsed = now;
+                this.hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        this.misses.incrementAndGet();
+
+        // the file is opened without holding the cache's lock, so a slow disk does not hold up other files
+        logger.debug("opening file {}", path);
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        OpenFile opened = new OpenFile(path, channel, length, lastModified);
+        opened.references = 1;
+        opened.lastUsed = now;
+
+        synchronized (this) {
+            OpenFile cached = this.entries.get(path);
+
+            if (cached != null && cached.matches(length, lastModified)) {
+                // another request opened the same file in the meantime
+                cached.references++;
+                cached.lastUsed = now;
+                opened.close();
+                return cached;
+            }
+
+            if (cached != null) {
+                this.entries.remove(path);
+                retire(cached);
+            }
+
+            if (this.entries.size() >= this.maxOpenFiles && !evictIdle()) {
+                this.overflows.incrementAndGet();
+                opened.retired = true;
+                return opened;
+            }
+
+            this.entries.put(path, opened);
+        }
+
+        return opened;
+    }
+
+    /**
+     * Releases a file that was acquired from the cache. The file is closed if it has left the cache and no other
+     * request is using it.
+     *
+     * @param file The file to release.
+     */
+    public void release(OpenFile file) {
+        synchronized (this) {
+            file.references--;
+
+            if (!file.retired || file.references > 0) {
+                return;
+            }
+        }
+
+        file.close();
+    }
+
+    /**
+     * Closes a file once it is no longer in use. The file must already have been removed from the entries.
+     *
+     * @param file The file to retire.
+     */
+    private void retire(OpenFile file) {
+        file.retired = true;
+
+        if (file.references == 0) {
+            file.close();
+        }
+    }
+
+    /**
+     * Closes the least recently used file that is not in use, to make room for another.
+     *
+     * @return true if a file was closed, false if every file is in use.
+     */
+    private boolean evictIdle() {
+        Iterator<OpenFile> iterator = this.entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            OpenFile eldest = iterator.next();
+
+            if (eldest.references == 0) {
+                iterator.remove();
+                retire(eldest);
+                this.evictions.incrementAndGet();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Closes every file that has not been used for longer than the idle timeout.
+     *
+     * @param now The current value of System.nanoTime().
+     */
+    private void expireIdle(long now) {
+        Iterator<OpenFile> iterator = this.entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            OpenFile eldest = iterator.next();
+
+            // the entries are in the order they were last used, so the rest were used more recently
+            if (now - eldest.lastUsed < this.idleTimeout) {
+                break;
+            }
+
+            if (eldest.references == 0) {
+                iterator.remove();
+                retire(eldest);
+                this.evictions.incrementAndGet();
+            }
+        }
+
+        // look again once the oldest remaining file could have expired, but no more than a few times per timeout
+        this.nextExpiry = now + Math.max(this.idleTimeout / 4, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    /**
+     * Closes every file that has not been used for longer than the idle timeout. Idle files are also closed as other
+     * files are acquired, so calling this method is only needed when the server is otherwise quiet.
+     */
+    public synchronized void purgeIdle() {
+        expireIdle(System.nanoTime());
+    }
+
+    /**
+     * Removes every file from the cache. Files that are in use are closed once they are released.
+     */
+    public synchronized void clear() {
+        for (OpenFile file : this.entries.values()) {
+            retire(file);
+        }
+
+        this.entries.clear();
+    }
+
+    /**
+     * Retrieves the number of files that may be held open.
+     *
+     * @return A number of files.
+     */
+    public int getMaxOpenFiles() {
+        return this.maxOpenFiles;
+    }
+
+    /**
+     * Retrieves the number of milliseconds that an unused file is held open.
+     *
+     * @return A time in milliseconds.
+     */
+    public long getIdleTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(this.idleTimeout);
+    }
+
+    /**
+     * Retrieves the number of files that the cache is holding open.
+     *
+     * @return A number of files.
+     */
+    public synchronized int getOpenCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that reused a file that was already open.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that opened the file, either because it was not open or because it had
+     * changed.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Retrieves the number of files that were closed because they were idle or to stay within the limit.
+     *
+     * @return A number of files.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that were given a file of their own because every cached file was in use.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getOverflowCount() {
+        return this.overflows.get();
+    }
+}
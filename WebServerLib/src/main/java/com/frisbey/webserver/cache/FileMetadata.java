@@ -0,0 +1,221 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.utility.HttpDateUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A snapshot of the attributes of a path on the local file system. A snapshot is also taken for paths that do not
+ * exist, which allows repeated requests for missing resources to be answered without asking the file system again.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileMetadataCache
+ */
+public class FileMetadata {
+
+    // the full local path that the snapshot describes
+    private String path;
+
+    // stores whether or not the path existed when the snapshot was taken
+    private boolean exists;
+
+    // stores whether or not the path referred to a regular file
+    private boolean regularFile;
+
+    // stores whether or not the path referred to a directory
+    private boolean directory;
+
+    // the size of the file in bytes, or 0 if the path did not exist
+    private long length;
+
+    // the modification time of the file in milliseconds since the epoch, or 0 if the path did not exist
+    private long lastModified;
+
+    // the value of System.nanoTime() when the snapshot was taken
+    private long readTime;
+
+    // the entity tag that identifies this version of the file, created the first time it is requested
+    private String entityTag;
+
+    // the modification time formatted for the Last-Modified header, created the first time it is requested
+    private String httpLastModified;
+
+    // the content type of the file, resolved the first time it is requested
+    private String contentType;
+
+    // the registry that the content type was resolved with
+    private MimeTypeRegistry contentTypeRegistry;
+
+    /**
+     * Initializes a new snapshot.
+     *
+     * @param path The full local path that the snapshot describes.
+     * @param attributes The attributes of the path, or null if the path does not exist.
+     * @param readTime The value of System.nanoTime() when the attributes were read.
+     */
+    private FileMetadata(String path, BasicFileAttributes attributes, long readTime) {
+        this.path = path;
+        this.readTime = readTime;
+
+        if (attributes != null) {
+            this.exists = true;
+            this.regularFile = attributes.isRegularFile();
+            this.directory = attributes.isDirectory();
+            this.length = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * Takes a snapshot of a path's attributes using a single request to the file system.
+     *
+     * @param path The full local path to examine.
+     * @return A snapshot of the path. Paths that do not exist, are not valid, or cannot be examined are reported as
+     *         missing.
+     */
+    public static FileMetadata read(String path) {
+        long readTime = System.nanoTime();
+        BasicFileAttributes attributes;
+
+        try {
+            attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        } catch (InvalidPathException ex) {
+            attributes = null;
+        } catch (IOException ex) {
+            // the file does not exist or cannot be examined. either way it cannot be served
+            attributes = null;
+        }
+
+        return new FileMetadata(path, attributes, readTime);
+    }
+
+    /**
+     * Retrieves the full local path that the snapshot describes.
+     *
+     * @return A local file path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Retrieves a value indicating whether the path existed.
+     *
+     * @return true if the path existed when the snapshot was taken.
+     */
+    public boolean exists() {
+        return this.exists;
+    }
+
+    /**
+     * Retrieves a value indicating whether the path referred to a regular file, which is the only kind of path that
+     * the server will serve.
+     *
+     * @return true if the path was a regular file when the snapshot was taken.
+     */
+    public boolean isRegularFile() {
+        return this.regularFile;
+    }
+
+    /**
+     * Retrieves a value indicating whether the path referred to a directory.
+     *
+     * @return true if the path was a directory when the snapshot was taken.
+     */
+    public boolean isDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Retrieves the size of the file.
+     *
+     * @return A size in bytes, or 0 if the path did not exist.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Retrieves the modification time of the file.
+     *
+     * @return A time in milliseconds since the epoch, or 0 if the path did not exist.
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Retrieves an entity tag that identifies this version of the file. The tag is derived from the size and
+     * modification time of the file, so it changes whenever the file does and can be produced without opening the
+     * file. Snapshots held by a {@link com.frisbey.webserver.cache.FileMetadataCache} only create the tag once.
+     *
+     * @return A strong entity tag, including its quotes.
+     */
+    public String getEntityTag() {
+        if (this.entityTag == null) {
+            this.entityTag = "\"" + Long.toHexString(this.length) + "-" + Long.toHexString(this.lastModified) + "\"";
+        }
+
+        return this.entityTag;
+    }
+
+    /**
+     * Retrieves the content type of the file from its extension. Snapshots held by a
+     * {@link com.frisbey.webserver.cache.FileMetadataCache} only resolve the type once, so a cached file's extension is
+     * not looked up again on every request.
+     *
+     * @param registry The registry that maps extensions to content types.
+     * @return A content type, such as "text/css".
+     */
+    public String getContentType(MimeTypeRegistry registry) {
+        if (this.contentType == null || this.contentTypeRegistry != registry) {
+            this.contentType = registry.getContentType(this.path);
+            this.contentTypeRegistry = registry;
+        }
+
+        return this.contentType;
+    }
+
+    /**
+     * Retrieves the modification time of the file formatted as the value of a Last-Modified header.
+     *
+     * @return An HTTP date.
+     */
+    public String getHttpLastModified() {
+        if (this.httpLastModified == null) {
+            this.httpLastModified = HttpDateUtils.format(this.lastModified);
+        }
+
+        return this.httpLastModified;
+    }
+
+    /**
+     * Retrieves the time at which the snapshot was taken.
+     *
+     * @return A value previously returned by System.nanoTime().
+     */
+    public long getReadTime() {
+        return this.readTime;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe cache of {@link com.frisbey.webserver.cache.FileMetadata} snapshots, keyed by their full local path.
+ * Serving a file requires knowing whether it exists, whether it is a regular file, and how large it is. The cache
+ * answers all of those questions from a single request to the file system, and then reuses the answer for a short
+ * time so that popular files are not examined again for every request.
+ *
+ * <p>Paths that do not exist are cached as well, so repeated requests for missing resources, such as those sent by
+ * vulnerability scanners, do not reach the disk. Because snapshots are reused until they expire, a change to a file
+ * may go unnoticed for up to the cache's time to live. The number of cached paths is bounded, and the least recently
+ * used path is forgotten first.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileMetadata
+ */
+public class FileMetadataCache {
+
+    // the default number of milliseconds that a snapshot will be reused
+    public static final long kDefaultTimeToLive = 1000;
+
+    // the default number of paths that will be remembered
+    public static final int kDefaultMaxEntries = 10000;
+
+    // the cached snapshots in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, FileMetadata> entries;
+
+    // the number of nanoseconds that a snapshot will be reused
+    private long timeToLive;
+
+    // the number of lookups that were answered without asking the file system
+    private AtomicLong hits;
+
+    // the number of lookups that required the file system to be examined
+    private AtomicLong misses;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public FileMetadataCache() {
+        this(kDefaultTimeToLive, kDefaultMaxEntries);
+    }
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param timeToLive The number of milliseconds that a snapshot will be reused. Must be greater than 0.
+     * @param maxEntries The number of paths that will be remembered. Must be greater than 0.
+     */
+    public FileMetadataCache(long timeToLive, final int maxEntries) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be greater than 0");
+        }
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be greater than 0");
+        }
+
+        this.entries = new LinkedHashMap<String, FileMetadata>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileMetadata> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+    }
+
+    /**
+     * Retrieves the attributes of a path, examining the file system only if the path has not been examined recently.
+     *
+     * @param path The full local path to examine.
+     * @return A snapshot of the path that is no older than the cache's time to live.
+     */
+    public FileMetadata get(String path) {
+        FileMetadata metadata;
+
+        synchronized (this) {
+            metadata = this.entries.get(path);
+        }
+
+        if (metadata != null && System.nanoTime() - metadata.getReadTime() < this.timeToLive) {
+            this.hits.incrementAndGet();
+            return metadata;
+        }
+
+        this.misses.incrementAndGet();
+        metadata = FileMetadata.read(path);
+
+        synchronized (this) {
+            this.entries.put(path, metadata);
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Forgets the attributes of a path so that the next lookup will examine the file system.
+     *
+     * @param path The full local path to forget.
+     */
+    public synchronized void invalidate(String path) {
+        this.entries.remove(path);
+    }
+
+    /**
+     * Forgets the attributes of every path.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Retrieves the number of milliseconds that a snapshot will be reused.
+     *
+     * @return A time in milliseconds.
+     */
+    public long getTimeToLive() {
+        return TimeUnit.NANOSECONDS.toMillis(this.timeToLive);
+    }
+
+    /**
+     * Retrieves the number of paths that are currently remembered.
+     *
+     * @return A number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Retrieves the number of lookups that were answered without asking the file system.
+     *
+     * @return A number of lookups.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of lookups that required the file system to be examined.
+     *
+     * @return A number of lookups.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe cache of large files that are mapped into memory, keyed by their full local path. When many clients
+ * download the same large file at once, each would otherwise read the file through a descriptor of its own. A mapped
+ * file is shared by every response that is sending it: responses write slices of the mapping straight to their
+ * sockets, and the file's pages are read from disk once and shared through the page cache.
+ *
+ * <p>Only files of at least the minimum size are mapped, since small files are better served from the
+ * {@link com.frisbey.webserver.cache.FileCache}. The total size of the mapped files is limited; when a file does not
+ * fit, the least recently used files that are not being sent are unmapped, and if that does not make enough room the
+ * file is not mapped and is served some other way.</p>
+ *
+ * <p>Files are reference counted: {@link #acquire(FileMetadata)} must be paired with {@link #release(MappedFile)}. A
+ * file whose size or modification time has changed is mapped again by the next request, and the old mapping is
+ * unmapped once the last response using it releases it. The cache is meant for immutable assets that are replaced by
+ * renaming a new file over the old one. A file that is truncated while it is mapped cannot be read past its new end,
+ * and responses sending it fail.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.MappedFile
+ * @see com.frisbey.webserver.utility.MappedBufferUtils
+ */
+public class MappedFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileCache.class);
+
+    // the default number of bytes of files that may be mapped at once
+    public static final long kDefaultMaxMappedBytes = 1024L * 1024 * 1024;
+
+    // the default size of the smallest file that will be mapped
+    public static final long kDefaultMinFileSize = 16 * 1024 * 1024;
+
+    // the mapped files in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, MappedFile> entries;
+
+    // the number of bytes of files that may be mapped at once
+    private long maxMappedBytes;
+
+    // the size of the smallest file that will be mapped
+    private long minFileSize;
+
+    // the number of bytes of files that are currently mapped, including retired files that are still in use
+    private long mappedBytes;
+
+    // the number of acquisitions that reused a mapped file
+    private AtomicLong hits;
+
+    // the number of acquisitions that mapped the file
+    private AtomicLong misses;
+
+    // the number of files that were unmapped to make room for another
+    private AtomicLong evictions;
+
+    // the number of acquisitions that could not map the file because there was no room
+    private AtomicLong rejections;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public MappedFileCache() {
+        this(kDefaultMaxMappedBytes, kDefaultMinFileSize);
+    }
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param maxMappedBytes The number of bytes of files that may be mapped at once. Must be greater than 0.
+     * @param minFileSize The size of the smallest file that will be mapped. Must not be negative.
+     */
+    public MappedFileCache(long maxMappedBytes, long minFileSize) {
+        if (maxMappedBytes <= 0) {
+            throw new IllegalArgumentException("Max mapped bytes must be greater than 0");
+        }
+
+        if (minFileSize < 0) {
+            throw new IllegalArgumentException("Min file size must not be negative");
+        }
+
+        this.entries = new LinkedHashMap<String, MappedFile>(16, 0.75f, true);
+        this.maxMappedBytes = maxMappedBytes;
+        this.minFileSize = minFileSize;
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+        this.rejections = new AtomicLong(0);
+    }
+
+    /**
+     * Determines whether a file of a given size would be mapped. A single mapping cannot exceed 2 GB, and a file
+     * larger than the whole cache can never fit.
+     *
+     * @param length The size of the file.
+     * @return true if the file is large enough to map, and small enough to fit.
+     */
+    public boolean isMappable(long length) {
+        return length >= this.minFileSize && length > 0 && length <= Integer.MAX_VALUE && length <= this.maxMappedBytes;
+    }
+
+    /**
+     * Retrieves a mapped file, mapping it if it is not cached or has changed since it was mapped. The caller must
+     * release the file once it is done with it. Mapping a file only reserves address space, and its pages are read
+     * as they are first sent, so files are mapped while holding the cache's lock.
+     *
+     * @param metadata The current attributes of the file. Must describe a regular file.
+     * @return The mapped file, or null if the file is not mappable or there is no room to map it.
+     * @throws IOException thrown if the file cannot be mapped.
+     */
+    public synchronized MappedFile acquire(FileMetadata metadata) throws IOException {
+        String path = metadata.getPath();
+        long length = metadata.getLength();
+
+        if (!isMappable(length)) {
+            return null;
+        }
+
+        MappedFile cached = this.entries.get(path);
+
+        if (cached != null && cached.matches(length, metadata.getLastModified())) {
+            cached.references++;
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        if (cached != null) {
+            this.entries.remove(path);
+            retire(cached);
+        }
+
+        if (!makeRoom(length)) {
+            this.rejections.incrementAndGet();
+            return null;
+        }
+
+        this.misses.incrementAndGet();
+        logger.debug("mapping file {}", path);
+
+        MappedByteBuffer buffer;
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+        try {
+            // the file may have changed since its attributes were read, so the mapping covers what is there now
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), length));
+        } finally {
+            // the mapping stays valid after the channel is closed
+            channel.close();
+        }
+
+        MappedFile mapped = new MappedFile(path, buffer, metadata.getLastModified());
+        mapped.references = 1;
+        this.mappedBytes += mapped.getLength();
+        this.entries.put(path, mapped);
+
+        return mapped;
+    }
+
+    /**
+     * Releases a file that was acquired from the cache. The file is unmapped if it has left the cache and no other
+     * request is using it.
+     *
+     * @param file The file to release.
+     */
+    public synchronized void release(MappedFile file) {
+        file.references--;
+
+        if (file.retired && file.references == 0) {
+            unmap(file);
+        }
+    }
+
+    /**
+     * Unmaps the least recently used files that are not in use until a file of a given size fits in the cache.
+     *
+     * @param length The size of the file that needs room.
+     * @return true if the file fits, false if too many of the mapped files are in use.
+     */
+    private boolean makeRoom(long length) {
+        Iterator<MappedFile> iterator = this.entries.values().iterator();
+
+        while (this.mappedBytes + length > this.maxMappedBytes && iterator.hasNext()) {
+            MappedFile eldest = iterator.next();
+
+            if (eldest.references == 0) {
+                iterator.remove();
+                unmap(eldest);
+                this.evictions.incrementAndGet();
+            }
+        }
+
+        return this.mappedBytes + length <= this.maxMappedBytes;
+    }
+
+    /**
+     * Unmaps a file once it is no longer in use. The file must already have been removed from the entries.
+     *
+     * @param file The file to retire.
+     */
+    private void retire(MappedFile file) {
+        file.retired = true;
+
+        if (file.references == 0) {
+            unmap(file);
+        }
+    }
+
+    /**
+     * Unmaps a file that is no longer in use.
+     *
+     * @param file The file to unmap.
+     */
+    private void unmap(MappedFile file) {
+        logger.debug("unmapping file {}", file.getPath());
+        this.mappedBytes -= file.getLength();
+        file.unmap();
+    }
+
+    /**
+     * Removes a file from the cache. The file is unmapped once no response is sending it.
+     *
+     * @param path The full local path of the file.
+     */
+    public synchronized void invalidate(String path) {
+        MappedFile removed = this.entries.remove(path);
+
+        if (removed != null) {
+            retire(removed);
+        }
+    }
+
+    /**
+     * Removes every file from the cache. Files that are in use are unmapped once they are released.
+     */
+    public synchronized void clear() {
+        for (MappedFile file : this.entries.values()) {
+            retire(file);
+        }
+
+        this.entries.clear();
+    }
+
+    /**
+     * Retrieves the number of bytes of files that may be mapped at once.
+     *
+     * @return A size in bytes.
+     */
+    public long getMaxMappedBytes() {
+        return this.maxMappedBytes;
+    }
+
+    /**
+     * Retrieves the size of the smallest file that will be mapped.
+     *
+     * @return A size in bytes.
+     */
+    public long getMinFileSize() {
+        return this.minFileSize;
+    }
+
+    /**
+     * Retrieves the number of bytes of files that are currently mapped, including files that have left the cache but
+     * are still being sent.
+     *
+     * @return A size in bytes.
+     */
+    public synchronized long getMappedBytes() {
+        return this.mappedBytes;
+    }
+
+    /**
+     * Retrieves the number of files that are currently cached.
+     *
+     * @return A number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that reused a file that was already mapped.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that mapped the file.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Retrieves the number of files that were unmapped to make room for another.
+     *
+     * @return A number of files.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that could not map the file because the files in use left no room.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getRejectionCount() {
+        return this.rejections.get();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A file whose contents are held in a chunk of direct memory by an {@link com.frisbey.webserver.cache.OffHeapFileCache}.
+ * Every request that acquires the file must release it once it is done; the chunk is only reused when the file has
+ * left the cache and no request is still using it.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.OffHeapFileCache
+ */
+public class OffHeapFile {
+
+    // the full local path of the file
+    private String path;
+
+    // the modification time of the file, in milliseconds since the epoch, when it was loaded
+    private long lastModified;
+
+    // the address of the chunk that holds the contents
+    long address;
+
+    // the size class of the chunk that holds the contents
+    int sizeClass;
+
+    // the contents of the file. its position and limit are never changed, so it can be sliced by any thread
+    private ByteBuffer content;
+
+    // the number of requests that are using the file. guarded by the cache that owns the file
+    int references;
+
+    // whether the file has left the cache and its chunk must be freed once it is no longer in use
+    boolean retired;
+
+    /**
+     * Initializes a new entry.
+     *
+     * @param path The full local path of the file.
+     * @param lastModified The modification time of the file in milliseconds since the epoch.
+     * @param address The address of the chunk that holds the contents.
+     * @param sizeClass The size class of the chunk.
+     * @param content A buffer covering the contents in the chunk.
+     */
+    OffHeapFile(String path, long lastModified, long address, int sizeClass, ByteBuffer content) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.address = address;
+        this.sizeClass = sizeClass;
+        this.content = content;
+    }
+
+    /**
+     * Retrieves the full local path of the file.
+     *
+     * @return A local file path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Retrieves the size of the file when it was loaded.
+     *
+     * @return A size in bytes.
+     */
+    public long getLength() {
+        return this.content.capacity();
+    }
+
+    /**
+     * Creates a buffer that covers a region of the file. The buffer shares the cache's direct memory, so nothing is
+     * copied, and it must not be used once the file has been released.
+     *
+     * @param position The position in the file of the first byte of the region.
+     * @param count The number of bytes in the region.
+     * @return A read only buffer whose position is 0 and whose limit is the length of the region.
+     */
+    public ByteBuffer slice(long position, long count) {
+        if (position < 0 || count < 0 || position > getLength() - count) {
+            throw new IllegalArgumentException("File region is out of bounds");
+        }
+
+        return this.content.slice((int) position, (int) count).asReadOnlyBuffer();
+    }
+
+    /**
+     * Determines whether the entry still describes a file with the given attributes.
+     *
+     * @param length The current size of the file.
+     * @param lastModified The current modification time of the file.
+     * @return true if the file has not changed since it was loaded.
+     */
+    boolean matches(long length, long lastModified) {
+        return getLength() == length && this.lastModified == lastModified;
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, size bounded cache of static files whose contents are held in direct memory rather than on the heap,
+ * keyed by their full local path. A large {@link com.frisbey.webserver.cache.FileCache} fills the old generation with
+ * long lived arrays that every full collection has to trace and compact; the contents of this cache are invisible to
+ * the garbage collector, so the heap stays small no matter how large the cache is. Cached files are written to
+ * sockets straight from direct memory, without being copied to the heap.
+ *
+ * <p>Memory is managed by a slab allocator: each file is stored in a chunk of the smallest size class that fits it.
+ * When a class has no free chunk and no slab can be added, the least recently used file of the same class that is not
+ * being sent is evicted. If the class has nothing to evict, a slab is taken from another class, either one whose chunks
+ * are all free or the slab of the least recently used file of another class, whose files are then evicted together.
+ * Files larger than a slab are never cached.</p>
+ *
+ * <p>Files are reference counted: {@link #acquire(FileMetadata)} must be paired with {@link #release(OffHeapFile)}. A
+ * file whose size or modification time has changed is loaded again, and the old chunk is freed once the last response
+ * using it releases it.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.OffHeapFile
+ * @see com.frisbey.webserver.cache.SlabAllocator
+ */
+public class OffHeapFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapFileCache.class);
+
+    // the default number of bytes of direct memory that the cache may use
+    public static final long kDefaultMaxSize = 256L * 1024 * 1024;
+
+    // the default size of each slab, which is also the size of the largest file that will be cached
+    public static final int kDefaultSlabSize = 1024 * 1024;
+
+    // the size of the chunks of the smallest class
+    private static final int kMinChunkSize = 64;
+
+    // the ratio between the chunk sizes of consecutive classes
+    private static final double kGrowthFactor = 1.25;
+
+    // the cached files in least recently used order. all access must be synchronized on the cache
+    private LinkedHashMap<String, OffHeapFile> entries;
+
+    // manages the cache's direct memory. all access must be synchronized on the cache
+    private SlabAllocator allocator;
+
+    // the number of bytes of file contents that are held, including retired files that are still in use
+    private long storedBytes;
+
+    // the number of bytes of the chunks that hold file contents
+    private long chunkBytes;
+
+    // the number of acquisitions that reused a cached file
+    private AtomicLong hits;
+
+    // the number of acquisitions that loaded the file
+    private AtomicLong misses;
+
+    // the number of files that were removed to make room for another
+    private AtomicLong evictions;
+
+    // the number of slabs that were taken from one size class for another
+    private AtomicLong reassignments;
+
+    // the number of acquisitions that could not cache the file because there was no room
+    private AtomicLong rejections;
+
+    /**
+     * Initializes an empty cache that uses the default limits.
+     */
+    public OffHeapFileCache() {
+        this(kDefaultMaxSize, kDefaultSlabSize);
+    }
+
+    /**
+     * Initializes an empty cache. No memory is allocated until files are added.
+     *
+     * @param maxSize The number of bytes of direct memory that the cache may use. Must be at least one slab.
+     * @param slabSize The size of each slab, which is also the size of the largest file that will be cached. Must be
+     *                 between 64 bytes and 1 GB.
+     */
+    public OffHeapFileCache(long maxSize, int slabSize) {
+        if (slabSize < kMinChunkSize || slabSize > 1 << 30) {
+            throw new IllegalArgumentException("Slab size must be between " + kMinChunkSize + " bytes and 1 GB");
+        }
+
+        if (maxSize < slabSize) {
+            throw new IllegalArgumentException("Cache size must be at least one slab");
+        }
+
+        this.entries = new LinkedHashMap<String, OffHeapFile>(16, 0.75f, true);
+        this.allocator = new SlabAllocator(maxSize, slabSize, kMinChunkSize, kGrowthFactor);
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.evictions = new AtomicLong(0);
+        this.reassignments = new AtomicLong(0);
+        this.rejections = new AtomicLong(0);
+    }
+
+    /**
+     * Determines whether a file of a given size can be cached.
+     *
+     * @param length The size of the file.
+     * @return true if the file fits in a slab.
+     */
+    public boolean isCacheable(long length) {
+        return length <= this.allocator.getSlabSize();
+    }
+
+    /**
+     * Retrieves a cached file, loading it if it is not cached or has changed since it was loaded. The caller must
+     * release the file once it is done with it. Files are read without holding the cache's lock.
+     *
+     * @param metadata The current attributes of the file. Must describe a regular file.
+     * @return The cached file, or null if the file is too large, there is no room for it, or it changed while it was
+     *         being read.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    public OffHeapFile acquire(FileMetadata metadata) throws IOException {
+        String path = metadata.getPath();
+        long length = metadata.getLength();
+        int sizeClass = this.allocator.getSizeClass(length);
+        OffHeapFile loaded;
+        ByteBuffer target;
+
+        synchronized (this) {
+            OffHeapFile cached = this.entries.get(path);
+
+            if (cached != null && cached.matches(length, metadata.getLastModified())) {
+                cached.references++;
+                this.hits.incrementAndGet();
+                return cached;
+            }
+
+            if (sizeClass < 0) {
+                return null;
+            }
+
+            this.misses.incrementAndGet();
+            long address = allocate(sizeClass);
+
+            if (address < 0) {
+                this.rejections.incrementAndGet();
+                return null;
+            }
+
+            // the chunk is reserved by the loading request, and is only published once it holds the file
+            target = this.allocator.getBuffer(address, (int) length);
+            loaded = new OffHeapFile(path, metadata.getLastModified(), address, sizeClass, target.asReadOnlyBuffer());
+            loaded.references = 1;
+            this.storedBytes += length;
+            this.chunkBytes += this.allocator.getChunkSize(sizeClass);
+        }
+
+        boolean isComplete = false;
+
+        try {
+            isComplete = load(path, target);
+        } finally {
+            if (!isComplete) {
+                synchronized (this) {
+                    free(loaded);
+                }
+            }
+        }
+
+        if (!isComplete) {
+            logger.debug("file {} changed while it was being cached", path);
+            return null;
+        }
+
+        synchronized (this) {
+            OffHeapFile cached = this.entries.get(path);
+
+            if (cached != null && cached.matches(length, metadata.getLastModified())) {
+                // another request loaded the same file in the meantime
+                cached.references++;
+                free(loaded);
+                return cached;
+            }
+
+            if (cached != null) {
+                this.entries.remove(path);
+                retire(cached);
+            }
+
+            this.entries.put(path, loaded);
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Releases a file that was acquired from the cache. The file's chunk is freed if the file has left the cache and no
+     * other request is using it.
+     *
+     * @param file The file to release.
+     */
+    public synchronized void release(OffHeapFile file) {
+        file.references--;
+
+        if (file.retired && file.references == 0) {
+            free(file);
+        }
+    }
+
+    /**
+     * Reads a file into a chunk.
+     *
+     * @param path The full local path of the file.
+     * @param target A writable buffer covering the chunk, whose remaining bytes are the expected size of the file.
+     * @return true if the file was read, false if it ended early.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    private static boolean load(String path, ByteBuffer target) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+        try {
+            long position = 0;
+
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+
+                if (read < 0) {
+                    return false;
+                }
+
+                position += read;
+            }
+        } finally {
+            channel.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Allocates a chunk of a size class, making room if necessary.
+     *
+     * @param sizeClass The class of the chunk.
+     * @return The address of the chunk, or -1 if every file that could make room is in use.
+     */
+    private long allocate(int sizeClass) {
+        long address = this.allocator.allocate(sizeClass);
+
+        if (address >= 0) {
+            return address;
+        }
+
+        // evict the least recently used file of the same class
+        for (OffHeapFile file : this.entries.values()) {
+            if (file.sizeClass == sizeClass && file.references == 0) {
+                evict(file);
+                return this.allocator.allocate(sizeClass);
+            }
+        }
+
+        // take a slab that another class no longer uses
+        int slab = this.allocator.findEmptySlab(sizeClass);
+
+        if (slab < 0) {
+            slab = evictSlab(sizeClass);
+        }
+
+        if (slab < 0) {
+            return -1;
+        }
+
+        this.allocator.reassign(slab, sizeClass);
+        this.reassignments.incrementAndGet();
+
+        return this.allocator.allocate(sizeClass);
+    }
+
+    /**
+     * Empties the slab of the least recently used file of another class whose files are all idle, so that the slab can
+     * be given to a class that has nothing to evict. A slab is only emptied if every chunk in use belongs to an idle
+     * cached file; chunks that are still loading or that hold retired files still being sent keep the slab in place.
+     *
+     * @param sizeClass The class that needs a slab.
+     * @return The number of the emptied slab, or -1 if every slab of another class holds a chunk that is in use.
+     */
+    private int evictSlab(int sizeClass) {
+        // the entries are only modified once a slab has been chosen, so iterate over a snapshot of them
+        List<OffHeapFile> snapshot = new ArrayList<OffHeapFile>(this.entries.values());
+        boolean[] isChecked = new boolean[this.allocator.getSlabCount()];
+
+        for (OffHeapFile candidate : snapshot) {
+            int slab = this.allocator.getSlab(candidate.address);
+
+            if (candidate.sizeClass == sizeClass || candidate.references > 0 || isChecked[slab]) {
+                continue;
+            }
+
+            isChecked[slab] = true;
+            List<OffHeapFile> residents = getIdleResidents(snapshot, slab);
+
+            if (residents != null && residents.size() == this.allocator.getSlabUsage(slab)) {
+                for (OffHeapFile file : residents) {
+                    evict(file);
+                }
+
+                return slab;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the cached files that occupy a slab, provided none of them is in use.
+     *
+     * @param files The cached files.
+     * @param slab The number of the slab.
+     * @return The files in the slab, or null if any of them is being sent.
+     */
+    private List<OffHeapFile> getIdleResidents(List<OffHeapFile> files, int slab) {
+        List<OffHeapFile> residents = new ArrayList<OffHeapFile>();
+
+        for (OffHeapFile file : files) {
+            if (this.allocator.getSlab(file.address) == slab) {
+                if (file.references > 0) {
+                    return null;
+                }
+
+                residents.add(file);
+            }
+        }
+
+        return residents;
+    }
+
+    /**
+     * Removes an idle file from the cache and frees its chunk.
+     *
+     * @param file The file to evict.
+     */
+    private void evict(OffHeapFile file) {
+        this.entries.remove(file.getPath());
+        retire(file);
+        this.evictions.incrementAndGet();
+    }
+
+    /**
+     * Frees a file's chunk once the file is no longer in use. The file must already have been removed from the
+     * entries.
+     *
+     * @param file The file to retire.
+     */
+    private void retire(OffHeapFile file) {
+        file.retired = true;
+
+        if (file.references == 0) {
+            free(file);
+        }
+    }
+
+    /**
+     * Frees the chunk of a file that is no longer in use.
+     *
+     * @param file The file whose chunk should be freed.
+     */
+    private void free(OffHeapFile file) {
+        this.storedBytes -= file.getLength();
+        this.chunkBytes -= this.allocator.getChunkSize(file.sizeClass);
+        this.allocator.free(file.address, file.sizeClass);
+    }
+
+    /**
+     * Removes a file from the cache. Its chunk is freed once no response is sending it.
+     *
+     * @param path The full local path of the file.
+     */
+    public synchronized void invalidate(String path) {
+        OffHeapFile removed = this.entries.remove(path);
+
+        if (removed != null) {
+            retire(removed);
+        }
+    }
+
+    /**
+     * Removes every file from the cache. The chunks of files that are in use are freed once they are released. The
+     * cache's slabs are kept for reuse.
+     */
+    public synchronized void clear() {
+        for (OffHeapFile file : this.entries.values()) {
+            retire(file);
+        }
+
+        this.entries.clear();
+    }
+
+    /**
+     * Retrieves the number of bytes of direct memory that the cache may use.
+     *
+     * @return A size in bytes.
+     */
+    public long getMaxSize() {
+        return (long) this.allocator.getMaxSlabs() * this.allocator.getSlabSize();
+    }
+
+    /**
+     * Retrieves the number of bytes of direct memory that the cache has allocated so far. Slabs are never released, so
+     * this only grows.
+     *
+     * @return A size in bytes.
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) this.allocator.getSlabCount() * this.allocator.getSlabSize();
+    }
+
+    /**
+     * Retrieves the number of bytes of file contents that the cache is holding.
+     *
+     * @return A size in bytes.
+     */
+    public synchronized long getStoredBytes() {
+        return this.storedBytes;
+    }
+
+    /**
+     * Retrieves the fraction of the cache's memory that holds file contents.
+     *
+     * @return A value from 0 to 1.
+     */
+    public synchronized double getOccupancy() {
+        return (double) this.storedBytes / getMaxSize();
+    }
+
+    /**
+     * Retrieves the fraction of the chunks in use that is wasted because files are rounded up to the size of their
+     * class. The waste is bounded by the growth factor between classes.
+     *
+     * @return A value from 0 to 1, or 0 if the cache is empty.
+     */
+    public synchronized double getFragmentation() {
+        return this.chunkBytes == 0 ? 0 : 1 - (double) this.storedBytes / this.chunkBytes;
+    }
+
+    /**
+     * Retrieves the number of files that are currently cached.
+     *
+     * @return A number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Retrieves the number of slabs that have been allocated.
+     *
+     * @return A number of slabs.
+     */
+    public synchronized int getSlabCount() {
+        return this.allocator.getSlabCount();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that reused a cached file.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that loaded the file, either because it was not cached or because it had
+     * changed.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Retrieves the number of files that were removed to make room for another.
+     *
+     * @return A number of files.
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Retrieves the number of slabs that were taken from one size class and given to another.
+     *
+     * @return A number of slabs.
+     */
+    public long getReassignmentCount() {
+        return this.reassignments.get();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that could not cache the file because the files in use left no room.
+     *
+     * @return A number of acquisitions.
+     */
+    public long getRejectionCount() {
+        return this.rejections.get();
+    }
+}
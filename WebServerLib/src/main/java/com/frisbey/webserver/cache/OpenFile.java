@@ -0,0 +1,122 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * An open file that is shared through a {@link com.frisbey.webserver.cache.FileChannelCache}. Every request that
+ * acquires the file must release it once it is done; the file is only closed when it has left the cache and no
+ * request is still using it.
+ *
+ * <p>Requests must only use positional reads and transfers, such as
+ * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, since the
+ * channel's own position is shared by every request that is sending the file.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileChannelCache
+ */
+public class OpenFile {
+
+    // the full local path of the file
+    private String path;
+
+    // the open file
+    private FileChannel channel;
+
+    // the size of the file, in bytes, when it was opened
+    private long length;
+
+    // the modification time of the file, in milliseconds since the epoch, when it was opened
+    private long lastModified;
+
+    // the number of requests that are using the file. guarded by the cache that owns the file
+    int references;
+
+    // the value of System.nanoTime() when the file was last acquired. guarded by the cache that owns the file
+    long lastUsed;
+
+    // whether the file has left the cache and must be closed once it is no longer in use
+    boolean retired;
+
+    /**
+     * Initializes a new entry.
+     *
+     * @param path The full local path of the file.
+     * @param channel The open file.
+     * @param length The size of the file in bytes.
+     * @param lastModified The modification time of the file in milliseconds since the epoch.
+     */
+    OpenFile(String path, FileChannel channel, long length, long lastModified) {
+        this.path = path;
+        this.channel = channel;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Retrieves the full local path of the file.
+     *
+     * @return A local file path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Retrieves the open file. The channel must not be closed, and its position must not be used.
+     *
+     * @return A channel that is open for reading.
+     */
+    public FileChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Retrieves the size of the file when it was opened.
+     *
+     * @return A size in bytes.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Determines whether the entry still describes a file with the given attributes and can still be read. A shared
+     * channel is closed for every request if a thread using it is interrupted, so a closed channel is treated as
+     * stale.
+     *
+     * @param length The current size of the file.
+     * @param lastModified The current modification time of the file.
+     * @return true if the file has not changed since it was opened.
+     */
+    boolean matches(long length, long lastModified) {
+        return this.length == length && this.lastModified == lastModified && this.channel.isOpen();
+    }
+
+    /**
+     * Closes the file.
+     */
+    void close() {
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            // nothing was written, so there is nothing to lose
+        }
+    }
+}
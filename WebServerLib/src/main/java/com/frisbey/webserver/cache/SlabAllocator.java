@@ -0,0 +1,361 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Divides direct memory into fixed size slabs, and each slab into equal chunks of one of a series of size classes, in
+ * the manner of memcached. A value is stored in a chunk of the smallest class that fits it, which wastes at most the
+ * growth factor between classes but never fragments the memory between values: any freed chunk can be reused by the
+ * next value of its class.
+ *
+ * <p>A slab belongs to one size class at a time. Slabs are allocated on demand until the memory limit is reached, and
+ * a slab whose chunks are all free can be given to another class. Chunks are identified by an address, which is the
+ * slab's number multiplied by the slab size plus the chunk's offset in the slab. The free chunks of each class are
+ * linked through their own first eight bytes, so the allocator uses no heap memory per chunk.</p>
+ *
+ * <p>The allocator is not thread safe; the cache that owns it synchronizes every call.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.OffHeapFileCache
+ */
+class SlabAllocator {
+
+    // marks the end of a free list
+    private static final long kNone = -1;
+
+    // the number of bytes in each slab, which is also the size of the largest chunk
+    private int slabSize;
+
+    // the size of the chunks of each class, smallest first
+    private int[] chunkSizes;
+
+    // the slabs that have been allocated, by number
+    private List<ByteBuffer> slabs;
+
+    // the class that each slab belongs to, by number
+    private int[] slabClasses;
+
+    // the number of chunks of each slab that are in use, by number
+    private int[] slabUsage;
+
+    // the address of the first free chunk of each class, or kNone
+    private long[] freeHeads;
+
+    // the number of free chunks of each class
+    private int[] freeCounts;
+
+    /**
+     * Initializes an allocator that has not allocated any memory yet.
+     *
+     * @param maxSize The number of bytes of direct memory that may be allocated, rounded down to a whole slab.
+     * @param slabSize The number of bytes in each slab, and the size of the largest chunk.
+     * @param minChunkSize The size of the smallest chunk. Must be at least eight bytes.
+     * @param growthFactor The ratio between the sizes of consecutive classes. Must be greater than 1.
+     */
+    SlabAllocator(long maxSize, int slabSize, int minChunkSize, double growthFactor) {
+        List<Integer> sizes = new ArrayList<Integer>();
+
+        for (double size = minChunkSize; size < slabSize; size *= growthFactor) {
+            // chunks are kept eight byte aligned, which also keeps the free list links aligned
+            int aligned = ((int) Math.ceil(size) + 7) & ~7;
+
+            if (sizes.isEmpty() || aligned > sizes.get(sizes.size() - 1)) {
+                sizes.add(aligned);
+            }
+        }
+
+        if (sizes.isEmpty() || sizes.get(sizes.size() - 1) < slabSize) {
+            sizes.add(slabSize);
+        }
+
+        this.chunkSizes = new int[sizes.size()];
+
+        for (int i = 0; i < this.chunkSizes.length; i++) {
+            this.chunkSizes[i] = sizes.get(i);
+        }
+
+        int maxSlabs = (int) Math.min(Integer.MAX_VALUE, maxSize / slabSize);
+
+        this.slabSize = slabSize;
+        this.slabs = new ArrayList<ByteBuffer>();
+        this.slabClasses = new int[maxSlabs];
+        this.slabUsage = new int[maxSlabs];
+        this.freeHeads = new long[this.chunkSizes.length];
+        this.freeCounts = new int[this.chunkSizes.length];
+
+        Arrays.fill(this.freeHeads, kNone);
+    }
+
+    /**
+     * Finds the class whose chunks best fit a value.
+     *
+     * @param length The size of the value.
+     * @return The index of the smallest class whose chunks can hold the value, or -1 if it is larger than a slab.
+     */
+    int getSizeClass(long length) {
+        if (length > this.slabSize) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = this.chunkSizes.length - 1;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (this.chunkSizes[middle] < length) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Allocates a chunk of a class, taking a new slab for the class if it has no free chunks and the memory limit
+     * allows it.
+     *
+     * @param sizeClass The class of the chunk.
+     * @return The address of the chunk, or -1 if the class has no free chunks and no slab can be added.
+     */
+    long allocate(int sizeClass) {
+        if (this.freeHeads[sizeClass] == kNone) {
+            if (this.slabs.size() >= this.slabClasses.length) {
+                return kNone;
+            }
+
+            this.slabs.add(ByteBuffer.allocateDirect(this.slabSize));
+            assign(this.slabs.size() - 1, sizeClass);
+        }
+
+        long address = this.freeHeads[sizeClass];
+        this.freeHeads[sizeClass] = readLink(address);
+        this.freeCounts[sizeClass]--;
+        this.slabUsage[getSlab(address)]++;
+
+        return address;
+    }
+
+    /**
+     * Returns a chunk to its class.
+     *
+     * @param address The address of the chunk.
+     * @param sizeClass The class of the chunk.
+     */
+    void free(long address, int sizeClass) {
+        writeLink(address, this.freeHeads[sizeClass]);
+        this.freeHeads[sizeClass] = address;
+        this.freeCounts[sizeClass]++;
+        this.slabUsage[getSlab(address)]--;
+    }
+
+    /**
+     * Finds a slab that has no chunks in use and belongs to a class other than the given one.
+     *
+     * @param sizeClass The class that needs a slab.
+     * @return The number of the slab, or -1 if every other slab has chunks in use.
+     */
+    int findEmptySlab(int sizeClass) {
+        for (int slab = 0; slab < this.slabs.size(); slab++) {
+            if (this.slabUsage[slab] == 0 && this.slabClasses[slab] != sizeClass) {
+                return slab;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gives a slab whose chunks are all free to another class.
+     *
+     * @param slab The number of the slab. None of its chunks may be in use.
+     * @param sizeClass The class that will own the slab.
+     */
+    void reassign(int slab, int sizeClass) {
+        int previousClass = this.slabClasses[slab];
+        long previous = kNone;
+        long current = this.freeHeads[previousClass];
+
+        // unlink the slab's chunks from the free list of the class that owned it
+        while (current != kNone) {
+            long next = readLink(current);
+
+            if (getSlab(current) == slab) {
+                if (previous == kNone) {
+                    this.freeHeads[previousClass] = next;
+                } else {
+                    writeLink(previous, next);
+                }
+
+                this.freeCounts[previousClass]--;
+            } else {
+                previous = current;
+            }
+
+            current = next;
+        }
+
+        assign(slab, sizeClass);
+    }
+
+    /**
+     * Divides a slab into chunks of a class and adds them to the class's free list.
+     *
+     * @param slab The number of the slab.
+     * @param sizeClass The class that will own the slab.
+     */
+    private void assign(int slab, int sizeClass) {
+        int chunkSize = this.chunkSizes[sizeClass];
+        int chunks = this.slabSize / chunkSize;
+        long base = (long) slab * this.slabSize;
+
+        // link the chunks in reverse so that they are handed out in address order
+        for (int i = chunks - 1; i >= 0; i--) {
+            long address = base + (long) i * chunkSize;
+            writeLink(address, this.freeHeads[sizeClass]);
+            this.freeHeads[sizeClass] = address;
+        }
+
+        this.slabClasses[slab] = sizeClass;
+        this.slabUsage[slab] = 0;
+        this.freeCounts[sizeClass] += chunks;
+    }
+
+    /**
+     * Creates a buffer that covers the beginning of a chunk. The buffer shares the slab's memory.
+     *
+     * @param address The address of the chunk.
+     * @param length The number of bytes that the buffer covers. Must not exceed the chunk's size.
+     * @return A buffer whose position is 0 and whose limit is the given length.
+     */
+    ByteBuffer getBuffer(long address, int length) {
+        return this.slabs.get(getSlab(address)).slice(getOffset(address), length);
+    }
+
+    /**
+     * Finds the slab that holds a chunk.
+     *
+     * @param address The address of the chunk.
+     * @return The number of the slab.
+     */
+    int getSlab(long address) {
+        return (int) (address / this.slabSize);
+    }
+
+    /**
+     * Retrieves the size of the chunks of a class.
+     *
+     * @param sizeClass The class.
+     * @return A size in bytes.
+     */
+    int getChunkSize(int sizeClass) {
+        return this.chunkSizes[sizeClass];
+    }
+
+    /**
+     * Retrieves the number of size classes.
+     *
+     * @return A number of classes.
+     */
+    int getSizeClassCount() {
+        return this.chunkSizes.length;
+    }
+
+    /**
+     * Retrieves the number of bytes in each slab.
+     *
+     * @return A size in bytes.
+     */
+    int getSlabSize() {
+        return this.slabSize;
+    }
+
+    /**
+     * Retrieves the number of slabs that have been allocated.
+     *
+     * @return A number of slabs.
+     */
+    int getSlabCount() {
+        return this.slabs.size();
+    }
+
+    /**
+     * Retrieves the number of chunks of a slab that are in use.
+     *
+     * @param slab The number of the slab.
+     * @return A number of chunks.
+     */
+    int getSlabUsage(int slab) {
+        return this.slabUsage[slab];
+    }
+
+    /**
+     * Retrieves the number of slabs that may be allocated.
+     *
+     * @return A number of slabs.
+     */
+    int getMaxSlabs() {
+        return this.slabClasses.length;
+    }
+
+    /**
+     * Retrieves the number of free chunks of a class.
+     *
+     * @param sizeClass The class.
+     * @return A number of chunks.
+     */
+    int getFreeCount(int sizeClass) {
+        return this.freeCounts[sizeClass];
+    }
+
+    /**
+     * Finds the offset of a chunk in its slab.
+     *
+     * @param address The address of the chunk.
+     * @return An offset in bytes.
+     */
+    private int getOffset(long address) {
+        return (int) (address % this.slabSize);
+    }
+
+    /**
+     * Reads the address of the next free chunk from a free chunk.
+     *
+     * @param address The address of the free chunk.
+     * @return The address of the next free chunk, or kNone.
+     */
+    private long readLink(long address) {
+        return this.slabs.get(getSlab(address)).getLong(getOffset(address));
+    }
+
+    /**
+     * Writes the address of the next free chunk into a free chunk.
+     *
+     * @param address The address of the free chunk.
+     * @param next The address of the next free chunk, or kNone.
+     */
+    private void writeLink(long address, long next) {
+        this.slabs.get(getSlab(address)).putLong(getOffset(address), next);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerEngine;
+import com.frisbey.webserver.request.HttpRequestParser;
+import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.WebServerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**
+ * A tiny server that publishes the metrics of a {@link com.frisbey.webserver.WebServerEngine} for Prometheus to scrape.
+ * The admin server listens on a port of its own and serves a single path, {@link #kMetricsPath}, so the metrics are
+ * never exposed to the clients of the main server.
+ *
+ * <p>Scrapes are served one at a time on the thread that runs the admin server, and never touch the main server's
+ * threads or queues. Taking a snapshot only reads the server's counters, so a scrape cannot stall the workers that
+ * record them, even when the main server is fully loaded. Every response closes its connection.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.metrics.PrometheusFormatter
+ */
+public class AdminServer implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminServer.class);
+
+    /**
+     * The path at which the metrics are published.
+     */
+    public static final String kMetricsPath = "/__metrics";
+
+    // the largest request that a scraper may send
+    private static final int kMaxRequestSize = 8 * 1024;
+
+    // how long a scraper may take to send its request, in milliseconds
+    private static final int kReadTimeout = 5000;
+
+    // the socket on which scrapes are received
+    private ServerSocket serverSocket;
+
+    // the server whose metrics are published
+    private WebServerEngine server;
+
+    // renders the metrics. only used by the thread that runs the admin server
+    private PrometheusFormatter formatter;
+
+    // the parser that reads each scrape request. only used by the thread that runs the admin server
+    private HttpRequestParser parser;
+
+    // the encoded body of the last scrape, reused so that a scrape only allocates when the metrics outgrow it
+    private byte[] body;
+
+    // stores whether or not the admin server is stopped
+    private volatile boolean isStopped;
+
+    /**
+     * Initializes an admin server. The admin server will not accept scrapes until it is run.
+     *
+     * @param server The server whose metrics will be published.
+     * @param listenSocket The socket on which scrapes will be received. The admin server will assume ownership of the
+     *                     socket and will close it when it is stopped.
+     */
+    public AdminServer(WebServerEngine server, ServerSocket listenSocket) {
+        if (server == null || listenSocket == null) {
+            throw new IllegalArgumentException("A server and a listening socket are required");
+        }
+
+        this.server = server;
+        this.serverSocket = listenSocket;
+        this.formatter = new PrometheusFormatter();
+        this.parser = new HttpRequestParser(kMaxRequestSize);
+        this.body = new byte[4096];
+        this.isStopped = false;
+    }
+
+    /**
+     * Accepts and answers scrapes until the admin server is stopped.
+     */
+    @Override
+    public void run() {
+        logger.debug("entering");
+
+        while (!isStopped()) {
+            Socket clientSocket;
+
+            try {
+                clientSocket = this.serverSocket.accept();
+            } catch (IOException ex) {
+                if (!isStopped()) {
+                    logger.error("Error accepting admin connection", ex);
+                }
+
+                continue;
+            }
+
+            try {
+                clientSocket.setSoTimeout(kReadTimeout);
+                getResponse(readRequest(clientSocket.getInputStream())).writeResponse(clientSocket.getOutputStream());
+            } catch (SocketTimeoutException ex) {
+                logger.debug("scraper did not send its request before the timeout expired");
+            } catch (IOException ex) {
+                logger.debug("unable to answer scrape", ex);
+            } finally {
+                try {
+                    clientSocket.close();
+                } catch (IOException ex) {
+                    logger.debug("unable to close admin connection", ex);
+                }
+            }
+        }
+
+        logger.debug("admin server stopped");
+    }
+
+    /**
+     * Reads a scrape request.
+     *
+     * @param input The stream from which the request will be read.
+     * @return The parser, which has finished reading the request either successfully or not.
+     * @throws IOException thrown if there are issues reading from the connection.
+     */
+    private HttpRequestParser readRequest(InputStream input) throws IOException {
+        byte[] data = new byte[1024];
+        ByteBuffer received = ByteBuffer.wrap(data, 0, 0);
+
+        this.parser.reset();
+
+        while (!this.parser.parse(received)) {
+            int read = input.read(data);
+
+            if (read < 0) {
+                this.parser.endOfInput();
+            } else {
+                received.clear();
+                received.limit(read);
+            }
+        }
+
+        return this.parser;
+    }
+
+    /**
+     * Produces the response to a scrape request.
+     *
+     * @param parser The parser that read the request.
+     * @return The metrics if the request was for {@link #kMetricsPath}, otherwise an error response.
+     */
+    private WebServerResponse getResponse(HttpRequestParser parser) {
+        if (!parser.isComplete()) {
+            return createResponse(HttpResponse.BadRequest);
+        }
+
+        HttpMethod method = parser.getMethod();
+
+        if (method == null) {
+            return createResponse(HttpResponse.NotImplemented);
+        }
+
+        String target = parser.getTarget();
+        int query = target.indexOf('?');
+
+        if (!kMetricsPath.equals(query >= 0 ? target.substring(0, query) : target)) {
+            return createResponse(HttpResponse.NotFound);
+        }
+
+        int length = encode(this.formatter.format(this.server.getMetricsSnapshot()));
+        WebServerResponse response = createResponse(HttpResponse.OK);
+        response.setHeaderValue("Content-Type", PrometheusFormatter.kContentType);
+        response.setHeaderValue("Content-Length", Integer.toString(length));
+
+        if (method == HttpMethod.GET) {
+            response.setBody(new ByteArrayBodySource(this.body, 0, length));
+        }
+
+        return response;
+    }
+
+    /**
+     * Creates a response that closes its connection.
+     *
+     * @param status The status of the response.
+     * @return A response with no body.
+     */
+    private static WebServerResponse createResponse(HttpResponse status) {
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, status, new WebServerHeader());
+        response.setHeaderValue("Cache-Control", "no-store");
+
+        return response;
+    }
+
+    /**
+     * Encodes rendered metrics into the reusable body buffer. The exposition text is plain ASCII, so each character
+     * is copied as a single byte.
+     *
+     * @param text The rendered metrics.
+     * @return The number of bytes of the buffer that hold the text.
+     */
+    private int encode(CharSequence text) {
+        int length = text.length();
+
+        if (this.body.length < length) {
+            this.body = new byte[Math.max(length, this.body.length * 2)];
+        }
+
+        for (int i = 0; i < length; i++) {
+            this.body[i] = (byte) text.charAt(i);
+        }
+
+        return length;
+    }
+
+    /**
+     * Retrieves the port on which the admin server is listening.
+     *
+     * @return A port number.
+     */
+    public int getLocalPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Instructs the admin server to stop accepting scrapes.
+     *
+     * @throws IOException thrown if there are issues closing the listening socket.
+     */
+    public void stop() throws IOException {
+        this.isStopped = true;
+        this.serverSocket.close();
+    }
+
+    /**
+     * Returns a value indicating whether the admin server is running or not.
+     *
+     * @return true if the admin server is NOT running.
+     */
+    public boolean isStopped() {
+        return this.isStopped;
+    }
+}
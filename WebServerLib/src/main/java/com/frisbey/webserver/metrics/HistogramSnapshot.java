@@ -0,0 +1,141 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+/**
+ * The counts of a {@link com.frisbey.webserver.metrics.LatencyHistogram} at a single point in time.
+ *
+ * @author Mark Frisbey
+ */
+public class HistogramSnapshot {
+
+    // the inclusive upper bound of each bucket, in microseconds. shared with the histogram and never modified
+    private long[] bounds;
+
+    // the number of values in each bucket. the last bucket holds values above the largest bound
+    private long[] counts;
+
+    // the total number of values
+    private long count;
+
+    // the total of all values, in nanoseconds
+    private long sum;
+
+    /**
+     * Initializes a snapshot.
+     *
+     * @param bounds The inclusive upper bound of each bucket, in microseconds.
+     * @param counts The number of values in each bucket, with one more entry than there are bounds.
+     * @param sum The total of all values, in nanoseconds.
+     */
+    HistogramSnapshot(long[] bounds, long[] counts, long sum) {
+        this.bounds = bounds;
+        this.counts = counts;
+        this.sum = sum;
+
+        for (long bucketCount : counts) {
+            this.count += bucketCount;
+        }
+    }
+
+    /**
+     * Retrieves the number of buckets, including the bucket for values above the largest bound.
+     *
+     * @return A number of buckets.
+     */
+    public int getBucketCount() {
+        return this.counts.length;
+    }
+
+    /**
+     * Retrieves the inclusive upper bound of a bucket.
+     *
+     * @param index The position of the bucket.
+     * @return The bound in microseconds, or Long.MAX_VALUE for the last bucket.
+     */
+    public long getBucketBound(int index) {
+        return index < this.bounds.length ? this.bounds[index] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Retrieves the number of values in a bucket, not including the buckets below it.
+     *
+     * @param index The position of the bucket.
+     * @return A number of values.
+     */
+    public long getBucketValueCount(int index) {
+        return this.counts[index];
+    }
+
+    /**
+     * Retrieves the total number of recorded values.
+     *
+     * @return A number of values.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Retrieves the total of all recorded values.
+     *
+     * @return A time in nanoseconds.
+     */
+    public long getSum() {
+        return this.sum;
+    }
+
+    /**
+     * Retrieves the mean of the recorded values.
+     *
+     * @return A time in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMean() {
+        return this.count > 0 ? this.sum / this.count : 0;
+    }
+
+    /**
+     * Estimates a percentile of the recorded values. The estimate is the upper bound of the bucket that contains the
+     * percentile, so it is never lower than the true value.
+     *
+     * @param percentile The percentile to estimate, from 0 to 100.
+     * @return A time in microseconds, 0 if nothing was recorded, or Long.MAX_VALUE if the percentile is above the
+     *         largest bound.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(this.count * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+
+            if (seen >= target) {
+                return getBucketBound(i);
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of request latencies that can be recorded from any number of threads without contention. Each bucket is
+ * a {@link java.util.concurrent.atomic.LongAdder}, which spreads concurrent increments across internal cells instead of
+ * having every worker thread compete for a single counter, so recording a latency never blocks and rarely even
+ * retries.
+ *
+ * <p>Buckets have fixed upper bounds, chosen to match the bounds commonly used for HTTP latency in Prometheus. Reading
+ * the histogram sums the cells of each bucket into a {@link com.frisbey.webserver.metrics.HistogramSnapshot}; values
+ * recorded while a snapshot is being taken may or may not be included, but none are lost.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.metrics.ServerMetrics
+ */
+public class LatencyHistogram {
+
+    // the default upper bounds of the buckets, in microseconds, from a quarter of a millisecond to ten seconds
+    private static final long[] kDefaultBounds = {
+            250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000
+    };
+
+    // the inclusive upper bound of each bucket, in microseconds, in ascending order
+    private long[] bounds;
+
+    // the number of values in each bucket. the last bucket holds values above the largest bound
+    private LongAdder[] buckets;
+
+    // the total of all recorded values, in nanoseconds
+    private LongAdder sum;
+
+    /**
+     * Initializes an empty histogram with the default buckets.
+     */
+    public LatencyHistogram() {
+        this(kDefaultBounds);
+    }
+
+    /**
+     * Initializes an empty histogram.
+     *
+     * @param bounds The inclusive upper bound of each bucket, in microseconds. Must be in ascending order.
+     */
+    public LatencyHistogram(long[] bounds) {
+        if (bounds == null || bounds.length == 0) {
+            throw new IllegalArgumentException("At least one bucket bound is required");
+        }
+
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be in ascending order");
+            }
+        }
+
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        this.sum = new LongAdder();
+
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos The latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        // round up so that a value just above a bound is not counted as being within it
+        int index = Arrays.binarySearch(this.bounds, (nanos + 999) / 1000);
+
+        // a value between two bounds belongs to the bucket of the larger bound
+        this.buckets[index >= 0 ? index : -index - 1].increment();
+        this.sum.add(nanos);
+    }
+
+    /**
+     * Takes a snapshot of the histogram's current counts.
+     *
+     * @return A snapshot that will not change as more values are recorded.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[this.buckets.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+
+        return new HistogramSnapshot(this.bounds, counts, this.sum.sum());
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+
+/**
+ * The metrics of a server at a single point in time, as taken by {@link ServerMetrics#snapshot(int)}. Snapshots never
+ * change, so they can be handed to reporting threads without any coordination with the server.
+ *
+ * @author Mark Frisbey
+ */
+public class MetricsSnapshot {
+
+    // the number of requests for each method by ordinal, followed by requests whose method was unknown
+    private long[] requestsByMethod;
+
+    // the number of responses for each status by ordinal
+    private long[] responsesByStatus;
+
+    // the latency of requests for each class of status code, where index 0 holds 1xx responses
+    private HistogramSnapshot[] latencyByStatusClass;
+
+    // the number of response bytes written to clients
+    private long bytesWritten;
+
+    // the number of connections accepted by the server
+    private long connectionsAccepted;
+
+    // the number of connections turned away because the server was out of capacity
+    private long connectionsRejected;
+
+    // the number of connections that were open
+    private long activeConnections;
+
+    // the number of connections or requests that were waiting for a thread
+    private int queuedConnections;
+
+    /**
+     * Initializes a snapshot. Only {@link com.frisbey.webserver.metrics.ServerMetrics} creates snapshots, and it hands
+     * over ownership of the arrays.
+     *
+     * @param requestsByMethod The number of requests for each method, followed by requests with an unknown method.
+     * @param responsesByStatus The number of responses for each status.
+     * @param latencyByStatusClass The latency of requests for each class of status code.
+     * @param bytesWritten The number of response bytes written to clients.
+     * @param connectionsAccepted The number of connections accepted by the server.
+     * @param connectionsRejected The number of connections turned away by the server.
+     * @param activeConnections The number of connections that were open.
+     * @param queuedConnections The number of connections or requests that were waiting for a thread.
+     */
+    MetricsSnapshot(long[] requestsByMethod, long[] responsesByStatus, HistogramSnapshot[] latencyByStatusClass,
+                    long bytesWritten, long connectionsAccepted, long connectionsRejected, long activeConnections,
+                    int queuedConnections) {
+        this.requestsByMethod = requestsByMethod;
+        this.responsesByStatus = responsesByStatus;
+        this.latencyByStatusClass = latencyByStatusClass;
+        this.bytesWritten = bytesWritten;
+        this.connectionsAccepted = connectionsAccepted;
+        this.connectionsRejected = connectionsRejected;
+        this.activeConnections = activeConnections;
+        this.queuedConnections = queuedConnections;
+    }
+
+    /**
+     * Retrieves the total number of requests that were answered.
+     *
+     * @return A number of requests.
+     */
+    public long getRequestCount() {
+        long total = 0;
+
+        for (long count : this.requestsByMethod) {
+            total += count;
+        }
+
+        return total;
+    }
+
+    /**
+     * Retrieves the number of requests that were answered for a method.
+     *
+     * @param method The method of the requests, or null for requests whose method could not be determined.
+     * @return A number of requests.
+     */
+    public long getRequestCount(HttpMethod method) {
+        return this.requestsByMethod[method != null ? method.ordinal() : this.requestsByMethod.length - 1];
+    }
+
+    /**
+     * Retrieves the number of responses that were sent with a status.
+     *
+     * @param status The status of the responses.
+     * @return A number of responses.
+     */
+    public long getResponseCount(HttpResponse status) {
+        return this.responsesByStatus[status.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of responses that were sent with a status code in a class, such as 4 for every 4xx code.
+     *
+     * @param statusClass The first digit of the status codes, from 1 to 5.
+     * @return A number of responses.
+     */
+    public long getResponseCount(int statusClass) {
+        return getLatency(statusClass).getCount();
+    }
+
+    /**
+     * Retrieves the latency of requests whose status code was in a class.
+     *
+     * @param statusClass The first digit of the status codes, from 1 to 5.
+     * @return The latency histogram of the class.
+     */
+    public HistogramSnapshot getLatency(int statusClass) {
+        if (statusClass < 1 || statusClass > this.latencyByStatusClass.length) {
+            throw new IllegalArgumentException("Status class must be between 1 and " + this.latencyByStatusClass.length);
+        }
+
+        return this.latencyByStatusClass[statusClass - 1];
+    }
+
+    /**
+     * Retrieves the number of response bytes that were written to clients, including headers.
+     *
+     * @return A number of bytes.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Retrieves the number of connections that the server accepted.
+     *
+     * @return A number of connections.
+     */
+    public long getConnectionsAccepted() {
+        return this.connectionsAccepted;
+    }
+
+    /**
+     * Retrieves the number of connections that were turned away because the server was out of capacity.
+     *
+     * @return A number of connections.
+     */
+    public long getConnectionsRejected() {
+        return this.connectionsRejected;
+    }
+
+    /**
+     * Retrieves the number of connections that were open when the snapshot was taken.
+     *
+     * @return A number of connections.
+     */
+    public long getActiveConnections() {
+        return this.activeConnections;
+    }
+
+    /**
+     * Retrieves the number of connections or requests that were waiting for a thread when the snapshot was taken.
+     *
+     * @return A number of connections.
+     */
+    public int getQueuedConnections() {
+        return this.queuedConnections;
+    }
+
+    /**
+     * Summarizes the snapshot on a single line, suitable for periodic logging.
+     *
+     * @return A description of the snapshot.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("requests=").append(getRequestCount());
+
+        for (int i = 1; i <= this.latencyByStatusClass.length; i++) {
+            HistogramSnapshot latency = getLatency(i);
+
+            if (latency.getCount() > 0) {
+                builder.append(' ').append(i).append("xx=").append(latency.getCount())
+                        .append(" (p50 ").append(formatMicros(latency.getPercentile(50)))
+                        .append(" p99 ").append(formatMicros(latency.getPercentile(99))).append(')');
+            }
+        }
+
+        builder.append(" bytes=").append(this.bytesWritten)
+                .append(" accepted=").append(this.connectionsAccepted)
+                .append(" rejected=").append(this.connectionsRejected)
+                .append(" active=").append(this.activeConnections)
+                .append(" queued=").append(this.queuedConnections);
+
+        return builder.toString();
+    }
+
+    /**
+     * Formats a bucket bound for display.
+     *
+     * @param micros A time in microseconds, or Long.MAX_VALUE for the overflow bucket.
+     * @return The time in milliseconds, such as "<=2.5ms", or ">max" for the overflow bucket.
+     */
+    private static String formatMicros(long micros) {
+        if (micros == Long.MAX_VALUE) {
+            return ">max";
+        }
+
+        return "<=" + (micros % 1000 == 0 ? String.valueOf(micros / 1000) : String.valueOf(micros / 1000.0)) + "ms";
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+
+import java.math.BigDecimal;
+
+/**
+ * Renders a {@link com.frisbey.webserver.metrics.MetricsSnapshot} in the Prometheus text exposition format, version
+ * 0.0.4. Every label set and bucket bound is the same from one scrape to the next, so the formatter builds those
+ * strings once and each scrape only appends numbers to a reused buffer. Rendering therefore creates almost no garbage
+ * and takes a few microseconds, which keeps frequent scrapes cheap.
+ *
+ * <p>Instances reuse their buffer between calls and are not thread safe. Each thread that serves scrapes should have
+ * its own formatter.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.metrics.AdminServer
+ */
+public class PrometheusFormatter {
+
+    /**
+     * The content type of the exposition format.
+     */
+    public static final String kContentType = "text/plain; version=0.0.4; charset=utf-8";
+
+    // the prefix shared by the names of every metric
+    private static final String kMetricPrefix = "webserver_";
+
+    // the name of the histogram of request latency
+    private static final String kLatencyMetric = kMetricPrefix + "request_duration_seconds";
+
+    // the number of nanoseconds in a second
+    private static final double kNanosPerSecond = 1000000000.0;
+
+    // the label set of each method's request count, by ordinal, followed by the label set of unknown methods
+    private String[] methodLabels;
+
+    // the label set of each status's response count, by ordinal
+    private String[] statusLabels;
+
+    // the label set of each status class, where index 0 holds 1xx
+    private String[] classLabels;
+
+    // the bucket label sets of each status class, built from the first snapshot because the bounds belong to the
+    // histograms
+    private String[][] bucketLabels;
+
+    // the buffer that scrapes are rendered into
+    private StringBuilder buffer;
+
+    /**
+     * Initializes a formatter.
+     */
+    public PrometheusFormatter() {
+        HttpMethod[] methods = HttpMethod.values();
+        HttpResponse[] statuses = HttpResponse.values();
+
+        this.methodLabels = new String[methods.length + 1];
+        this.statusLabels = new String[statuses.length];
+        this.classLabels = new String[ServerMetrics.kStatusClassCount];
+        this.bucketLabels = new String[ServerMetrics.kStatusClassCount][];
+        this.buffer = new StringBuilder(4096);
+
+        for (HttpMethod method : methods) {
+            this.methodLabels[method.ordinal()] = "{method=\"" + method.getMethod() + "\"} ";
+        }
+
+        this.methodLabels[methods.length] = "{method=\"unknown\"} ";
+
+        for (HttpResponse status : statuses) {
+            this.statusLabels[status.ordinal()] = "{code=\"" + status.getCode() + "\"} ";
+        }
+
+        for (int i = 0; i < this.classLabels.length; i++) {
+            this.classLabels[i] = "{class=\"" + (i + 1) + "xx\"} ";
+        }
+    }
+
+    /**
+     * Renders a snapshot. The returned text is only valid until the next call.
+     *
+     * @param snapshot The metrics to render.
+     * @return The snapshot in the Prometheus text format.
+     */
+    public CharSequence format(MetricsSnapshot snapshot) {
+        StringBuilder out = this.buffer;
+        out.setLength(0);
+
+        writeHeader(out, "requests_total", "counter", "Requests answered, by method.");
+        HttpMethod[] methods = HttpMethod.values();
+
+        for (HttpMethod method : methods) {
+            writeSample(out, "requests_total", this.methodLabels[method.ordinal()], snapshot.getRequestCount(method));
+        }
+
+        writeSample(out, "requests_total", this.methodLabels[methods.length], snapshot.getRequestCount(null));
+
+        writeHeader(out, "responses_total", "counter", "Responses sent, by status code.");
+
+        for (HttpResponse status : HttpResponse.values()) {
+            writeSample(out, "responses_total", this.statusLabels[status.ordinal()], snapshot.getResponseCount(status));
+        }
+
+        writeHeader(out, "response_bytes_total", "counter", "Response bytes written to clients, including headers.");
+        writeSample(out, "response_bytes_total", " ", snapshot.getBytesWritten());
+
+        writeHeader(out, "connections_accepted_total", "counter", "Connections accepted.");
+        writeSample(out, "connections_accepted_total", " ", snapshot.getConnectionsAccepted());
+
+        writeHeader(out, "connections_rejected_total", "counter", "Connections or requests turned away because the server was out of capacity.");
+        writeSample(out, "connections_rejected_total", " ", snapshot.getConnectionsRejected());
+
+        writeHeader(out, "active_connections", "gauge", "Connections currently open.");
+        writeSample(out, "active_connections", " ", snapshot.getActiveConnections());
+
+        writeHeader(out, "queued_connections", "gauge", "Connections or requests waiting for a thread.");
+        writeSample(out, "queued_connections", " ", snapshot.getQueuedConnections());
+
+        writeHeader(out, "request_duration_seconds", "histogram", "Time taken to answer requests, by status class.");
+
+        for (int i = 0; i < this.classLabels.length; i++) {
+            writeHistogram(out, i, snapshot.getLatency(i + 1));
+        }
+
+        return out;
+    }
+
+    /**
+     * Writes the HELP and TYPE lines that precede a metric's samples.
+     *
+     * @param out The buffer to write to.
+     * @param name The name of the metric, without the shared prefix.
+     * @param type The Prometheus type of the metric.
+     * @param help A description of the metric.
+     */
+    private static void writeHeader(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(kMetricPrefix).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(kMetricPrefix).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a single sample.
+     *
+     * @param out The buffer to write to.
+     * @param name The name of the metric, without the shared prefix.
+     * @param labels The sample's label set followed by a space, or a single space if it has no labels.
+     * @param value The value of the sample.
+     */
+    private static void writeSample(StringBuilder out, String name, String labels, long value) {
+        out.append(kMetricPrefix).append(name).append(labels).append(value).append('\n');
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of one status class's latency histogram.
+     *
+     * @param out The buffer to write to.
+     * @param classIndex The index of the status class, where 0 is 1xx.
+     * @param histogram The latency of the status class.
+     */
+    private void writeHistogram(StringBuilder out, int classIndex, HistogramSnapshot histogram) {
+        String[] labels = getBucketLabels(classIndex, histogram);
+        long cumulative = 0;
+
+        for (int i = 0; i < labels.length; i++) {
+            cumulative += histogram.getBucketValueCount(i);
+            out.append(kLatencyMetric).append("_bucket").append(labels[i]).append(cumulative).append('\n');
+        }
+
+        out.append(kLatencyMetric).append("_sum").append(this.classLabels[classIndex])
+                .append(histogram.getSum() / kNanosPerSecond).append('\n');
+        out.append(kLatencyMetric).append("_count").append(this.classLabels[classIndex])
+                .append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Retrieves the label set of each bucket of a status class's histogram, building them the first time.
+     *
+     * @param classIndex The index of the status class, where 0 is 1xx.
+     * @param histogram The latency of the status class.
+     * @return The label set of each bucket, each followed by a space.
+     */
+    private String[] getBucketLabels(int classIndex, HistogramSnapshot histogram) {
+        String[] labels = this.bucketLabels[classIndex];
+
+        if (labels == null || labels.length != histogram.getBucketCount()) {
+            labels = new String[histogram.getBucketCount()];
+            String statusClass = (classIndex + 1) + "xx";
+
+            for (int i = 0; i < labels.length; i++) {
+                long bound = histogram.getBucketBound(i);
+                String le = bound == Long.MAX_VALUE ? "+Inf" : BigDecimal.valueOf(bound, 6).stripTrailingZeros().toPlainString();
+
+                labels[i] = "{class=\"" + statusClass + "\",le=\"" + le + "\"} ";
+            }
+
+            this.bucketLabels[classIndex] = labels;
+        }
+
+        return labels;
+    }
+}
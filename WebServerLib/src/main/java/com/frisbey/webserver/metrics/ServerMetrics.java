@@ -0,0 +1,203 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the runtime numbers of a server: requests by method and status, bytes sent, connections accepted, rejected
+ * and open, and request latency for each class of status code. A single instance is shared by every thread that
+ * serves requests, so every counter is a {@link java.util.concurrent.atomic.LongAdder}. Recording a request only
+ * increments adders, which never block and keep concurrent workers from fighting over a shared cache line; the cost of
+ * combining the adders' cells is paid by whoever calls {@link #snapshot(int)}.
+ *
+ * <p>The metrics are a best effort view of a running server. A snapshot taken while requests are being recorded may
+ * include some parts of a request, such as its status, but not others, such as its bytes.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.metrics.MetricsSnapshot
+ */
+public class ServerMetrics {
+
+    // the number of classes of status code, 1xx through 5xx
+    static final int kStatusClassCount = 5;
+
+    // the number of requests for each method, indexed by ordinal. the last entry counts requests whose method could
+    // not be determined, such as requests that could not be parsed
+    private LongAdder[] requestsByMethod;
+
+    // the number of responses for each status, indexed by ordinal
+    private LongAdder[] responsesByStatus;
+
+    // the latency of requests for each class of status code, where index 0 holds 1xx responses
+    private LatencyHistogram[] latencyByStatusClass;
+
+    // the number of response bytes written to clients, including headers
+    private LongAdder bytesWritten;
+
+    // the number of connections accepted by the server
+    private LongAdder connectionsAccepted;
+
+    // the number of connections turned away because the server was out of capacity
+    private LongAdder connectionsRejected;
+
+    // the number of connections that are currently open
+    private LongAdder activeConnections;
+
+    /**
+     * Initializes a set of metrics in which every counter is 0.
+     */
+    public ServerMetrics() {
+        this.requestsByMethod = createAdders(HttpMethod.values().length + 1);
+        this.responsesByStatus = createAdders(HttpResponse.values().length);
+        this.latencyByStatusClass = new LatencyHistogram[kStatusClassCount];
+        this.bytesWritten = new LongAdder();
+        this.connectionsAccepted = new LongAdder();
+        this.connectionsRejected = new LongAdder();
+        this.activeConnections = new LongAdder();
+
+        for (int i = 0; i < this.latencyByStatusClass.length; i++) {
+            this.latencyByStatusClass[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records that the server accepted a connection.
+     */
+    public void connectionAccepted() {
+        this.connectionsAccepted.increment();
+    }
+
+    /**
+     * Records that the server turned a connection away because it had no capacity left to serve it.
+     */
+    public void connectionRejected() {
+        this.connectionsRejected.increment();
+    }
+
+    /**
+     * Records that a connection has started being served. Every call must be matched by a call to
+     * {@link #connectionClosed()}.
+     */
+    public void connectionOpened() {
+        this.activeConnections.increment();
+    }
+
+    /**
+     * Records that a connection that was being served has been closed.
+     */
+    public void connectionClosed() {
+        this.activeConnections.decrement();
+    }
+
+    /**
+     * Retrieves the number of connections that the server has accepted, without taking a full snapshot.
+     *
+     * @return A number of connections.
+     */
+    public long getConnectionsAccepted() {
+        return this.connectionsAccepted.sum();
+    }
+
+    /**
+     * Retrieves the number of connections that the server has turned away, without taking a full snapshot.
+     *
+     * @return A number of connections.
+     */
+    public long getConnectionsRejected() {
+        return this.connectionsRejected.sum();
+    }
+
+    /**
+     * Records a request that has been answered.
+     *
+     * @param method The method of the request, or null if the request could not be understood.
+     * @param status The status of the response.
+     * @param bytes The number of bytes written for the response, including its headers.
+     * @param elapsedNanos The time taken to read, process and answer the request, in nanoseconds.
+     */
+    public void recordRequest(HttpMethod method, HttpResponse status, long bytes, long elapsedNanos) {
+        this.requestsByMethod[method != null ? method.ordinal() : this.requestsByMethod.length - 1].increment();
+        this.responsesByStatus[status.ordinal()].increment();
+        this.latencyByStatusClass[getStatusClassIndex(status)].record(elapsedNanos);
+
+        if (bytes > 0) {
+            this.bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the current metrics.
+     *
+     * @param queuedConnections The number of connections or requests that are waiting for a thread. The depth of the
+     *                          queue belongs to the server's thread pool rather than to the metrics, so it is provided
+     *                          by the caller.
+     * @return A snapshot that will not change as more requests are recorded.
+     */
+    public MetricsSnapshot snapshot(int queuedConnections) {
+        long[] methods = new long[this.requestsByMethod.length];
+        long[] statuses = new long[this.responsesByStatus.length];
+        HistogramSnapshot[] latencies = new HistogramSnapshot[this.latencyByStatusClass.length];
+
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = this.requestsByMethod[i].sum();
+        }
+
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = this.responsesByStatus[i].sum();
+        }
+
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = this.latencyByStatusClass[i].snapshot();
+        }
+
+        return new MetricsSnapshot(methods, statuses, latencies, this.bytesWritten.sum(),
+                this.connectionsAccepted.sum(), this.connectionsRejected.sum(), this.activeConnections.sum(),
+                queuedConnections);
+    }
+
+    /**
+     * Determines which latency histogram a response belongs to.
+     *
+     * @param status The status of a response.
+     * @return The index of the status code's class, where 0 is 1xx.
+     */
+    static int getStatusClassIndex(HttpResponse status) {
+        int index = status.getCode() / 100 - 1;
+
+        return Math.max(0, Math.min(kStatusClassCount - 1, index));
+    }
+
+    /**
+     * Creates an array of counters.
+     *
+     * @param count The number of counters.
+     * @return An array of counters that are all 0.
+     */
+    private static LongAdder[] createAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+}
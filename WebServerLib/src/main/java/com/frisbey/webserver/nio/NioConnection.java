@@ -0,0 +1,275 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.nio;
+
+import com.frisbey.webserver.request.HttpRequestParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Holds the state of a single client connection that is being served by a {@link com.frisbey.webserver.nio.NioWebServer}.
+ * Data is fed to the connection's {@link com.frisbey.webserver.request.HttpRequestParser} as it arrives. Once the
+ * parser has finished, the connection can be handed to a worker thread, which builds the request from the parser.
+ * Any bytes that follow the request (for example a pipelined request) are kept for the next request.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.nio.NioEventLoop
+ */
+public class NioConnection {
+
+    // the capacity of a connection's read buffer. requests larger than this are accumulated by the parser
+    private static final int kReadBufferSize = 2048;
+
+    // the channel connected to the client
+    private SocketChannel channel;
+
+    // the event loop that owns the connection
+    private NioEventLoop eventLoop;
+
+    // the key with which the channel is registered with the event loop's selector
+    private SelectionKey key;
+
+    // data from the client that has not been parsed yet. always kept ready for reading
+    private ByteBuffer readBuffer;
+
+    // reads the current request. reused for every request on the connection
+    private HttpRequestParser parser;
+
+    // the number of requests that have been served over the connection
+    private int requestsServed;
+
+    // the last time, in milliseconds, that there was activity on the connection
+    private volatile long lastActivity;
+
+    // whether a worker is currently processing a request from the connection
+    private volatile boolean busy;
+
+    // whether the connection has been closed. a connection can be closed by its client, by its event loop and by the
+    // server shutting down, but must only be counted as closed once. guarded by the connection
+    private boolean isClosed;
+
+    // the selector that a worker uses to wait for the channel to become writable. opened the first time a write has to
+    // wait, and closed with the connection. guarded by the connection
+    private Selector writeSelector;
+
+    /**
+     * Initializes the state for a newly accepted connection.
+     *
+     * @param channel The channel connected to the client. Must be in non-blocking mode.
+     * @param eventLoop The event loop that will own the connection.
+     */
+    public NioConnection(SocketChannel channel, NioEventLoop eventLoop) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.readBuffer = ByteBuffer.allocate(kReadBufferSize);
+        this.readBuffer.flip();
+        this.parser = new HttpRequestParser();
+        this.requestsServed = 0;
+        this.busy = false;
+        this.isClosed = false;
+        touch();
+    }
+
+    /**
+     * Retrieves the channel that is connected to the client.
+     *
+     * @return A socket channel in non-blocking mode.
+     */
+    public SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Retrieves the event loop that owns the connection.
+     *
+     * @return The connection's event loop.
+     */
+    public NioEventLoop getEventLoop() {
+        return this.eventLoop;
+    }
+
+    /**
+     * Retrieves the key with which the connection's channel is registered.
+     *
+     * @return A selection key, or null if the channel has not been registered.
+     */
+    public SelectionKey getKey() {
+        return this.key;
+    }
+
+    /**
+     * Sets the key with which the connection's channel is registered.
+     *
+     * @param key A selection key.
+     */
+    public void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Reads whatever data is currently available from the client. Data that has not been parsed yet is kept.
+     *
+     * @return The number of bytes read, or -1 if the client has closed the connection.
+     * @throws IOException thrown if there are issues reading from the channel.
+     */
+    public int read() throws IOException {
+        this.readBuffer.compact();
+
+        int read;
+
+        try {
+            read = this.channel.read(this.readBuffer);
+        } finally {
+            this.readBuffer.flip();
+        }
+
+        if (read > 0) {
+            touch();
+        }
+
+        return read;
+    }
+
+    /**
+     * Feeds the data that has been received to the parser. Bytes that follow the end of the current request are left
+     * for the next request.
+     *
+     * @return true if the parser has finished, either because the request is complete or because it is invalid.
+     */
+    public boolean parse() {
+        return this.parser.parse(this.readBuffer);
+    }
+
+    /**
+     * Retrieves the parser that is reading the current request.
+     *
+     * @return The connection's parser.
+     */
+    public HttpRequestParser getParser() {
+        return this.parser;
+    }
+
+    /**
+     * Prepares the connection to receive its next request.
+     */
+    public void resetParser() {
+        this.parser.reset();
+    }
+
+    /**
+     * Records that another request has been served over the connection.
+     *
+     * @return The total number of requests served, including the one being recorded.
+     */
+    public int incrementRequestsServed() {
+        return ++this.requestsServed;
+    }
+
+    /**
+     * Retrieves the number of requests that have been served over the connection.
+     *
+     * @return A number of requests.
+     */
+    public int getRequestsServed() {
+        return this.requestsServed;
+    }
+
+    /**
+     * Records that there was activity on the connection.
+     */
+    public void touch() {
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Retrieves the last time there was activity on the connection.
+     *
+     * @return A time in milliseconds.
+     */
+    public long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * Retrieves a value indicating whether a worker is processing a request from the connection.
+     *
+     * @return true if the connection is waiting on a worker.
+     */
+    public boolean isBusy() {
+        return this.busy;
+    }
+
+    /**
+     * Sets a value indicating whether a worker is processing a request from the connection.
+     *
+     * @param busy true if the connection has been handed to a worker.
+     */
+    public void setBusy(boolean busy) {
+        this.busy = busy;
+    }
+
+    /**
+     * Retrieves the selector that the worker writing a response uses to wait for the channel to become writable,
+     * opening it if necessary.
+     *
+     * @return An open selector that belongs to the connection.
+     * @throws IOException thrown if the connection has been closed or a selector cannot be opened.
+     */
+    public synchronized Selector getWriteSelector() throws IOException {
+        if (this.isClosed) {
+            throw new ClosedChannelException();
+        }
+
+        if (this.writeSelector == null) {
+            this.writeSelector = Selector.open();
+        }
+
+        return this.writeSelector;
+    }
+
+    /**
+     * Closes the connection to the client. Closing the channel also cancels its registration with the event loop, and
+     * the connection's write selector is closed with it.
+     */
+    public synchronized void close() {
+        if (this.isClosed) {
+            return;
+        }
+
+        this.isClosed = true;
+        this.eventLoop.getMetrics().connectionClosed();
+
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            // nothing else can be done with the connection at this point
+        }
+
+        if (this.writeSelector != null) {
+            try {
+                this.writeSelector.close();
+            } catch (IOException ex) {
+                // the connection is already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.nio;
+
+import com.frisbey.webserver.metrics.ServerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Watches a group of client connections for incoming data using a single {@link java.nio.channels.Selector}. An event
+ * loop never blocks on an individual client; it reads whatever data is available, and only once a complete request has
+ * arrived is the connection handed to the {@link com.frisbey.webserver.nio.NioWebServer} for processing by a worker.
+ * While a worker owns a connection the loop stops watching it, and the worker hands it back when it has finished
+ * writing its response.
+ *
+ * <p>All changes to the selector are made on the loop's own thread. Other threads submit those changes as tasks,
+ * which the loop runs the next time it wakes up.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.nio.NioConnection
+ */
+public class NioEventLoop implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+    // the longest the loop will wait for activity before checking for idle connections
+    private static final long kSelectTimeout = 1000;
+
+    // the server that owns the loop
+    private NioWebServer server;
+
+    // the selector that watches the loop's connections
+    private Selector selector;
+
+    // changes to the selector that were requested by other threads
+    private Queue<Runnable> pendingTasks;
+
+    // the last time, in milliseconds, that the loop checked for idle connections
+    private long lastIdleCheck;
+
+    // stores whether or not the loop has been stopped
+    private volatile boolean isStopped;
+
+    // the metrics of the server that owns the loop
+    private ServerMetrics metrics;
+
+    /**
+     * Initializes a new event loop. The loop will not begin watching connections until it is run.
+     *
+     * @param server The server that owns the loop and will process the requests that it receives.
+     * @throws IOException thrown if a selector cannot be opened for the loop.
+     */
+    public NioEventLoop(NioWebServer server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+        this.lastIdleCheck = System.currentTimeMillis();
+        this.isStopped = false;
+        this.metrics = server.getContext().getMetrics();
+    }
+
+    /**
+     * Retrieves the metrics of the server that owns the loop, which the loop's connections update as they open and
+     * close.
+     *
+     * @return The server's metrics.
+     */
+    public ServerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Adds a newly accepted connection to the loop. May be called from any thread.
+     *
+     * @param channel The channel connected to the client. Must be in non-blocking mode.
+     */
+    public void register(final SocketChannel channel) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                NioConnection connection = new NioConnection(channel, NioEventLoop.this);
+                metrics.connectionOpened();
+
+                try {
+                    connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                } catch (ClosedChannelException ex) {
+                    logger.debug("connection was closed before it could be registered");
+                    connection.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a connection to the loop after a worker has finished responding to a request, so that the loop will
+     * watch it for the client's next request. May be called from any thread.
+     *
+     * @param connection The connection to resume watching.
+     */
+    public void resume(final NioConnection connection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                SelectionKey key = connection.getKey();
+
+                connection.setBusy(false);
+                connection.resetParser();
+                connection.touch();
+
+                if (key != null && key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+
+                    // a pipelining client may have already sent its next request
+                    dispatchIfComplete(connection);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes a connection on the loop's thread. A channel that is registered with a selector is not fully closed until
+     * the selector next runs, so closing through the loop ensures the client sees the connection end promptly. May be
+     * called from any thread.
+     *
+     * @param connection The connection to close.
+     */
+    public void closeConnection(final NioConnection connection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                connection.close();
+            }
+        });
+    }
+
+    /**
+     * Submits a task that will be run on the loop's thread.
+     *
+     * @param task The task to run.
+     */
+    private void execute(Runnable task) {
+        this.pendingTasks.offer(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Watches the loop's connections until the loop is stopped.
+     */
+    @Override
+    public void run() {
+        logger.debug("entering");
+
+        while (!isStopped()) {
+            try {
+                this.selector.select(kSelectTimeout);
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (key.isValid() && key.isReadable()) {
+                        read((NioConnection) key.attachment());
+                    }
+                }
+
+                closeIdleConnections();
+            } catch (IOException ex) {
+                logger.error("unexpected exception in event loop", ex);
+            }
+        }
+
+        close();
+
+        logger.debug("leaving");
+    }
+
+    /**
+     * Runs the tasks that other threads have submitted to the loop.
+     */
+    private void runPendingTasks() {
+        Runnable task;
+
+        while ((task = this.pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Reads available data from a connection and dispatches the request if it is complete.
+     *
+     * @param connection The connection that has data available.
+     */
+    private void read(NioConnection connection) {
+        try {
+            if (connection.read() < 0) {
+                if (connection.getParser().isStarted()) {
+                    // the client finished sending and is waiting for a response, so serve what arrived
+                    connection.getParser().endOfInput();
+                    dispatch(connection);
+                } else {
+                    logger.debug("client closed connection after {} requests", connection.getRequestsServed());
+                    connection.close();
+                }
+                return;
+            }
+
+            dispatchIfComplete(connection);
+        } catch (IOException ex) {
+            logger.debug("unable to read from client, closing connection", ex);
+            connection.close();
+        }
+    }
+
+    /**
+     * Hands a connection to the server for processing if its parser has finished. Invalid requests, including ones
+     * that are too large, are dispatched as well so that the client receives an error response.
+     *
+     * @param connection The connection to check.
+     */
+    private void dispatchIfComplete(NioConnection connection) {
+        if (connection.parse()) {
+            dispatch(connection);
+        }
+    }
+
+    /**
+     * Hands a connection to the server for processing. The loop stops watching the connection until it is resumed.
+     *
+     * @param connection The connection whose parser has finished.
+     */
+    private void dispatch(NioConnection connection) {
+        connection.setBusy(true);
+        connection.getKey().interestOps(0);
+        this.server.dispatch(connection);
+    }
+
+    /**
+     * Closes connections that have been waiting on their client for longer than the keep alive timeout. The check is
+     * only performed once per select timeout.
+     */
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+
+        if (now - this.lastIdleCheck < kSelectTimeout) {
+            return;
+        }
+
+        this.lastIdleCheck = now;
+        long timeout = this.server.getContext().getKeepAliveTimeout();
+
+        for (SelectionKey key : this.selector.keys()) {
+            NioConnection connection = (NioConnection) key.attachment();
+
+            if (connection != null && !connection.isBusy() && now - connection.getLastActivity() > timeout) {
+                logger.debug("closing connection that was idle for longer than {} ms", timeout);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Closes every connection that the loop is watching, along with the loop's selector.
+     */
+    public void close() {
+        if (!this.selector.isOpen()) {
+            return;
+        }
+
+        try {
+            for (SelectionKey key : this.selector.keys()) {
+                NioConnection connection = (NioConnection) key.attachment();
+
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+
+            this.selector.close();
+        } catch (IOException ex) {
+            logger.warn("unexpected exception while closing event loop selector", ex);
+        }
+    }
+
+    /**
+     * Instructs the loop to stop watching its connections. The loop will close its connections before its thread
+     * finishes.
+     */
+    public void stop() {
+        this.isStopped = true;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Returns a value indicating whether the loop has been stopped.
+     *
+     * @return true if the loop has been stopped.
+     */
+    public boolean isStopped() {
+        return this.isStopped;
+    }
+}
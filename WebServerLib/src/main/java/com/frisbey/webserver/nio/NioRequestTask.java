@@ -0,0 +1,127 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.nio;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.request.WebServerRequest;
+import com.frisbey.webserver.request.WebServerRequestFactory;
+import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.response.WebServerResponseFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes a single complete request that was received by a {@link com.frisbey.webserver.nio.NioEventLoop}. The
+ * task runs on a worker thread; it interprets the request, writes the response, and then either returns the
+ * connection to its event loop or closes it.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.nio.NioWebServer
+ */
+public class NioRequestTask implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioRequestTask.class);
+
+    // the connection on which the request was received
+    private NioConnection connection;
+
+    // the configuration of the server that received the request
+    private WebServerContext context;
+
+    // the time at which the request was handed to the worker pool, from System.nanoTime(). time spent waiting for a
+    // worker is part of the request's latency
+    private long dispatchTime;
+
+    /**
+     * Initializes a task for a received request.
+     *
+     * @param connection The connection on which the request was received. The response will be written to the same
+     *                   connection. The connection's parser must have finished reading the request.
+     * @param context The configuration of the server that received the request.
+     */
+    public NioRequestTask(NioConnection connection, WebServerContext context) {
+        this.connection = connection;
+        this.context = context;
+        this.dispatchTime = System.nanoTime();
+    }
+
+    /**
+     * Interprets the request and writes its response to the connection.
+     */
+    @Override
+    public void run() {
+        logger.debug("entering");
+
+        WebServerResponse response;
+        HttpVersion clientVersion = null;
+        HttpMethod method = null;
+        long bytesWritten = 0;
+        boolean keepAlive = false;
+        int requestsServed = this.connection.getRequestsServed();
+
+        try {
+            WebServerRequest request = WebServerRequestFactory.getRequest(this.connection.getParser(), this.context);
+            response = request.getResponse();
+            clientVersion = request.getVersion();
+            method = request.getMethod();
+            requestsServed = this.connection.incrementRequestsServed();
+
+            keepAlive = request.isKeepAlive() && requestsServed < this.context.getMaxKeepAliveRequests();
+        } catch (Exception ex) {
+            response = WebServerResponseFactory.getErrorResponse(ex);
+        }
+
+        keepAlive = WebServerResponseFactory.setTransferHeaders(response, this.context, clientVersion) && keepAlive;
+        WebServerResponseFactory.setConnectionHeaders(response, this.context, keepAlive, requestsServed);
+
+        try {
+            NioResponseOutput output = new NioResponseOutput(this.connection, this.context.getKeepAliveTimeout());
+            output.setGatherWriteThreshold(this.context.getGatherWriteThreshold());
+
+            try {
+                response.writeResponse(output);
+            } finally {
+                bytesWritten = output.getBytesWritten();
+            }
+        } catch (Exception ex) {
+            logger.warn("unable to write response to client, closing connection", ex);
+            keepAlive = false;
+        }
+
+        long elapsed = System.nanoTime() - this.dispatchTime;
+        this.context.getMetrics().recordRequest(method, response.getResponse(), bytesWritten, elapsed);
+
+        // the parser still holds the request until the connection is resumed
+        AccessLog accessLog = this.context.getAccessLog();
+
+        if (accessLog != null) {
+            // access logs report the size of the body, without the header
+            long bodyBytes = Math.max(0, bytesWritten - response.getHeaderLength());
+            accessLog.log(this.connection.getChannel().socket().getInetAddress(), this.connection.getParser(),
+                    response.getResponse(), bodyBytes, elapsed);
+        }
+
+        if (keepAlive) {
+            this.connection.getEventLoop().resume(this.connection);
+        } else {
+            this.connection.getEventLoop().closeConnection(this.connection);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.nio;
+
+import com.frisbey.webserver.response.ResponseOutput;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link com.frisbey.webserver.response.ResponseOutput} that writes to a non-blocking socket channel. Whenever the
+ * client is not ready to accept more data the writing thread waits on a selector that belongs to the connection, so
+ * worker threads can use the same response writing code as the blocking server while the channel stays registered
+ * with its event loop. The selector is closed with the connection.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.nio.NioRequestTask
+ */
+public class NioResponseOutput extends ResponseOutput {
+
+    // the connection whose response is written, which owns the selector used to wait for the channel
+    private NioConnection connection;
+
+    // the channel to which the response is written
+    private SocketChannel channel;
+
+    // the longest, in milliseconds, that the output will wait for the client to accept more data
+    private long writeTimeout;
+
+    /**
+     * Initializes an output that will write to a connection's non-blocking channel.
+     *
+     * @param connection The connection to write to.
+     * @param writeTimeout The longest, in milliseconds, that the output will wait for the client to accept more data.
+     *                     Must be greater than 0.
+     */
+    public NioResponseOutput(NioConnection connection, long writeTimeout) {
+        super(null, connection.getChannel());
+
+        if (writeTimeout <= 0) {
+            throw new IllegalArgumentException("Write timeout must be greater than 0");
+        }
+
+        this.connection = connection;
+        this.channel = connection.getChannel();
+        this.writeTimeout = writeTimeout;
+    }
+
+    /**
+     * Waits until the channel is able to accept more data.
+     *
+     * @throws IOException thrown if the client does not accept more data before the write timeout expires, or if the
+     *                     connection is closed while waiting.
+     */
+    @Override
+    protected void awaitWritable() throws IOException {
+        Selector selector = this.connection.getWriteSelector();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.writeTimeout);
+
+        try {
+            SelectionKey key = this.channel.register(selector, SelectionKey.OP_WRITE);
+
+            try {
+                long remaining = this.writeTimeout;
+
+                // select can return without a ready channel, such as after a spurious wakeup, so only the deadline
+                // ends the wait
+                while (selector.select(remaining) == 0) {
+                    remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException("Timed out waiting for the client to accept more data");
+                    }
+                }
+            } finally {
+                // deregister right away so the channel can be registered again on the next wait
+                key.cancel();
+
+                if (selector.isOpen()) {
+                    selector.selectNow();
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // the connection was closed by another thread, such as the server shutting down
+            throw new ClosedChannelException();
+        }
+    }
+}
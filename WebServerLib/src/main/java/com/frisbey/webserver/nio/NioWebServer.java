@@ -0,0 +1,296 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.nio;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerEngine;
+import com.frisbey.webserver.metrics.MetricsSnapshot;
+import com.frisbey.webserver.metrics.ServerMetrics;
+import com.frisbey.webserver.response.WebServerResponseFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A web server that uses non-blocking I/O to serve a large number of connections with a small number of threads.
+ *
+ * <p>The thread that runs the server accepts new connections and spreads them across a fixed number of
+ * {@link com.frisbey.webserver.nio.NioEventLoop}s. Each event loop watches its connections for incoming data and,
+ * once a complete request has arrived, hands the request to the server's worker pool. A connection therefore only
+ * occupies a worker while its response is being produced; idle persistent connections and clients that send their
+ * requests slowly cost nothing more than a little memory.</p>
+ *
+ * <p>Unlike the {@link com.frisbey.webserver.WebServer}, the number of connections that can be open at one time is not
+ * limited by the size of the worker pool. When the worker pool's queue is full, further requests are answered with a
+ * 503 Service Unavailable response directly from the event loop and their connections are closed.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.WebServerFactory
+ */
+public class NioWebServer implements WebServerEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioWebServer.class);
+
+    // the channel that the web server will use for listening
+    private ServerSocketChannel serverChannel;
+
+    // the pool of threads that will produce responses
+    private ExecutorService workerPool;
+
+    // the configuration shared with the server's workers
+    private WebServerContext context;
+
+    // the loops that watch the server's connections
+    private NioEventLoop[] eventLoops;
+
+    // the index of the event loop that will receive the next accepted connection
+    private int nextEventLoop;
+
+    // stores whether or not the event loop threads have been started
+    private boolean isStarted;
+
+    // stores whether or not the server is stopped
+    private volatile boolean isStopped;
+
+    // the runtime numbers recorded by the server, its event loops and its workers
+    private ServerMetrics metrics;
+
+    // the serialized response that is sent to connections that are turned away
+    private byte[] rejectionData;
+
+    /**
+     * Initializes a new server using the given information.
+     *
+     * @param context The configuration that the server and its workers will use.
+     * @param workerPool The pool that will process complete requests. The server will assume ownership of the pool and
+     *                   will shut it down when it is stopped.
+     * @param serverChannel A bound channel that the server will use to listen for connections. The server will assume
+     *                      ownership of the channel and will close it when it is stopped.
+     * @param eventLoopCount The number of event loops, and therefore threads, that will watch connections.
+     * @throws IOException thrown if the event loops cannot be initialized.
+     */
+    public NioWebServer(WebServerContext context, ExecutorService workerPool, ServerSocketChannel serverChannel, int eventLoopCount) throws IOException {
+        if (eventLoopCount <= 0) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+
+        this.context = context;
+        this.workerPool = workerPool;
+        this.serverChannel = serverChannel;
+        this.eventLoops = new NioEventLoop[eventLoopCount];
+        this.nextEventLoop = 0;
+        this.isStarted = false;
+        this.isStopped = false;
+        this.metrics = context.getMetrics();
+        this.rejectionData = WebServerResponseFactory.getServiceUnavailableData(context);
+
+        for (int i = 0; i < eventLoopCount; i++) {
+            this.eventLoops[i] = new NioEventLoop(this);
+        }
+    }
+
+    /**
+     * Starts the event loops and then accepts connections until the server is stopped.
+     */
+    @Override
+    public void run() {
+        logger.debug("entering");
+
+        startEventLoops();
+
+        while (!isStopped()) {
+            try {
+                SocketChannel channel = this.serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, this.context.isTcpNoDelay());
+                this.metrics.connectionAccepted();
+
+                // spread connections evenly across the event loops
+                this.eventLoops[this.nextEventLoop].register(channel);
+                this.nextEventLoop = (this.nextEventLoop + 1) % this.eventLoops.length;
+            } catch (IOException ex) {
+                if (!isStopped()) {
+                    logger.error("Error accepting client connection", ex);
+
+                    // attempt to stop the server to free resources
+                    try {
+                        stop();
+                    } catch (IOException stopEx) {
+                        logger.error("unhandled exception when attempting to stop web server", stopEx);
+                    }
+                }
+            }
+        }
+
+        logger.debug("shutting down after processing {} requests", getRequestsProcessed());
+    }
+
+    /**
+     * Starts a thread for each of the server's event loops.
+     */
+    private synchronized void startEventLoops() {
+        if (this.isStarted || isStopped()) {
+            return;
+        }
+
+        for (int i = 0; i < this.eventLoops.length; i++) {
+            Thread thread = new Thread(this.eventLoops[i], "webserver-event-loop-" + i);
+            thread.start();
+        }
+
+        this.isStarted = true;
+    }
+
+    /**
+     * Hands a complete request to the worker pool. Invoked by the event loops.
+     *
+     * @param connection The connection on which the request was received. Its parser has finished reading the request.
+     */
+    void dispatch(NioConnection connection) {
+        try {
+            this.workerPool.execute(new NioRequestTask(connection, this.context));
+        } catch (RejectedExecutionException ex) {
+            logger.warn("worker pool is full, rejecting request");
+            this.metrics.connectionRejected();
+
+            try {
+                // the response is small enough to fit in the socket's send buffer, so a single write is attempted
+                connection.getChannel().write(ByteBuffer.wrap(this.rejectionData));
+            } catch (IOException writeEx) {
+                logger.debug("unable to send service unavailable response to rejected connection", writeEx);
+            }
+
+            connection.close();
+        }
+    }
+
+    /**
+     * Retrieves the number of connections that were turned away because the worker pool was full.
+     *
+     * @return A number of connections.
+     */
+    @Override
+    public int getRejectedConnections() {
+        return (int) this.metrics.getConnectionsRejected();
+    }
+
+    /**
+     * Retrieves the number of complete requests that are waiting for a worker. Pools that do not expose a queue are
+     * reported as having no waiting requests.
+     *
+     * @return The current depth of the worker pool's queue.
+     */
+    @Override
+    public int getQueuedConnections() {
+        if (this.workerPool instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) this.workerPool).getQueue().size();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Takes a snapshot of the metrics recorded by the server, its event loops and its workers.
+     *
+     * @return The server's current metrics.
+     */
+    @Override
+    public MetricsSnapshot getMetricsSnapshot() {
+        return this.metrics.snapshot(getQueuedConnections());
+    }
+
+    /**
+     * Retrieves the configuration that the server is using.
+     *
+     * @return The server's configuration.
+     */
+    public WebServerContext getContext() {
+        return this.context;
+    }
+
+    /**
+     * Retrieves the port on which the server is listening.
+     *
+     * @return A port number.
+     */
+    @Override
+    public int getLocalPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Retrieves the number of requests that the server has processed so far. As with the
+     * {@link com.frisbey.webserver.WebServer}, each accepted connection counts as one request, no matter how many
+     * requests its client sends over it. Connections that were turned away are not counted; {@link #getMetricsSnapshot()}
+     * counts the requests themselves.
+     *
+     * @return The number of processed requests.
+     */
+    @Override
+    public int getRequestsProcessed() {
+        return (int) (this.metrics.getConnectionsAccepted() - this.metrics.getConnectionsRejected());
+    }
+
+    /**
+     * Instructs the server to stop accepting connections and close the connections that are open.
+     *
+     * @throws IOException thrown if there are issues closing the server's channel.
+     */
+    @Override
+    public void stop() throws IOException {
+        synchronized (this) {
+            this.isStopped = true;
+        }
+
+        try {
+            this.serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("unexpected io exception when attempting to close server channel");
+            throw new IOException("There was an issue closing the server's channel", e);
+        } finally {
+            synchronized (this) {
+                for (NioEventLoop eventLoop : this.eventLoops) {
+                    if (this.isStarted) {
+                        eventLoop.stop();
+                    } else {
+                        eventLoop.close();
+                    }
+                }
+            }
+
+            this.workerPool.shutdown();
+        }
+    }
+
+    /**
+     * Returns a value indicating whether the server is running or not.
+     *
+     * @return true if the server is NOT running, false if the server is currently running.
+     */
+    @Override
+    public boolean isStopped() {
+        return this.isStopped;
+    }
+}
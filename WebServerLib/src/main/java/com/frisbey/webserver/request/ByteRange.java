@@ -0,0 +1,198 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Represents a single byte range requested through the Range header of a request, resolved against the length of the
+ * requested resource. Both ends of the range are inclusive, as they are in the header.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.request.GetRequest
+ */
+public class ByteRange {
+
+    // the only range unit that the server supports
+    private static final String kBytesUnit = "bytes=";
+
+    // the largest number of ranges that will be served from a single request. requests for more ranges are served the
+    // whole resource instead, so that a client cannot make the server send many small overlapping pieces of a file
+    public static final int kMaxRanges = 16;
+
+    // the position of the first byte in the range
+    private long first;
+
+    // the position of the last byte in the range
+    private long last;
+
+    /**
+     * Initializes a range covering the given positions.
+     *
+     * @param first The position of the first byte in the range.
+     * @param last The position of the last byte in the range. Must not be less than the first position.
+     */
+    public ByteRange(long first, long last) {
+        if (first < 0 || last < first) {
+            throw new IllegalArgumentException("Invalid byte range " + first + "-" + last);
+        }
+
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Retrieves the position of the first byte in the range.
+     *
+     * @return A position in bytes.
+     */
+    public long getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Retrieves the position of the last byte in the range.
+     *
+     * @return A position in bytes.
+     */
+    public long getLast() {
+        return this.last;
+    }
+
+    /**
+     * Retrieves the number of bytes covered by the range.
+     *
+     * @return A number of bytes.
+     */
+    public long getLength() {
+        return this.last - this.first + 1;
+    }
+
+    /**
+     * Formats the range as the value of a Content-Range header, for example "bytes 0-499/1234".
+     *
+     * @param totalLength The length of the complete resource.
+     * @return A Content-Range header value.
+     */
+    public String toContentRange(long totalLength) {
+        return "bytes " + this.first + "-" + this.last + "/" + totalLength;
+    }
+
+    /**
+     * Parses the value of a Range header. Ranges that start beyond the end of the resource are dropped and ranges that
+     * extend beyond it are shortened, as required by the HTTP standards.
+     *
+     * @param value The value of the Range header, for example "bytes=0-499,-500".
+     * @param length The length of the requested resource.
+     * @return The requested ranges in the order that they were given. The list is empty if none of the ranges can be
+     *         satisfied. null is returned if the header should be ignored because it is malformed, uses a unit other
+     *         than bytes, or requests more than {@link #kMaxRanges} ranges.
+     */
+    public static List<ByteRange> parse(String value, long length) {
+        if (value == null) {
+            return null;
+        }
+
+        value = value.trim();
+
+        if (!value.toLowerCase(Locale.ENGLISH).startsWith(kBytesUnit)) {
+            return null;
+        }
+
+        String[] specs = value.substring(kBytesUnit.length()).split(",");
+        List<ByteRange> ranges = new ArrayList<ByteRange>(specs.length);
+        int specCount = 0;
+
+        for (String spec : specs) {
+            spec = spec.trim();
+
+            // empty list elements are allowed by the standard and carry no meaning
+            if (spec.length() == 0) {
+                continue;
+            }
+
+            if (++specCount > kMaxRanges) {
+                return null;
+            }
+
+            int dash = spec.indexOf('-');
+
+            if (dash < 0) {
+                return null;
+            }
+
+            if (dash == 0) {
+                // a suffix range requests the last N bytes of the resource
+                long suffixLength = parsePosition(spec.substring(1));
+
+                if (suffixLength < 0) {
+                    return null;
+                }
+
+                if (suffixLength > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - suffixLength), length - 1));
+                }
+            } else {
+                long first = parsePosition(spec.substring(0, dash));
+                long last = (dash == spec.length() - 1) ? Long.MAX_VALUE : parsePosition(spec.substring(dash + 1));
+
+                if (first < 0 || last < first) {
+                    return null;
+                }
+
+                if (first < length) {
+                    ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+                }
+            }
+        }
+
+        return specCount > 0 ? ranges : null;
+    }
+
+    /**
+     * Parses a position within a range specification. Positions too large to represent are treated as the largest
+     * possible position, since they can only refer to the end of the resource.
+     *
+     * @param value The digits of the position.
+     * @return The position, or -1 if the value is not a non-empty sequence of digits.
+     */
+    private static long parsePosition(String value) {
+        if (value.length() == 0) {
+            return -1;
+        }
+
+        long position = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            if (position > (Long.MAX_VALUE - (c - '0')) / 10) {
+                position = Long.MAX_VALUE;
+            } else {
+                position = position * 10 + (c - '0');
+            }
+        }
+
+        return position;
+    }
+}
@@ -19,19 +19,40 @@ package com.frisbey.webserver.request;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.cache.CachedFile;
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.MappedFileCache;
+import com.frisbey.webserver.cache.OffHeapFileCache;
+import com.frisbey.webserver.response.BodySource;
 import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.FileBodySource;
+import com.frisbey.webserver.response.GzipBodySource;
+import com.frisbey.webserver.response.MappedBodySource;
+import com.frisbey.webserver.response.OffHeapBodySource;
+import com.frisbey.webserver.response.OpenFileBodySource;
 import com.frisbey.webserver.response.WebServerResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
+import java.util.List;
 
 /**
  * A specialized {@link com.frisbey.webserver.request.HeadRequest} that represents an HTTP GET request. Provides
  * the functionality necessary for working with a GET request.
  *
+ * <p>GET requests honour the Range header. A single range is sent as the body of a 206 Partial Content response, and
+ * several ranges are sent as a multipart/byteranges body. Ranges of files that are not cached are transferred by
+ * position, so the bytes before a range are never read.</p>
+ *
+ * <p>Files that are not held in memory are sent through a descriptor shared with other requests, and files large
+ * enough for the server's {@link com.frisbey.webserver.cache.MappedFileCache} are sent from a shared mapping. Files
+ * small enough for the server's {@link com.frisbey.webserver.cache.OffHeapFileCache} are sent from direct memory.</p>
+ *
+ * <p>A file that is compressed while it is sent has a body of unknown length, which the connection handler sends with
+ * the chunked transfer coding.</p>
+ *
  * @author Mark Frisbey
  * @see com.frisbey.webserver.request.HeadRequest
  */
@@ -51,6 +72,19 @@ public class GetRequest extends HeadRequest {
         super(method, uri, version, header);
     }
 
+    /**
+     * Initializes a GET request that was received by a server with the given configuration.
+     *
+     * @param method The method of the raw request.
+     * @param uri The full local path of the URI of the resource being requested.
+     * @param version The HTTP version provided with a raw request.
+     * @param header The header of a raw request.
+     * @param context The configuration of the server that received the request. May be null.
+     */
+    public GetRequest(HttpMethod method, String uri, HttpVersion version, WebServerHeader header, WebServerContext context) {
+        super(method, uri, version, header, context);
+    }
+
     /**
      * Retrieves the response to a GET request, which consists of standard response data, header data, and the body
      * of the response.
@@ -65,12 +99,131 @@ public class GetRequest extends HeadRequest {
         WebServerResponse response = super.getResponse();
 
         if (response.getResponse() == HttpResponse.OK) {
-            logger.debug("HEAD response was OK, setting body to requested UIR {}", this.getUri());
-            response.setBodyUri(this.getUri());
+            CachedFile cachedFile = isStreamCompressed() ? null : getCachedFile();
+
+            if (isStreamCompressed()) {
+                logger.debug("HEAD response was OK, setting body to compressed stream of {}", getFilePath());
+                response.setBody(new GzipBodySource(getFilePath(), getContext().getCompressedFileCache().getDeflaterPool()));
+            } else if (cachedFile != null && cachedFile.isContentCached()) {
+                logger.debug("HEAD response was OK, setting body to cached contents of {}", getFilePath());
+                response.setBody(new ByteArrayBodySource(cachedFile.getContent()));
+            } else if (getChannelCache() != null || isMapped() || isOffHeap()) {
+                logger.debug("HEAD response was OK, setting body to shared file {}", getFilePath());
+                response.setBody(getFileBody(0, -1));
+            } else {
+                logger.debug("HEAD response was OK, setting body to requested UIR {}", getFilePath());
+                response.setBodyUri(getFilePath(), getContentLength());
+            }
+        } else if (response.getResponse() == HttpResponse.PartialContent) {
+            List<ByteRange> ranges = getByteRanges();
+
+            if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                CachedFile cachedFile = getCachedFile();
+
+                logger.debug("sending byte range {}-{} of {}", range.getFirst(), range.getLast(), getFilePath());
+
+                if (cachedFile != null && cachedFile.isContentCached()) {
+                    response.setBody(new ByteArrayBodySource(cachedFile.getContent(), (int) range.getFirst(), (int) range.getLength()));
+                } else {
+                    response.setBody(getFileBody(range.getFirst(), range.getLength()));
+                }
+            } else {
+                logger.debug("sending {} byte ranges of {}", ranges.size(), getFilePath());
+                response.setBody(getMultipartBody());
+            }
         }
 
         logger.debug("leaving with response {}", response.getResponse().getText());
 
         return response;
     }
+
+    /**
+     * Retrieves the cache that shares open files between requests.
+     *
+     * @return The server's open file cache, or null if the request has no context or the cache is disabled.
+     */
+    protected FileChannelCache getChannelCache() {
+        WebServerContext context = getContext();
+
+        return context != null ? context.getChannelCache() : null;
+    }
+
+    /**
+     * Retrieves the cache that maps large files into memory.
+     *
+     * @return The server's mapped file cache, or null if the request has no context or files are never mapped.
+     */
+    protected MappedFileCache getMappedFileCache() {
+        WebServerContext context = getContext();
+
+        return context != null ? context.getMappedFileCache() : null;
+    }
+
+    /**
+     * Retrieves a value indicating whether the requested file is large enough to be sent from a shared mapping.
+     *
+     * @return true if the file will be mapped.
+     */
+    private boolean isMapped() {
+        MappedFileCache mappedCache = getMappedFileCache();
+
+        return mappedCache != null && mappedCache.isMappable(getFileMetadata().getLength());
+    }
+
+    /**
+     * Retrieves the cache that holds files in direct memory.
+     *
+     * @return The server's off-heap file cache, or null if the request has no context or the cache is disabled.
+     */
+    protected OffHeapFileCache getOffHeapFileCache() {
+        WebServerContext context = getContext();
+
+        return context != null ? context.getOffHeapFileCache() : null;
+    }
+
+    /**
+     * Retrieves a value indicating whether the requested file is small enough to be sent from the off-heap cache.
+     *
+     * @return true if the file will be held in direct memory.
+     */
+    private boolean isOffHeap() {
+        OffHeapFileCache offHeapCache = getOffHeapFileCache();
+
+        return offHeapCache != null && offHeapCache.isCacheable(getFileMetadata().getLength());
+    }
+
+    /**
+     * Creates the source of a body that is read from the requested file, rather than from the heap. Large files are
+     * sent from a shared mapping, small files from the off-heap cache, and other files through a shared descriptor,
+     * when those caches are enabled.
+     *
+     * @param position The position in the file of the first byte to write.
+     * @param count The number of bytes to write, or -1 to write through to the end of the file.
+     * @return A body source.
+     */
+    private BodySource getFileBody(long position, long count) {
+        FileChannelCache channelCache = getChannelCache();
+        BodySource body = channelCache != null ? new OpenFileBodySource(channelCache, getFileMetadata(), position, count)
+                : new FileBodySource(getFilePath(), position, count);
+
+        if (isMapped()) {
+            body = new MappedBodySource(getMappedFileCache(), getFileMetadata(), position, count, body);
+        } else if (isOffHeap()) {
+            body = new OffHeapBodySource(getOffHeapFileCache(), getFileMetadata(), position, count, body);
+        }
+
+        return body;
+    }
+
+    /**
+     * Retrieves a value indicating whether the request honours the Range header.
+     *
+     * @return true, since GET requests serve byte ranges.
+     */
+    @Override
+    protected boolean isRangeSupported() {
+        return true;
+    }
 }
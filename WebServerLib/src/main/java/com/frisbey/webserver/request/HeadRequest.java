@@ -16,24 +16,51 @@
 
 package com.frisbey.webserver.request;
 
-import com.frisbey.webserver.HttpContentType;
+import com.frisbey.webserver.HttpContentEncoding;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.cache.CachedFile;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.FileMetadataCache;
 import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.response.MultipartBodySource;
 import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.utility.HttpDateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Represents a HEAD request from a client. The response to this type of request will be the standard response data
  * in addition to the header data that would be returned with a GET request.
  *
+ * <p>HEAD requests advertise support for byte ranges but ignore the Range header, as required by the HTTP standards.
+ * Subclasses that serve a body enable range handling through {@link #isRangeSupported()}, in which case the status
+ * and headers describe the requested ranges instead of the whole resource.</p>
+ *
+ * <p>Responses for existing files carry an ETag and a Last-Modified header. Both validators come from the file's
+ * metadata, so they are available without opening the file. A request whose If-None-Match or If-Modified-Since
+ * condition shows that the client's copy is current is answered with a header-only 304 Not Modified response.</p>
+ *
+ * <p>When a precompressed copy of the file exists next to it, for example "app.js.gz" next to "app.js", and the
+ * client's Accept-Encoding header allows that encoding, the copy is served in place of the file. Every part of the
+ * response, including its length, validators, and byte ranges, then describes the compressed copy. Only the content
+ * type is taken from the original file.</p>
+ *
+ * <p>When no precompressed copy exists and the server has a
+ * {@link com.frisbey.webserver.cache.CompressedFileCache}, text files are gzip compressed as they are requested and
+ * the compressed copy is cached for later requests. Its entity tag is the original file's tag with a "-gzip" suffix,
+ * so a validator for one representation never matches the other. Files too large for the cache are compressed while
+ * they are sent instead. Their length is not known in advance, so those responses carry no Content-Length, and byte
+ * ranges are not offered for them.</p>
+ *
  * @author Mark Frisbey
  * @see com.frisbey.webserver.request.WebServerRequest
  */
@@ -41,6 +68,43 @@ public class HeadRequest extends WebServerRequest {
 
     private static final Logger logger = LoggerFactory.getLogger(WebServerRequestFactory.class);
 
+    // the attributes of the file that will be served, once they have been looked up. refers to a precompressed copy
+    // of the requested file when one has been chosen
+    private FileMetadata metadata;
+
+    // the attributes of the requested file, which differ from the metadata of the file that will be served when a
+    // precompressed copy has been chosen
+    private FileMetadata requestedMetadata;
+
+    // the encoding of the file that will be served, or null if the requested file is served as is
+    private HttpContentEncoding contentEncoding;
+
+    // stores whether or not a precompressed copy of the requested file exists, or the file can be compressed as it is
+    // requested, in which case the response depends on the Accept-Encoding header of the request
+    private boolean isEncodingNegotiated;
+
+    // stores whether or not the file will be served from the server's cache of dynamically compressed files, or
+    // compressed while it is sent
+    private boolean isDynamicallyCompressed;
+
+    // stores whether or not the file is too large to cache and will be compressed while it is sent
+    private boolean isStreamCompressed;
+
+    // the cache entry for the requested file, once it has been looked up
+    private CachedFile cachedFile;
+
+    // stores whether or not the requested file has been looked up in the cache
+    private boolean isCacheChecked;
+
+    // the byte ranges requested by the client, or null if the whole resource should be sent
+    private List<ByteRange> ranges;
+
+    // stores whether or not the Range header has been examined
+    private boolean isRangeChecked;
+
+    // the body that will carry the requested ranges when more than one was requested
+    private MultipartBodySource multipartBody;
+
     /**
      * Initializes a HEAD request consisting of the provided attributes.
      *
@@ -53,6 +117,19 @@ public class HeadRequest extends WebServerRequest {
         super(method, uri, version, header);
     }
 
+    /**
+     * Initializes a HEAD request that was received by a server with the given configuration.
+     *
+     * @param method The method of the raw request.
+     * @param uri The full local path of the URI of the resource being requested.
+     * @param version The HTTP version provided with a raw request.
+     * @param header The header of a raw request.
+     * @param context The configuration of the server that received the request. May be null.
+     */
+    public HeadRequest(HttpMethod method, String uri, HttpVersion version, WebServerHeader header, WebServerContext context) {
+        super(method, uri, version, header, context);
+    }
+
     /**
      * Retrieves a response consisting of standard response data and the header portion of a GET response.
      *
@@ -67,11 +144,57 @@ public class HeadRequest extends WebServerRequest {
 
         WebServerHeader header = new WebServerHeader();
 
+        if (response == HttpResponse.NotModified) {
+            // a 304 response never has a body, and a length of 0 would misdescribe the resource
+            header.removeValue("Content-Length");
+        }
+
         WebServerResponse serverResponse = createResponse(HttpVersion.HTTP_1_1, response, header);
 
-        if (response == HttpResponse.OK) {
+        if (response == HttpResponse.OK || response == HttpResponse.PartialContent || response == HttpResponse.NotModified) {
+            serverResponse.setHeaderValue("ETag", getEntityTag());
+            serverResponse.setHeaderValue("Last-Modified", getFileMetadata().getHttpLastModified());
+
+            if (this.contentEncoding != null) {
+                serverResponse.setHeaderValue("Content-Encoding", this.contentEncoding.getToken());
+            }
+
+            if (this.isEncodingNegotiated) {
+                serverResponse.setHeaderValue("Vary", "Accept-Encoding");
+            }
+        }
+
+        if (response == HttpResponse.OK && this.isStreamCompressed) {
+            // the compressed length is only known once the body has been written
+            serverResponse.removeHeaderValue("Content-Length");
+            serverResponse.setHeaderValue("Content-Type", getContentType());
+
+            // a GET sends the compressed body chunked to HTTP/1.1 clients, so a HEAD response describes it the same way.
+            // GET requests are marked chunked by the connection, which also sends the body with the chunked coding
+            if (getMethod() == HttpMethod.HEAD && getVersion() == HttpVersion.HTTP_1_1) {
+                serverResponse.setHeaderValue("Transfer-Encoding", "chunked");
+            }
+        } else if (response == HttpResponse.OK) {
             serverResponse.setHeaderValue("Content-Length", Long.toString(getContentLength()));
-            serverResponse.setHeaderValue("Content-Type", HttpContentType.fromFilePath(this.getUri()).getContentType());
+            serverResponse.setHeaderValue("Content-Type", getContentType());
+            serverResponse.setHeaderValue("Accept-Ranges", "bytes");
+        } else if (response == HttpResponse.PartialContent) {
+            List<ByteRange> ranges = getByteRanges();
+
+            if (ranges.size() == 1) {
+                serverResponse.setHeaderValue("Content-Length", Long.toString(ranges.get(0).getLength()));
+                serverResponse.setHeaderValue("Content-Type", getContentType());
+                serverResponse.setHeaderValue("Content-Range", ranges.get(0).toContentRange(getContentLength()));
+            } else {
+                MultipartBodySource body = getMultipartBody();
+                serverResponse.setHeaderValue("Content-Length", Long.toString(body.getLength()));
+                serverResponse.setHeaderValue("Content-Type", body.getContentType());
+            }
+
+            serverResponse.setHeaderValue("Accept-Ranges", "bytes");
+        } else if (response == HttpResponse.RangeNotSatisfiable) {
+            serverResponse.setHeaderValue("Content-Range", "bytes */" + getContentLength());
+            serverResponse.setHeaderValue("Accept-Ranges", "bytes");
         }
 
         logger.debug("returning response with status {}", response.getText());
@@ -97,16 +220,191 @@ public class HeadRequest extends WebServerRequest {
      * @return The HTTP response that should be returned by the request.
      */
     protected HttpResponse getHttpResponse() {
-        HttpResponse response = HttpResponse.OK;
+        // check to make sure that the request resource exists.
+        if (!getFileMetadata().isRegularFile()) {
+            return HttpResponse.NotFound;
+        }
 
-        File file = new File(this.getUri());
+        if (isNotModified()) {
+            return HttpResponse.NotModified;
+        }
 
-        // check to make sure that the request resource exists.
-        if (!file.exists() || !file.isFile()) {
-            response = HttpResponse.NotFound;
+        List<ByteRange> ranges = getByteRanges();
+
+        if (ranges == null) {
+            return HttpResponse.OK;
+        }
+
+        return ranges.isEmpty() ? HttpResponse.RangeNotSatisfiable : HttpResponse.PartialContent;
+    }
+
+    /**
+     * Determines whether the conditions of the request show that the client already holds the current version of the
+     * file. If-None-Match takes precedence; If-Modified-Since is only considered when If-None-Match is absent.
+     *
+     * @return true if a 304 Not Modified response should be sent.
+     */
+    protected boolean isNotModified() {
+        String ifNoneMatch = getHeaderValue("If-None-Match");
+
+        if (ifNoneMatch != null) {
+            return matchesEntityTag(ifNoneMatch, getEntityTag());
+        }
+
+        long modifiedSince = HttpDateUtils.parse(getHeaderValue("If-Modified-Since"));
+
+        return modifiedSince >= 0 && getLastModified() / 1000 <= modifiedSince / 1000;
+    }
+
+    /**
+     * Determines whether a list of entity tags from an If-None-Match header contains a tag, using the weak comparison
+     * that the header calls for.
+     *
+     * @param tags A comma separated list of entity tags, or "*".
+     * @param entityTag The tag of the current version of the file.
+     * @return true if the list matches the tag.
+     */
+    private static boolean matchesEntityTag(String tags, String entityTag) {
+        for (String tag : tags.split(",")) {
+            tag = tag.trim();
+
+            if (tag.equals("*")) {
+                return true;
+            }
+
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals(entityTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Retrieves a value indicating whether the request honours the Range header. HEAD requests always describe the
+     * whole resource.
+     *
+     * @return true if byte ranges should be served.
+     */
+    protected boolean isRangeSupported() {
+        return false;
+    }
+
+    /**
+     * Retrieves the byte ranges that the client requested. The Range header is only examined once per request, and is
+     * ignored if ranges are not supported, if it is malformed, or if an If-Range condition does not match the file.
+     *
+     * @return The requested ranges, an empty list if none of them can be satisfied, or null if the whole resource
+     *         should be sent.
+     */
+    protected List<ByteRange> getByteRanges() {
+        if (!this.isRangeChecked) {
+            this.isRangeChecked = true;
+            String range = getHeaderValue("Range");
+
+            if (range != null && isRangeSupported() && !isStreamCompressed() && isIfRangeSatisfied()) {
+                this.ranges = ByteRange.parse(range, getContentLength());
+            }
+        }
+
+        return this.ranges;
+    }
+
+    /**
+     * Determines whether the If-Range condition of the request allows ranges to be served. Without the condition the
+     * ranges are always served. An entity tag must be identical to the file's tag, and weak tags never match. A date
+     * only matches if the file was last modified in the same second.
+     *
+     * @return true if the requested ranges should be served.
+     */
+    protected boolean isIfRangeSatisfied() {
+        String ifRange = getHeaderValue("If-Range");
+
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(getEntityTag());
+        }
+
+        long date = HttpDateUtils.parse(ifRange);
+
+        return HttpDateUtils.isSameSecond(date, getLastModified());
+    }
+
+    /**
+     * Retrieves the body that carries the requested ranges when more than one was requested. The body is only created
+     * once per request, so the length advertised in the header always matches the body that is written.
+     *
+     * @return A multipart body for the requested ranges.
+     */
+    protected MultipartBodySource getMultipartBody() {
+        if (this.multipartBody == null) {
+            CachedFile cached = getCachedFile();
+
+            if (cached != null && cached.isContentCached()) {
+                this.multipartBody = new MultipartBodySource(cached.getContent(), getByteRanges(), getContentType());
+            } else {
+                this.multipartBody = new MultipartBodySource(getFilePath(), getByteRanges(), getContentType(), getContentLength());
+            }
+        }
+
+        return this.multipartBody;
+    }
+
+    /**
+     * Retrieves the content type of the requested file. The type is resolved from the requested file's extension, never
+     * from the extension of a precompressed copy, and is remembered by the file's cached metadata.
+     *
+     * @return A content type description.
+     */
+    protected String getContentType() {
+        getFileMetadata();
+
+        return this.requestedMetadata.getContentType(getMimeTypeRegistry());
+    }
+
+    /**
+     * Retrieves the registry that maps file extensions to content types.
+     *
+     * @return The server's registry, or the bundled registry if the request is not tied to a server.
+     */
+    protected MimeTypeRegistry getMimeTypeRegistry() {
+        WebServerContext context = getContext();
+
+        return context != null ? context.getMimeTypeRegistry() : MimeTypeRegistry.getDefault();
+    }
+
+    /**
+     * Retrieves the entity tag of the representation that will be served. A dynamically compressed copy shares the
+     * metadata of the original file, so its tag is marked to tell the two apart.
+     *
+     * @return A quoted entity tag.
+     */
+    protected String getEntityTag() {
+        String entityTag = getFileMetadata().getEntityTag();
+
+        if (this.isDynamicallyCompressed) {
+            return entityTag.substring(0, entityTag.length() - 1) + "-gzip\"";
         }
 
-        return response;
+        return entityTag;
+    }
+
+    /**
+     * Retrieves the time at which the requested file was last modified.
+     *
+     * @return A time in milliseconds since the epoch.
+     */
+    protected long getLastModified() {
+        return getFileMetadata().getLastModified();
     }
 
     /**
@@ -115,8 +413,188 @@ public class HeadRequest extends WebServerRequest {
      * @return The length (in bytes) of the response's body.
      */
     protected long getContentLength() {
-        File file = new File(this.getUri());
+        CachedFile cached = getCachedFile();
+
+        if (cached != null) {
+            return cached.getLength();
+        }
+
+        return getFileMetadata().getLength();
+    }
+
+    /**
+     * Retrieves the cache that the request should use when looking up the requested file.
+     *
+     * @return The server's file cache, or null if the request should read the file system directly.
+     */
+    protected FileCache getFileCache() {
+        WebServerContext context = getContext();
+
+        return context != null ? context.getFileCache() : null;
+    }
+
+    /**
+     * Retrieves the attributes of the file that will be served. The attributes are only looked up once per request,
+     * either from the server's metadata cache or with a single request to the file system for the requested file and
+     * each of its possible precompressed copies. The cache also remembers copies that do not exist, so negotiating the
+     * encoding does not add file system requests to every request.
+     *
+     * @return A snapshot of the attributes of the requested file, or of the precompressed copy that will be served in
+     *         its place.
+     */
+    protected FileMetadata getFileMetadata() {
+        if (this.metadata == null) {
+            this.metadata = lookupMetadata(this.getUri());
+            this.requestedMetadata = this.metadata;
+
+            WebServerContext context = getContext();
+
+            if (this.metadata.isRegularFile() && context != null && context.isPrecompressedEnabled()) {
+                selectPrecompressedFile(this.metadata);
+            }
+
+            if (this.metadata.isRegularFile() && this.contentEncoding == null && context != null && context.getCompressedFileCache() != null) {
+                selectCompressedContent(this.metadata, context.getCompressedFileCache());
+            }
+        }
+
+        return this.metadata;
+    }
+
+    /**
+     * Chooses the precompressed copy of the requested file that best suits the client, if there is one.
+     *
+     * @param original The attributes of the requested file.
+     */
+    private void selectPrecompressedFile(FileMetadata original) {
+        String acceptEncoding = getHeaderValue("Accept-Encoding");
+
+        for (HttpContentEncoding encoding : HttpContentEncoding.values()) {
+            FileMetadata sidecar = lookupMetadata(encoding.getSidecarPath(original.getPath()));
+
+            if (sidecar.isRegularFile()) {
+                this.isEncodingNegotiated = true;
+
+                if (this.contentEncoding == null && encoding.isAcceptedBy(acceptEncoding)) {
+                    logger.debug("serving {} encoded copy of {}", encoding.getToken(), original.getPath());
+                    this.contentEncoding = encoding;
+                    this.metadata = sidecar;
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves a gzip compressed copy of the requested file from the server's compressed file cache, if the file is
+     * worth compressing and the client accepts gzip. The compressed copy takes the place of the cache entry for the
+     * file, so the length, body, and byte ranges of the response all describe the compressed data.
+     *
+     * @param original The attributes of the requested file.
+     * @param compressedCache The server's cache of compressed files.
+     */
+    private void selectCompressedContent(FileMetadata original, CompressedFileCache compressedCache) {
+        String contentType = original.getContentType(getMimeTypeRegistry());
+        boolean isStreamable = compressedCache.isStreamable(contentType, original.getLength());
+
+        if (!isStreamable && !compressedCache.isCompressible(contentType, original.getLength())) {
+            return;
+        }
+
+        this.isEncodingNegotiated = true;
+
+        if (!HttpContentEncoding.GZIP.isAcceptedBy(getHeaderValue("Accept-Encoding"))) {
+            return;
+        }
+
+        if (isStreamable) {
+            logger.debug("compressing {} while it is sent", original.getPath());
+            this.contentEncoding = HttpContentEncoding.GZIP;
+            this.isDynamicallyCompressed = true;
+            this.isStreamCompressed = true;
+            return;
+        }
+
+        try {
+            CachedFile compressed = compressedCache.getFile(original, getFileCache());
+
+            if (compressed != null) {
+                logger.debug("serving dynamically compressed copy of {}", original.getPath());
+                this.contentEncoding = HttpContentEncoding.GZIP;
+                this.isDynamicallyCompressed = true;
+                this.cachedFile = compressed;
+                this.isCacheChecked = true;
+            }
+        } catch (IOException ex) {
+            logger.warn("unable to compress requested file, serving it uncompressed", ex);
+        }
+    }
+
+    /**
+     * Retrieves a value indicating whether the file will be compressed while it is sent, in which case the length of
+     * the response's body is not known in advance.
+     *
+     * @return true if the file is too large to cache and will be compressed as it is streamed.
+     */
+    protected boolean isStreamCompressed() {
+        getFileMetadata();
+
+        return this.isStreamCompressed;
+    }
+
+    /**
+     * Retrieves the attributes of a path, from the server's metadata cache if it has one.
+     *
+     * @param path The full local path to look up.
+     * @return A snapshot of the path's attributes.
+     */
+    private FileMetadata lookupMetadata(String path) {
+        WebServerContext context = getContext();
+        FileMetadataCache cache = context != null ? context.getMetadataCache() : null;
+
+        return cache != null ? cache.get(path) : FileMetadata.read(path);
+    }
+
+    /**
+     * Retrieves the full local path of the file that will be served, which is either the requested file or a
+     * precompressed copy of it.
+     *
+     * @return A local file path.
+     */
+    protected String getFilePath() {
+        return getFileMetadata().getPath();
+    }
+
+    /**
+     * Retrieves the encoding of the file that will be served.
+     *
+     * @return The encoding of a precompressed copy, or null if the requested file will be served as is.
+     */
+    protected HttpContentEncoding getContentEncoding() {
+        getFileMetadata();
+
+        return this.contentEncoding;
+    }
+
+    /**
+     * Retrieves the cache entry for the requested file. The file is only looked up once per request, so the status,
+     * headers, and body of the response are guaranteed to describe the same version of the file.
+     *
+     * @return The cached file, or null if caching is disabled, the file does not exist, or it could not be read.
+     */
+    protected CachedFile getCachedFile() {
+        if (!this.isCacheChecked) {
+            this.isCacheChecked = true;
+            FileCache cache = getFileCache();
+
+            if (cache != null && getFileMetadata().isRegularFile()) {
+                try {
+                    this.cachedFile = cache.getFile(getFileMetadata());
+                } catch (IOException ex) {
+                    logger.warn("unable to load requested file into cache", ex);
+                }
+            }
+        }
 
-        return file.length();
+        return this.cachedFile;
     }
 }
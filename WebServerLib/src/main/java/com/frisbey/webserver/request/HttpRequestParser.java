@@ -0,0 +1,626 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.request;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.exception.InvalidRequestException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * An incremental parser for the request line and header of an HTTP request. The parser works directly on bytes and can
+ * be given the request in as many pieces as it happens to arrive in, which makes it suitable for non-blocking servers
+ * as well as for reading from a stream.
+ *
+ * <p>The parser copies the bytes of the request into a buffer that it reuses from one request to the next, and records
+ * where each token and header begins and ends. The method and version are recognized by comparing bytes, and strings
+ * are only created for the parts of the request that are actually asked for. The parser never consumes bytes beyond
+ * the blank line that ends a request, so any data that follows, such as a pipelined request, is left in the input.</p>
+ *
+ * <p>Errors in the request do not cause {@link #parse(java.nio.ByteBuffer)} to throw. Instead the parser finishes and
+ * records the problem, which is reported by {@link #getError()} and thrown when a request is created from the parser
+ * by {@link com.frisbey.webserver.request.WebServerRequestFactory#getRequest(HttpRequestParser, com.frisbey.webserver.WebServerContext)}.</p>
+ *
+ * <p>A parser is not thread safe, but may be handed from one thread to another between requests.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.request.WebServerRequestFactory
+ */
+public class HttpRequestParser {
+
+    // the default size of the largest request line and header that the parser will accept
+    public static final int kDefaultMaxRequestSize = 64 * 1024;
+
+    // the initial size of the buffer that holds the request
+    private static final int kInitialBufferSize = 1024;
+
+    // the number of values recorded for each header line: name start, name end, value start, value end
+    private static final int kHeaderSliceSize = 4;
+
+    // the character set of the request line and header names and values
+    private static final Charset kHeaderCharset = Charset.forName("ISO-8859-1");
+
+    // the character set of the request target
+    private static final Charset kTargetCharset = Charset.forName("UTF-8");
+
+    // the supported methods. values() copies its array on every call, so the copy is kept
+    private static final HttpMethod[] kMethods = HttpMethod.values();
+
+    // the supported versions
+    private static final HttpVersion[] kVersions = HttpVersion.values();
+
+    // the lower case bytes of each method's name, in the same order as the supported methods
+    private static final byte[][] kMethodTokens = new byte[kMethods.length][];
+
+    // the lower case bytes of each version's name, in the same order as the supported versions
+    private static final byte[][] kVersionTokens = new byte[kVersions.length][];
+
+    static {
+        for (int i = 0; i < kMethods.length; i++) {
+            kMethodTokens[i] = toToken(kMethods[i].getMethod());
+        }
+
+        for (int i = 0; i < kVersions.length; i++) {
+            kVersionTokens[i] = toToken(kVersions[i].getVersion());
+        }
+    }
+
+    // the possible states of the parser
+    private enum State {
+        RequestLine, Header, Complete, Failed
+    }
+
+    // the largest request line and header that the parser will accept
+    private int maxRequestSize;
+
+    // the bytes of the request that have been received so far
+    private byte[] buffer;
+
+    // the number of bytes in the buffer
+    private int length;
+
+    // the position in the buffer where the current line begins
+    private int lineStart;
+
+    // the current state of the parser
+    private State state;
+
+    // the problem with the request, if the parser failed
+    private InvalidRequestException error;
+
+    // the positions of the method, target and version tokens in the buffer
+    private int methodStart, methodEnd, targetStart, targetEnd, versionStart, versionEnd;
+
+    // the recognized method, or null if the method is not supported
+    private HttpMethod method;
+
+    // the recognized version, or null if the version is not supported
+    private HttpVersion version;
+
+    // the positions of each header's name and value in the buffer
+    private int[] headerSlices;
+
+    // the number of headers that have been parsed
+    private int headerCount;
+
+    /**
+     * Initializes a parser that accepts requests up to the default size.
+     */
+    public HttpRequestParser() {
+        this(kDefaultMaxRequestSize);
+    }
+
+    /**
+     * Initializes a parser.
+     *
+     * @param maxRequestSize The size, in bytes, of the largest request line and header that will be accepted.
+     */
+    public HttpRequestParser(int maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+        this.buffer = new byte[Math.min(kInitialBufferSize, maxRequestSize)];
+        this.headerSlices = new int[16 * kHeaderSliceSize];
+        reset();
+    }
+
+    /**
+     * Prepares the parser to receive a new request. The parser's buffers are kept for reuse.
+     */
+    public void reset() {
+        this.length = 0;
+        this.lineStart = 0;
+        this.state = State.RequestLine;
+        this.error = null;
+        this.method = null;
+        this.version = null;
+        this.headerCount = 0;
+    }
+
+    /**
+     * Consumes bytes of the request from the input. Bytes are consumed up to and including the blank line that ends
+     * the request, so any bytes that follow it remain in the input.
+     *
+     * @param input The bytes that have been received. The input's position is advanced past the consumed bytes.
+     * @return true if the parser has finished, either because the request is complete or because it is invalid.
+     */
+    public boolean parse(ByteBuffer input) {
+        while (!isDone() && input.hasRemaining()) {
+            int start = input.position();
+            int limit = input.limit();
+
+            // blank lines in front of a request are ignored, as recommended by the HTTP standards
+            if (this.state == State.RequestLine && this.length == 0) {
+                while (start < limit && isLineBreak(input.get(start))) {
+                    start++;
+                }
+
+                input.position(start);
+
+                if (start == limit) {
+                    break;
+                }
+            }
+
+            int end = start;
+
+            while (end < limit && input.get(end) != '\n') {
+                end++;
+            }
+
+            boolean isLineComplete = end < limit;
+            int count = (isLineComplete ? end + 1 : end) - start;
+
+            if (!ensureCapacity(count)) {
+                fail("Invalid request: request line and header are too large.");
+                break;
+            }
+
+            input.get(this.buffer, this.length, count);
+            this.length += count;
+
+            if (isLineComplete) {
+                int lineEnd = this.length - 1;
+
+                if (lineEnd > this.lineStart && this.buffer[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+
+                processLine(this.lineStart, lineEnd);
+                this.lineStart = this.length;
+            }
+        }
+
+        return isDone();
+    }
+
+    /**
+     * Informs the parser that no more bytes of the request will arrive. A line that was not terminated is treated as
+     * the final line of the request, and a request whose header was not ended by a blank line is considered complete.
+     *
+     * @return true if the parser has finished, which is always the case after this method returns.
+     */
+    public boolean endOfInput() {
+        if (isDone()) {
+            return true;
+        }
+
+        if (this.length == 0) {
+            fail("Invalid request - no data found");
+            return true;
+        }
+
+        if (this.lineStart < this.length) {
+            int lineEnd = this.length;
+
+            if (this.buffer[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+
+            processLine(this.lineStart, lineEnd);
+            this.lineStart = this.length;
+        }
+
+        if (!isDone()) {
+            this.state = State.Complete;
+        }
+
+        return true;
+    }
+
+    /**
+     * Interprets a single line of the request.
+     *
+     * @param start The position in the buffer of the line's first byte.
+     * @param end The position in the buffer just after the line's last byte, excluding the line break.
+     */
+    private void processLine(int start, int end) {
+        if (this.state == State.RequestLine) {
+            processRequestLine(start, end);
+        } else if (start == end) {
+            this.state = State.Complete;
+        } else {
+            processHeaderLine(start, end);
+        }
+    }
+
+    /**
+     * Interprets the request line, which must consist of a method, a target and a version separated by single spaces.
+     *
+     * @param start The position in the buffer of the line's first byte.
+     * @param end The position in the buffer just after the line's last byte.
+     */
+    private void processRequestLine(int start, int end) {
+        int firstSpace = indexOf(' ', start, end);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(' ', firstSpace + 1, end);
+
+        if (firstSpace <= start || secondSpace <= firstSpace + 1 || secondSpace + 1 >= end || indexOf(' ', secondSpace + 1, end) >= 0) {
+            fail("Invalid request: unexpected number of values in request line.");
+            return;
+        }
+
+        this.methodStart = start;
+        this.methodEnd = firstSpace;
+        this.targetStart = firstSpace + 1;
+        this.targetEnd = secondSpace;
+        this.versionStart = secondSpace + 1;
+        this.versionEnd = end;
+
+        int methodIndex = findToken(kMethodTokens, this.methodStart, this.methodEnd);
+        this.method = methodIndex >= 0 ? kMethods[methodIndex] : null;
+
+        int versionIndex = findToken(kVersionTokens, this.versionStart, this.versionEnd);
+        this.version = versionIndex >= 0 ? kVersions[versionIndex] : null;
+
+        this.state = State.Header;
+    }
+
+    /**
+     * Interprets a header line, which must consist of a name and a value separated by a colon. Whitespace around the
+     * value is ignored.
+     *
+     * @param start The position in the buffer of the line's first byte.
+     * @param end The position in the buffer just after the line's last byte.
+     */
+    private void processHeaderLine(int start, int end) {
+        int colon = indexOf(':', start, end);
+
+        if (colon <= start) {
+            fail("Invalid request: header format is unexpected.");
+            return;
+        }
+
+        int valueStart = colon + 1;
+        int valueEnd = end;
+
+        while (valueStart < valueEnd && isWhitespace(this.buffer[valueStart])) {
+            valueStart++;
+        }
+
+        while (valueEnd > valueStart && isWhitespace(this.buffer[valueEnd - 1])) {
+            valueEnd--;
+        }
+
+        if (this.headerSlices.length < (this.headerCount + 1) * kHeaderSliceSize) {
+            int[] larger = new int[this.headerSlices.length * 2];
+            System.arraycopy(this.headerSlices, 0, larger, 0, this.headerSlices.length);
+            this.headerSlices = larger;
+        }
+
+        int slice = this.headerCount * kHeaderSliceSize;
+        this.headerSlices[slice] = start;
+        this.headerSlices[slice + 1] = colon;
+        this.headerSlices[slice + 2] = valueStart;
+        this.headerSlices[slice + 3] = valueEnd;
+        this.headerCount++;
+    }
+
+    /**
+     * Records that the request is invalid.
+     *
+     * @param message A description of the problem.
+     */
+    private void fail(String message) {
+        this.error = new InvalidRequestException(message);
+        this.state = State.Failed;
+    }
+
+    /**
+     * Makes sure that the buffer can hold additional bytes without exceeding the maximum request size.
+     *
+     * @param count The number of bytes that will be added.
+     * @return true if there is room for the bytes, false if the request would be too large.
+     */
+    private boolean ensureCapacity(int count) {
+        int required = this.length + count;
+
+        if (required > this.maxRequestSize) {
+            return false;
+        }
+
+        if (required > this.buffer.length) {
+            byte[] larger = new byte[Math.min(Math.max(this.buffer.length * 2, required), this.maxRequestSize)];
+            System.arraycopy(this.buffer, 0, larger, 0, this.length);
+            this.buffer = larger;
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieves a value indicating whether the parser has finished, either successfully or not.
+     *
+     * @return true if no more bytes will be consumed until the parser is reset.
+     */
+    public boolean isDone() {
+        return this.state == State.Complete || this.state == State.Failed;
+    }
+
+    /**
+     * Retrieves a value indicating whether a complete, valid request has been parsed.
+     *
+     * @return true if the request is complete.
+     */
+    public boolean isComplete() {
+        return this.state == State.Complete;
+    }
+
+    /**
+     * Retrieves a value indicating whether any bytes of a request have been received.
+     *
+     * @return true if the parser has started receiving a request.
+     */
+    public boolean isStarted() {
+        return this.length > 0;
+    }
+
+    /**
+     * Retrieves the problem that prevented the request from being parsed.
+     *
+     * @return An exception describing the problem, or null if the request is valid so far.
+     */
+    public InvalidRequestException getError() {
+        return this.error;
+    }
+
+    /**
+     * Retrieves the method of the request.
+     *
+     * @return The method, or null if it is not one that the server supports.
+     */
+    public HttpMethod getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Retrieves the method of the request exactly as it was sent.
+     *
+     * @return The raw method.
+     */
+    public String getRawMethod() {
+        return new String(this.buffer, this.methodStart, this.methodEnd - this.methodStart, kHeaderCharset);
+    }
+
+    /**
+     * Retrieves the target of the request, which is usually the path of the requested resource and its query string.
+     *
+     * @return The request target exactly as it was sent.
+     */
+    public String getTarget() {
+        return new String(this.buffer, this.targetStart, this.targetEnd - this.targetStart, kTargetCharset);
+    }
+
+    /**
+     * Retrieves the HTTP version of the request.
+     *
+     * @return The version, or null if it is not one that the server supports.
+     */
+    public HttpVersion getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Retrieves the HTTP version of the request exactly as it was sent.
+     *
+     * @return The raw version.
+     */
+    public String getRawVersion() {
+        return new String(this.buffer, this.versionStart, this.versionEnd - this.versionStart, kHeaderCharset);
+    }
+
+    /**
+     * Retrieves the number of header lines in the request.
+     *
+     * @return A number of headers.
+     */
+    public int getHeaderCount() {
+        return this.headerCount;
+    }
+
+    /**
+     * Retrieves the name of a header.
+     *
+     * @param index The position of the header in the request, starting at 0.
+     * @return The header's name.
+     */
+    public String getHeaderName(int index) {
+        int slice = index * kHeaderSliceSize;
+
+        return new String(this.buffer, this.headerSlices[slice], this.headerSlices[slice + 1] - this.headerSlices[slice], kHeaderCharset);
+    }
+
+    /**
+     * Retrieves the value of a header.
+     *
+     * @param index The position of the header in the request, starting at 0.
+     * @return The header's value, without surrounding whitespace.
+     */
+    public String getHeaderValue(int index) {
+        int slice = index * kHeaderSliceSize;
+
+        return new String(this.buffer, this.headerSlices[slice + 2], this.headerSlices[slice + 3] - this.headerSlices[slice + 2], kHeaderCharset);
+    }
+
+    /**
+     * Retrieves the value of the last header with the given name. Names are compared without regard to case, and no
+     * strings are created for headers that do not match.
+     *
+     * @param name The name of the header.
+     * @return The header's value, or null if the request does not contain the header.
+     */
+    public String getHeaderValue(String name) {
+        for (int i = this.headerCount - 1; i >= 0; i--) {
+            int slice = i * kHeaderSliceSize;
+            int nameStart = this.headerSlices[slice];
+            int nameLength = this.headerSlices[slice + 1] - nameStart;
+
+            if (nameLength == name.length() && regionMatches(name, nameStart)) {
+                return getHeaderValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a header that contains a copy of every header line of the request. When a name appears more than once,
+     * the last value wins. Requests built by the server read their values from the parser instead, so this is only
+     * needed by code that keeps the header after the parser is reset.
+     *
+     * @return A new header containing the request's values.
+     */
+    public WebServerHeader getHeader() {
+        WebServerHeader header = new WebServerHeader(false);
+
+        for (int i = 0; i < this.headerCount; i++) {
+            header.setValue(getHeaderName(i), getHeaderValue(i));
+        }
+
+        return header;
+    }
+
+    /**
+     * Searches the buffer for a byte.
+     *
+     * @param value The byte to look for.
+     * @param start The position at which the search begins.
+     * @param end The position at which the search ends, exclusive.
+     * @return The position of the byte, or -1 if it was not found.
+     */
+    private int indexOf(char value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (this.buffer[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the token that matches a region of the buffer. The comparison ignores the case of ASCII letters.
+     *
+     * @param tokens The tokens to compare against.
+     * @param start The position of the region in the buffer.
+     * @param end The position just after the region.
+     * @return The index of the matching token, or -1 if none match.
+     */
+    private int findToken(byte[][] tokens, int start, int end) {
+        for (int i = 0; i < tokens.length; i++) {
+            byte[] token = tokens[i];
+
+            if (token.length != end - start) {
+                continue;
+            }
+
+            int j = 0;
+
+            while (j < token.length && toLowerCase(this.buffer[start + j]) == token[j]) {
+                j++;
+            }
+
+            if (j == token.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares a string with a region of the buffer, ignoring the case of ASCII letters.
+     *
+     * @param value The string to compare.
+     * @param start The position of the region in the buffer. The region is the same length as the string.
+     * @return true if the region matches the string.
+     */
+    private boolean regionMatches(String value, int start) {
+        for (int i = 0; i < value.length(); i++) {
+            if (toLowerCase(this.buffer[start + i]) != toLowerCase((byte) value.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Converts an ASCII letter to lower case. Other bytes are returned unchanged.
+     *
+     * @param value The byte to convert.
+     * @return The lower case byte.
+     */
+    private static byte toLowerCase(byte value) {
+        return (value >= 'A' && value <= 'Z') ? (byte) (value + ('a' - 'A')) : value;
+    }
+
+    /**
+     * Determines whether a byte is part of a line break.
+     *
+     * @param value The byte to check.
+     * @return true for carriage returns and line feeds.
+     */
+    private static boolean isLineBreak(byte value) {
+        return value == '\r' || value == '\n';
+    }
+
+    /**
+     * Determines whether a byte is whitespace that may surround a header value.
+     *
+     * @param value The byte to check.
+     * @return true for spaces and tabs.
+     */
+    private static boolean isWhitespace(byte value) {
+        return value == ' ' || value == '\t';
+    }
+
+    /**
+     * Converts the name of a method or version to lower case bytes for comparison with request data.
+     *
+     * @param name The name to convert.
+     * @return The lower case bytes of the name.
+     */
+    private static byte[] toToken(String name) {
+        byte[] token = name.getBytes(kHeaderCharset);
+
+        for (int i = 0; i < token.length; i++) {
+            token[i] = toLowerCase(token[i]);
+        }
+
+        return token;
+    }
+}
@@ -20,7 +20,10 @@ import com.frisbey.webserver.exception.InvalidHeaderException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -29,26 +32,69 @@ import java.util.regex.Pattern;
  * Represents the header portion of an HTTP request. The header functions as a collection of name/value pairs, so to
  * retrieve the value of "Host" in the header, use the method  {@code header.getValue("Host");}
  *
+ * <p>As required by the HTTP standards, names are matched without regard to case. Keys are returned in the order in
+ * which they were first added, using the spelling that was provided when they were added.</p>
+ *
+ * <p>The header of a request read by an {@link com.frisbey.webserver.request.HttpRequestParser} is a view of the
+ * parser's buffer: values are looked up in the raw request and only become strings when they are read. The header
+ * lines are copied into the header the first time it is modified or its keys are listed. The view is only valid until
+ * the parser is reset for the next request.</p>
+ *
  * @author Mark Frisbey
  */
 public class WebServerHeader {
 
     private static final Logger logger = LoggerFactory.getLogger(WebServerRequestFactory.class);
 
-    // internally stores the header's name/value pairs
-    private Map<String, String> rawValues;
+    // internally stores the header's name/value pairs, keyed by the lower case version of the name
+    private Map<String, HeaderEntry> rawValues;
+
+    // the header's name/value pairs in the order they were first added. allows the header to be written without
+    // creating iterators or key lists
+    private List<HeaderEntry> entries;
+
+    // the parser whose request this header reads until the header is first modified or listed, or null once the header
+    // holds its own values
+    private HttpRequestParser source;
 
     // regular expression for parsing the name/value from a raw header line
     private static final String kHeaderValueRegex = "^([^:]+):\\s(.+)$";
 
+    // the compiled form of the header expression. patterns are thread safe, so a single instance is shared
+    private static final Pattern kHeaderValuePattern = Pattern.compile(kHeaderValueRegex);
+
     /**
-     * Initializes an empty header.
+     * Initializes a header containing the default values that the server provides with every response.
      */
     public WebServerHeader() {
-        rawValues = new HashMap<String, String>();
-        rawValues.put("Connection", "close");
-        rawValues.put("Content-Length", "0");
-        rawValues.put("Server", "AemWebServer");
+        this(true);
+    }
+
+    /**
+     * Initializes a header, optionally including the default values that the server provides with every response.
+     * Headers that are received from a client should not include the defaults.
+     *
+     * @param includeDefaults If true, the header will be initialized with the server's default response values.
+     */
+    public WebServerHeader(boolean includeDefaults) {
+        rawValues = new HashMap<String, HeaderEntry>();
+        entries = new ArrayList<HeaderEntry>();
+
+        if (includeDefaults) {
+            setValue("Connection", "close");
+            setValue("Content-Length", "0");
+            setValue("Server", "AemWebServer");
+        }
+    }
+
+    /**
+     * Initializes a header that reads the header lines of the request held by a parser, without copying them. When a
+     * name appears more than once, the last value wins.
+     *
+     * @param source A parser that has finished reading a request. The header must not be used once it is reset.
+     */
+    WebServerHeader(HttpRequestParser source) {
+        this.source = source;
     }
 
     /**
@@ -62,8 +108,7 @@ public class WebServerHeader {
         logger.debug("entering with input={}", rawValue);
 
         // use a regular expression to parse the contents of the raw header value
-        Pattern regex = Pattern.compile(kHeaderValueRegex);
-        Matcher matches = regex.matcher(rawValue);
+        Matcher matches = kHeaderValuePattern.matcher(rawValue);
 
         // expression should capture the key and value
         boolean isMatch = matches.matches();
@@ -78,7 +123,7 @@ public class WebServerHeader {
 
         setValue(key, value);
 
-        logger.info("received {} header value of {}", key, value);
+        logger.debug("received {} header value of {}", key, value);
     }
 
     /**
@@ -88,7 +133,13 @@ public class WebServerHeader {
      * @return The raw value assigned to an HTTP header key.
      */
     public String getValue(String key) {
-        return rawValues.get(key);
+        if (this.source != null) {
+            return this.source.getHeaderValue(key);
+        }
+
+        HeaderEntry entry = rawValues.get(toLookupKey(key));
+
+        return (entry != null) ? entry.value : null;
     }
 
     /**
@@ -99,7 +150,77 @@ public class WebServerHeader {
      * @param value The value that will be associated with the given key.
      */
     public void setValue(String key, String value) {
-        rawValues.put(key, value);
+        copySource();
+        String lookupKey = toLookupKey(key);
+        HeaderEntry entry = rawValues.get(lookupKey);
+
+        if (entry == null) {
+            entry = new HeaderEntry(key, value);
+            rawValues.put(lookupKey, entry);
+            entries.add(entry);
+        } else {
+            entry.value = value;
+        }
+    }
+
+    /**
+     * Removes a key and its value from the header. Nothing happens if the key does not exist.
+     *
+     * @param key The key that should be removed.
+     */
+    public void removeValue(String key) {
+        copySource();
+        HeaderEntry entry = rawValues.remove(toLookupKey(key));
+
+        if (entry != null) {
+            entries.remove(entry);
+        }
+    }
+
+    /**
+     * Determines whether a comma separated header value contains a given token, such as the "close" token in the
+     * value of a "Connection" header. The comparison is case insensitive.
+     *
+     * @param key The key whose value should be searched.
+     * @param token The token to look for.
+     * @return true if the key exists and its value contains the token.
+     */
+    public boolean containsToken(String key, String token) {
+        String value = getValue(key);
+
+        if (value == null) {
+            return false;
+        }
+
+        // scan the comma separated parts in place, since this runs for the Connection header of every request
+        int start = 0;
+
+        while (start <= value.length()) {
+            int end = value.indexOf(',', start);
+
+            if (end < 0) {
+                end = value.length();
+            }
+
+            int first = start;
+            int last = end;
+
+            while (first < last && Character.isWhitespace(value.charAt(first))) {
+                first++;
+            }
+
+            while (last > first && Character.isWhitespace(value.charAt(last - 1))) {
+                last--;
+            }
+
+            if (last - first == token.length() && value.regionMatches(true, first, token, 0, token.length())) {
+                return true;
+            }
+
+            start = end + 1;
+        }
+
+        return false;
     }
 
     /**
@@ -108,6 +229,92 @@ public class WebServerHeader {
      * @return All the keys available in the header.
      */
     public Iterable<String> getKeys() {
-        return rawValues.keySet();
+        copySource();
+        List<String> keys = new ArrayList<String>(entries.size());
+
+        for (HeaderEntry entry : entries) {
+            keys.add(entry.name);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Retrieves the number of name/value pairs in the header.
+     *
+     * @return A number of header values.
+     */
+    public int getCount() {
+        copySource();
+        return entries.size();
+    }
+
+    /**
+     * Retrieves a key by its position in the header. Keys are ordered by when they were first added.
+     *
+     * @param index The position of the key, from 0 to {@link #getCount()} - 1.
+     * @return The key, with the spelling that was provided when it was added.
+     */
+    public String getKey(int index) {
+        copySource();
+        return entries.get(index).name;
+    }
+
+    /**
+     * Retrieves a value by its position in the header. Values are ordered by when their keys were first added.
+     *
+     * @param index The position of the value, from 0 to {@link #getCount()} - 1.
+     * @return The value.
+     */
+    public String getValue(int index) {
+        copySource();
+        return entries.get(index).value;
+    }
+
+    /**
+     * Copies the header lines of the parser that the header reads, so that the header holds its own values. Nothing
+     * happens if it already does.
+     */
+    private void copySource() {
+        if (this.source == null) {
+            return;
+        }
+
+        HttpRequestParser parser = this.source;
+        this.source = null;
+        rawValues = new HashMap<String, HeaderEntry>();
+        entries = new ArrayList<HeaderEntry>(parser.getHeaderCount());
+
+        for (int i = 0; i < parser.getHeaderCount(); i++) {
+            setValue(parser.getHeaderName(i), parser.getHeaderValue(i));
+        }
+    }
+
+    /**
+     * Converts a header name into the form used to look up its value.
+     *
+     * @param key The name of a header value.
+     * @return The case insensitive lookup key for the name.
+     */
+    private static String toLookupKey(String key) {
+        return key.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * A single name/value pair in the header. The name is retained as it was provided so that it can be written back
+     * out with its original spelling.
+     */
+    private static class HeaderEntry {
+
+        // the name as it was originally provided
+        private String name;
+
+        // the value associated with the name
+        private String value;
+
+        HeaderEntry(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
     }
 }
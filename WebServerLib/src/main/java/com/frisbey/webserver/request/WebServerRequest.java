@@ -19,6 +19,7 @@ package com.frisbey.webserver.request;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.exception.InvalidRequestException;
 import com.frisbey.webserver.response.WebServerResponse;
 
@@ -45,6 +46,9 @@ public abstract class WebServerRequest {
     // the header portion of the request
     private WebServerHeader requestHeader;
 
+    // the configuration of the server that received the request, or null if the request is not tied to a server
+    private WebServerContext context;
+
     /**
      * Initializes a new request comprised of the given header and body.
      *
@@ -54,10 +58,24 @@ public abstract class WebServerRequest {
      * @param header The header of a raw request.
      */
     public WebServerRequest(HttpMethod method, String uri, HttpVersion version, WebServerHeader header) {
+        this(method, uri, version, header, null);
+    }
+
+    /**
+     * Initializes a new request that was received by a server with the given configuration.
+     *
+     * @param method The method of the raw request.
+     * @param uri The full local path of the URI of the resource being requested.
+     * @param version The HTTP version provided with a raw request.
+     * @param header The header of a raw request.
+     * @param context The configuration of the server that received the request. May be null.
+     */
+    public WebServerRequest(HttpMethod method, String uri, HttpVersion version, WebServerHeader header, WebServerContext context) {
         this.method = method;
         this.requestHeader = header;
         this.uri = uri;
         this.version = version;
+        this.context = context;
     }
 
     /**
@@ -87,6 +105,15 @@ public abstract class WebServerRequest {
         return this.version;
     }
 
+    /**
+     * Retrieves the configuration of the server that received the request.
+     *
+     * @return The server's configuration, or null if the request is not tied to a server.
+     */
+    public WebServerContext getContext() {
+        return this.context;
+    }
+
     /**
      * Retrieves the header value associated with a given key.
      *
@@ -97,6 +124,21 @@ public abstract class WebServerRequest {
         return requestHeader.getValue(key);
     }
 
+    /**
+     * Determines whether the client would like the connection to remain open after the response has been sent. HTTP
+     * 1.1 connections are persistent unless the client sends "Connection: close", while HTTP 1.0 connections are only
+     * persistent if the client sends "Connection: keep-alive".
+     *
+     * @return true if the client supports reusing the connection for additional requests.
+     */
+    public boolean isKeepAlive() {
+        if (this.version == HttpVersion.HTTP_1_1) {
+            return !requestHeader.containsToken("Connection", "close");
+        }
+
+        return requestHeader.containsToken("Connection", "keep-alive");
+    }
+
     /**
      * Should be implemented to retrieve the response that the request should provide back to the client.
      *
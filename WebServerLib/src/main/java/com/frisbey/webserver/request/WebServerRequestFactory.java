@@ -19,6 +19,7 @@ package com.frisbey.webserver.request;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.exception.InvalidHeaderException;
 import com.frisbey.webserver.exception.InvalidMethodException;
 import com.frisbey.webserver.exception.InvalidRequestException;
@@ -58,11 +59,42 @@ public class WebServerRequestFactory {
      *         format.
      */
     public static WebServerRequest getRequest(InputStream input, String webServerRoot) throws IOException, InvalidRequestException {
-        logger.debug("entering with input={}, webServerRoot={}", input, webServerRoot);
+        return getRequest(StreamUtils.getStreamReader(input), webServerRoot);
+    }
+
+    /**
+     * Instantiates a {@link com.frisbey.webserver.request.WebServerRequest} from the next raw HTTP request available
+     * in the provided reader. Only the lines belonging to the request will be consumed, so the same reader can be
+     * used to retrieve subsequent requests that are sent over a persistent connection.
+     *
+     * @param inputReader A reader whose next lines should be a valid raw HTTP request.
+     * @param webServerRoot The full path to the local root directory of the web server.
+     * @return A WebServerRequest representing the raw HTTP request provided by the reader.
+     * @throws IOException thrown when there are issues retrieving information from the reader.
+     * @throws InvalidRequestException throw if the raw request provided by the reader is not in an expected format.
+     */
+    public static WebServerRequest getRequest(BufferedReader inputReader, String webServerRoot) throws IOException, InvalidRequestException {
+        // requests created without a server's configuration always read the file system directly
+        return getRequest(inputReader, new WebServerContext(webServerRoot, false));
+    }
 
-        WebServerHeader header = new WebServerHeader();
+    /**
+     * Instantiates a {@link com.frisbey.webserver.request.WebServerRequest} from the next raw HTTP request available
+     * in the provided reader. The request will use the resources, such as the file cache, of the server whose
+     * configuration is given.
+     *
+     * @param inputReader A reader whose next lines should be a valid raw HTTP request.
+     * @param context The configuration of the server that received the request.
+     * @return A WebServerRequest representing the raw HTTP request provided by the reader.
+     * @throws IOException thrown when there are issues retrieving information from the reader.
+     * @throws InvalidRequestException throw if the raw request provided by the reader is not in an expected format.
+     */
+    public static WebServerRequest getRequest(BufferedReader inputReader, WebServerContext context) throws IOException, InvalidRequestException {
+        String webServerRoot = context.getWebServerRoot();
+        logger.debug("entering with input={}, webServerRoot={}", inputReader, webServerRoot);
 
-        BufferedReader inputReader = StreamUtils.getStreamReader(input);
+        // request headers only contain what the client sent
+        WebServerHeader header = new WebServerHeader(false);
 
         // retrieve the first line of the request, which should contain the request method
         String inputLine = inputReader.readLine();
@@ -96,13 +128,52 @@ public class WebServerRequestFactory {
             throw new InvalidRequestException("Invalid request: header format is unexpected.", ex);
         }
 
+        return createRequest(HttpMethod.fromString(rawMethod), rawMethod, HttpVersion.fromString(rawVersion), rawVersion, uri, header, context);
+    }
+
+    /**
+     * Instantiates a {@link com.frisbey.webserver.request.WebServerRequest} from a parser that has finished reading a
+     * request. Any problem that the parser found with the request is thrown here.
+     *
+     * @param parser A parser whose {@link HttpRequestParser#isDone()} method returns true.
+     * @param context The configuration of the server that received the request.
+     * @return A WebServerRequest representing the parsed request.
+     * @throws InvalidRequestException thrown if the parsed request is not in an expected format.
+     */
+    public static WebServerRequest getRequest(HttpRequestParser parser, WebServerContext context) throws InvalidRequestException {
+        if (!parser.isDone()) {
+            throw new IllegalStateException("The parser has not finished reading a request");
+        }
+
+        if (parser.getError() != null) {
+            logger.warn("exception due to invalid request: {}", parser.getError().getMessage());
+            throw parser.getError();
+        }
+
+        String uri = StringUtils.buildPath(context.getWebServerRoot(), StringUtils.trimQueryString(parser.getTarget()));
+
+        // the request reads its header values straight from the parser, which holds the request until it is answered
+        return createRequest(parser.getMethod(), parser.getRawMethod(), parser.getVersion(), parser.getRawVersion(), uri, new WebServerHeader(parser), context);
+    }
+
+    /**
+     * Creates the request instance that handles a given method.
+     *
+     * @param method The method of the request, or null if the method is not supported.
+     * @param rawMethod The method exactly as the client sent it.
+     * @param version The version of the request, or null if the version is not supported.
+     * @param rawVersion The version exactly as the client sent it.
+     * @param uri The full local path of the requested resource.
+     * @param header The header that was received with the request.
+     * @param context The configuration of the server that received the request.
+     * @return A request that will produce the response for the given method.
+     * @throws InvalidRequestException thrown if the version or method is not supported.
+     */
+    private static WebServerRequest createRequest(HttpMethod method, String rawMethod, HttpVersion version, String rawVersion, String uri,
+                                                  WebServerHeader header, WebServerContext context) throws InvalidRequestException {
         // retrieve the request instance
         WebServerRequest request = null;
 
-        // determine request method and version
-        HttpMethod method = HttpMethod.fromString(rawMethod);
-        HttpVersion version = HttpVersion.fromString(rawVersion);
-
         if (version == null) {
             logger.warn("exception due to unrecognized http version {}", rawVersion);
             throw new InvalidRequestException("Invalid request: unrecognized HTTP Version: "+rawVersion);
@@ -111,12 +182,13 @@ public class WebServerRequestFactory {
         if (method != null) {
             switch (method) {
                 case GET:
-                    request = new GetRequest(method, uri, version, header);
-                    logger.info("client request interpreted as GET");
+                    request = new GetRequest(method, uri, version, header, context);
+                    logger.debug("client request interpreted as GET");
                     break;
                 case HEAD:
-                    request = new HeadRequest(method, uri, version, header);
-                    logger.info("client request interpreted as HEAD");
+                    request = new HeadRequest(method, uri, version, header, context);
+                    logger.debug("client request interpreted as HEAD");
+                    break;
                 default:
                     method = null;
             }
@@ -0,0 +1,60 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Represents the data that a {@link com.frisbey.webserver.response.WebServerResponse} will send as its body.
+ * Implementations decide how their data is best moved to the client; a file can be handed to the operating system
+ * for a zero-copy transfer, while an arbitrary stream has to be copied through a buffer.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.ResponseOutput
+ */
+public interface BodySource {
+
+    /**
+     * Retrieves the number of bytes that the source will write.
+     *
+     * @return The length of the body in bytes, or -1 if the length is not known ahead of time.
+     * @throws IOException thrown if there are issues determining the length of the body.
+     */
+    long getLength() throws IOException;
+
+    /**
+     * Writes the entire body to the given output. The source is responsible for releasing any resources that it
+     * opened in order to write the body.
+     *
+     * @param output The output to which the body should be written.
+     * @throws IOException thrown if there are issues reading the body or writing it to the output.
+     */
+    void writeTo(ResponseOutput output) throws IOException;
+
+    /**
+     * Reads the entire body into a buffer, so that a small body can be sent in the same write as its response header.
+     * Sources that cannot provide their body this way, or whose body does not fit in the buffer, return false without
+     * consuming anything, in which case {@link #writeTo(ResponseOutput)} is used instead. A source that returns true
+     * has been fully consumed and releases its resources as it would after writing.
+     *
+     * @param target The buffer that will receive the body.
+     * @return true if the entire body was read into the buffer.
+     * @throws IOException thrown if there are issues reading the body.
+     */
+    boolean readInto(ByteBuffer target) throws IOException;
+}
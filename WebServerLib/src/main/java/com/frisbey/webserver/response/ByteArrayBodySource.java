@@ -0,0 +1,103 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A body source that writes data that is already held in memory, such as the contents of a cached file.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileCache
+ */
+public class ByteArrayBodySource implements BodySource {
+
+    // the data that will be written. never modified by the source
+    private byte[] data;
+
+    // the position in the array of the first byte that will be written
+    private int offset;
+
+    // the number of bytes that will be written
+    private int length;
+
+    /**
+     * Initializes a source that will write an entire array.
+     *
+     * @param data The data to write. The array is not copied, so it must not be modified while the source is in use.
+     */
+    public ByteArrayBodySource(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Initializes a source that will write a portion of an array, such as a byte range of a cached file.
+     *
+     * @param data The array containing the data to write. The array is not copied, so it must not be modified while
+     *             the source is in use.
+     * @param offset The position in the array of the first byte to write.
+     * @param length The number of bytes to write.
+     */
+    public ByteArrayBodySource(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IllegalArgumentException("Array region is out of bounds");
+        }
+
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Retrieves the length of the data.
+     *
+     * @return The number of bytes that will be written.
+     */
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Writes the data to the output.
+     *
+     * @param output The output to which the data should be written.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        output.write(this.data, this.offset, this.length);
+    }
+
+    /**
+     * Copies the data into a buffer if it fits.
+     *
+     * @param target The buffer that will receive the data.
+     * @return true if the data was copied, false if the buffer is too small.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) {
+        if (this.length > target.remaining()) {
+            return false;
+        }
+
+        target.put(this.data, this.offset, this.length);
+
+        return true;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.utility.BufferPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link java.io.OutputStream} that frames everything written to it with the HTTP/1.1 chunked transfer coding and
+ * passes the chunks on to a {@link com.frisbey.webserver.response.ResponseOutput}. It lets a body whose length is not
+ * known ahead of time be streamed to the client instead of being buffered in memory to learn its length.
+ *
+ * <p>Data is collected in a buffer borrowed from a {@link com.frisbey.webserver.utility.BufferPool} until a full chunk
+ * is available. Each chunk is then sent with a single gathering write of its size line and data. The line break that
+ * ends a chunk's data is sent at the start of the next size line, so no data is ever copied to add it.</p>
+ *
+ * <p>{@link #finish()} must be called once the whole body has been written, to send the last chunk and the empty chunk
+ * that marks the end of the body. {@link #close()} returns the buffer to its pool but does not close the response
+ * output, and does not complete the body, so a body that fails part way through is left visibly incomplete.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.WebServerResponse
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+    // room for a line break, the size of a chunk as up to eight hex digits, and another line break
+    private static final int kSizeLineCapacity = 12;
+
+    // the hex digits used to write chunk sizes
+    private static final byte[] kHexDigits = "0123456789abcdef".getBytes();
+
+    // the empty chunk and blank line that end a body which did not contain any other chunks
+    private static final byte[] kEmptyBody = { '0', '\r', '\n', '\r', '\n' };
+
+    // the end of the previous chunk, the empty chunk, and the blank line that end a body
+    private static final byte[] kLastChunk = { '\r', '\n', '0', '\r', '\n', '\r', '\n' };
+
+    // the output that will receive the chunks
+    private ResponseOutput output;
+
+    // the pool that the chunk buffer was borrowed from, or null if the buffer was allocated for this stream
+    private BufferPool bufferPool;
+
+    // collects data until a full chunk is available
+    private byte[] buffer;
+
+    // the number of bytes of data in a full chunk
+    private int chunkSize;
+
+    // the number of bytes waiting in the buffer
+    private int count;
+
+    // reused to write the size line of each chunk
+    private byte[] sizeLine;
+
+    // stores whether or not a chunk has been written, in which case its data must be ended before the next size line
+    private boolean isChunkWritten;
+
+    // stores whether or not the end of the body has been written
+    private boolean isFinished;
+
+    /**
+     * Initializes a stream that will borrow its chunk buffer from the shared buffer pool.
+     *
+     * @param output The output that will receive the chunks.
+     * @param chunkSize The number of bytes of data in each chunk. Must be greater than 0.
+     */
+    public ChunkedOutputStream(ResponseOutput output, int chunkSize) {
+        this(output, chunkSize, BufferPool.getSharedPool());
+    }
+
+    /**
+     * Initializes a stream. The chunk buffer is borrowed from the pool if the chunk size fits in the pool's buffers, and
+     * allocated otherwise.
+     *
+     * @param output The output that will receive the chunks.
+     * @param chunkSize The number of bytes of data in each chunk. Must be greater than 0.
+     * @param bufferPool The pool from which the chunk buffer will be borrowed.
+     */
+    public ChunkedOutputStream(ResponseOutput output, int chunkSize, BufferPool bufferPool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+
+        this.output = output;
+        this.chunkSize = chunkSize;
+
+        if (chunkSize <= bufferPool.getBufferSize()) {
+            this.bufferPool = bufferPool;
+            this.buffer = bufferPool.acquire();
+        } else {
+            this.buffer = new byte[chunkSize];
+        }
+
+        this.count = 0;
+        this.sizeLine = new byte[kSizeLineCapacity];
+    }
+
+    /**
+     * Writes a single byte to the body.
+     *
+     * @param b The byte to write.
+     * @throws IOException thrown if a full chunk could not be written to the output.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+
+        this.buffer[this.count++] = (byte) b;
+
+        if (this.count == this.chunkSize) {
+            writeBufferedChunk();
+        }
+    }
+
+    /**
+     * Writes a portion of an array to the body. Full chunks are written straight from the array when nothing is waiting
+     * in the buffer, so large writes are not copied.
+     *
+     * @param data The array containing the data to write.
+     * @param offset The position in the array of the first byte to write.
+     * @param length The number of bytes to write.
+     * @throws IOException thrown if a full chunk could not be written to the output.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        ensureOpen();
+
+        while (length > 0) {
+            if (this.count == 0 && length >= this.chunkSize) {
+                writeChunk(data, offset, this.chunkSize);
+                offset += this.chunkSize;
+                length -= this.chunkSize;
+                continue;
+            }
+
+            int copied = Math.min(length, this.chunkSize - this.count);
+            System.arraycopy(data, offset, this.buffer, this.count, copied);
+            this.count += copied;
+            offset += copied;
+            length -= copied;
+
+            if (this.count == this.chunkSize) {
+                writeBufferedChunk();
+            }
+        }
+    }
+
+    /**
+     * Sends any buffered data as a chunk of its own and flushes the output, so the client receives everything written
+     * so far.
+     *
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+
+        if (this.count > 0) {
+            writeBufferedChunk();
+        }
+
+        this.output.flush();
+    }
+
+    /**
+     * Sends any buffered data followed by the empty chunk that marks the end of the body. Nothing more may be written
+     * afterwards. Calling the method again has no effect.
+     *
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    public void finish() throws IOException {
+        if (this.isFinished) {
+            return;
+        }
+
+        ensureOpen();
+
+        if (this.count > 0) {
+            writeBufferedChunk();
+        }
+
+        this.output.write(this.isChunkWritten ? kLastChunk : kEmptyBody);
+        this.isFinished = true;
+    }
+
+    /**
+     * Returns the chunk buffer to its pool. The response output is left open, and the body is only completed if
+     * {@link #finish()} was called first.
+     */
+    @Override
+    public void close() {
+        if (this.buffer != null) {
+            if (this.bufferPool != null) {
+                this.bufferPool.release(this.buffer);
+            }
+
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Sends the data waiting in the buffer as a chunk.
+     *
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    private void writeBufferedChunk() throws IOException {
+        writeChunk(this.buffer, 0, this.count);
+        this.count = 0;
+    }
+
+    /**
+     * Sends a chunk consisting of its size line and data in a single write.
+     *
+     * @param data The array containing the chunk's data.
+     * @param offset The position in the array of the first byte of the chunk.
+     * @param length The number of bytes in the chunk. Must be greater than 0.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    private void writeChunk(byte[] data, int offset, int length) throws IOException {
+        int position = 0;
+
+        if (this.isChunkWritten) {
+            this.sizeLine[position++] = '\r';
+            this.sizeLine[position++] = '\n';
+        }
+
+        int digits = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 3) / 4);
+
+        for (int i = digits - 1; i >= 0; i--) {
+            this.sizeLine[position++] = kHexDigits[(length >>> (i * 4)) & 0xf];
+        }
+
+        this.sizeLine[position++] = '\r';
+        this.sizeLine[position++] = '\n';
+
+        this.output.write(ByteBuffer.wrap(this.sizeLine, 0, position), ByteBuffer.wrap(data, offset, length));
+        this.isChunkWritten = true;
+    }
+
+    /**
+     * Ensures that the stream can still be written to.
+     *
+     * @throws IOException thrown if the body has been finished or the stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (this.isFinished || this.buffer == null) {
+            throw new IOException("Chunked body has already been finished or closed");
+        }
+    }
+}
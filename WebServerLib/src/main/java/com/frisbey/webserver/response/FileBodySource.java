@@ -0,0 +1,168 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A body source that reads its data from a file on the local file system. The file is written through its
+ * {@link java.nio.channels.FileChannel} so that the transfer can be handed off to the operating system when the
+ * client is connected through a socket channel. A source may cover the whole file or a single region of it, such as
+ * the byte range requested by a client; regions are read by position, so nothing before the region is ever read.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.ResponseOutput#transferFrom(java.nio.channels.FileChannel, long, long)
+ */
+public class FileBodySource implements BodySource {
+
+    // full local path to the file that will be written
+    private String path;
+
+    // the position in the file of the first byte that will be written
+    private long position;
+
+    // the number of bytes that will be written, or -1 to write through to the end of the file
+    private long count;
+
+    /**
+     * Initializes a source that will write the contents of a file.
+     *
+     * @param path The full local path to the file.
+     */
+    public FileBodySource(String path) {
+        this(path, 0, -1);
+    }
+
+    /**
+     * Initializes a source that will write a region of a file. A file that ends before the region does causes the
+     * write to fail, rather than sending fewer bytes than the client expects.
+     *
+     * @param path The full local path to the file.
+     * @param position The position in the file of the first byte to write. Must not be negative.
+     * @param count The number of bytes to write, or -1 to write through to the end of the file.
+     */
+    public FileBodySource(String path, long position, long count) {
+        if (position < 0 || count < -1) {
+            throw new IllegalArgumentException("File region must not be negative");
+        }
+
+        this.path = path;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * Retrieves the full local path of the file that the source will write.
+     *
+     * @return A file system path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Retrieves the position in the file of the first byte that the source will write.
+     *
+     * @return A position in bytes.
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Retrieves the number of bytes that the source will write.
+     *
+     * @return The length of the region in bytes, or of the file if the source covers the whole file.
+     */
+    @Override
+    public long getLength() {
+        return this.count >= 0 ? this.count : Math.max(0, new File(this.path).length() - this.position);
+    }
+
+    /**
+     * Writes the file, or the source's region of it, to the output. The file is opened when the method is invoked and
+     * closed before it returns.
+     *
+     * @param output The output to which the file should be written.
+     * @throws IOException thrown if the file cannot be opened or if there are issues writing it to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        FileInputStream stream = new FileInputStream(this.path);
+
+        try {
+            FileChannel channel = stream.getChannel();
+            output.transferFrom(channel, this.position, getRegionLength(channel));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads the file, or the source's region of it, into a buffer if it fits. The file is opened when the method is
+     * invoked and closed before it returns.
+     *
+     * @param target The buffer that will receive the file.
+     * @return true if the file was read, false if the buffer is too small.
+     * @throws IOException thrown if the file cannot be opened or read.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) throws IOException {
+        FileInputStream stream = new FileInputStream(this.path);
+
+        try {
+            FileChannel channel = stream.getChannel();
+            long size = getRegionLength(channel);
+
+            if (size > target.remaining()) {
+                return false;
+            }
+
+            int end = target.position() + (int) size;
+            ByteBuffer region = target.duplicate();
+            region.limit(end);
+
+            while (region.hasRemaining()) {
+                if (channel.read(region, this.position + region.position() - target.position()) < 0) {
+                    throw new EOFException("File ended before the expected number of bytes could be read");
+                }
+            }
+
+            target.position(end);
+        } finally {
+            stream.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines how many bytes the source will write from an open file.
+     *
+     * @param channel The open file.
+     * @return The length of the source's region in bytes.
+     * @throws IOException thrown if the size of the file cannot be read.
+     */
+    private long getRegionLength(FileChannel channel) throws IOException {
+        return this.count >= 0 ? this.count : Math.max(0, channel.size() - this.position);
+    }
+}
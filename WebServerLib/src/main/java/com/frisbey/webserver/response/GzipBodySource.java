@@ -0,0 +1,139 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.utility.BufferPool;
+import com.frisbey.webserver.utility.DeflaterPool;
+import com.frisbey.webserver.utility.GzipUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A body source that gzip compresses a file while it is being written. The compressed length is not known until the
+ * whole file has been compressed, so the body is sent with the chunked transfer coding, or delimited by closing the
+ * connection for clients that do not understand chunked bodies. Memory use does not depend on the size of the file:
+ * the file is read and compressed one pooled buffer at a time.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.ChunkedOutputStream
+ * @see com.frisbey.webserver.cache.CompressedFileCache
+ */
+public class GzipBodySource implements BodySource {
+
+    // full local path to the file that will be compressed
+    private String path;
+
+    // the pool from which a deflater will be borrowed
+    private DeflaterPool deflaterPool;
+
+    /**
+     * Initializes a source that will write a compressed copy of a file.
+     *
+     * @param path The full local path to the file.
+     * @param deflaterPool The pool from which a deflater will be borrowed.
+     */
+    public GzipBodySource(String path, DeflaterPool deflaterPool) {
+        this.path = path;
+        this.deflaterPool = deflaterPool;
+    }
+
+    /**
+     * Retrieves the length of the compressed body, which is not known until it has been written.
+     *
+     * @return -1, since the length is unknown.
+     */
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    /**
+     * Reads the file, compresses it, and writes the gzip data to the output.
+     *
+     * @param output The output to which the compressed file should be written.
+     * @throws IOException thrown if there are issues reading the file or writing to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        BufferPool bufferPool = BufferPool.getSharedPool();
+        byte[] input = bufferPool.acquire();
+        byte[] compressed = bufferPool.acquire();
+        Deflater deflater = this.deflaterPool.acquire();
+        FileInputStream stream = new FileInputStream(this.path);
+
+        try {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer inputBuffer = ByteBuffer.wrap(input);
+            CRC32 checksum = new CRC32();
+            long length = 0;
+            int read;
+
+            output.write(GzipUtils.getHeader());
+
+            while ((read = channel.read(inputBuffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+
+                checksum.update(input, 0, read);
+                length += read;
+
+                deflater.setInput(input, 0, read);
+
+                while (!deflater.needsInput()) {
+                    int count = deflater.deflate(compressed);
+
+                    if (count > 0) {
+                        output.write(compressed, 0, count);
+                    }
+                }
+
+                inputBuffer.clear();
+            }
+
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                int count = deflater.deflate(compressed);
+                output.write(compressed, 0, count);
+            }
+
+            output.write(GzipUtils.getTrailer(checksum.getValue(), length));
+        } finally {
+            stream.close();
+            this.deflaterPool.release(deflater);
+            bufferPool.release(compressed);
+            bufferPool.release(input);
+        }
+    }
+
+    /**
+     * Compressed bodies are never sent in the same write as their header, since their length is unknown.
+     *
+     * @param target The buffer that would receive the body.
+     * @return false, since the body cannot be read into a buffer.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) {
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.request.WebServerHeader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serializes the status line and header of a response into a {@link java.nio.ByteBuffer}. Every status line and the
+ * names of the headers that the server commonly sends are encoded once, when the class is loaded, so writing a header
+ * only copies bytes and allocates nothing.
+ *
+ * <p>Header names and values are written as ISO-8859-1, the character set of HTTP headers. Characters that cannot be
+ * represented are written as '?'.</p>
+ *
+ * @author Mark Frisbey
+ */
+public final class HeaderEncoder {
+
+    // the character set of the HTTP status line and header
+    private static final Charset kCharset = Charset.forName("ISO-8859-1");
+
+    // the newline sequence that ends each line of the header
+    private static final byte[] kNewLine = {'\r', '\n'};
+
+    // the delimiter that separates a header name from its value
+    private static final byte[] kValueDelimiter = {':', ' '};
+
+    // the names of the headers that are encoded ahead of time
+    private static final String[] kCommonNames = {
+            "Accept-Ranges", "Cache-Control", "Connection", "Content-Encoding", "Content-Length", "Content-Range",
+            "Content-Type", "Date", "ETag", "Keep-Alive", "Last-Modified", "Retry-After", "Server",
+            "Transfer-Encoding", "Vary"
+    };
+
+    // each status line, indexed by the ordinal of the version and then the ordinal of the response
+    private static final byte[][][] kStatusLines;
+
+    // the encoded forms of the common header names, followed by the value delimiter
+    private static final Map<String, byte[]> kEncodedNames;
+
+    static {
+        HttpVersion[] versions = HttpVersion.values();
+        HttpResponse[] responses = HttpResponse.values();
+
+        kStatusLines = new byte[versions.length][responses.length][];
+
+        for (HttpVersion version : versions) {
+            for (HttpResponse response : responses) {
+                String line = version.getVersion() + " " + response.getCode() + " " + response.getText() + "\r\n";
+                kStatusLines[version.ordinal()][response.ordinal()] = line.getBytes(kCharset);
+            }
+        }
+
+        kEncodedNames = new HashMap<String, byte[]>();
+
+        for (String name : kCommonNames) {
+            kEncodedNames.put(name, (name + ": ").getBytes(kCharset));
+        }
+    }
+
+    /**
+     * Utility class, not intended to be instantiated.
+     */
+    private HeaderEncoder() {
+    }
+
+    /**
+     * Calculates the number of bytes that a status line and header will occupy once encoded.
+     *
+     * @param version The HTTP version of the response.
+     * @param response The HTTP response.
+     * @param header The header of the response. May be null.
+     * @return A number of bytes, including the blank line that ends the header.
+     */
+    public static int getEncodedLength(HttpVersion version, HttpResponse response, WebServerHeader header) {
+        int length = kStatusLines[version.ordinal()][response.ordinal()].length + kNewLine.length;
+
+        if (header != null) {
+            for (int i = 0; i < header.getCount(); i++) {
+                length += header.getKey(i).length() + kValueDelimiter.length + header.getValue(i).length() + kNewLine.length;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes a status line and header, including the blank line that ends the header, into a buffer.
+     *
+     * @param version The HTTP version of the response.
+     * @param response The HTTP response.
+     * @param header The header of the response. May be null.
+     * @param target The buffer that will receive the data. Must have at least
+     *               {@link #getEncodedLength(com.frisbey.webserver.HttpVersion, com.frisbey.webserver.HttpResponse, com.frisbey.webserver.request.WebServerHeader)}
+     *               bytes remaining.
+     * @throws java.nio.BufferOverflowException thrown if the buffer is too small.
+     */
+    public static void encode(HttpVersion version, HttpResponse response, WebServerHeader header, ByteBuffer target) {
+        target.put(kStatusLines[version.ordinal()][response.ordinal()]);
+
+        if (header != null) {
+            for (int i = 0; i < header.getCount(); i++) {
+                encodeHeader(header.getKey(i), header.getValue(i), target);
+            }
+        }
+
+        target.put(kNewLine);
+    }
+
+    /**
+     * Writes a single header line into a buffer.
+     *
+     * @param name The name of the header.
+     * @param value The value of the header.
+     * @param target The buffer that will receive the data.
+     * @throws java.nio.BufferOverflowException thrown if the buffer is too small.
+     */
+    public static void encodeHeader(String name, String value, ByteBuffer target) {
+        byte[] encodedName = kEncodedNames.get(name);
+
+        if (encodedName != null) {
+            target.put(encodedName);
+        } else {
+            putString(name, target);
+            target.put(kValueDelimiter);
+        }
+
+        putString(value, target);
+        target.put(kNewLine);
+    }
+
+    /**
+     * Writes the characters of a string into a buffer as ISO-8859-1.
+     *
+     * @param value The string to write.
+     * @param target The buffer that will receive the data.
+     */
+    private static void putString(String value, ByteBuffer target) {
+        int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            char current = value.charAt(i);
+            target.put(current <= 0xFF ? (byte) current : (byte) '?');
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.MappedFile;
+import com.frisbey.webserver.cache.MappedFileCache;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A body source that writes a large file from a mapping shared through a
+ * {@link com.frisbey.webserver.cache.MappedFileCache}. The body is written as a slice of the mapping, so nothing is
+ * read or copied for the response itself. If the cache has no room for the file when the body is written, another
+ * source writes it instead.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.MappedFileCache
+ */
+public class MappedBodySource implements BodySource {
+
+    // the cache that maps the file
+    private MappedFileCache cache;
+
+    // the attributes of the file, which the cache uses to tell whether its mapping is stale
+    private FileMetadata metadata;
+
+    // the position in the file of the first byte that will be written
+    private long position;
+
+    // the number of bytes that will be written, or -1 to write through to the end of the file
+    private long count;
+
+    // the source that writes the same bytes when the file cannot be mapped
+    private BodySource fallback;
+
+    /**
+     * Initializes a source that will write a region of a file.
+     *
+     * @param cache The cache that maps the file.
+     * @param metadata The current attributes of the file.
+     * @param position The position in the file of the first byte to write. Must not be negative.
+     * @param count The number of bytes to write, or -1 to write through to the end of the file.
+     * @param fallback The source that writes the same region when the file cannot be mapped.
+     */
+    public MappedBodySource(MappedFileCache cache, FileMetadata metadata, long position, long count, BodySource fallback) {
+        if (cache == null || metadata == null || fallback == null) {
+            throw new IllegalArgumentException("A cache, the file's attributes and a fallback source are required");
+        }
+
+        if (position < 0 || count < -1) {
+            throw new IllegalArgumentException("File region must not be negative");
+        }
+
+        this.cache = cache;
+        this.metadata = metadata;
+        this.position = position;
+        this.count = count;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Retrieves the number of bytes that the source will write.
+     *
+     * @return The length of the region in bytes, or of the file if the source covers the whole file.
+     */
+    @Override
+    public long getLength() {
+        return this.count >= 0 ? this.count : Math.max(0, this.metadata.getLength() - this.position);
+    }
+
+    /**
+     * Writes the file, or the source's region of it, to the output from the shared mapping.
+     *
+     * @param output The output to which the file should be written.
+     * @throws IOException thrown if the file cannot be mapped or if there are issues writing it to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        MappedFile file = this.cache.acquire(this.metadata);
+
+        if (file == null) {
+            this.fallback.writeTo(output);
+            return;
+        }
+
+        try {
+            output.write(getRegion(file));
+        } finally {
+            this.cache.release(file);
+        }
+    }
+
+    /**
+     * Copies the file, or the source's region of it, into a buffer if it fits.
+     *
+     * @param target The buffer that will receive the file.
+     * @return true if the file was copied, false if the buffer is too small.
+     * @throws IOException thrown if the file cannot be mapped or read.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) throws IOException {
+        if (getLength() > target.remaining()) {
+            return false;
+        }
+
+        MappedFile file = this.cache.acquire(this.metadata);
+
+        if (file == null) {
+            return this.fallback.readInto(target);
+        }
+
+        try {
+            target.put(getRegion(file));
+        } finally {
+            this.cache.release(file);
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates a buffer that covers the source's region of a mapped file.
+     *
+     * @param file The mapped file.
+     * @return A buffer that shares the mapping.
+     * @throws EOFException thrown if the file was shorter than the region when it was mapped.
+     */
+    private ByteBuffer getRegion(MappedFile file) throws EOFException {
+        long length = getLength();
+
+        if (this.position + length > file.getLength()) {
+            throw new EOFException("File ended before the expected number of bytes could be written");
+        }
+
+        return file.slice(this.position, length);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.request.ByteRange;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A body source that writes several byte ranges of a resource as a multipart/byteranges body, which is how a server
+ * answers a request for more than one range. Each range is preceded by a small header naming its position within the
+ * resource. When the resource is a file, the file is opened once and each range is transferred by position, so that
+ * the bytes between ranges are never read.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.request.ByteRange
+ */
+public class MultipartBodySource implements BodySource {
+
+    // the character set used for the part headers
+    private static final Charset kHeaderCharset = Charset.forName("ISO-8859-1");
+
+    // separates the parts of every multipart body that the server writes. chosen once per process so that it is
+    // unlikely to appear in any resource that is served
+    private static final String kBoundary = "WebServerByteRanges" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    // the ranges that will be written, in the order they were requested
+    private List<ByteRange> ranges;
+
+    // the encoded delimiter and header that precede each range
+    private byte[][] partHeaders;
+
+    // the encoded delimiter that ends the body
+    private byte[] closeDelimiter;
+
+    // the full local path to the file that contains the ranges, used when the content is not held in memory
+    private String path;
+
+    // the entire resource, or null if the ranges should be read from the file
+    private byte[] content;
+
+    // the total number of bytes that the body will contain
+    private long length;
+
+    /**
+     * Initializes a source that will write ranges of a file.
+     *
+     * @param path The full local path to the file.
+     * @param ranges The ranges to write. Each must lie within the file.
+     * @param contentType The content type of the file, which is repeated in the header of each part.
+     * @param totalLength The length of the file.
+     */
+    public MultipartBodySource(String path, List<ByteRange> ranges, String contentType, long totalLength) {
+        this(path, null, ranges, contentType, totalLength);
+    }
+
+    /**
+     * Initializes a source that will write ranges of a resource that is held in memory.
+     *
+     * @param content The entire resource. The array is not copied, so it must not be modified while the source is in
+     *                use.
+     * @param ranges The ranges to write. Each must lie within the resource.
+     * @param contentType The content type of the resource, which is repeated in the header of each part.
+     */
+    public MultipartBodySource(byte[] content, List<ByteRange> ranges, String contentType) {
+        this(null, content, ranges, contentType, content.length);
+    }
+
+    /**
+     * Initializes a source and encodes the part headers, so that the length of the body is known before it is written.
+     *
+     * @param path The full local path to the file, or null if the content is provided.
+     * @param content The entire resource, or null if the ranges should be read from the file.
+     * @param ranges The ranges to write.
+     * @param contentType The content type of the resource.
+     * @param totalLength The length of the resource.
+     */
+    private MultipartBodySource(String path, byte[] content, List<ByteRange> ranges, String contentType, long totalLength) {
+        this.path = path;
+        this.content = content;
+        this.ranges = ranges;
+        this.partHeaders = new byte[ranges.size()][];
+        this.closeDelimiter = ("\r\n--" + kBoundary + "--\r\n").getBytes(kHeaderCharset);
+        this.length = this.closeDelimiter.length;
+
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            String partHeader = "\r\n--" + kBoundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.toContentRange(totalLength) + "\r\n\r\n";
+
+            this.partHeaders[i] = partHeader.getBytes(kHeaderCharset);
+            this.length += this.partHeaders[i].length + range.getLength();
+        }
+    }
+
+    /**
+     * Retrieves the string that separates the parts of the body, which must be given to the client in the Content-Type
+     * header of the response.
+     *
+     * @return The boundary string.
+     */
+    public String getBoundary() {
+        return kBoundary;
+    }
+
+    /**
+     * Retrieves the value of the Content-Type header that describes the body.
+     *
+     * @return A multipart/byteranges content type, including its boundary.
+     */
+    public String getContentType() {
+        return "multipart/byteranges; boundary=" + kBoundary;
+    }
+
+    /**
+     * Retrieves the length of the body, including the part headers.
+     *
+     * @return The number of bytes that will be written.
+     */
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Writes each part header followed by its range, and then the closing delimiter.
+     *
+     * @param output The output to which the body should be written.
+     * @throws IOException thrown if the file cannot be opened or if there are issues writing to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        if (this.content != null) {
+            for (int i = 0; i < this.ranges.size(); i++) {
+                ByteRange range = this.ranges.get(i);
+                output.write(this.partHeaders[i]);
+                output.write(this.content, (int) range.getFirst(), (int) range.getLength());
+            }
+        } else {
+            FileInputStream stream = new FileInputStream(this.path);
+
+            try {
+                FileChannel channel = stream.getChannel();
+
+                for (int i = 0; i < this.ranges.size(); i++) {
+                    ByteRange range = this.ranges.get(i);
+                    output.write(this.partHeaders[i]);
+                    output.transferFrom(channel, range.getFirst(), range.getLength());
+                }
+            } finally {
+                stream.close();
+            }
+        }
+
+        output.write(this.closeDelimiter);
+    }
+
+    /**
+     * Reads the entire body into a buffer if it fits, so that a small multipart body can be sent with its response
+     * header in a single write.
+     *
+     * @param target The buffer that will receive the body.
+     * @return true if the body was read, false if the buffer is too small.
+     * @throws IOException thrown if the file cannot be opened or read.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) throws IOException {
+        if (this.length > target.remaining()) {
+            return false;
+        }
+
+        FileInputStream stream = (this.content == null) ? new FileInputStream(this.path) : null;
+
+        try {
+            for (int i = 0; i < this.ranges.size(); i++) {
+                ByteRange range = this.ranges.get(i);
+                target.put(this.partHeaders[i]);
+
+                if (this.content != null) {
+                    target.put(this.content, (int) range.getFirst(), (int) range.getLength());
+                } else {
+                    readRange(stream.getChannel(), range, target);
+                }
+            }
+        } finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+
+        target.put(this.closeDelimiter);
+
+        return true;
+    }
+
+    /**
+     * Reads a range of a file into a buffer by position.
+     *
+     * @param channel The open file.
+     * @param range The range to read.
+     * @param target The buffer that will receive the range. Must have room for the entire range.
+     * @throws IOException thrown if the file cannot be read or ends before the range does.
+     */
+    private static void readRange(FileChannel channel, ByteRange range, ByteBuffer target) throws IOException {
+        int end = target.position() + (int) range.getLength();
+        ByteBuffer region = target.duplicate();
+        region.limit(end);
+        long position = range.getFirst();
+
+        while (region.hasRemaining()) {
+            int read = channel.read(region, position);
+
+            if (read < 0) {
+                throw new EOFException("File ended before the requested range could be read");
+            }
+
+            position += read;
+        }
+
+        target.position(end);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.OpenFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A body source that reads its data from a file held open by a {@link com.frisbey.webserver.cache.FileChannelCache}.
+ * Unlike a {@link com.frisbey.webserver.response.FileBodySource}, the file is not opened and closed for every response;
+ * every response that is sending the same file shares one descriptor, which it reads by position.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.cache.FileChannelCache
+ */
+public class OpenFileBodySource implements BodySource {
+
+    // the cache that holds the file open
+    private FileChannelCache cache;
+
+    // the attributes of the file, which the cache uses to tell whether its descriptor is stale
+    private FileMetadata metadata;
+
+    // the position in the file of the first byte that will be written
+    private long position;
+
+    // the number of bytes that will be written, or -1 to write through to the end of the file
+    private long count;
+
+    /**
+     * Initializes a source that will write the contents of a file.
+     *
+     * @param cache The cache that holds the file open.
+     * @param metadata The current attributes of the file.
+     */
+    public OpenFileBodySource(FileChannelCache cache, FileMetadata metadata) {
+        this(cache, metadata, 0, -1);
+    }
+
+    /**
+     * Initializes a source that will write a region of a file.
+     *
+     * @param cache The cache that holds the file open.
+     * @param metadata The current attributes of the file.
+     * @param position The position in the file of the first byte to write. Must not be negative.
+     * @param count The number of bytes to write, or -1 to write through to the end of the file.
+     */
+    public OpenFileBodySource(FileChannelCache cache, FileMetadata metadata, long position, long count) {
+        if (cache == null || metadata == null) {
+            throw new IllegalArgumentException("A cache and the file's attributes are required");
+        }
+
+        if (position < 0 || count < -1) {
+            throw new IllegalArgumentException("File region must not be negative");
+        }
+
+        this.cache = cache;
+        this.metadata = metadata;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * Retrieves the number of bytes that the source will write.
+     *
+     * @return The length of the region in bytes, or of the file if the source covers the whole file.
+     */
+    @Override
+    public long getLength() {
+        return this.count >= 0 ? this.count : Math.max(0, this.metadata.getLength() - this.position);
+    }
+
+    /**
+     * Writes the file, or the source's region of it, to the output.
+     *
+     * @param output The output to which the file should be written.
+     * @throws IOException thrown if the file cannot be opened or if there are issues writing it to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        OpenFile file = this.cache.acquire(this.metadata);
+
+        try {
+            output.transferFrom(file.getChannel(), this.position, getLength());
+        } finally {
+            this.cache.release(file);
+        }
+    }
+
+    /**
+     * Reads the file, or the source's region of it, into a buffer if it fits.
+     *
+     * @param target The buffer that will receive the file.
+     * @return true if the file was read, false if the buffer is too small.
+     * @throws IOException thrown if the file cannot be opened or read.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) throws IOException {
+        long size = getLength();
+
+        if (size > target.remaining()) {
+            return false;
+        }
+
+        OpenFile file = this.cache.acquire(this.metadata);
+
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer region = target.duplicate();
+            region.limit(target.position() + (int) size);
+
+            while (region.hasRemaining()) {
+                if (channel.read(region, this.position + region.position() - target.position()) < 0) {
+                    throw new EOFException("File ended before the expected number of bytes could be read");
+                }
+            }
+
+            target.position(region.limit());
+        } finally {
+            this.cache.release(file);
+        }
+
+        return true;
+    }
+}
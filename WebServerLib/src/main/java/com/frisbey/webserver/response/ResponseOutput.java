@@ -0,0 +1,367 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.utility.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The destination of a {@link com.frisbey.webserver.response.WebServerResponse}, and the engine that moves response
+ * bodies to the client.
+ *
+ * <p>When the client is connected through a {@link java.nio.channels.WritableByteChannel} (for example a socket that
+ * was accepted by a {@link java.nio.channels.ServerSocketChannel}), files are sent using
+ * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets the
+ * operating system move the data without copying it through the JVM. When only an
+ * {@link java.io.OutputStream} is available the data is copied in bulk through a buffer borrowed from a
+ * {@link com.frisbey.webserver.utility.BufferPool}.</p>
+ *
+ * <p>Small responses are sent with a single gathering write of the header and body (see
+ * {@link #write(java.nio.ByteBuffer, java.nio.ByteBuffer)}), so that a response never leaves the server as a header
+ * segment followed by a separate body segment.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.BodySource
+ */
+public class ResponseOutput {
+
+    // the stream that will receive data when no channel is available
+    private OutputStream stream;
+
+    // the channel that will receive data, or null if the client is not connected through a channel
+    private WritableByteChannel channel;
+
+    // the pool that copy buffers will be borrowed from
+    private BufferPool bufferPool;
+
+    // the total number of bytes that have been written
+    private long bytesWritten;
+
+    // the largest body, in bytes, that should be written together with its header
+    private int gatherWriteThreshold;
+
+    // reused for gathering writes so that writing a response does not allocate an array
+    private ByteBuffer[] gatherBuffers;
+
+    /**
+     * Initializes an output that will write to a stream.
+     *
+     * @param stream The stream to which data will be written.
+     */
+    public ResponseOutput(OutputStream stream) {
+        this(stream, null);
+    }
+
+    /**
+     * Initializes an output that will prefer writing to a channel, but can fall back to a stream.
+     *
+     * @param stream The stream to which data will be written if the channel is null.
+     * @param channel The channel to which data will be written. May be null.
+     */
+    public ResponseOutput(OutputStream stream, WritableByteChannel channel) {
+        this(stream, channel, BufferPool.getSharedPool());
+    }
+
+    /**
+     * Initializes an output that will prefer writing to a channel, but can fall back to a stream.
+     *
+     * @param stream The stream to which data will be written if the channel is null.
+     * @param channel The channel to which data will be written. May be null.
+     * @param bufferPool The pool from which copy buffers will be borrowed.
+     */
+    public ResponseOutput(OutputStream stream, WritableByteChannel channel, BufferPool bufferPool) {
+        if (stream == null && channel == null) {
+            throw new IllegalArgumentException("Either a stream or a channel must be provided");
+        }
+
+        this.stream = stream;
+        this.channel = channel;
+        this.bufferPool = bufferPool;
+        this.bytesWritten = 0;
+        this.gatherWriteThreshold = WebServerContext.kDefaultGatherWriteThreshold;
+        this.gatherBuffers = new ByteBuffer[2];
+    }
+
+    /**
+     * Retrieves a value indicating whether the output is able to perform zero-copy transfers.
+     *
+     * @return true if data will be written to a channel, false if it will be written to a stream.
+     */
+    public boolean isChannelAvailable() {
+        return this.channel != null;
+    }
+
+    /**
+     * Retrieves the total number of bytes that have been written to the output.
+     *
+     * @return A count of bytes.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Retrieves the size of the largest body that should be written together with its header.
+     *
+     * @return A size in bytes.
+     */
+    public int getGatherWriteThreshold() {
+        return this.gatherWriteThreshold;
+    }
+
+    /**
+     * Sets the size of the largest body that should be written together with its header.
+     *
+     * @param gatherWriteThreshold A size in bytes. Must not be negative. 0 writes every body separately.
+     */
+    public void setGatherWriteThreshold(int gatherWriteThreshold) {
+        if (gatherWriteThreshold < 0) {
+            throw new IllegalArgumentException("Gather write threshold must not be negative");
+        }
+
+        this.gatherWriteThreshold = gatherWriteThreshold;
+    }
+
+    /**
+     * Writes an entire array to the output.
+     *
+     * @param data The data to write.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    public void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Writes a portion of an array to the output.
+     *
+     * @param data The array containing the data to write.
+     * @param offset The position in the array of the first byte to write.
+     * @param length The number of bytes to write.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (this.channel != null) {
+            write(ByteBuffer.wrap(data, offset, length));
+        } else {
+            this.stream.write(data, offset, length);
+            this.bytesWritten += length;
+        }
+    }
+
+    /**
+     * Writes all of the remaining bytes of a buffer to the output. The buffer's position will be advanced to its limit.
+     *
+     * @param buffer The buffer to write.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+
+        if (this.channel != null) {
+            while (buffer.hasRemaining()) {
+                if (this.channel.write(buffer) == 0) {
+                    awaitWritable();
+                }
+            }
+        } else if (buffer.hasArray()) {
+            this.stream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.limit());
+        } else {
+            byte[] copyBuffer = this.bufferPool.acquire();
+
+            try {
+                while (buffer.hasRemaining()) {
+                    int chunk = Math.min(copyBuffer.length, buffer.remaining());
+                    buffer.get(copyBuffer, 0, chunk);
+                    this.stream.write(copyBuffer, 0, chunk);
+                }
+            } finally {
+                this.bufferPool.release(copyBuffer);
+            }
+        }
+
+        this.bytesWritten += length;
+    }
+
+    /**
+     * Writes the remaining bytes of two buffers to the output as a single write where possible. Channels that support
+     * {@link java.nio.channels.GatheringByteChannel#write(java.nio.ByteBuffer[])} receive both buffers in one call. When
+     * writing to a stream, the buffers are copied into a single pooled array if they fit, and written one after the
+     * other if they do not. The positions of both buffers will be advanced to their limits.
+     *
+     * @param first The buffer to write first, typically a response header.
+     * @param second The buffer to write second, typically a response body.
+     * @throws IOException thrown if there are issues writing to the output.
+     */
+    public void write(ByteBuffer first, ByteBuffer second) throws IOException {
+        long length = first.remaining() + second.remaining();
+
+        if (this.channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gatheringChannel = (GatheringByteChannel) this.channel;
+            this.gatherBuffers[0] = first;
+            this.gatherBuffers[1] = second;
+
+            try {
+                while (first.hasRemaining() || second.hasRemaining()) {
+                    if (gatheringChannel.write(this.gatherBuffers) == 0) {
+                        awaitWritable();
+                    }
+                }
+            } finally {
+                this.gatherBuffers[0] = null;
+                this.gatherBuffers[1] = null;
+            }
+
+            this.bytesWritten += length;
+        } else if (this.channel == null && length <= this.bufferPool.getBufferSize()) {
+            byte[] copyBuffer = this.bufferPool.acquire();
+
+            try {
+                int firstLength = first.remaining();
+                first.get(copyBuffer, 0, firstLength);
+                second.get(copyBuffer, firstLength, second.remaining());
+                this.stream.write(copyBuffer, 0, (int) length);
+            } finally {
+                this.bufferPool.release(copyBuffer);
+            }
+
+            this.bytesWritten += length;
+        } else {
+            write(first);
+            write(second);
+        }
+    }
+
+    /**
+     * Writes a region of a file to the output. If the output is a channel the region will be transferred using
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}. Otherwise
+     * the region is copied to the stream through a pooled buffer. The position of the file channel is not modified.
+     *
+     * @param source The file to write.
+     * @param position The position in the file of the first byte to write.
+     * @param count The number of bytes to write.
+     * @return The number of bytes that were written.
+     * @throws IOException thrown if there are issues reading the file or writing to the output, or if the file ends
+     *         before the requested number of bytes could be written.
+     */
+    public long transferFrom(FileChannel source, long position, long count) throws IOException {
+        long remaining = count;
+        long current = position;
+
+        if (this.channel != null) {
+            while (remaining > 0) {
+                long transferred = source.transferTo(current, remaining, this.channel);
+
+                if (transferred <= 0) {
+                    if (current >= source.size()) {
+                        throw new EOFException("File ended before the expected number of bytes could be transferred");
+                    }
+
+                    awaitWritable();
+                }
+
+                current += transferred;
+                remaining -= transferred;
+            }
+        } else {
+            byte[] copyBuffer = this.bufferPool.acquire();
+
+            try {
+                ByteBuffer wrapper = ByteBuffer.wrap(copyBuffer);
+
+                while (remaining > 0) {
+                    wrapper.clear();
+                    if (remaining < wrapper.capacity()) {
+                        wrapper.limit((int) remaining);
+                    }
+
+                    int read = source.read(wrapper, current);
+
+                    if (read < 0) {
+                        throw new EOFException("File ended before the expected number of bytes could be copied");
+                    }
+
+                    this.stream.write(copyBuffer, 0, read);
+                    current += read;
+                    remaining -= read;
+                }
+            } finally {
+                this.bufferPool.release(copyBuffer);
+            }
+        }
+
+        this.bytesWritten += count;
+
+        return count;
+    }
+
+    /**
+     * Copies the entire contents of a stream to the output using a pooled buffer. The stream will not be closed.
+     *
+     * @param source The stream to copy.
+     * @return The number of bytes that were written.
+     * @throws IOException thrown if there are issues reading the stream or writing to the output.
+     */
+    public long transferFrom(InputStream source) throws IOException {
+        long total = 0;
+        byte[] copyBuffer = this.bufferPool.acquire();
+
+        try {
+            int read;
+
+            while ((read = source.read(copyBuffer)) != -1) {
+                write(copyBuffer, 0, read);
+                total += read;
+            }
+        } finally {
+            this.bufferPool.release(copyBuffer);
+        }
+
+        return total;
+    }
+
+    /**
+     * Invoked when the channel was unable to accept any data. Blocking channels never need to wait, so the default
+     * implementation simply returns; outputs that write to non-blocking channels should override the method to wait
+     * until the channel is ready for more data.
+     *
+     * @throws IOException thrown if there are issues waiting for the channel.
+     */
+    protected void awaitWritable() throws IOException {
+    }
+
+    /**
+     * Flushes any data that is buffered by the underlying stream.
+     *
+     * @throws IOException thrown if there are issues flushing the stream.
+     */
+    public void flush() throws IOException {
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A body source that copies the contents of an arbitrary {@link java.io.InputStream}. Streams cannot take part in a
+ * zero-copy transfer, so the data is copied through a pooled buffer instead.
+ *
+ * @author Mark Frisbey
+ */
+public class StreamBodySource implements BodySource {
+
+    // the stream whose contents will be written
+    private InputStream stream;
+
+    // the number of bytes that the stream will provide, or -1 if unknown
+    private long length;
+
+    /**
+     * Initializes a source whose length is not known ahead of time.
+     *
+     * @param stream The stream whose contents will be written. The source assumes ownership of the stream and will
+     *               close it once it has been written.
+     */
+    public StreamBodySource(InputStream stream) {
+        this(stream, -1);
+    }
+
+    /**
+     * Initializes a source that will write a stream of a known length.
+     *
+     * @param stream The stream whose contents will be written. The source assumes ownership of the stream and will
+     *               close it once it has been written.
+     * @param length The number of bytes that the stream will provide.
+     */
+    public StreamBodySource(InputStream stream, long length) {
+        this.stream = stream;
+        this.length = length;
+    }
+
+    /**
+     * Retrieves the length that was provided when the source was created.
+     *
+     * @return The length of the stream in bytes, or -1 if the length is unknown.
+     */
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Copies the entire stream to the output and then closes the stream.
+     *
+     * @param output The output to which the stream should be written.
+     * @throws IOException thrown if there are issues reading from the stream or writing to the output.
+     */
+    @Override
+    public void writeTo(ResponseOutput output) throws IOException {
+        try {
+            output.transferFrom(this.stream);
+        } finally {
+            this.stream.close();
+        }
+    }
+
+    /**
+     * Reads the stream into a buffer and then closes the stream. Only streams whose length is known and fits in the
+     * buffer are read.
+     *
+     * @param target The buffer that will receive the data.
+     * @return true if the stream was read, false if its length is unknown or the buffer is too small.
+     * @throws IOException thrown if there are issues reading the stream, or if it ends before its stated length.
+     */
+    @Override
+    public boolean readInto(ByteBuffer target) throws IOException {
+        if (this.length < 0 || this.length > target.remaining()) {
+            return false;
+        }
+
+        try {
+            ReadableByteChannel channel = Channels.newChannel(this.stream);
+            int end = target.position() + (int) this.length;
+            ByteBuffer region = target.duplicate();
+            region.limit(end);
+
+            while (region.hasRemaining()) {
+                if (channel.read(region) < 0) {
+                    throw new EOFException("Stream ended before its stated length");
+                }
+            }
+
+            target.position(end);
+        } finally {
+            this.stream.close();
+        }
+
+        return true;
+    }
+}
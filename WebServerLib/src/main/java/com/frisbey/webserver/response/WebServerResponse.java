@@ -21,18 +21,26 @@ import com.frisbey.webserver.HttpVersion;
 import com.frisbey.webserver.exception.InvalidRequestException;
 import com.frisbey.webserver.request.WebServerHeader;
 import com.frisbey.webserver.request.WebServerRequestFactory;
+import com.frisbey.webserver.utility.DirectBufferPool;
 import com.frisbey.webserver.utility.StreamUtils;
 import com.frisbey.webserver.utility.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Represents a response that can be returned by a {@link com.frisbey.webserver.request.WebServerRequest}. A
  * response will consist of an HTTP response, the HTTP version, a header, and a body. The body can be written
  * directly to an {@Link java.io.OutputStream}.
  *
+ * <p>A body whose length is not known ahead of time can be sent with the chunked transfer coding (see
+ * {@link #setChunked(int)}), so that it can be streamed to the client without first being buffered in memory.</p>
+ *
  * @author Mark Frisbey
  * @see com.frisbey.webserver.request.WebServerRequest
  */
@@ -52,11 +60,23 @@ public class WebServerResponse {
     // URI to the body resource that will be associated with the response
     private String bodyUri;
 
+    // the number of bytes of the body resource that will be sent, or -1 to send the whole resource
+    private long bodyUriLength;
+
+    // the source of the response's body. takes precedence over the body URI when set
+    private BodySource body;
+
+    // the number of bytes of data in each chunk of a chunked body, or 0 if the body is not chunked
+    private int chunkSize;
+
+    // the number of bytes in the status line and header of the last write, so that the body can be measured on its own
+    private int headerLength;
+
     // the newline sequence that will be used in the response
     protected static final String kResponseNewLine = "\r\n";
 
-    // the delimiter that will be used to separate key/value pairs in the response header
-    protected static final String kHeaderValueDelimiter = ": ";
+    // the character set of the status line and header
+    private static final Charset kHeaderCharset = Charset.forName("ISO-8859-1");
 
     /**
      * Creates a new response consisting of an HTTP version and HTTP response.
@@ -92,6 +112,7 @@ public class WebServerResponse {
         this.response = response;
         this.header = header;
         this.bodyUri = bodyUri;
+        this.bodyUriLength = -1;
     }
 
     /**
@@ -112,6 +133,15 @@ public class WebServerResponse {
         return this.response;
     }
 
+    /**
+     * Retrieves a value indicating whether the response was given a header.
+     *
+     * @return true if the response will include header values.
+     */
+    public boolean hasHeader() {
+        return this.header != null;
+    }
+
     /**
      * Retrieves the value for a key in the response's header.
      *
@@ -133,6 +163,70 @@ public class WebServerResponse {
         this.header.setValue(key, value);
     }
 
+    /**
+     * Removes a header value from the response. Nothing happens if the key does not exist.
+     *
+     * @param key The header key that should be removed.
+     */
+    public void removeHeaderValue(String key) {
+        this.header.removeValue(key);
+    }
+
+    /**
+     * Retrieves a value indicating whether the length of the response's body is known before it is written. Responses
+     * without a body, and bodies identified by a URI, always have a known length.
+     *
+     * @return false if the body must either be chunked or delimited by closing the connection.
+     */
+    public boolean isBodyLengthKnown() {
+        if (this.body == null) {
+            return true;
+        }
+
+        try {
+            return this.body.getLength() >= 0;
+        } catch (IOException ex) {
+            // the failure will be reported when the body is written
+            return true;
+        }
+    }
+
+    /**
+     * Sends the response's body with the chunked transfer coding. The Content-Length header is replaced with a
+     * Transfer-Encoding header. Only HTTP/1.1 clients understand chunked bodies.
+     *
+     * @param chunkSize The number of bytes of data in each chunk. Must be greater than 0.
+     */
+    public void setChunked(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0");
+        }
+
+        this.chunkSize = chunkSize;
+        this.header.removeValue("Content-Length");
+        this.header.setValue("Transfer-Encoding", "chunked");
+    }
+
+    /**
+     * Retrieves a value indicating whether the response's body will be sent with the chunked transfer coding.
+     *
+     * @return true if the body will be chunked.
+     */
+    public boolean isChunked() {
+        return this.chunkSize > 0;
+    }
+
+    /**
+     * Retrieves the number of bytes in the status line and header, including the blank line that ends the header, as
+     * of the last time the response was written. Subtracting it from the bytes written for the response leaves the
+     * bytes of the body, which is the size that access logs report.
+     *
+     * @return A number of bytes, or 0 if the response has not been written.
+     */
+    public int getHeaderLength() {
+        return this.headerLength;
+    }
+
     /**
      * Writes the entire response to an output stream. The output will include the HTTP response data, the header,
      * and the entire contents of the response's body.
@@ -141,66 +235,188 @@ public class WebServerResponse {
      * @throws IOException thrown if there is an issue writing to the output stream or reading from the body input stream.
      */
     public void writeResponse(OutputStream output) throws IOException {
+        writeResponse(new ResponseOutput(output));
+    }
+
+    /**
+     * Writes the entire response to a client connection. When a channel is provided the response body will be
+     * transferred to it directly from the file system if possible.
+     *
+     * @param output The output stream to which the response will be written if the channel is null.
+     * @param channel The channel to which the response will be written. May be null.
+     * @throws IOException thrown if there is an issue writing to the output or reading the body.
+     */
+    public void writeResponse(OutputStream output, WritableByteChannel channel) throws IOException {
+        writeResponse(new ResponseOutput(output, channel));
+    }
+
+    /**
+     * Writes the entire response to an output. The output will include the HTTP response data, the header, and the
+     * entire contents of the response's body. A body no larger than the output's gather write threshold is sent in the
+     * same write as the header; larger bodies follow the header in writes of their own.
+     *
+     * @param output The output to which the response will be written.
+     * @throws IOException thrown if there is an issue writing to the output or reading the body.
+     */
+    public void writeResponse(ResponseOutput output) throws IOException {
         logger.debug("entering with output={}", output);
 
-        StringBuilder responseData = new StringBuilder(String.format("%s %d %s", version.getVersion(), response.getCode(), response.getText()));
-        responseData.append(kResponseNewLine);
+        BodySource bodySource = null;
 
-        // write the header if supplied
-        if (header != null) {
-            logger.debug("writing header to output");
+        if (this.body != null || !StringUtils.isNullOrEmpty(this.bodyUri)) {
+            logger.debug("writing body to output from {}", (this.body != null) ? this.body : this.bodyUri);
 
-            Iterable<String> headerKeys = header.getKeys();
+            try {
+                bodySource = (this.body != null) ? this.body : getBodySource(this.bodyUri);
+            } catch (Exception ex) {
+                throw new IOException("Unable to retrieve requested URI and write to output", ex);
+            }
+        }
 
-            for (String key : headerKeys) {
-                responseData.append(String.format("%s%s%s", key, kHeaderValueDelimiter, header.getValue(key)));
-                responseData.append(kResponseNewLine);
+        DirectBufferPool pool = DirectBufferPool.getSharedPool();
+        ByteBuffer headerBuffer = encodeHeader(pool);
+        this.headerLength = headerBuffer.remaining();
+
+        try {
+            if (bodySource == null) {
+                output.write(headerBuffer);
+            } else if (this.chunkSize > 0) {
+                output.write(headerBuffer);
+                writeChunked(output, bodySource);
+            } else if (!writeGathered(output, headerBuffer, bodySource, pool)) {
+                output.write(headerBuffer);
+
+                try {
+                    bodySource.writeTo(output);
+                } catch (Exception ex) {
+                    throw new IOException("Unable to retrieve requested URI and write to output", ex);
+                }
             }
+        } finally {
+            pool.release(headerBuffer);
         }
 
-        // add the separator between the header and body
-        responseData.append(kResponseNewLine);
+        output.flush();
+    }
+
+    /**
+     * Encodes the status line and header of the response, including the blank line that separates them from the body.
+     * The header is encoded into a pooled direct buffer, so that writing it allocates nothing. A header too large for
+     * a pooled buffer is encoded into a buffer of its own.
+     *
+     * @param pool The pool from which the buffer will be borrowed. The caller must release the buffer to the pool.
+     * @return A buffer that is ready to be written.
+     */
+    private ByteBuffer encodeHeader(DirectBufferPool pool) {
+        int length = HeaderEncoder.getEncodedLength(this.version, this.response, this.header);
+        ByteBuffer buffer = length <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocate(length);
+
+        HeaderEncoder.encode(this.version, this.response, this.header, buffer);
+        buffer.flip();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Writing header to output: {}", kHeaderCharset.decode(buffer.duplicate()).toString().replace(kResponseNewLine, "[NL]"));
+        }
 
-        String headerResponse = responseData.toString();
+        return buffer;
+    }
 
-        logger.debug("Writing header to output: {}", headerResponse.replace(kResponseNewLine, "[NL]"));
+    /**
+     * Writes the header and a small body together with a single gathering write. Nothing is written if the body is
+     * larger than the output's gather write threshold, its length is unknown, or the source cannot read it into a
+     * buffer.
+     *
+     * @param output The output to which the response will be written.
+     * @param headerBuffer The encoded header.
+     * @param bodySource The source of the response's body.
+     * @param pool The pool from which the body buffer will be borrowed.
+     * @return true if the header and body were written, false if the caller must write them separately.
+     * @throws IOException thrown if there is an issue writing to the output or reading the body.
+     */
+    private boolean writeGathered(ResponseOutput output, ByteBuffer headerBuffer, BodySource bodySource,
+                                  DirectBufferPool pool) throws IOException {
+        long length;
+
+        try {
+            length = bodySource.getLength();
+        } catch (IOException ex) {
+            throw new IOException("Unable to retrieve requested URI and write to output", ex);
+        }
 
-        output.write(headerResponse.getBytes());
+        if (length < 0 || length > output.getGatherWriteThreshold()) {
+            return false;
+        }
 
-        // write the body if supplied
-        if (!StringUtils.isNullOrEmpty(this.bodyUri)) {
-            logger.debug("writing body to output from uri {}", this.bodyUri);
+        ByteBuffer bodyBuffer = length <= pool.getBufferSize() ? pool.acquire() : ByteBuffer.allocate((int) length);
 
-            InputStream stream = null;
+        try {
+            boolean isRead;
 
             try {
-                stream = getUriInputStream(this.bodyUri);
+                isRead = bodySource.readInto(bodyBuffer);
+            } catch (IOException ex) {
+                throw new IOException("Unable to retrieve requested URI and write to output", ex);
+            }
 
-                int currByte = 0;
+            if (!isRead) {
+                return false;
+            }
 
-                while ((currByte = stream.read()) != -1) {
-                    output.write(currByte);
-                }
+            bodyBuffer.flip();
+            output.write(headerBuffer, bodyBuffer);
+        } finally {
+            pool.release(bodyBuffer);
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes a body with the chunked transfer coding. The source writes to a stream that frames its data into chunks,
+     * and the end of the body is only marked if the source writes its entire body.
+     *
+     * @param output The output to which the body will be written.
+     * @param bodySource The source of the response's body.
+     * @throws IOException thrown if there is an issue writing to the output or reading the body.
+     */
+    private void writeChunked(ResponseOutput output, BodySource bodySource) throws IOException {
+        ChunkedOutputStream chunked = new ChunkedOutputStream(output, this.chunkSize);
+
+        try {
+            try {
+                bodySource.writeTo(new ResponseOutput(chunked));
             } catch (Exception ex) {
                 throw new IOException("Unable to retrieve requested URI and write to output", ex);
-            } finally {
-                if (stream != null) {
-                    stream.close();
-                }
             }
+
+            chunked.finish();
+        } finally {
+            chunked.close();
         }
     }
 
     /**
-     * Retrieves an input stream to the resource at the given URI. Note that the caller will be responsible for
-     * closing the stream.
+     * Retrieves the source that will provide the body for the resource at the given URI. By default the resource is
+     * treated as a local file so that it can be transferred without being copied through the JVM. If the length of the
+     * body was given with its URI, no more than that many bytes are sent, and a file that has become shorter causes
+     * the write to fail.
      *
      * @param uri The location of the resource to retrieve.
-     * @return An input stream to the requested URI.
-     * @throws IOException thrown if there are issues initializing the stream.
+     * @return A source for the requested URI.
+     * @throws IOException thrown if there are issues initializing the source.
+     */
+    protected BodySource getBodySource(String uri) throws IOException {
+        return new FileBodySource(uri, 0, this.bodyUriLength);
+    }
+
+    /**
+     * Sets the source that the response will use as its body. A source set through this method takes precedence over
+     * a body URI.
+     *
+     * @param body The source of the response's body.
      */
-    protected InputStream getUriInputStream(String uri) throws IOException {
-        return new BufferedInputStream(new FileInputStream(uri));
+    public void setBody(BodySource body) {
+        this.body = body;
     }
 
     /**
@@ -209,6 +425,19 @@ public class WebServerResponse {
      * @param uri The URI to the resource that should be used as the response's body.
      */
     public void setBodyUri(String uri) {
+        setBodyUri(uri, -1);
+    }
+
+    /**
+     * Sets the resource that the response will use as its body, along with the number of bytes of it that will be
+     * sent. The length should be the one sent in the Content-Length header, so that a file that changes after the
+     * header was built cannot send a body of a different length.
+     *
+     * @param uri The URI to the resource that should be used as the response's body.
+     * @param length The number of bytes of the resource to send, or -1 to send the whole resource.
+     */
+    public void setBodyUri(String uri, long length) {
         this.bodyUri = uri;
+        this.bodyUriLength = length;
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.response;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.exception.InvalidMethodException;
+import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.request.WebServerHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * This class consists of static methods that create and finish {@link com.frisbey.webserver.response.WebServerResponse}
+ * instances on behalf of the components that manage client connections. Keeping these decisions in one place ensures
+ * that every server engine answers clients in the same way.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.response.WebServerResponse
+ */
+public class WebServerResponseFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebServerResponseFactory.class);
+
+    /**
+     * Retrieves the response that should be sent when an exception prevented a request from being processed.
+     *
+     * @param ex The exception that was thrown while reading the request or producing its response.
+     * @return A response describing the failure to the client.
+     */
+    public static WebServerResponse getErrorResponse(Exception ex) {
+        HttpResponse status;
+
+        if (ex instanceof InvalidMethodException) {
+            logger.info("server provided invalid method exception", ex);
+            status = HttpResponse.NotImplemented;
+        } else if (ex instanceof InvalidRequestException) {
+            logger.info("server provided invalid request exception", ex);
+            status = HttpResponse.BadRequest;
+        } else {
+            logger.error("There was an unhandled exception while processing the request and an internal server error response is being sent.", ex);
+            status = HttpResponse.InternalServerError;
+        }
+
+        return new WebServerResponse(HttpVersion.HTTP_1_1, status, new WebServerHeader());
+    }
+
+    /**
+     * Retrieves the complete, serialized response that is sent to clients that are turned away because the server is
+     * overloaded. The data is produced once so that it can be written straight from the thread that accepts
+     * connections without building a response for every rejected client.
+     *
+     * @param context The configuration of the server that will send the response.
+     * @return The bytes of a 503 Service Unavailable response that closes the connection.
+     */
+    public static byte[] getServiceUnavailableData(WebServerContext context) {
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.ServiceUnavailable, new WebServerHeader());
+        response.setHeaderValue("Retry-After", Integer.toString(context.getRetryAfter()));
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        try {
+            response.writeResponse(data);
+        } catch (IOException ex) {
+            // writing to memory does not fail
+            throw new IllegalStateException("Unable to serialize service unavailable response", ex);
+        }
+
+        return data.toByteArray();
+    }
+
+    /**
+     * Decides how the end of the response's body will be marked. A body whose length is not known is sent with the
+     * chunked transfer coding to HTTP/1.1 clients. Older clients do not understand chunked bodies, so for them the end
+     * of the body is marked by closing the connection.
+     *
+     * @param response The response that will be sent to the client.
+     * @param context The configuration of the server that is sending the response.
+     * @param clientVersion The HTTP version of the client's request, or null if the request could not be read.
+     * @return true if the connection can remain open after the response, false if it must be closed to end the body.
+     */
+    public static boolean setTransferHeaders(WebServerResponse response, WebServerContext context, HttpVersion clientVersion) {
+        if (!response.hasHeader() || response.isBodyLengthKnown()) {
+            return true;
+        }
+
+        if (clientVersion == HttpVersion.HTTP_1_1) {
+            response.setChunked(context.getChunkSize());
+            return true;
+        }
+
+        logger.debug("body length is unknown and the client cannot accept a chunked body, closing connection after response");
+        response.removeHeaderValue("Content-Length");
+
+        return false;
+    }
+
+    /**
+     * Sets the headers that tell the client whether the connection will remain open after a response.
+     *
+     * @param response The response that will be sent to the client.
+     * @param context The configuration of the server that is sending the response.
+     * @param keepAlive If true the connection will remain open for additional requests.
+     * @param requestsServed The number of requests that have been served over the connection so far.
+     */
+    public static void setConnectionHeaders(WebServerResponse response, WebServerContext context, boolean keepAlive, int requestsServed) {
+        if (!response.hasHeader()) {
+            return;
+        }
+
+        if (keepAlive) {
+            response.setHeaderValue("Connection", "keep-alive");
+            response.setHeaderValue("Keep-Alive", context.getKeepAliveValue(context.getMaxKeepAliveRequests() - requestsServed));
+        } else {
+            response.setHeaderValue("Connection", "close");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread safe pool of fixed size byte arrays. Request threads borrow a buffer when they need to copy data and give
+ * it back when they are finished, which keeps the server from allocating a new buffer for every response it sends.
+ *
+ * <p>The pool never blocks. If no buffer is available a new one is allocated, and if the pool is already holding its
+ * maximum number of buffers then a released buffer is simply left for the garbage collector.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class BufferPool {
+
+    // the size of the buffers handed out by the shared pool
+    public static final int kDefaultBufferSize = 64 * 1024;
+
+    // the number of idle buffers that the shared pool will hold on to
+    public static final int kDefaultMaxPooled = 64;
+
+    // the pool used by the server when no other pool has been provided
+    private static final BufferPool sharedPool = new BufferPool(kDefaultBufferSize, kDefaultMaxPooled);
+
+    // the buffers that are currently available for use
+    private Queue<byte[]> buffers;
+
+    // the number of buffers currently sitting in the queue. tracked separately because the queue's size() is O(n)
+    private AtomicInteger pooledCount;
+
+    // the size of each buffer in the pool
+    private int bufferSize;
+
+    // the maximum number of idle buffers that will be retained
+    private int maxPooled;
+
+    /**
+     * Initializes an empty pool.
+     *
+     * @param bufferSize The size, in bytes, of the buffers that the pool will provide.
+     * @param maxPooled The maximum number of idle buffers that the pool will retain.
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0");
+        }
+
+        this.buffers = new ConcurrentLinkedQueue<byte[]>();
+        this.pooledCount = new AtomicInteger(0);
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Retrieves the pool that is shared by all components of the server.
+     *
+     * @return The server-wide buffer pool.
+     */
+    public static BufferPool getSharedPool() {
+        return sharedPool;
+    }
+
+    /**
+     * Borrows a buffer from the pool. The caller should return the buffer using {@link #release(byte[])} when it is
+     * finished with it.
+     *
+     * @return A buffer of the pool's configured size. The contents of the buffer are undefined.
+     */
+    public byte[] acquire() {
+        byte[] buffer = this.buffers.poll();
+
+        if (buffer == null) {
+            buffer = new byte[this.bufferSize];
+        } else {
+            this.pooledCount.decrementAndGet();
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool so that it can be reused. Buffers that were not created by the pool are ignored.
+     *
+     * @param buffer The buffer to return.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != this.bufferSize) {
+            return;
+        }
+
+        if (this.pooledCount.incrementAndGet() <= this.maxPooled) {
+            this.buffers.offer(buffer);
+        } else {
+            // the pool is full, so undo the increment and let the buffer go
+            this.pooledCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Retrieves the size of the buffers provided by the pool.
+     *
+     * @return A size in bytes.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Retrieves the number of idle buffers currently held by the pool.
+     *
+     * @return The number of buffers available for immediate reuse.
+     */
+    public int getPooledCount() {
+        return this.pooledCount.get();
+    }
+}
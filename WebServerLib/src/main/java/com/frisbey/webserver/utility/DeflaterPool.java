@@ -0,0 +1,111 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * A thread safe pool of {@link java.util.zip.Deflater} instances. Each deflater holds a sizeable block of native memory
+ * that is only released when {@link java.util.zip.Deflater#end()} is called, so creating one for every response is both
+ * slow and hard on the native heap. Deflaters are created to produce raw deflate data, which is what the gzip format
+ * wraps.
+ *
+ * <p>Like the other pools, the pool never blocks. If no deflater is available a new one is created, and if the pool
+ * is already holding its maximum number of deflaters then a released deflater is ended.</p>
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.utility.GzipUtils
+ */
+public class DeflaterPool {
+
+    // the default number of idle deflaters that a pool will hold on to
+    public static final int kDefaultMaxPooled = 16;
+
+    // the deflaters that are currently available for use
+    private ArrayBlockingQueue<Deflater> deflaters;
+
+    // the compression level of the deflaters in the pool
+    private int level;
+
+    /**
+     * Initializes an empty pool.
+     *
+     * @param level The compression level, from 1 (fastest) to 9 (smallest), or
+     *              {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}.
+     * @param maxPooled The maximum number of idle deflaters that the pool will retain.
+     */
+    public DeflaterPool(int level, int maxPooled) {
+        if ((level < 1 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
+
+        if (maxPooled <= 0) {
+            throw new IllegalArgumentException("Maximum pooled deflaters must be greater than 0");
+        }
+
+        this.deflaters = new ArrayBlockingQueue<Deflater>(maxPooled);
+        this.level = level;
+    }
+
+    /**
+     * Borrows a deflater from the pool. The caller must return the deflater using
+     * {@link #release(java.util.zip.Deflater)} when it is finished with it.
+     *
+     * @return A deflater that is ready for new input.
+     */
+    public Deflater acquire() {
+        Deflater deflater = this.deflaters.poll();
+
+        return (deflater != null) ? deflater : new Deflater(this.level, true);
+    }
+
+    /**
+     * Returns a deflater to the pool so that it can be reused. The deflater is reset, or ended if the pool is full.
+     *
+     * @param deflater The deflater to return.
+     */
+    public void release(Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+
+        deflater.reset();
+
+        if (!this.deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Retrieves the compression level of the deflaters in the pool.
+     *
+     * @return A compression level.
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Retrieves the number of idle deflaters currently held by the pool.
+     *
+     * @return The number of deflaters available for immediate reuse.
+     */
+    public int getPooledCount() {
+        return this.deflaters.size();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserver.utility;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A thread safe pool of fixed size direct byte buffers. Direct buffers can be handed to a socket channel without the
+ * JDK first copying them into a temporary native buffer, but they are expensive to allocate, so they are pooled.
+ *
+ * <p>Like the {@link com.frisbey.webserver.utility.BufferPool}, the pool never blocks. If no buffer is available a new
+ * one is allocated, and if the pool is already holding its maximum number of buffers then a released buffer is left
+ * for the garbage collector.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class DirectBufferPool {
+
+    // the size of the buffers handed out by the shared pool. large enough for any response header the server writes
+    public static final int kDefaultBufferSize = 8 * 1024;
+
+    // the number of idle buffers that the shared pool will hold on to
+    public static final int kDefaultMaxPooled = 256;
+
+    // the pool used by the server when no other pool has been provided
+    private static final DirectBufferPool sharedPool = new DirectBufferPool(kDefaultBufferSize, kDefaultMaxPooled);
+
+    // the buffers that are currently available for use. an array backed queue is used so that returning a buffer
+    // does not allocate a queue node
+    private ArrayBlockingQueue<ByteBuffer> buffers;
+
+    // the size of each buffer in the pool
+    private int bufferSize;
+
+    /**
+     * Initializes an empty pool.
+     *
+     * @param bufferSize The size, in bytes, of the buffers that the pool will provide.
+     * @param maxPooled The maximum number of idle buffers that the pool will retain.
+     */
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0 || maxPooled <= 0) {
+            throw new IllegalArgumentException("Buffer size and maximum pooled buffers must be greater than 0");
+        }
+
+        this.buffers = new ArrayBlockingQueue<ByteBuffer>(maxPooled);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Retrieves the pool that is shared by all components of the server.
+     *
+     * @return The server-wide direct buffer pool.
+     */
+    public static DirectBufferPool getSharedPool() {
+        return sharedPool;
+    }
+
+    /**
+     * Borrows a buffer from the pool. The caller should return the buffer using {@link #release(java.nio.ByteBuffer)}
+     * when it is finished with it.
+     *
+     * @return A cleared direct buffer of the pool's configured size. The contents of the buffer are undefined.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.poll();
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(this.bufferSize);
+        } else {
+            buffer.clear();
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool so that it can be reused. Buffers that were not created by the pool are ignored.
+     *
+     * @param buffer The buffer to return.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != this.bufferSize) {
+            return;
+        }
+
+        // if the pool is full the buffer is simply not added
+        this.buffers.offer(buffer);
+    }
+
+    /**
+     * Retrieves the size of the buffers provided by the pool.
+     *
+     * @return A size in bytes.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Retrieves the number of idle buffers currently held by the pool.
+     *
+     * @return The number of buffers available for immediate reuse.
+     */
+    public int getPooledCount() {
+        return this.buffers.size();
+    }
+}
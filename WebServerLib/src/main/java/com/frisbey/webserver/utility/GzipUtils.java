@@ -0,0 +1,106 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A collection of helper methods for producing data in the gzip format. The methods wrap the raw deflate data
+ * produced by a pooled {@link java.util.zip.Deflater}, which {@link java.util.zip.GZIPOutputStream} cannot use because
+ * it always creates a deflater of its own.
+ *
+ * @author Mark Frisbey
+ * @see com.frisbey.webserver.utility.DeflaterPool
+ */
+public class GzipUtils {
+
+    // the fixed ten byte gzip header: magic number, deflate method, no flags, no modification time, unknown OS
+    private static final byte[] kHeader = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    // the size of the gzip trailer, which holds the checksum and length of the uncompressed data
+    private static final int kTrailerLength = 8;
+
+    /**
+     * Compresses data into the gzip format. The compressed data is produced a chunk at a time through a buffer
+     * borrowed from the shared {@link com.frisbey.webserver.utility.BufferPool}.
+     *
+     * @param data The array containing the data to compress.
+     * @param offset The position in the array of the first byte to compress.
+     * @param length The number of bytes to compress.
+     * @param pool The pool from which a deflater will be borrowed.
+     * @return The complete gzip data, including the header and trailer.
+     */
+    public static byte[] compress(byte[] data, int offset, int length, DeflaterPool pool) {
+        BufferPool bufferPool = BufferPool.getSharedPool();
+        byte[] chunk = bufferPool.acquire();
+        Deflater deflater = pool.acquire();
+
+        try {
+            // text usually compresses to well under half its size, so start there and let the stream grow if needed
+            ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + kHeader.length + kTrailerLength);
+            output.write(kHeader, 0, kHeader.length);
+
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                output.write(chunk, 0, count);
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(data, offset, length);
+
+            byte[] trailer = getTrailer(checksum.getValue(), length);
+            output.write(trailer, 0, trailer.length);
+
+            return output.toByteArray();
+        } finally {
+            pool.release(deflater);
+            bufferPool.release(chunk);
+        }
+    }
+
+    /**
+     * Retrieves the fixed header that begins gzip data.
+     *
+     * @return A new copy of the header.
+     */
+    public static byte[] getHeader() {
+        return kHeader.clone();
+    }
+
+    /**
+     * Creates the gzip trailer, which holds the checksum and length of the uncompressed data in little endian order.
+     *
+     * @param checksum The CRC-32 of the uncompressed data.
+     * @param length The length of the uncompressed data. Only the low 32 bits are recorded, as the format requires.
+     * @return The trailer that ends gzip data.
+     */
+    public static byte[] getTrailer(long checksum, long length) {
+        byte[] trailer = new byte[kTrailerLength];
+
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (checksum >>> (i * 8));
+            trailer[i + 4] = (byte) (length >>> (i * 8));
+        }
+
+        return trailer;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * A collection of helper methods for working with the dates that appear in HTTP headers, such as
+ * "Sun, 06 Nov 1994 08:49:37 GMT".
+ *
+ * @author Mark Frisbey
+ */
+public class HttpDateUtils {
+
+    // the format used to read dates in HTTP headers. formatters are immutable and thread safe, so one instance is shared
+    private static final DateTimeFormatter kHttpDateFormat = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    // the format used to write dates. unlike the RFC 1123 formatter it always writes two digits for the day, as HTTP
+    // requires
+    private static final DateTimeFormatter kHttpDateWriteFormat = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    /**
+     * Parses a date from an HTTP header.
+     *
+     * @param value The header value.
+     * @return The date in milliseconds since the epoch, or -1 if the value is not a valid HTTP date.
+     */
+    public static long parse(String value) {
+        if (StringUtils.isNullOrEmpty(value)) {
+            return -1;
+        }
+
+        try {
+            return ZonedDateTime.parse(value.trim(), kHttpDateFormat).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Formats a time as an HTTP date, for example "Sun, 06 Nov 1994 08:49:37 GMT".
+     *
+     * @param time A time in milliseconds since the epoch. Fractions of a second are dropped.
+     * @return The formatted date.
+     */
+    public static String format(long time) {
+        return kHttpDateWriteFormat.format(Instant.ofEpochMilli(time));
+    }
+
+    /**
+     * Determines whether a date from an HTTP header refers to the same second as a file modification time. HTTP dates
+     * only have a resolution of one second, so the modification time is truncated before it is compared.
+     *
+     * @param headerDate A date parsed from a header, in milliseconds since the epoch.
+     * @param lastModified A file modification time in milliseconds since the epoch.
+     * @return true if both refer to the same second.
+     */
+    public static boolean isSameSecond(long headerDate, long lastModified) {
+        return headerDate >= 0 && headerDate / 1000 == lastModified / 1000;
+    }
+}
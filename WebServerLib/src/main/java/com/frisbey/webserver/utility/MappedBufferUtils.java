@@ -0,0 +1,97 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * A collection of helper methods for releasing memory-mapped buffers. The JDK only unmaps a file once its buffer has
+ * been garbage collected, which can hold on to address space and deleted files for a long time. Where the runtime
+ * allows it, buffers are unmapped right away through {@code sun.misc.Unsafe.invokeCleaner}.
+ *
+ * <p>A buffer must not be used, by any thread, once it has been unmapped; doing so crashes the JVM. Callers must track
+ * who is using a buffer, and only unmap it once nobody is.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class MappedBufferUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBufferUtils.class);
+
+    // the instance of sun.misc.Unsafe, or null if it is not available
+    private static final Object kUnsafe;
+
+    // the method that releases a direct buffer's memory, or null if it is not available
+    private static final Method kInvokeCleaner;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception ex) {
+            logger.info("mapped buffers cannot be unmapped explicitly and will be released by the garbage collector", ex);
+            unsafe = null;
+            invokeCleaner = null;
+        }
+
+        kUnsafe = unsafe;
+        kInvokeCleaner = invokeCleaner;
+    }
+
+    /**
+     * Retrieves a value indicating whether buffers can be unmapped explicitly.
+     *
+     * @return true if {@link #unmap(java.nio.MappedByteBuffer)} releases buffers right away.
+     */
+    public static boolean isUnmapSupported() {
+        return kInvokeCleaner != null;
+    }
+
+    /**
+     * Unmaps a buffer, if the runtime allows it. Otherwise the buffer is left for the garbage collector.
+     *
+     * @param buffer The buffer to unmap. Must be the buffer returned by
+     *               {@link java.nio.channels.FileChannel#map(java.nio.channels.FileChannel.MapMode, long, long)}, not
+     *               a slice or duplicate of it, and must not be used again.
+     * @return true if the buffer was unmapped.
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (kInvokeCleaner == null) {
+            return false;
+        }
+
+        try {
+            kInvokeCleaner.invoke(kUnsafe, buffer);
+            return true;
+        } catch (Exception ex) {
+            logger.warn("unable to unmap buffer, leaving it for the garbage collector", ex);
+            return false;
+        }
+    }
+}
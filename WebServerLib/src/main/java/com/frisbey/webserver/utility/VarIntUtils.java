@@ -0,0 +1,112 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.utility;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A collection of helper methods for writing and reading variable length integers. Each byte holds seven bits of the
+ * value, least significant first, and its high bit is set when more bytes follow, so small values such as status codes
+ * and short string references take a single byte. Signed values are zigzag encoded first, so that small negative
+ * values are small as well.
+ *
+ * @author Mark Frisbey
+ */
+public class VarIntUtils {
+
+    /**
+     * The largest number of bytes that a single encoded value can take.
+     */
+    public static final int kMaxVarLongSize = 10;
+
+    /**
+     * Writes an unsigned variable length integer.
+     *
+     * @param buffer The buffer to write to. Must have room for the encoded value.
+     * @param value The value to write. Negative values are treated as unsigned and take the full ten bytes.
+     */
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @param buffer The buffer to read from.
+     * @return The value.
+     * @throws IllegalArgumentException thrown if the encoded value is longer than ten bytes.
+     * @throws java.nio.BufferUnderflowException thrown if the buffer ends before the value does.
+     */
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Variable length integer is longer than " + kMaxVarLongSize + " bytes");
+    }
+
+    /**
+     * Writes a signed variable length integer.
+     *
+     * @param buffer The buffer to write to. Must have room for the encoded value.
+     * @param value The value to write.
+     */
+    public static void putSignedVarLong(ByteBuffer buffer, long value) {
+        putVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads a signed variable length integer.
+     *
+     * @param buffer The buffer to read from.
+     * @return The value.
+     */
+    public static long getSignedVarLong(ByteBuffer buffer) {
+        long value = getVarLong(buffer);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Calculates the number of bytes that an unsigned value takes when encoded.
+     *
+     * @param value The value.
+     * @return A number of bytes from 1 to ten.
+     */
+    public static int getVarLongSize(long value) {
+        int size = 1;
+
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test;
+
+import com.frisbey.webserver.HttpContentEncoding;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the HttpContentEncoding enumeration.
+ *
+ * @author Mark Frisbey
+ */
+public class HttpContentEncodingTest {
+
+    /**
+     * Verifies that Accept-Encoding headers are interpreted according to their quality values.
+     */
+    @Test
+    public void isAcceptedByTest() {
+        assertTrue("Listed encoding should be accepted", HttpContentEncoding.GZIP.isAcceptedBy("deflate, gzip"));
+        assertTrue("Encoding with a quality should be accepted", HttpContentEncoding.BROTLI.isAcceptedBy("gzip;q=1.0, BR;q=0.5"));
+        assertFalse("Encoding with zero quality should be refused", HttpContentEncoding.GZIP.isAcceptedBy("gzip;q=0, *"));
+        assertTrue("Wildcard should accept unlisted encodings", HttpContentEncoding.BROTLI.isAcceptedBy("gzip, *"));
+        assertFalse("Refused wildcard should not accept", HttpContentEncoding.BROTLI.isAcceptedBy("*;q=0"));
+        assertFalse("Unlisted encoding should be refused", HttpContentEncoding.BROTLI.isAcceptedBy("gzip"));
+        assertFalse("Missing header should refuse", HttpContentEncoding.GZIP.isAcceptedBy(null));
+    }
+
+    /**
+     * Verifies the paths of precompressed copies.
+     */
+    @Test
+    public void getSidecarPathTest() {
+        assertEquals("Unexpected gzip path", "/www/app.js.gz", HttpContentEncoding.GZIP.getSidecarPath("/www/app.js"));
+        assertEquals("Unexpected brotli path", "/www/app.js.br", HttpContentEncoding.BROTLI.getSidecarPath("/www/app.js"));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test;
+
+import com.frisbey.webserver.HttpContentType;
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.utility.StreamUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the MimeTypeRegistry class.
+ *
+ * @author Mark Frisbey
+ */
+public class MimeTypeRegistryTest {
+
+    /**
+     * Verifies that the bundled registry knows common types, matches extensions without regard to case, and falls back
+     * to the default type.
+     */
+    @Test
+    public void getContentTypeTest() {
+        MimeTypeRegistry registry = MimeTypeRegistry.getDefault();
+
+        assertEquals("Unexpected HTML type", "text/html", registry.getContentType("/var/www/index.html"));
+        assertEquals("Unexpected SVG type", "image/svg+xml", registry.getContentType("/var/www/logo.SVG"));
+        assertEquals("Unexpected font type", "font/woff2", registry.getContentType("/fonts/body.woff2"));
+        assertEquals("Unexpected WebAssembly type", "application/wasm", registry.getContentType("/app/main.wasm"));
+        assertEquals("Unexpected JSON type", "application/json", registry.getContentType("/api/data.json"));
+        assertEquals("Unknown extension should use the default", "text/html", registry.getContentType("/files/archive.unknown"));
+        assertEquals("Missing extension should use the default", "text/html", registry.getContentType("/v1.2/README"));
+        assertEquals("Null path should use the default", "text/html", registry.getContentType(null));
+    }
+
+    /**
+     * Verifies that extensions are taken from the last segment of a path only.
+     */
+    @Test
+    public void getExtensionTest() {
+        assertEquals("Unexpected extension", "gz", MimeTypeRegistry.getExtension("/www/app.js.gz"));
+        assertNull("Directory dots should be ignored", MimeTypeRegistry.getExtension("/www/v1.2/README"));
+        assertNull("Trailing dot has no extension", MimeTypeRegistry.getExtension("/www/file."));
+        assertEquals("Hidden files have an extension", "htaccess", MimeTypeRegistry.getExtension("/www/.htaccess"));
+    }
+
+    /**
+     * Verifies that a mime.types file adds types and overrides existing ones, in both the Apache and nginx formats.
+     */
+    @Test
+    public void loadTest() throws IOException {
+        MimeTypeRegistry registry = MimeTypeRegistry.createDefault();
+        int bundled = registry.size();
+
+        registry.load(StreamUtils.getInputStreamFromString("# comment\n"
+                + "application/x-custom    cst CUS  # trailing comment\n"
+                + "text/x-plain-html html;\n"
+                + "\n"
+                + "application/empty\n"));
+
+        assertEquals("Unexpected custom type", "application/x-custom", registry.getContentType("file.cus"));
+        assertEquals("Unexpected custom type", "application/x-custom", registry.getContentType("file.cst"));
+        assertEquals("Type should have been overridden", "text/x-plain-html", registry.getContentType("index.html"));
+        assertEquals("Unexpected number of types", bundled + 2, registry.size());
+        assertEquals("Shared registry should not change", "text/html", MimeTypeRegistry.getDefault().getContentType("index.html"));
+
+        registry.setDefaultContentType("application/octet-stream");
+        assertEquals("Unexpected default type", "application/octet-stream", registry.getContentType("file.unknown"));
+    }
+
+    /**
+     * Verifies that cached metadata remembers the content type of its file.
+     */
+    @Test
+    public void metadataContentTypeTest() {
+        MimeTypeRegistry registry = new MimeTypeRegistry();
+        registry.register(".css", "text/css");
+
+        FileMetadata metadata = FileMetadata.read("/missing/style.css");
+        String contentType = metadata.getContentType(registry);
+        assertEquals("Unexpected content type", "text/css", contentType);
+        assertSame("Content type should have been remembered", contentType, metadata.getContentType(registry));
+        assertEquals("Another registry should resolve the type again", "text/html", metadata.getContentType(new MimeTypeRegistry()));
+    }
+
+    /**
+     * Verifies that the legacy content type enumeration still resolves its extensions.
+     */
+    @Test
+    public void contentTypeEnumTest() {
+        assertEquals("Unexpected type", HttpContentType.IMAGE_JPEG, HttpContentType.fromFilePath("/photos/beach.JPEG"));
+        assertEquals("Unexpected type", HttpContentType.CSS, HttpContentType.fromFilePath("/style.css"));
+        assertEquals("Unknown extension should be HTML", HttpContentType.TEXT_HTML, HttpContentType.fromFilePath("/archive.unknown"));
+    }
+}
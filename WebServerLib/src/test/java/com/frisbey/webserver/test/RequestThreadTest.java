@@ -19,6 +19,7 @@ package com.frisbey.webserver.test;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
 import com.frisbey.webserver.RequestThread;
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.request.GetRequest;
 import com.frisbey.webserver.response.WebServerResponse;
 import com.frisbey.webserver.test.mock.MockRequestThread;
@@ -106,7 +107,7 @@ public class RequestThreadTest {
         thread.run();
 
         // ensure the socket was closed as expected
-        assertEquals("Unexpected invalid method response", "HTTP/1.1 501 Not Implemented\r\nContent-Length: 0\r\nConnection: close\r\nServer: AemWebServer\r\n\r\n", output.toString());
+        assertEquals("Unexpected invalid method response", "HTTP/1.1 501 Not Implemented\r\nConnection: close\r\nContent-Length: 0\r\nServer: AemWebServer\r\n\r\n", output.toString());
     }
 
     /**
@@ -124,6 +125,50 @@ public class RequestThreadTest {
         thread.run();
 
         // ensure the socket was closed as expected
-        assertEquals("Unexpected invalid method response", "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\nServer: AemWebServer\r\n\r\n", output.toString());
+        assertEquals("Unexpected invalid method response", "HTTP/1.1 400 Bad Request\r\nConnection: close\r\nContent-Length: 0\r\nServer: AemWebServer\r\n\r\n", output.toString());
+    }
+
+    /**
+     * Verifies that multiple requests are served over a single persistent connection.
+     */
+    @Test
+    public void keepAliveTest() throws Exception {
+        InputStream input = StreamUtils.getInputStreamFromString("GET /uri1 HTTP/1.1\r\n\r\nGET /uri2 HTTP/1.1\r\n\r\n");
+        OutputStream output = new ByteArrayOutputStream();
+
+        Mockito.when(mockSocket.getInputStream()).thenReturn(input);
+        Mockito.when(mockSocket.getOutputStream()).thenReturn(output);
+
+        RequestThread thread = new MockRequestThread(mockSocket, "/webserverroot");
+        thread.run();
+
+        String[] responses = output.toString().split("HTTP/1.1 200 OK");
+        assertEquals("Unexpected number of responses on persistent connection", 3, responses.length);
+        assertTrue("Response should have kept the connection open", responses[1].contains("Connection: keep-alive"));
+
+        Mockito.verify(mockSocket, Mockito.times(1)).close();
+    }
+
+    /**
+     * Verifies that the connection is closed once the maximum number of requests has been served.
+     */
+    @Test
+    public void keepAliveMaxRequestsTest() throws Exception {
+        InputStream input = StreamUtils.getInputStreamFromString("GET /uri1 HTTP/1.1\r\n\r\nGET /uri2 HTTP/1.1\r\n\r\nGET /uri3 HTTP/1.1\r\n\r\n");
+        OutputStream output = new ByteArrayOutputStream();
+
+        Mockito.when(mockSocket.getInputStream()).thenReturn(input);
+        Mockito.when(mockSocket.getOutputStream()).thenReturn(output);
+
+        WebServerContext context = new WebServerContext("/webserverroot");
+        context.setMaxKeepAliveRequests(2);
+
+        RequestThread thread = new MockRequestThread(mockSocket, context);
+        thread.run();
+
+        String[] responses = output.toString().split("HTTP/1.1 200 OK");
+        assertEquals("Unexpected number of responses on persistent connection", 3, responses.length);
+        assertTrue("Last response should have closed the connection", responses[2].contains("Connection: close"));
+        Mockito.verify(mockSocket).setSoTimeout(context.getKeepAliveTimeout());
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test;
+
+import com.frisbey.webserver.WebServer;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerFactory;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the WebServerFactory class.
+ *
+ * @author Mark Frisbey
+ */
+public class WebServerFactoryTest {
+
+    /**
+     * Verifies that a fixed thread pool server reports the port that was chosen for it.
+     */
+    @Test
+    public void fixedThreadPoolServerTest() throws IOException {
+        WebServer server = WebServerFactory.getFixedThreadPoolServer(0, 1, new WebServerContext("/"));
+
+        try {
+            assertTrue("Server should be listening on a real port", server.getLocalPort() > 0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Verifies that a virtual thread server is provided when the running Java version supports it, and that a
+     * meaningful exception is thrown when it does not.
+     */
+    @Test
+    public void virtualThreadServerTest() throws IOException {
+        WebServer server = null;
+
+        try {
+            server = WebServerFactory.getVirtualThreadServer(0, new WebServerContext("/"));
+            assertTrue("Virtual thread server should only be provided when supported", WebServerFactory.isVirtualThreadSupported());
+            assertTrue("Server should be listening on a real port", server.getLocalPort() > 0);
+        } catch (UnsupportedOperationException ex) {
+            assertFalse("Virtual thread server should be provided when supported", WebServerFactory.isVirtualThreadSupported());
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
@@ -29,11 +29,13 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.Assert.*;
 
@@ -88,6 +90,29 @@ public class WebServerTest {
         Mockito.verify(mockServerSocket).close();
     }
 
+    /**
+     * Verifies that a connection is answered with a service unavailable response when the thread pool is full.
+     */
+    @Test
+    public void rejectedConnectionTest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        Mockito.when(mockServerSocket.accept()).thenReturn(mockClientSocket).thenThrow(IOException.class);
+        Mockito.when(mockClientSocket.getOutputStream()).thenReturn(output);
+        Mockito.doThrow(new RejectedExecutionException()).when(mockPool).execute(Mockito.any(Runnable.class));
+
+        MockWebServer server = new MockWebServer("/webserverroot", mockPool, mockServerSocket);
+        server.setRequestThreshold(1);
+        server.run();
+
+        assertEquals("Unexpected number of rejected connections", 1, server.getRejectedConnections());
+        assertEquals("Unexpected rejection response",
+                "HTTP/1.1 503 Service Unavailable\r\nConnection: close\r\nContent-Length: 0\r\nServer: AemWebServer\r\nRetry-After: 1\r\n\r\n",
+                output.toString());
+
+        Mockito.verify(mockClientSocket).close();
+    }
+
     /**
      * Verifies that call fails gracefully when an exception occurs.
      */
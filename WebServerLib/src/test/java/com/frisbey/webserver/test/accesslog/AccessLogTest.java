@@ -0,0 +1,228 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.accesslog;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.accesslog.AccessLogFormat;
+import com.frisbey.webserver.accesslog.OverflowPolicy;
+import com.frisbey.webserver.request.HttpRequestParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the AccessLog and AccessLogFormat classes.
+ *
+ * @author Mark Frisbey
+ */
+public class AccessLogTest {
+
+    /**
+     * Logs a single request to a closed log and returns the line that was written.
+     *
+     * @param format The layout of the line.
+     * @param method The method of the request.
+     * @param target The target of the request.
+     * @param userAgent The user agent of the request.
+     * @return The line written to the log.
+     */
+    private String logLine(AccessLogFormat format, String method, String target, String userAgent) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AccessLog log = new AccessLog(output, format, 4, OverflowPolicy.DROP);
+
+        log.start();
+        assertTrue("Request should be logged", log.log(InetAddress.getByName("127.0.0.1"), method, target, "HTTP/1.1",
+                null, userAgent, 200, 1234, 2500000));
+        log.close();
+
+        return output.toString("UTF-8");
+    }
+
+    /**
+     * Verifies the layout of each format.
+     */
+    @Test
+    public void formatTest() throws IOException {
+        String common = logLine(AccessLogFormat.COMMON, "GET", "/index.html", "curl/8.0");
+        assertTrue("Unexpected common line: " + common, common.matches("127\\.0\\.0\\.1 - - \\[\\d{2}/\\w{3}/\\d{4}:\\d{2}:\\d{2}:\\d{2} [+-]\\d{4}\\] \"GET /index.html HTTP/1.1\" 200 1234\n"));
+
+        String combined = logLine(AccessLogFormat.COMBINED, "GET", "/index.html", "curl/8.0");
+        assertTrue("Unexpected combined line: " + combined, combined.endsWith("\"GET /index.html HTTP/1.1\" 200 1234 \"-\" \"curl/8.0\"\n"));
+
+        String timed = logLine(AccessLogFormat.TIMED, "GET", "/index.html", "curl/8.0");
+        assertTrue("Unexpected timed line: " + timed, timed.endsWith(" 200 1234 \"-\" \"curl/8.0\" 2500\n"));
+
+        String unreadable = logLine(AccessLogFormat.COMMON, null, null, null);
+        assertTrue("Unreadable requests should be logged as -: " + unreadable, unreadable.endsWith("] \"-\" 200 1234\n"));
+
+        assertEquals("Formats should be found by name", AccessLogFormat.COMBINED, AccessLogFormat.fromString("combined"));
+        assertNull("Unknown formats should not be found", AccessLogFormat.fromString("fancy"));
+    }
+
+    /**
+     * Verifies that values sent by the client cannot break a line apart or forge a line of their own.
+     */
+    @Test
+    public void escapeTest() throws IOException {
+        String line = logLine(AccessLogFormat.COMBINED, "GET", "/a\"b", "evil\n127.0.0.1 - - \\");
+
+        assertEquals("Line should not be split", line.length() - 1, line.indexOf('\n'));
+        assertTrue("Unexpected escaping: " + line, line.contains("\"GET /a\\\"b HTTP/1.1\""));
+        assertTrue("Unexpected escaping: " + line, line.contains("\"evil\\x0a127.0.0.1 - - \\\\\""));
+    }
+
+    /**
+     * Verifies that the request line and headers are taken from the parser that read the request.
+     */
+    @Test
+    public void parserTest() throws IOException {
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.parse(ByteBuffer.wrap("HEAD /x?y=1 HTTP/1.0\r\nReferer: http://a/\r\nUser-Agent: test\r\n\r\n".getBytes()));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AccessLog log = new AccessLog(output, AccessLogFormat.COMBINED, 4, OverflowPolicy.DROP);
+        log.start();
+        log.log(null, parser, HttpResponse.NotModified, 0, 0);
+        log.close();
+
+        String line = output.toString("UTF-8");
+        assertTrue("Unexpected line: " + line, line.startsWith("- - - ["));
+        assertTrue("Unexpected line: " + line, line.endsWith("] \"HEAD /x?y=1 HTTP/1.0\" 304 - \"http://a/\" \"test\"\n"));
+    }
+
+    /**
+     * Verifies that records beyond the buffer's capacity are dropped while the writer is not running, and that the
+     * buffered records are still written.
+     */
+    @Test
+    public void dropTest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AccessLog log = new AccessLog(output, AccessLogFormat.COMMON, 3, OverflowPolicy.DROP);
+
+        assertEquals("Capacity should be rounded up to a power of two", 4, log.getCapacity());
+
+        for (int i = 0; i < 6; i++) {
+            log.log(null, "GET", "/" + i, "HTTP/1.1", null, null, 200, 1, 1);
+        }
+
+        assertEquals("Unexpected number of dropped records", 2, log.getDroppedCount());
+
+        log.start();
+        log.close();
+
+        String text = output.toString("UTF-8");
+        assertEquals("Unexpected number of logged records", 4, log.getLoggedCount());
+        assertTrue("Records should be written in order", text.indexOf("/0 ") < text.indexOf("/3 "));
+        assertFalse("Dropped records should not be written", text.contains("/4 "));
+        assertFalse("Closed logs should not accept records", log.log(null, "GET", "/", "HTTP/1.1", null, null, 200, 1, 1));
+    }
+
+    /**
+     * Verifies that no record is lost when many threads log into a small buffer that blocks when it is full.
+     */
+    @Test
+    public void blockTest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final AccessLog log = new AccessLog(output, AccessLogFormat.COMMON, 16, OverflowPolicy.BLOCK);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        log.start();
+
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 2500; j++) {
+                        log.log(null, "GET", "/" + thread + "/" + j, "HTTP/1.1", null, null, 200, 1, 1);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        log.close();
+
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals("Every record should be written", 10000, lines.length);
+        assertEquals("No record should be dropped", 0, log.getDroppedCount());
+        assertEquals("Unexpected number of logged records", 10000, log.getLoggedCount());
+    }
+
+    /**
+     * Verifies that every record accepted while the log is being closed is written, and that every other record is
+     * counted as dropped.
+     */
+    @Test
+    public void closeWhileLoggingTest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final AccessLog log = new AccessLog(output, AccessLogFormat.COMMON, 1024, OverflowPolicy.BLOCK);
+        final AtomicLong accepted = new AtomicLong(0);
+        final AtomicLong rejected = new AtomicLong(0);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        log.start();
+
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (rejected.get() < 1000) {
+                        if (log.log(null, "GET", "/", "HTTP/1.1", null, null, 200, 1, 1)) {
+                            accepted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        Thread.sleep(50);
+        log.close();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals("Every accepted record should be written", accepted.get(), lines.length);
+        assertEquals("Unexpected number of logged records", accepted.get(), log.getLoggedCount());
+        assertEquals("Unexpected number of dropped records", rejected.get(), log.getDroppedCount());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.accesslog;
+
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.accesslog.AccessLogRecord;
+import com.frisbey.webserver.accesslog.BinaryLogReader;
+import com.frisbey.webserver.accesslog.BinaryLogSink;
+import com.frisbey.webserver.accesslog.OverflowPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the BinaryLogSink and BinaryLogReader classes.
+ *
+ * @author Mark Frisbey
+ */
+public class BinaryLogSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Opens a log that writes segments of the smallest allowed size to a directory.
+     *
+     * @param directory The directory of the segments.
+     * @return A started log.
+     */
+    private AccessLog openLog(File directory) throws IOException {
+        return AccessLog.open(new BinaryLogSink(directory, "access", BinaryLogSink.kMinSegmentSize), 1024, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Lists the segments in a directory in the order they were written.
+     *
+     * @param directory The directory of the segments.
+     * @return The segment files.
+     */
+    private File[] listSegments(File directory) {
+        File[] segments = directory.listFiles();
+        Arrays.sort(segments);
+
+        return segments;
+    }
+
+    /**
+     * Verifies that every value of a record survives a round trip.
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        File directory = folder.newFolder("logs");
+        AccessLog log = openLog(directory);
+
+        long before = System.currentTimeMillis();
+        log.log(InetAddress.getByName("192.168.1.20"), "GET", "/index.html?q=1", "HTTP/1.1", "http://example.com/", "curl/8.0", 200, 1234, 2500000);
+        log.log(InetAddress.getByName("::1"), "HEAD", "/caf\u00e9.html", "HTTP/1.0", null, null, 404, 0, 999);
+        log.log(null, null, null, null, null, null, 400, 77, 0);
+        log.close();
+        long after = System.currentTimeMillis();
+
+        File[] segments = listSegments(directory);
+        assertEquals("Unexpected segment files " + Arrays.toString(segments), 1, segments.length);
+        assertEquals("Unexpected segment name", "access-000001.wbl", segments[0].getName());
+
+        BinaryLogReader reader = new BinaryLogReader(segments[0]);
+        AccessLogRecord record = reader.next();
+
+        assertNotNull("First record should be read", record);
+        assertTrue("Unexpected timestamp", record.getTimestamp() >= before && record.getTimestamp() <= after);
+        assertEquals("Unexpected address", InetAddress.getByName("192.168.1.20"), record.getRemoteAddress());
+        assertEquals("Unexpected method", "GET", record.getMethod());
+        assertEquals("Unexpected target", "/index.html?q=1", record.getTarget());
+        assertEquals("Unexpected version", "HTTP/1.1", record.getVersion());
+        assertEquals("Unexpected referer", "http://example.com/", record.getReferer());
+        assertEquals("Unexpected user agent", "curl/8.0", record.getUserAgent());
+        assertEquals("Unexpected status", 200, record.getStatus());
+        assertEquals("Unexpected bytes", 1234, record.getBytes());
+        assertEquals("Latency should be kept to the microsecond", 2500000, record.getLatencyNanos());
+
+        record = reader.next();
+        assertNotNull("Second record should be read", record);
+        assertEquals("Unexpected address", InetAddress.getByName("::1"), record.getRemoteAddress());
+        assertEquals("Unexpected target", "/caf\u00e9.html", record.getTarget());
+        assertNull("Missing referer should be null", record.getReferer());
+        assertEquals("Unexpected status", 404, record.getStatus());
+        assertEquals("Latency should be truncated to the microsecond", 0, record.getLatencyNanos());
+
+        record = reader.next();
+        assertNotNull("Third record should be read", record);
+        assertNull("Missing address should be null", record.getRemoteAddress());
+        assertNull("Missing method should be null", record.getMethod());
+        assertEquals("Unexpected status", 400, record.getStatus());
+
+        assertNull("Segment should have no more records", reader.next());
+        reader.close();
+    }
+
+    /**
+     * Verifies that strings are written once per segment, so that repeated requests take only a few bytes each.
+     */
+    @Test
+    public void dictionaryTest() throws IOException {
+        File directory = folder.newFolder("logs");
+        AccessLog log = openLog(directory);
+        InetAddress address = InetAddress.getByName("10.0.0.1");
+        String userAgent = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36";
+
+        for (int i = 0; i < 1000; i++) {
+            log.log(address, "GET", "/page" + (i % 10) + ".html", "HTTP/1.1", null, userAgent, 200, 5000, 1500000);
+        }
+
+        log.close();
+
+        File[] segments = listSegments(directory);
+        assertEquals("Unexpected segment files " + Arrays.toString(segments), 1, segments.length);
+        assertTrue("Finished segment should be truncated, but is " + segments[0].length() + " bytes", segments[0].length() < 20 * 1000 + 1000);
+
+        BinaryLogReader reader = new BinaryLogReader(segments[0]);
+        int count = 0;
+        AccessLogRecord record;
+
+        while ((record = reader.next()) != null) {
+            assertEquals("Unexpected target", "/page" + (count % 10) + ".html", record.getTarget());
+            assertEquals("Unexpected user agent", userAgent, record.getUserAgent());
+            count++;
+        }
+
+        reader.close();
+        assertEquals("Every record should be read", 1000, count);
+    }
+
+    /**
+     * Verifies that a full segment is finished and a new one started, and that each segment can be read on its own.
+     */
+    @Test
+    public void rollTest() throws IOException {
+        File directory = folder.newFolder("logs");
+        AccessLog log = openLog(directory);
+        InetAddress address = InetAddress.getByName("10.0.0.1");
+        char[] padding = new char[200];
+        Arrays.fill(padding, 'x');
+        String prefix = "/" + new String(padding) + "/";
+
+        for (int i = 0; i < 3000; i++) {
+            log.log(address, "GET", prefix + i, "HTTP/1.1", null, null, 200, i, 1000);
+        }
+
+        log.close();
+
+        File[] segments = listSegments(directory);
+        assertTrue("Log should have rolled to a new segment", segments.length > 1);
+
+        int count = 0;
+
+        for (File segment : segments) {
+            assertTrue("Segment should not exceed its size", segment.length() <= BinaryLogSink.kMinSegmentSize);
+            BinaryLogReader reader = new BinaryLogReader(segment);
+            AccessLogRecord record;
+
+            while ((record = reader.next()) != null) {
+                assertEquals("Records should be read in order", prefix + count, record.getTarget());
+                assertEquals("Unexpected method", "GET", record.getMethod());
+                assertEquals("Unexpected bytes", count, record.getBytes());
+                count++;
+            }
+
+            reader.close();
+        }
+
+        assertEquals("Every record should be read", 3000, count);
+
+        // a new sink continues after the existing segments rather than overwriting them
+        log = openLog(directory);
+        log.log(address, "GET", "/", "HTTP/1.1", null, null, 200, 0, 0);
+        log.close();
+        assertEquals("A new segment should be added", segments.length + 1, listSegments(directory).length);
+    }
+
+    /**
+     * Verifies that a file that is not a segment is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void invalidSegmentTest() throws IOException {
+        new BinaryLogReader(folder.newFile("access.log")).close();
+    }
+}
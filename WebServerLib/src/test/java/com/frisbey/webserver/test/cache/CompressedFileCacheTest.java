@@ -0,0 +1,201 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.CachedFile;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the CompressedFileCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class CompressedFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates content that compresses well.
+     *
+     * @param length The number of bytes to create.
+     * @return The content.
+     */
+    private byte[] createText(int length) {
+        byte[] content = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + (i % 7));
+        }
+
+        return content;
+    }
+
+    /**
+     * Verifies that a file is compressed once and served from memory until it changes, and that the metrics record
+     * the work that was done.
+     */
+    @Test
+    public void getFileTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "page.html", createText(8192));
+        CompressedFileCache cache = new CompressedFileCache();
+
+        CachedFile compressed = cache.getFile(FileMetadata.read(file.getAbsolutePath()), null);
+        assertNotNull("File should have been compressed", compressed);
+        assertTrue("Compressed copy should be smaller", compressed.getLength() < 8192);
+        assertEquals("Compressed copy should keep the original modification time", file.lastModified(), compressed.getLastModified());
+
+        assertSame("Second lookup should be served from the cache", compressed, cache.getFile(FileMetadata.read(file.getAbsolutePath()), null));
+        assertEquals("Unexpected compression count", 1, cache.getCompressionCount());
+        assertEquals("Unexpected hit count", 1, cache.getHitCount());
+        assertEquals("Unexpected uncompressed bytes", 8192, cache.getUncompressedBytes());
+        assertEquals("Unexpected compressed bytes", compressed.getLength(), cache.getCompressedBytes());
+        assertTrue("Unexpected compression ratio", cache.getCompressionRatio() > 0 && cache.getCompressionRatio() < 1);
+
+        TempFileUtils.createFile(folder, "page.html", createText(9000));
+        assertNotSame("Changed file should be compressed again", compressed, cache.getFile(FileMetadata.read(file.getAbsolutePath()), null));
+        assertEquals("Unexpected compression count", 2, cache.getCompressionCount());
+    }
+
+    /**
+     * Verifies that a file requested by several threads at once is only compressed once, and that every thread
+     * receives the same compressed copy.
+     */
+    @Test
+    public void concurrentGetFileTest() throws Exception {
+        File file = TempFileUtils.createFile(folder, "page.html", createText(512 * 1024));
+        final FileMetadata metadata = FileMetadata.read(file.getAbsolutePath());
+        final CompressedFileCache cache = new CompressedFileCache();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CachedFile[] results = new CachedFile[8];
+        final Exception[] errors = new Exception[results.length];
+        Thread[] threads = new Thread[results.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results[index] = cache.getFile(metadata, null);
+                    } catch (Exception ex) {
+                        errors[index] = ex;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            assertNull("Lookup should not fail", errors[i]);
+            assertNotNull("File should have been compressed", results[i]);
+            assertSame("Every thread should receive the same compressed copy", results[0], results[i]);
+        }
+
+        assertEquals("File should only be compressed once", 1, cache.getCompressionCount());
+    }
+
+    /**
+     * Verifies that the content of a file is taken from the file cache when it is available there.
+     */
+    @Test
+    public void getFileFromSourceCacheTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "page.html", createText(4096));
+        FileCache sourceCache = new FileCache();
+        FileMetadata metadata = FileMetadata.read(file.getAbsolutePath());
+        sourceCache.getFile(metadata);
+
+        CompressedFileCache cache = new CompressedFileCache();
+        assertNotNull("File should have been compressed", cache.getFile(metadata, sourceCache));
+        assertEquals("Source should have been served from the file cache", 1, sourceCache.getHitCount());
+    }
+
+    /**
+     * Verifies that files outside the size limits, of other types, or that do not get smaller are not compressed.
+     */
+    @Test
+    public void compressibleTest() throws IOException {
+        CompressedFileCache cache = new CompressedFileCache(1024 * 1024, 100, 10000, 6);
+
+        assertTrue("HTML should be compressible", cache.isCompressible("text/html", 500));
+        assertFalse("Small files should not be compressible", cache.isCompressible("text/html", 99));
+        assertFalse("Large files should not be compressible", cache.isCompressible("text/html", 10001));
+        assertFalse("Images should not be compressible", cache.isCompressible("image/png", 500));
+
+        cache.setCompressibleTypes(Collections.singleton("text/css"));
+        assertFalse("HTML should no longer be compressible", cache.isCompressible("text/html", 500));
+        assertTrue("CSS should be compressible", cache.isCompressible("text/css", 500));
+
+        assertNull("Small file should not be compressed", cache.getFile(FileMetadata.read(TempFileUtils.createFile(folder, "small.css", createText(50)).getAbsolutePath()), null));
+
+        byte[] noise = new byte[2000];
+        new Random(7).nextBytes(noise);
+        File random = TempFileUtils.createFile(folder, "noise.css", noise);
+
+        assertNull("Incompressible file should not be served compressed", cache.getFile(FileMetadata.read(random.getAbsolutePath()), null));
+        assertNull("Incompressible file should still not be served compressed", cache.getFile(FileMetadata.read(random.getAbsolutePath()), null));
+        assertEquals("Incompressible file should only be tried once", 1, cache.getCompressionCount());
+    }
+
+    /**
+     * Verifies that the least recently used files are evicted once the cache exceeds its budget.
+     */
+    @Test
+    public void evictionTest() throws IOException {
+        CompressedFileCache cache = new CompressedFileCache(250, 0, 100000, 6);
+
+        File first = TempFileUtils.createFile(folder, "first.html", createText(20000));
+        File second = TempFileUtils.createFile(folder, "second.html", createText(20001));
+
+        CachedFile compressed = cache.getFile(FileMetadata.read(first.getAbsolutePath()), null);
+        cache.getFile(FileMetadata.read(second.getAbsolutePath()), null);
+        assertTrue("Cache should stay within its budget", cache.getSize() <= 250);
+
+        assertNotSame("Evicted file should be compressed again", compressed, cache.getFile(FileMetadata.read(first.getAbsolutePath()), null));
+        assertEquals("Unexpected compression count", 3, cache.getCompressionCount());
+    }
+
+    /**
+     * Verifies that invalid limits are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLimitsTest() {
+        new CompressedFileCache(1024, 100, 10, 6);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.CachedFile;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the FileCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class FileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Verifies that a file is loaded once and then served from memory.
+     */
+    @Test
+    public void getFileTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "test.html", "hello");
+        FileCache cache = new FileCache();
+
+        CachedFile cached = cache.getFile(file.getAbsolutePath());
+        assertNotNull("File should have been found", cached);
+        assertEquals("Unexpected content", "hello", new String(cached.getContent()));
+        assertEquals("Unexpected length", 5, cached.getLength());
+
+        assertSame("Second lookup should be served from the cache", cached, cache.getFile(file.getAbsolutePath()));
+        assertEquals("Unexpected hit count", 1, cache.getHitCount());
+        assertEquals("Unexpected miss count", 1, cache.getMissCount());
+        assertEquals("Unexpected entry count", 1, cache.getEntryCount());
+    }
+
+    /**
+     * Verifies that missing files and directories are not found.
+     */
+    @Test
+    public void getFileMissingTest() throws IOException {
+        FileCache cache = new FileCache();
+
+        assertNull("Missing file should not be found", cache.getFile(new File(folder.getRoot(), "missing").getAbsolutePath()));
+        assertNull("Directory should not be found", cache.getFile(folder.getRoot().getAbsolutePath()));
+        assertEquals("Nothing should have been cached", 0, cache.getEntryCount());
+    }
+
+    /**
+     * Verifies that an entry is reloaded when the file changes.
+     */
+    @Test
+    public void getFileChangedTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "test.html", "hello");
+        FileCache cache = new FileCache();
+
+        cache.getFile(file.getAbsolutePath());
+
+        TempFileUtils.createFile(folder, "test.html", "goodbye");
+        assertEquals("Changed file should be reloaded", "goodbye", new String(cache.getFile(file.getAbsolutePath()).getContent()));
+        assertEquals("Unexpected miss count", 2, cache.getMissCount());
+
+        assertTrue("File should have been deleted", file.delete());
+        assertNull("Deleted file should not be found", cache.getFile(file.getAbsolutePath()));
+        assertEquals("Deleted file should be removed from the cache", 0, cache.getEntryCount());
+    }
+
+    /**
+     * Verifies that the least recently used entry is evicted when the cache is full.
+     */
+    @Test
+    public void evictionTest() throws IOException {
+        File first = TempFileUtils.createFile(folder, "first.html", "0123456789");
+        File second = TempFileUtils.createFile(folder, "second.html", "0123456789");
+        File third = TempFileUtils.createFile(folder, "third.html", "0123456789");
+
+        // room for two entries, including their overhead
+        FileCache cache = new FileCache(300, 100);
+
+        cache.getFile(first.getAbsolutePath());
+        cache.getFile(second.getAbsolutePath());
+        cache.getFile(first.getAbsolutePath());
+        cache.getFile(third.getAbsolutePath());
+
+        assertEquals("Unexpected eviction count", 1, cache.getEvictionCount());
+        assertEquals("Unexpected entry count", 2, cache.getEntryCount());
+        assertTrue("Cache should be within its budget", cache.getSize() <= cache.getMaxSize());
+
+        long misses = cache.getMissCount();
+        cache.getFile(first.getAbsolutePath());
+        assertEquals("Recently used file should still be cached", misses, cache.getMissCount());
+        cache.getFile(second.getAbsolutePath());
+        assertEquals("Least recently used file should have been evicted", misses + 1, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that only the metadata of large files is cached.
+     */
+    @Test
+    public void largeFileTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "large.html", "0123456789");
+        FileCache cache = new FileCache(1000, 5);
+
+        CachedFile cached = cache.getFile(file.getAbsolutePath());
+        assertFalse("Large file contents should not be cached", cached.isContentCached());
+        assertEquals("Unexpected length", 10, cached.getLength());
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.OpenFile;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the FileChannelCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class FileChannelCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads the contents of an open file by position.
+     *
+     * @param file The open file.
+     * @return The contents of the file.
+     */
+    private String read(OpenFile file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) file.getLength());
+        file.getChannel().read(buffer, 0);
+
+        return new String(buffer.array());
+    }
+
+    /**
+     * Verifies that requests for the same file share one descriptor, which stays open once they are done.
+     */
+    @Test
+    public void shareTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "test.html", "hello");
+        FileChannelCache cache = new FileChannelCache();
+
+        OpenFile first = cache.acquire(metadata);
+        OpenFile second = cache.acquire(metadata);
+
+        assertSame("Requests should share the open file", first, second);
+        assertEquals("Unexpected content", "hello", read(first));
+        assertEquals("Unexpected hit count", 1, cache.getHitCount());
+        assertEquals("Unexpected miss count", 1, cache.getMissCount());
+
+        cache.release(first);
+        cache.release(second);
+        assertTrue("Released file should stay open", first.getChannel().isOpen());
+        assertEquals("Unexpected open count", 1, cache.getOpenCount());
+
+        cache.clear();
+        assertFalse("Cleared file should be closed", first.getChannel().isOpen());
+        assertEquals("Unexpected open count", 0, cache.getOpenCount());
+    }
+
+    /**
+     * Verifies that a changed file is reopened, and that the old descriptor is only closed once it is released.
+     */
+    @Test
+    public void changedTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "test.html", "hello");
+        FileChannelCache cache = new FileChannelCache();
+        OpenFile original = cache.acquire(metadata);
+
+        FileMetadata changed = TempFileUtils.createFileMetadata(folder, "test.html", "goodbye");
+        assertTrue("Modification time should be set", new File(changed.getPath()).setLastModified(metadata.getLastModified() + 5000));
+        changed = FileMetadata.read(changed.getPath());
+
+        OpenFile reopened = cache.acquire(changed);
+        assertNotSame("Changed file should be reopened", original, reopened);
+        assertEquals("Unexpected content", "goodbye", read(reopened));
+        assertTrue("File in use should stay open", original.getChannel().isOpen());
+
+        cache.release(original);
+        assertFalse("Stale file should be closed once released", original.getChannel().isOpen());
+
+        cache.release(reopened);
+        assertTrue("Current file should stay open", reopened.getChannel().isOpen());
+        assertEquals("Unexpected open count", 1, cache.getOpenCount());
+    }
+
+    /**
+     * Verifies that a file whose channel was closed, as happens when a thread using it is interrupted, is reopened.
+     */
+    @Test
+    public void closedTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "test.html", "hello");
+        FileChannelCache cache = new FileChannelCache();
+
+        OpenFile original = cache.acquire(metadata);
+        original.getChannel().close();
+        cache.release(original);
+
+        OpenFile reopened = cache.acquire(metadata);
+        assertNotSame("Closed file should be reopened", original, reopened);
+        assertEquals("Unexpected content", "hello", read(reopened));
+        cache.release(reopened);
+    }
+
+    /**
+     * Verifies that the number of open files is bounded, and that files in use are never closed to make room.
+     */
+    @Test
+    public void limitTest() throws IOException {
+        FileMetadata a = TempFileUtils.createFileMetadata(folder, "a.html", "a");
+        FileMetadata b = TempFileUtils.createFileMetadata(folder, "b.html", "b");
+        FileMetadata c = TempFileUtils.createFileMetadata(folder, "c.html", "c");
+        FileMetadata d = TempFileUtils.createFileMetadata(folder, "d.html", "d");
+        FileChannelCache cache = new FileChannelCache(2, FileChannelCache.kDefaultIdleTimeout);
+
+        OpenFile fileA = cache.acquire(a);
+        OpenFile fileB = cache.acquire(b);
+        cache.release(fileA);
+
+        OpenFile fileC = cache.acquire(c);
+        assertFalse("Least recently used idle file should be closed", fileA.getChannel().isOpen());
+        assertTrue("File in use should stay open", fileB.getChannel().isOpen());
+        assertEquals("Unexpected eviction count", 1, cache.getEvictionCount());
+
+        OpenFile fileD = cache.acquire(d);
+        assertEquals("Unexpected content", "d", read(fileD));
+        assertEquals("File should not be cached while every cached file is in use", 1, cache.getOverflowCount());
+        assertEquals("Unexpected open count", 2, cache.getOpenCount());
+
+        cache.release(fileD);
+        assertFalse("Uncached file should be closed once released", fileD.getChannel().isOpen());
+
+        cache.release(fileB);
+        cache.release(fileC);
+        assertTrue("Cached file should stay open", fileC.getChannel().isOpen());
+    }
+
+    /**
+     * Verifies that files that are not used for longer than the idle timeout are closed.
+     */
+    @Test
+    public void idleTest() throws Exception {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "test.html", "hello");
+        FileChannelCache cache = new FileChannelCache(10, 1);
+
+        OpenFile file = cache.acquire(metadata);
+        cache.release(file);
+        Thread.sleep(20);
+
+        cache.purgeIdle();
+        assertFalse("Idle file should be closed", file.getChannel().isOpen());
+        assertEquals("Unexpected open count", 0, cache.getOpenCount());
+    }
+}
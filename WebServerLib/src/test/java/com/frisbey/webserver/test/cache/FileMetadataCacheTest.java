@@ -0,0 +1,103 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.FileMetadataCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the FileMetadataCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class FileMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Verifies that the attributes of a file are read once and then reused.
+     */
+    @Test
+    public void getTest() throws IOException {
+        File file = folder.newFile("test.html");
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+
+        FileMetadata metadata = cache.get(file.getAbsolutePath());
+        assertTrue("File should exist", metadata.exists());
+        assertTrue("File should be a regular file", metadata.isRegularFile());
+        assertEquals("Unexpected length", 0, metadata.getLength());
+
+        assertSame("Second lookup should be served from the cache", metadata, cache.get(file.getAbsolutePath()));
+        assertEquals("Unexpected hit count", 1, cache.getHitCount());
+        assertEquals("Unexpected miss count", 1, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that missing paths are cached so the file system is not examined again.
+     */
+    @Test
+    public void getMissingTest() {
+        FileMetadataCache cache = new FileMetadataCache(60000, 10);
+        String path = new File(folder.getRoot(), "missing").getAbsolutePath();
+
+        assertFalse("Missing file should not exist", cache.get(path).exists());
+        assertFalse("Missing file should not exist", cache.get(path).isRegularFile());
+        assertEquals("Missing file should be served from the cache", 1, cache.getHitCount());
+
+        assertTrue("Directory should be a directory", cache.get(folder.getRoot().getAbsolutePath()).isDirectory());
+    }
+
+    /**
+     * Verifies that attributes are read again once they expire.
+     */
+    @Test
+    public void expirationTest() throws Exception {
+        FileMetadataCache cache = new FileMetadataCache(1, 10);
+        String path = new File(folder.getRoot(), "later.html").getAbsolutePath();
+
+        assertFalse("File should not exist yet", cache.get(path).exists());
+
+        folder.newFile("later.html");
+        Thread.sleep(5);
+
+        assertTrue("Expired entry should have been read again", cache.get(path).exists());
+        assertEquals("Unexpected miss count", 2, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that the number of remembered paths is bounded.
+     */
+    @Test
+    public void maxEntriesTest() {
+        FileMetadataCache cache = new FileMetadataCache(60000, 2);
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(new File(folder.getRoot(), "missing" + i).getAbsolutePath());
+        }
+
+        assertEquals("Unexpected entry count", 2, cache.getEntryCount());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.MappedFile;
+import com.frisbey.webserver.cache.MappedFileCache;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the MappedFileCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class MappedFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a region of a mapped file.
+     *
+     * @param file The mapped file.
+     * @param position The position of the region.
+     * @param count The length of the region.
+     * @return The contents of the region.
+     */
+    private String read(MappedFile file, long position, long count) {
+        ByteBuffer slice = file.slice(position, count);
+        byte[] data = new byte[slice.remaining()];
+        slice.get(data);
+
+        return new String(data);
+    }
+
+    /**
+     * Verifies that requests for the same file share one mapping, which stays mapped once they are done.
+     */
+    @Test
+    public void shareTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "large.bin", "0123456789");
+        MappedFileCache cache = new MappedFileCache(100, 1);
+
+        MappedFile first = cache.acquire(metadata);
+        MappedFile second = cache.acquire(metadata);
+
+        assertNotNull("File should be mapped", first);
+        assertSame("Requests should share the mapping", first, second);
+        assertEquals("Unexpected content", "0123456789", read(first, 0, 10));
+        assertEquals("Unexpected region", "345", read(second, 3, 3));
+        assertEquals("Unexpected hit count", 1, cache.getHitCount());
+        assertEquals("Unexpected mapped bytes", 10, cache.getMappedBytes());
+
+        cache.release(first);
+        cache.release(second);
+        assertEquals("Released file should stay mapped", 1, cache.getEntryCount());
+
+        cache.clear();
+        assertEquals("Cleared file should be unmapped", 0, cache.getMappedBytes());
+    }
+
+    /**
+     * Verifies that only files within the size limits are mapped.
+     */
+    @Test
+    public void thresholdTest() throws IOException {
+        MappedFileCache cache = new MappedFileCache(100, 5);
+
+        assertFalse("Small file should not be mappable", cache.isMappable(4));
+        assertTrue("Large file should be mappable", cache.isMappable(5));
+        assertFalse("File larger than the cache should not be mappable", cache.isMappable(101));
+        assertFalse("Empty file should not be mappable", new MappedFileCache(100, 0).isMappable(0));
+
+        assertNull("Small file should not be mapped", cache.acquire(TempFileUtils.createFileMetadata(folder, "small.bin", "0123")));
+        assertEquals("Nothing should be mapped", 0, cache.getMappedBytes());
+    }
+
+    /**
+     * Verifies that idle files are unmapped to make room, and that files in use are never unmapped.
+     */
+    @Test
+    public void evictTest() throws IOException {
+        FileMetadata a = TempFileUtils.createFileMetadata(folder, "a.bin", "aaaaaa");
+        FileMetadata b = TempFileUtils.createFileMetadata(folder, "b.bin", "bbbbbb");
+        FileMetadata c = TempFileUtils.createFileMetadata(folder, "c.bin", "cccccc");
+        MappedFileCache cache = new MappedFileCache(10, 1);
+
+        cache.release(cache.acquire(a));
+        MappedFile fileB = cache.acquire(b);
+
+        assertEquals("Idle file should be unmapped to make room", 1, cache.getEvictionCount());
+        assertEquals("Unexpected mapped bytes", 6, cache.getMappedBytes());
+
+        assertNull("File should not be mapped while the cache is full of files in use", cache.acquire(c));
+        assertEquals("Unexpected rejection count", 1, cache.getRejectionCount());
+        assertEquals("File in use should stay readable", "bbbbbb", read(fileB, 0, 6));
+
+        cache.release(fileB);
+        assertNotNull("File should be mapped once there is room", cache.acquire(c));
+    }
+
+    /**
+     * Verifies that a changed file is mapped again, and that the old mapping is only unmapped once it is released.
+     */
+    @Test
+    public void changedTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "large.bin", "0123456789");
+        MappedFileCache cache = new MappedFileCache(100, 1);
+        MappedFile original = cache.acquire(metadata);
+
+        File replacement = TempFileUtils.createFile(folder, "replacement.bin", "abcdefghij");
+
+        assertTrue("Modification time should be set", replacement.setLastModified(metadata.getLastModified() + 5000));
+        assertTrue("Replacement should be renamed over the original", replacement.renameTo(new File(metadata.getPath())));
+
+        MappedFile remapped = cache.acquire(FileMetadata.read(metadata.getPath()));
+        assertNotSame("Changed file should be mapped again", original, remapped);
+        assertEquals("Unexpected content", "abcdefghij", read(remapped, 0, 10));
+        assertEquals("Original mapping should stay readable while in use", "0123456789", read(original, 0, 10));
+        assertEquals("Both mappings should be counted", 20, cache.getMappedBytes());
+
+        cache.release(original);
+        assertEquals("Stale mapping should be unmapped once released", 10, cache.getMappedBytes());
+        cache.release(remapped);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.cache;
+
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.OffHeapFile;
+import com.frisbey.webserver.cache.OffHeapFileCache;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the OffHeapFileCache class.
+ *
+ * @author Mark Frisbey
+ */
+public class OffHeapFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a region of a cached file.
+     *
+     * @param file The cached file.
+     * @param position The position of the region.
+     * @param count The length of the region.
+     * @return The contents of the region.
+     */
+    private String read(OffHeapFile file, long position, long count) {
+        ByteBuffer slice = file.slice(position, count);
+        byte[] data = new byte[slice.remaining()];
+        slice.get(data);
+
+        return new String(data);
+    }
+
+    /**
+     * Verifies that a file is loaded into direct memory once and then shared by later requests.
+     */
+    @Test
+    public void acquireSharedTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "test.txt", "0123456789");
+        OffHeapFileCache cache = new OffHeapFileCache(2048, 1024);
+
+        OffHeapFile first = cache.acquire(metadata);
+        OffHeapFile second = cache.acquire(metadata);
+
+        assertNotNull("File should be cached", first);
+        assertSame("Requests should share the cached copy", first, second);
+        assertEquals("Unexpected contents", "0123456789", read(first, 0, 10));
+        assertEquals("Unexpected region", "345", read(first, 3, 3));
+        assertTrue("Slices should not be copied to the heap", first.slice(0, 10).isDirect());
+        assertTrue("Slices should be read only", first.slice(0, 10).isReadOnly());
+        assertEquals("Unexpected misses", 1, cache.getMissCount());
+        assertEquals("Unexpected hits", 1, cache.getHitCount());
+
+        cache.release(first);
+        cache.release(second);
+
+        assertEquals("File should stay cached once released", 1, cache.getEntryCount());
+        assertEquals("Unexpected stored bytes", 10, cache.getStoredBytes());
+    }
+
+    /**
+     * Verifies that a file that has changed is loaded again, and that responses still using the old copy can finish.
+     */
+    @Test
+    public void acquireChangedTest() throws IOException {
+        FileMetadata original = TempFileUtils.createFileMetadata(folder, "test.txt", "0123456789");
+        OffHeapFileCache cache = new OffHeapFileCache(2048, 1024);
+
+        OffHeapFile first = cache.acquire(original);
+        FileMetadata changed = TempFileUtils.createFileMetadata(folder, "test.txt", "abcdefghijklmno");
+        OffHeapFile second = cache.acquire(changed);
+
+        assertNotSame("Changed file should be loaded again", first, second);
+        assertEquals("Unexpected new contents", "abcdefghijklmno", read(second, 0, 15));
+        assertEquals("Old copy should stay readable until released", "0123456789", read(first, 0, 10));
+        assertEquals("Both copies should be held", 25, cache.getStoredBytes());
+
+        cache.release(first);
+
+        assertEquals("Old copy should be freed once released", 15, cache.getStoredBytes());
+        assertEquals("Unexpected entries", 1, cache.getEntryCount());
+
+        cache.release(second);
+    }
+
+    /**
+     * Verifies that files larger than a slab are never cached.
+     */
+    @Test
+    public void acquireTooLargeTest() throws IOException {
+        FileMetadata metadata = TempFileUtils.createFileMetadata(folder, "large.txt", 2000, 'x');
+        OffHeapFileCache cache = new OffHeapFileCache(4096, 1024);
+
+        assertFalse("File should not be cacheable", cache.isCacheable(metadata.getLength()));
+        assertNull("File should not be cached", cache.acquire(metadata));
+        assertEquals("Nothing should be allocated", 0, cache.getSlabCount());
+    }
+
+    /**
+     * Verifies that the least recently used idle file of the same size class is evicted to make room, and that files in
+     * use are never evicted.
+     */
+    @Test
+    public void evictionTest() throws IOException {
+        FileMetadata first = TempFileUtils.createFileMetadata(folder, "first.txt", 1024, 'a');
+        FileMetadata second = TempFileUtils.createFileMetadata(folder, "second.txt", 1024, 'b');
+        FileMetadata third = TempFileUtils.createFileMetadata(folder, "third.txt", 1024, 'c');
+        OffHeapFileCache cache = new OffHeapFileCache(2048, 1024);
+
+        cache.release(cache.acquire(first));
+        OffHeapFile held = cache.acquire(second);
+
+        OffHeapFile loaded = cache.acquire(third);
+        assertNotNull("Idle file should make room", loaded);
+        assertEquals("Unexpected evictions", 1, cache.getEvictionCount());
+        assertEquals("Unexpected contents", "cc", read(loaded, 0, 2));
+
+        assertNull("Files in use should not be evicted", cache.acquire(first));
+        assertEquals("Unexpected rejections", 1, cache.getRejectionCount());
+        assertEquals("Unexpected slabs", 2, cache.getSlabCount());
+
+        cache.release(held);
+        cache.release(loaded);
+
+        assertNotNull("Released file should make room", cache.acquire(first));
+        assertEquals("Unexpected evictions", 2, cache.getEvictionCount());
+    }
+
+    /**
+     * Verifies that a slab whose chunks are all free is given to a size class that needs one.
+     */
+    @Test
+    public void reassignEmptySlabTest() throws IOException {
+        FileMetadata small = TempFileUtils.createFileMetadata(folder, "small.txt", 100, 's');
+        FileMetadata large = TempFileUtils.createFileMetadata(folder, "large.txt", 1024, 'l');
+        OffHeapFileCache cache = new OffHeapFileCache(1024, 1024);
+
+        cache.release(cache.acquire(small));
+        cache.invalidate(small.getPath());
+
+        OffHeapFile loaded = cache.acquire(large);
+
+        assertNotNull("Empty slab should be reassigned", loaded);
+        assertEquals("Unexpected reassignments", 1, cache.getReassignmentCount());
+        assertEquals("Nothing should be evicted", 0, cache.getEvictionCount());
+        assertEquals("Unexpected contents", "ll", read(loaded, 1022, 2));
+
+        cache.release(loaded);
+    }
+
+    /**
+     * Verifies that the slab of another size class's least recently used file is emptied and reassigned when the class
+     * that needs room has nothing to evict.
+     */
+    @Test
+    public void reassignEvictedSlabTest() throws IOException {
+        FileMetadata small = TempFileUtils.createFileMetadata(folder, "small.txt", 100, 's');
+        FileMetadata other = TempFileUtils.createFileMetadata(folder, "other.txt", 90, 'o');
+        FileMetadata large = TempFileUtils.createFileMetadata(folder, "large.txt", 1024, 'l');
+        OffHeapFileCache cache = new OffHeapFileCache(1024, 1024);
+
+        cache.release(cache.acquire(small));
+        OffHeapFile held = cache.acquire(other);
+
+        assertNull("Slab with a file in use should not be reassigned", cache.acquire(large));
+        assertEquals("Unexpected reassignments", 0, cache.getReassignmentCount());
+
+        cache.release(held);
+        OffHeapFile loaded = cache.acquire(large);
+
+        assertNotNull("Idle slab should be reassigned", loaded);
+        assertEquals("Unexpected reassignments", 1, cache.getReassignmentCount());
+        assertEquals("Every file in the slab should be evicted", 2, cache.getEvictionCount());
+        assertEquals("Unexpected entries", 1, cache.getEntryCount());
+
+        cache.release(loaded);
+
+        OffHeapFile reloaded = cache.acquire(small);
+        assertNotNull("Slab should be reassigned back", reloaded);
+        assertEquals("Unexpected contents", "ss", read(reloaded, 98, 2));
+        assertEquals("Unexpected reassignments", 2, cache.getReassignmentCount());
+
+        cache.release(reloaded);
+    }
+
+    /**
+     * Verifies that a slab holding a retired file that is still being sent is not emptied for another class, and that
+     * its idle files are left cached.
+     */
+    @Test
+    public void reassignRetiredSlabTest() throws IOException {
+        FileMetadata small = TempFileUtils.createFileMetadata(folder, "small.txt", 100, 's');
+        FileMetadata other = TempFileUtils.createFileMetadata(folder, "other.txt", 90, 'o');
+        FileMetadata large = TempFileUtils.createFileMetadata(folder, "large.txt", 1024, 'l');
+        OffHeapFileCache cache = new OffHeapFileCache(1024, 1024);
+
+        OffHeapFile held = cache.acquire(small);
+        cache.release(cache.acquire(other));
+        cache.invalidate(small.getPath());
+
+        assertNull("Slab with a retired file in use should not be reassigned", cache.acquire(large));
+        assertEquals("Idle files should not be evicted for nothing", 0, cache.getEvictionCount());
+        assertEquals("Unexpected entries", 1, cache.getEntryCount());
+        assertEquals("Retired file should stay readable", "ss", read(held, 0, 2));
+
+        cache.release(held);
+        OffHeapFile loaded = cache.acquire(large);
+
+        assertNotNull("Slab should be reassigned once the retired file is released", loaded);
+        assertEquals("Unexpected evictions", 1, cache.getEvictionCount());
+        assertEquals("Unexpected reassignments", 1, cache.getReassignmentCount());
+
+        cache.release(loaded);
+    }
+
+    /**
+     * Verifies the occupancy and fragmentation metrics.
+     */
+    @Test
+    public void metricsTest() throws IOException {
+        OffHeapFileCache cache = new OffHeapFileCache(2048, 1024);
+
+        assertEquals("Unexpected empty occupancy", 0, cache.getOccupancy(), 0);
+        assertEquals("Unexpected empty fragmentation", 0, cache.getFragmentation(), 0);
+
+        cache.release(cache.acquire(TempFileUtils.createFileMetadata(folder, "exact.txt", 1024, 'e')));
+
+        assertEquals("Unexpected occupancy", 0.5, cache.getOccupancy(), 0.0001);
+        assertEquals("Whole slab chunk should not be fragmented", 0, cache.getFragmentation(), 0.0001);
+
+        cache.release(cache.acquire(TempFileUtils.createFileMetadata(folder, "small.txt", 70, 's')));
+
+        assertEquals("Unexpected stored bytes", 1094, cache.getStoredBytes());
+        assertEquals("Unexpected allocated bytes", 2048, cache.getAllocatedBytes());
+        assertTrue("Rounding up should fragment the chunk", cache.getFragmentation() > 0);
+        assertTrue("Fragmentation should be bounded by the growth factor", cache.getFragmentation() < 0.25);
+
+        cache.clear();
+
+        assertEquals("Unexpected entries after clear", 0, cache.getEntryCount());
+        assertEquals("Unexpected occupancy after clear", 0, cache.getOccupancy(), 0);
+    }
+
+    /**
+     * Verifies that the cache rejects invalid limits.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorTooSmallTest() {
+        new OffHeapFileCache(512, 1024);
+    }
+}
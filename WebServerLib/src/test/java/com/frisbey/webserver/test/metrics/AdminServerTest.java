@@ -0,0 +1,143 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.WebServerEngine;
+import com.frisbey.webserver.WebServerFactory;
+import com.frisbey.webserver.metrics.AdminServer;
+import com.frisbey.webserver.metrics.ServerMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Exercises the AdminServer class.
+ *
+ * @author Mark Frisbey
+ */
+public class AdminServerTest {
+
+    // the admin server under test
+    private AdminServer adminServer;
+
+    /**
+     * Starts an admin server on a free port for a server with a single recorded request.
+     */
+    @Before
+    public void setup() throws IOException {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.OK, 100, 1000);
+
+        WebServerEngine server = mock(WebServerEngine.class);
+        when(server.getMetricsSnapshot()).thenReturn(metrics.snapshot(0));
+
+        adminServer = WebServerFactory.getAdminServer(0, server);
+
+        Thread thread = new Thread(adminServer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the admin server.
+     */
+    @After
+    public void teardown() throws IOException {
+        adminServer.stop();
+    }
+
+    /**
+     * Sends a request to the admin server and reads the entire response.
+     *
+     * @param request The raw request.
+     * @return The raw response.
+     */
+    private String send(String request) throws IOException {
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress("localhost", adminServer.getLocalPort()));
+            socket.setSoTimeout(5000);
+
+            OutputStream output = socket.getOutputStream();
+            output.write(request.getBytes());
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+
+            while ((read = input.read(buffer)) > 0) {
+                response.write(buffer, 0, read);
+            }
+
+            return response.toString();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Verifies that the metrics are served in the Prometheus text format with an accurate length.
+     */
+    @Test
+    public void metricsTest() throws IOException {
+        String response = send("GET /__metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        String body = response.substring(response.indexOf("\r\n\r\n") + 4);
+
+        assertTrue("Unexpected status", response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue("Unexpected content type", response.contains("Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"));
+        assertTrue("Unexpected length", response.contains("Content-Length: " + body.length() + "\r\n"));
+        assertTrue("Missing request count", body.contains("webserver_requests_total{method=\"GET\"} 1\n"));
+
+        // a second scrape over a new connection should be served the same way
+        assertTrue("Second scrape should succeed", send("GET /__metrics?x=1 HTTP/1.0\r\n\r\n").startsWith("HTTP/1.1 200 OK"));
+    }
+
+    /**
+     * Verifies that a HEAD request receives the header without the metrics.
+     */
+    @Test
+    public void headTest() throws IOException {
+        String response = send("HEAD /__metrics HTTP/1.1\r\n\r\n");
+
+        assertTrue("Unexpected status", response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue("Body should be omitted", response.endsWith("\r\n\r\n"));
+    }
+
+    /**
+     * Verifies that paths other than the metrics path are not found, and that unreadable requests are refused.
+     */
+    @Test
+    public void errorTest() throws IOException {
+        assertTrue("Other paths should not be found", send("GET /index.html HTTP/1.1\r\n\r\n").startsWith("HTTP/1.1 404 Not Found"));
+        assertTrue("Invalid requests should be refused", send("nonsense\r\n\r\n").startsWith("HTTP/1.1 400 Bad Request"));
+    }
+}
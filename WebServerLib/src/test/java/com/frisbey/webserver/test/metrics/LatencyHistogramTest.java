@@ -0,0 +1,123 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.metrics;
+
+import com.frisbey.webserver.metrics.HistogramSnapshot;
+import com.frisbey.webserver.metrics.LatencyHistogram;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the LatencyHistogram and HistogramSnapshot classes.
+ *
+ * @author Mark Frisbey
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Verifies that values are placed in the bucket of the smallest bound that is not below them, and that values
+     * above every bound are placed in the overflow bucket.
+     */
+    @Test
+    public void recordTest() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[] { 100, 1000 });
+
+        histogram.record(0);
+        histogram.record(100000);
+        histogram.record(100001);
+        histogram.record(1000000);
+        histogram.record(5000000);
+        histogram.record(-5);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals("Unexpected number of buckets", 3, snapshot.getBucketCount());
+        assertEquals("Unexpected count below the first bound", 3, snapshot.getBucketValueCount(0));
+        assertEquals("Unexpected count below the second bound", 2, snapshot.getBucketValueCount(1));
+        assertEquals("Unexpected overflow count", 1, snapshot.getBucketValueCount(2));
+        assertEquals("Unexpected total count", 6, snapshot.getCount());
+        assertEquals("Unexpected sum", 6200001, snapshot.getSum());
+        assertEquals("Overflow bucket should have no bound", Long.MAX_VALUE, snapshot.getBucketBound(2));
+    }
+
+    /**
+     * Verifies that percentiles are estimated from the upper bounds of the buckets.
+     */
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[] { 100, 1000 });
+        assertEquals("An empty histogram should report 0", 0, histogram.snapshot().getPercentile(99));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(50000);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            histogram.record(500000);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals("Unexpected median", 100, snapshot.getPercentile(50));
+        assertEquals("Unexpected 90th percentile", 100, snapshot.getPercentile(90));
+        assertEquals("Unexpected 99th percentile", 1000, snapshot.getPercentile(99));
+        assertEquals("Unexpected mean", 95000, snapshot.getMean());
+
+        histogram.record(5000000);
+        assertEquals("Unexpected maximum", Long.MAX_VALUE, histogram.snapshot().getPercentile(100));
+        assertEquals("Snapshot should not change after it is taken", 100, snapshot.getCount());
+    }
+
+    /**
+     * Verifies that no values are lost when many threads record at once.
+     */
+    @Test
+    public void concurrentRecordTest() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        histogram.record(j * 1000L);
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Every value should be counted", 80000, histogram.snapshot().getCount());
+    }
+
+    /**
+     * Verifies that bounds must be provided in ascending order.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBoundsTest() {
+        new LatencyHistogram(new long[] { 1000, 100 });
+    }
+}
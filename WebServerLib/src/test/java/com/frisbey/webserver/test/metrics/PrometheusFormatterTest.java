@@ -0,0 +1,82 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.metrics.PrometheusFormatter;
+import com.frisbey.webserver.metrics.ServerMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the PrometheusFormatter class.
+ *
+ * @author Mark Frisbey
+ */
+public class PrometheusFormatterTest {
+
+    /**
+     * Verifies that counters, gauges and histograms are rendered with their labels, and that histogram buckets are
+     * cumulative.
+     */
+    @Test
+    public void formatTest() {
+        ServerMetrics metrics = new ServerMetrics();
+
+        metrics.connectionAccepted();
+        metrics.connectionOpened();
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.OK, 120, 200000);
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.OK, 80, 3000000);
+        metrics.recordRequest(null, HttpResponse.BadRequest, 50, 100000);
+
+        String text = new PrometheusFormatter().format(metrics.snapshot(4)).toString();
+
+        assertTrue("Missing type", text.contains("# TYPE webserver_requests_total counter\n"));
+        assertTrue("Missing GET count", text.contains("webserver_requests_total{method=\"GET\"} 2\n"));
+        assertTrue("Missing unknown count", text.contains("webserver_requests_total{method=\"unknown\"} 1\n"));
+        assertTrue("Missing status count", text.contains("webserver_responses_total{code=\"400\"} 1\n"));
+        assertTrue("Missing bytes", text.contains("webserver_response_bytes_total 250\n"));
+        assertTrue("Missing active connections", text.contains("webserver_active_connections 1\n"));
+        assertTrue("Missing queue depth", text.contains("webserver_queued_connections 4\n"));
+        assertTrue("Missing histogram type", text.contains("# TYPE webserver_request_duration_seconds histogram\n"));
+        assertTrue("Missing first bucket", text.contains("webserver_request_duration_seconds_bucket{class=\"2xx\",le=\"0.00025\"} 1\n"));
+        assertTrue("Buckets should be cumulative", text.contains("webserver_request_duration_seconds_bucket{class=\"2xx\",le=\"0.005\"} 2\n"));
+        assertTrue("Missing overflow bucket", text.contains("webserver_request_duration_seconds_bucket{class=\"2xx\",le=\"+Inf\"} 2\n"));
+        assertTrue("Missing histogram sum", text.contains("webserver_request_duration_seconds_sum{class=\"2xx\"} 0.0032\n"));
+        assertTrue("Missing histogram count", text.contains("webserver_request_duration_seconds_count{class=\"4xx\"} 1\n"));
+        assertTrue("Empty classes should still be rendered", text.contains("webserver_request_duration_seconds_count{class=\"5xx\"} 0\n"));
+    }
+
+    /**
+     * Verifies that a formatter can be reused, and that each call renders only the latest snapshot.
+     */
+    @Test
+    public void reuseTest() {
+        ServerMetrics metrics = new ServerMetrics();
+        PrometheusFormatter formatter = new PrometheusFormatter();
+
+        formatter.format(metrics.snapshot(0));
+        metrics.recordRequest(HttpMethod.HEAD, HttpResponse.OK, 10, 1000);
+        String text = formatter.format(metrics.snapshot(0)).toString();
+
+        assertEquals("Only the latest snapshot should be rendered", text.indexOf("# TYPE webserver_requests_total"),
+                text.lastIndexOf("# TYPE webserver_requests_total"));
+        assertTrue("Latest values should be rendered", text.contains("webserver_requests_total{method=\"HEAD\"} 1\n"));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.metrics;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.metrics.MetricsSnapshot;
+import com.frisbey.webserver.metrics.ServerMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the ServerMetrics and MetricsSnapshot classes.
+ *
+ * @author Mark Frisbey
+ */
+public class ServerMetricsTest {
+
+    /**
+     * Verifies that requests are counted by method, status and status class, and that their bytes are added up.
+     */
+    @Test
+    public void recordRequestTest() {
+        ServerMetrics metrics = new ServerMetrics();
+
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.OK, 100, 1000000);
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.NotModified, 50, 2000000);
+        metrics.recordRequest(HttpMethod.HEAD, HttpResponse.NotFound, 75, 3000000);
+        metrics.recordRequest(null, HttpResponse.BadRequest, 25, 4000000);
+
+        MetricsSnapshot snapshot = metrics.snapshot(3);
+        assertEquals("Unexpected number of requests", 4, snapshot.getRequestCount());
+        assertEquals("Unexpected number of GET requests", 2, snapshot.getRequestCount(HttpMethod.GET));
+        assertEquals("Unexpected number of HEAD requests", 1, snapshot.getRequestCount(HttpMethod.HEAD));
+        assertEquals("Unexpected number of unknown requests", 1, snapshot.getRequestCount(null));
+        assertEquals("Unexpected number of OK responses", 1, snapshot.getResponseCount(HttpResponse.OK));
+        assertEquals("Unexpected number of 2xx responses", 1, snapshot.getResponseCount(2));
+        assertEquals("Unexpected number of 3xx responses", 1, snapshot.getResponseCount(3));
+        assertEquals("Unexpected number of 4xx responses", 2, snapshot.getResponseCount(4));
+        assertEquals("Unexpected number of 5xx responses", 0, snapshot.getResponseCount(5));
+        assertEquals("Unexpected 4xx latency", 7000000, snapshot.getLatency(4).getSum());
+        assertEquals("Unexpected number of bytes", 250, snapshot.getBytesWritten());
+        assertEquals("Queue depth should be passed through", 3, snapshot.getQueuedConnections());
+    }
+
+    /**
+     * Verifies that connections are counted as they are accepted, rejected, opened and closed.
+     */
+    @Test
+    public void connectionTest() {
+        ServerMetrics metrics = new ServerMetrics();
+
+        metrics.connectionAccepted();
+        metrics.connectionAccepted();
+        metrics.connectionRejected();
+        metrics.connectionOpened();
+        metrics.connectionOpened();
+        metrics.connectionClosed();
+
+        MetricsSnapshot snapshot = metrics.snapshot(0);
+        assertEquals("Unexpected number of accepted connections", 2, snapshot.getConnectionsAccepted());
+        assertEquals("Unexpected number of rejected connections", 1, snapshot.getConnectionsRejected());
+        assertEquals("Unexpected number of active connections", 1, snapshot.getActiveConnections());
+        assertEquals("Accepted connections should be readable without a snapshot", 2, metrics.getConnectionsAccepted());
+        assertEquals("Rejected connections should be readable without a snapshot", 1, metrics.getConnectionsRejected());
+    }
+
+    /**
+     * Verifies that the summary includes the classes that have responses and leaves out the ones that do not.
+     */
+    @Test
+    public void toStringTest() {
+        ServerMetrics metrics = new ServerMetrics();
+
+        metrics.recordRequest(HttpMethod.GET, HttpResponse.OK, 10, 2000000);
+
+        String summary = metrics.snapshot(0).toString();
+        assertTrue("Summary should include the request count", summary.startsWith("requests=1 "));
+        assertTrue("Summary should include 2xx latency", summary.contains("2xx=1 (p50 <=2.5ms p99 <=2.5ms)"));
+        assertFalse("Summary should omit classes without responses", summary.contains("5xx"));
+    }
+
+    /**
+     * Verifies that status classes outside 1 to 5 are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidStatusClassTest() {
+        new ServerMetrics().snapshot(0).getLatency(6);
+    }
+}
@@ -19,12 +19,12 @@ package com.frisbey.webserver.test.mock;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpVersion;
 import com.frisbey.webserver.RequestThread;
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.request.HttpRequestParser;
 import com.frisbey.webserver.request.WebServerHeader;
 import com.frisbey.webserver.request.WebServerRequest;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.Socket;
 
 /**
@@ -48,17 +48,25 @@ public class MockRequestThread extends RequestThread {
     }
 
     /**
-     * Overridden to retrieve a specified request.
+     * Initializes a new thread using the provided configuration.
      *
-     * @param input The input to be read when creating the request.
-     * @param webServerRoot The full path to the root directory of the web server. Will be used to retrieve resources
-     *                      requested in the URI portion of the request.
-     * @return The request represented by the raw data in the given input.
-     * @throws IOException thrown if there are issues reading from the input stream.
+     * @param socket The socket on which the original request was received.
+     * @param context The configuration of the server that accepted the connection.
+     */
+    public MockRequestThread(Socket socket, WebServerContext context) {
+        super(socket, context);
+    }
+
+    /**
+     * Overridden to retrieve a specified request regardless of the data that was parsed.
+     *
+     * @param parser The parser that read the request.
+     * @param context The configuration of the server.
+     * @return A mock GET request.
      * @throws InvalidRequestException thrown if the raw request in the input stream is invalid.
      */
     @Override
-    protected WebServerRequest getRequest(InputStream input, String webServerRoot) throws IOException, InvalidRequestException {
-        return new MockGetRequest(HttpMethod.GET, "mockuri", HttpVersion.HTTP_1_1, new WebServerHeader());
+    protected WebServerRequest getRequest(HttpRequestParser parser, WebServerContext context) throws InvalidRequestException {
+        return new MockGetRequest(HttpMethod.GET, "mockuri", HttpVersion.HTTP_1_1, new WebServerHeader(false));
     }
 }
@@ -19,11 +19,12 @@ package com.frisbey.webserver.test.mock;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
 import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.BodySource;
+import com.frisbey.webserver.response.StreamBodySource;
 import com.frisbey.webserver.response.WebServerResponse;
 import com.frisbey.webserver.utility.StreamUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * Mock response that eliminates the need for a response to reference a file system file.
@@ -40,10 +41,10 @@ public class MockWebServerResponse extends WebServerResponse {
     }
 
     /**
-     * Overridden to return a stream to the provided uri String instance.
+     * Overridden to return a source that streams the provided uri String instance.
      */
     @Override
-    protected InputStream getUriInputStream(String uri) throws IOException {
-        return StreamUtils.getInputStreamFromString(uri);
+    protected BodySource getBodySource(String uri) throws IOException {
+        return new StreamBodySource(StreamUtils.getInputStreamFromString(uri));
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.nio;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerFactory;
+import com.frisbey.webserver.nio.NioConnection;
+import com.frisbey.webserver.nio.NioEventLoop;
+import com.frisbey.webserver.nio.NioResponseOutput;
+import com.frisbey.webserver.nio.NioWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the NioResponseOutput class and the write selector of an NioConnection. Like the server tests, these tests
+ * use real sockets on the loopback interface.
+ *
+ * @author Mark Frisbey
+ */
+public class NioResponseOutputTest {
+
+    // the server that owns the event loop. never started
+    private NioWebServer server;
+
+    // the event loop that owns the connection
+    private NioEventLoop eventLoop;
+
+    // accepts the server side of the connection
+    private ServerSocketChannel listener;
+
+    // the client side of the connection
+    private Socket client;
+
+    // the connection under test
+    private NioConnection connection;
+
+    /**
+     * Connects a client to a non-blocking channel on the loopback interface.
+     */
+    @Before
+    public void setup() throws IOException {
+        server = WebServerFactory.getNonBlockingServer(0, 1, 1, new WebServerContext("/webserverroot"));
+        eventLoop = new NioEventLoop(server);
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+
+        client = new Socket();
+        client.setReceiveBufferSize(4096);
+        client.connect(listener.getLocalAddress());
+
+        SocketChannel channel = listener.accept();
+        channel.configureBlocking(false);
+        channel.socket().setSendBufferSize(4096);
+        connection = new NioConnection(channel, eventLoop);
+    }
+
+    /**
+     * Closes the connection and the server.
+     */
+    @After
+    public void teardown() throws IOException {
+        connection.close();
+        client.close();
+        listener.close();
+        eventLoop.close();
+        server.stop();
+    }
+
+    /**
+     * Verifies that the write selector belongs to the connection and is closed with it.
+     */
+    @Test
+    public void writeSelectorClosedTest() throws IOException {
+        Selector selector = connection.getWriteSelector();
+
+        assertTrue("Selector should be open", selector.isOpen());
+        assertSame("Connection should reuse its selector", selector, connection.getWriteSelector());
+
+        connection.close();
+
+        assertFalse("Selector should be closed with the connection", selector.isOpen());
+
+        try {
+            connection.getWriteSelector();
+            fail("A closed connection should not provide a selector");
+        } catch (ClosedChannelException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that a wakeup of the write selector is not mistaken for a timeout while the client is slow to read.
+     */
+    @Test
+    public void spuriousWakeupTest() throws Exception {
+        final Selector selector = connection.getWriteSelector();
+        final NioResponseOutput output = new NioResponseOutput(connection, 5000);
+        final byte[] data = new byte[4 * 1024 * 1024];
+        final Exception[] failure = new Exception[1];
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    output.write(ByteBuffer.wrap(data));
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+        writer.start();
+
+        // wake the writer while the client is not reading, then start reading
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            selector.wakeup();
+        }
+
+        InputStream input = client.getInputStream();
+        byte[] buffer = new byte[64 * 1024];
+        long received = 0;
+
+        while (received < data.length) {
+            int read = input.read(buffer);
+            assertTrue("Connection ended early", read > 0);
+            received += read;
+        }
+
+        writer.join(5000);
+
+        assertNull("Wakeups should not end the wait", failure[0]);
+        assertEquals("Unexpected bytes written", data.length, output.getBytesWritten());
+    }
+}
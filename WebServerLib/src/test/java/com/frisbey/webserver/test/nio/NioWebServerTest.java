@@ -0,0 +1,195 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.nio;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerFactory;
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.accesslog.AccessLogFormat;
+import com.frisbey.webserver.accesslog.OverflowPolicy;
+import com.frisbey.webserver.metrics.MetricsSnapshot;
+import com.frisbey.webserver.nio.NioWebServer;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the NioWebServer class. Unlike most tests, these tests use a real socket on the loopback interface since
+ * the server's behavior depends on the operating system's non-blocking I/O support.
+ *
+ * @author Mark Frisbey
+ */
+public class NioWebServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // the server under test
+    private NioWebServer server;
+
+    /**
+     * Starts a server that serves files from a temporary directory.
+     */
+    @Before
+    public void setup() throws IOException {
+        TempFileUtils.createFile(folder, "index.html", "hello");
+
+        server = WebServerFactory.getNonBlockingServer(0, 2, 1, new WebServerContext(folder.getRoot().getAbsolutePath()));
+        new Thread(server).start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void teardown() throws IOException {
+        server.stop();
+    }
+
+    /**
+     * Reads from a stream until the stream ends.
+     *
+     * @param input The stream to read.
+     * @return The data that was read.
+     */
+    private String readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = input.read(buffer)) != -1) {
+            data.write(buffer, 0, read);
+        }
+
+        return data.toString();
+    }
+
+    /**
+     * Verifies that pipelined requests sent over a persistent connection each receive a response, and that the
+     * connection is closed when the client asks for it.
+     */
+    @Test
+    public void pipelinedRequestsTest() throws IOException {
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress("localhost", server.getLocalPort()));
+            socket.setSoTimeout(5000);
+
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\nGET /index.html HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+            output.flush();
+
+            String response = readFully(socket.getInputStream());
+            String[] responses = response.split("HTTP/1.1 200 OK");
+
+            assertEquals("Unexpected number of responses", 3, responses.length);
+            assertTrue("First response should keep the connection open", responses[1].contains("Connection: keep-alive"));
+            assertTrue("First response should contain the body", responses[1].endsWith("hello"));
+            assertTrue("Second response should close the connection", responses[2].contains("Connection: close"));
+            assertEquals("Each connection should be counted once", 1, server.getRequestsProcessed());
+
+            // the connection is counted as closed before the client sees it close
+            MetricsSnapshot metrics = server.getMetricsSnapshot();
+            assertEquals("Unexpected number of GET requests", 2, metrics.getRequestCount(HttpMethod.GET));
+            assertEquals("Unexpected number of OK responses", 2, metrics.getResponseCount(HttpResponse.OK));
+            assertEquals("Every byte of the responses should be counted", response.length(), metrics.getBytesWritten());
+            assertEquals("Unexpected number of accepted connections", 1, metrics.getConnectionsAccepted());
+            assertEquals("No connections should be open", 0, metrics.getActiveConnections());
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Verifies that the access log records the size of each response's body rather than every byte written, so that a
+     * response without a body is logged with "-".
+     */
+    @Test
+    public void accessLogTest() throws IOException {
+        ByteArrayOutputStream logOutput = new ByteArrayOutputStream();
+        AccessLog accessLog = new AccessLog(logOutput, AccessLogFormat.COMMON, 16, OverflowPolicy.BLOCK);
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setAccessLog(accessLog);
+        accessLog.start();
+
+        NioWebServer loggingServer = WebServerFactory.getNonBlockingServer(0, 2, 1, context);
+        new Thread(loggingServer).start();
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress("localhost", loggingServer.getLocalPort()));
+            socket.setSoTimeout(5000);
+
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /index.html HTTP/1.1\r\n\r\nHEAD /index.html HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+            output.flush();
+
+            readFully(socket.getInputStream());
+        } finally {
+            socket.close();
+            loggingServer.stop();
+            accessLog.close();
+        }
+
+        String[] lines = logOutput.toString("UTF-8").split("\n");
+
+        assertEquals("Unexpected number of lines", 2, lines.length);
+        assertTrue("GET should log the body size", lines[0].endsWith("\"GET /index.html HTTP/1.1\" 200 5"));
+        assertTrue("HEAD has no body", lines[1].endsWith("\"HEAD /index.html HTTP/1.1\" 200 -"));
+    }
+
+    /**
+     * Verifies that a request which arrives in pieces is processed once it is complete.
+     */
+    @Test
+    public void partialRequestTest() throws Exception {
+        Socket socket = new Socket();
+
+        try {
+            socket.connect(new InetSocketAddress("localhost", server.getLocalPort()));
+            socket.setSoTimeout(5000);
+
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /missing.html HTTP/1.0\r\n".getBytes());
+            output.flush();
+            Thread.sleep(100);
+            output.write("Host: localhost\r\n\r\n".getBytes());
+            output.flush();
+
+            String response = readFully(socket.getInputStream());
+            assertTrue("Unexpected response", response.startsWith("HTTP/1.1 404 Not Found"));
+            assertTrue("HTTP 1.0 connection should be closed", response.contains("Connection: close"));
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.request;
+
+import com.frisbey.webserver.request.ByteRange;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the ByteRange class.
+ *
+ * @author Mark Frisbey
+ */
+public class ByteRangeTest {
+
+    /**
+     * Verifies that the different forms of range specification are resolved against the resource length.
+     */
+    @Test
+    public void parseTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-9, 20-, -5,90-200", 100);
+
+        assertEquals("Unexpected number of ranges", 4, ranges.size());
+        assertEquals("Unexpected first range", "bytes 0-9/100", ranges.get(0).toContentRange(100));
+        assertEquals("Unexpected open ended range", "bytes 20-99/100", ranges.get(1).toContentRange(100));
+        assertEquals("Unexpected suffix range", "bytes 95-99/100", ranges.get(2).toContentRange(100));
+        assertEquals("Unexpected shortened range", "bytes 90-99/100", ranges.get(3).toContentRange(100));
+        assertEquals("Unexpected range length", 10, ranges.get(0).getLength());
+    }
+
+    /**
+     * Verifies that ranges outside the resource are dropped, leaving an empty list when nothing can be satisfied.
+     */
+    @Test
+    public void parseUnsatisfiableTest() {
+        assertTrue("Range past the end should not be satisfiable", ByteRange.parse("bytes=100-", 100).isEmpty());
+        assertTrue("Empty suffix should not be satisfiable", ByteRange.parse("bytes=-0", 100).isEmpty());
+        assertTrue("Empty resource should not be satisfiable", ByteRange.parse("bytes=-5", 0).isEmpty());
+        assertEquals("Satisfiable range should be kept", 1, ByteRange.parse("bytes=200-300,0-0", 100).size());
+        assertEquals("Huge positions should be clamped", 99, ByteRange.parse("bytes=0-99999999999999999999999", 100).get(0).getLast());
+    }
+
+    /**
+     * Verifies that headers that must be ignored are reported as null.
+     */
+    @Test
+    public void parseInvalidTest() {
+        assertNull("Missing header should be ignored", ByteRange.parse(null, 100));
+        assertNull("Other units should be ignored", ByteRange.parse("items=0-1", 100));
+        assertNull("Reversed range should be ignored", ByteRange.parse("bytes=9-1", 100));
+        assertNull("Missing dash should be ignored", ByteRange.parse("bytes=5", 100));
+        assertNull("Non-numeric range should be ignored", ByteRange.parse("bytes=a-b", 100));
+        assertNull("Empty range set should be ignored", ByteRange.parse("bytes=", 100));
+
+        StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 0; i < ByteRange.kMaxRanges; i++) {
+            tooMany.append(",0-0");
+        }
+
+        assertNull("Too many ranges should be ignored", ByteRange.parse(tooMany.toString(), 100));
+    }
+}
@@ -19,16 +19,34 @@ package com.frisbey.webserver.test.request;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.FileMetadata;
+import com.frisbey.webserver.cache.MappedFileCache;
+import com.frisbey.webserver.cache.OffHeapFileCache;
 import com.frisbey.webserver.exception.InvalidRequestException;
 import com.frisbey.webserver.request.GetRequest;
 import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.ResponseOutput;
+import com.frisbey.webserver.response.WebServerResponseFactory;
 import com.frisbey.webserver.response.WebServerResponse;
 import com.frisbey.webserver.test.mock.MockGetRequest;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 
@@ -39,6 +57,9 @@ import static org.junit.Assert.*;
  */
 public class GetRequestTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Verifies that getRequest functions as expected when provided with expected input
      */
@@ -71,4 +92,419 @@ public class GetRequestTest {
         WebServerResponse response = request.getResponse();
         assertEquals("Unexpected HTTP response when response not OK", HttpResponse.NotFound, response.getResponse());
     }
+
+    /**
+     * Verifies that a request made through a server's configuration is served from the server's file cache.
+     */
+    @Test
+    public void getResponseCachedTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createFile(folder, "cached.html", "cached");
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+
+        for (int i = 0; i < 2; i++) {
+            GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(), context);
+            WebServerResponse response = request.getResponse();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            response.writeResponse(output);
+
+            assertTrue("Unexpected content length", output.toString().contains("Content-Length: 6\r\n"));
+            assertTrue("Unexpected body in response", output.toString().endsWith("\r\n\r\ncached"));
+        }
+
+        assertEquals("Second request should have been served from the cache", 1, context.getFileCache().getHitCount());
+    }
+
+    /**
+     * Verifies that a file sent from disk is sent with the length given in its header, even if the file changes after
+     * the header was built.
+     */
+    @Test
+    public void getResponseChangedFileTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "changing.txt");
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setFileCache(null);
+
+        WebServerResponse response = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(), context).getResponse();
+        TempFileUtils.writeFile(file, "0123456789abcdef");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.writeResponse(output);
+
+        assertTrue("Unexpected content length", output.toString().contains("Content-Length: 10\r\n"));
+        assertTrue("A file that grew should only send the length in its header", output.toString().endsWith("\r\n\r\n0123456789"));
+
+        response = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(), context).getResponse();
+        TempFileUtils.writeFile(file, "0123");
+
+        try {
+            response.writeResponse(new ByteArrayOutputStream());
+            fail("A file that shrank should not be sent as a shorter body");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Sends a GET request for a file with the given header and returns the raw response.
+     *
+     * @param file The file to request.
+     * @param header The header of the request.
+     * @param context The configuration of the server, or null to read the file system directly.
+     * @return The raw response.
+     */
+    private String getRawResponse(File file, WebServerHeader header, WebServerContext context) throws InvalidRequestException, IOException {
+        GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        request.getResponse().writeResponse(output);
+
+        return output.toString();
+    }
+
+    /**
+     * Verifies that a single range is sent as a 206 response, whether or not the file is cached.
+     */
+    @Test
+    public void getResponseRangeTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Range", "bytes=2-4");
+
+        WebServerContext cachedContext = new WebServerContext(folder.getRoot().getAbsolutePath());
+        WebServerContext uncachedContext = new WebServerContext(folder.getRoot().getAbsolutePath());
+        uncachedContext.setFileCache(null);
+
+        for (WebServerContext context : new WebServerContext[] { cachedContext, uncachedContext }) {
+            String output = getRawResponse(file, header, context);
+
+            assertTrue("Unexpected status", output.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+            assertTrue("Unexpected content range", output.contains("Content-Range: bytes 2-4/10\r\n"));
+            assertTrue("Unexpected content length", output.contains("Content-Length: 3\r\n"));
+            assertTrue("Unexpected body", output.endsWith("\r\n\r\n234"));
+        }
+    }
+
+    /**
+     * Verifies that files that are not held in memory are sent through a shared descriptor when the server's context
+     * enables it, which a new context does not.
+     */
+    @Test
+    public void getResponseOpenFileTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setFileCache(null);
+
+        assertNull("Contexts should not hold files open by default", context.getChannelCache());
+
+        FileChannelCache channelCache = new FileChannelCache();
+        context.setChannelCache(channelCache);
+
+        WebServerHeader rangeHeader = new WebServerHeader(false);
+        rangeHeader.setValue("Range", "bytes=2-4");
+
+        assertTrue("Unexpected body", getRawResponse(file, new WebServerHeader(false), context).endsWith("\r\n\r\n0123456789"));
+        assertTrue("Unexpected body", getRawResponse(file, rangeHeader, context).endsWith("\r\n\r\n234"));
+
+        assertEquals("File should be opened once", 1, channelCache.getMissCount());
+        assertEquals("Later requests should share the descriptor", 1, channelCache.getHitCount());
+
+        channelCache.clear();
+    }
+
+    /**
+     * Verifies that files that are not held in memory are sent from a shared mapping, both whole and as a range, and
+     * whether or not the body is sent in the same write as the header.
+     */
+    @Test
+    public void getResponseMappedTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setFileCache(null);
+        context.setMappedFileCache(new MappedFileCache(1024, 1));
+
+        WebServerHeader rangeHeader = new WebServerHeader(false);
+        rangeHeader.setValue("Range", "bytes=2-4");
+
+        for (int threshold : new int[] { 0, 1024 }) {
+            GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(false), context);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ResponseOutput responseOutput = new ResponseOutput(output);
+            responseOutput.setGatherWriteThreshold(threshold);
+            request.getResponse().writeResponse(responseOutput);
+
+            assertTrue("Unexpected body", output.toString().endsWith("\r\n\r\n0123456789"));
+
+            String ranged = getRawResponse(file, rangeHeader, context);
+            assertTrue("Unexpected status", ranged.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+            assertTrue("Unexpected body", ranged.endsWith("\r\n\r\n234"));
+        }
+
+        assertEquals("File should be mapped once", 1, context.getMappedFileCache().getMissCount());
+        assertEquals("Later requests should share the mapping", 3, context.getMappedFileCache().getHitCount());
+        assertEquals("Unexpected mapped bytes", 10, context.getMappedFileCache().getMappedBytes());
+    }
+
+    /**
+     * Verifies that small files are sent from the off-heap cache, both whole and as a range, and whether or not the body
+     * is sent in the same write as the header.
+     */
+    @Test
+    public void getResponseOffHeapTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setFileCache(null);
+        context.setOffHeapFileCache(new OffHeapFileCache(4096, 1024));
+
+        WebServerHeader rangeHeader = new WebServerHeader(false);
+        rangeHeader.setValue("Range", "bytes=2-4");
+
+        for (int threshold : new int[] { 0, 1024 }) {
+            GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(false), context);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ResponseOutput responseOutput = new ResponseOutput(output);
+            responseOutput.setGatherWriteThreshold(threshold);
+            request.getResponse().writeResponse(responseOutput);
+
+            assertTrue("Unexpected body", output.toString().endsWith("\r\n\r\n0123456789"));
+
+            String ranged = getRawResponse(file, rangeHeader, context);
+            assertTrue("Unexpected status", ranged.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+            assertTrue("Unexpected body", ranged.endsWith("\r\n\r\n234"));
+        }
+
+        assertEquals("File should be loaded once", 1, context.getOffHeapFileCache().getMissCount());
+        assertEquals("Later requests should share the cached copy", 3, context.getOffHeapFileCache().getHitCount());
+        assertEquals("Unexpected stored bytes", 10, context.getOffHeapFileCache().getStoredBytes());
+    }
+
+    /**
+     * Verifies that several ranges are sent as a multipart/byteranges body.
+     */
+    @Test
+    public void getResponseMultipleRangesTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Range", "bytes=0-1,-2");
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setFileCache(null);
+
+        String output = getRawResponse(file, header, context);
+        int bodyStart = output.indexOf("\r\n\r\n") + 4;
+        String boundary = output.substring(output.indexOf("boundary=") + 9, output.indexOf("\r\n", output.indexOf("boundary=")));
+        String body = output.substring(bodyStart);
+
+        assertTrue("Unexpected status", output.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+        assertTrue("Unexpected content type", output.contains("Content-Type: multipart/byteranges; boundary="));
+        assertTrue("Unexpected content length", output.contains("Content-Length: " + body.length() + "\r\n"));
+        assertEquals("Unexpected body",
+                "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\n01"
+                + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 8-9/10\r\n\r\n89"
+                + "\r\n--" + boundary + "--\r\n", body);
+    }
+
+    /**
+     * Verifies that a range outside the file results in a 416 response.
+     */
+    @Test
+    public void getResponseRangeNotSatisfiableTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Range", "bytes=10-");
+
+        String output = getRawResponse(file, header, null);
+
+        assertTrue("Unexpected status", output.startsWith("HTTP/1.1 416 Range Not Satisfiable\r\n"));
+        assertTrue("Unexpected content range", output.contains("Content-Range: bytes */10\r\n"));
+        assertTrue("Unexpected body", output.endsWith("\r\n\r\n"));
+    }
+
+    /**
+     * Verifies that ranges are only served when the If-Range date or entity tag matches the file.
+     */
+    @Test
+    public void getResponseIfRangeTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Range", "bytes=2-4");
+        header.setValue("If-Range", format.format(new Date(file.lastModified())));
+
+        assertTrue("Matching date should serve the range", getRawResponse(file, header, null).startsWith("HTTP/1.1 206 "));
+
+        header.setValue("If-Range", format.format(new Date(file.lastModified() - 60000)));
+        assertTrue("Stale date should serve the whole file", getRawResponse(file, header, null).endsWith("\r\n\r\n0123456789"));
+
+        header.setValue("If-Range", "\"some-tag\"");
+        assertTrue("Unknown entity tag should serve the whole file", getRawResponse(file, header, null).endsWith("\r\n\r\n0123456789"));
+
+        header.setValue("If-Range", FileMetadata.read(file.getAbsolutePath()).getEntityTag());
+        assertTrue("Matching entity tag should serve the range", getRawResponse(file, header, null).startsWith("HTTP/1.1 206 "));
+
+        header.setValue("If-Range", "W/" + FileMetadata.read(file.getAbsolutePath()).getEntityTag());
+        assertTrue("Weak entity tag should serve the whole file", getRawResponse(file, header, null).endsWith("\r\n\r\n0123456789"));
+    }
+
+    /**
+     * Verifies that precompressed copies are served to clients that accept their encoding, with the content type of
+     * the original file.
+     */
+    @Test
+    public void getResponsePrecompressedTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createFile(folder, "app.js", "original");
+        File gzip = TempFileUtils.createFile(folder, "app.js.gz", "gz");
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Accept-Encoding", "br, gzip");
+
+        String output = getRawResponse(file, header, context);
+        assertTrue("Unexpected content encoding", output.contains("Content-Encoding: gzip\r\n"));
+        assertTrue("Unexpected vary", output.contains("Vary: Accept-Encoding\r\n"));
+        assertTrue("Unexpected content type", output.contains("Content-Type: application/javascript\r\n"));
+        assertTrue("Unexpected body", output.endsWith("\r\n\r\ngz"));
+
+        header.setValue("Accept-Encoding", "identity");
+        output = getRawResponse(file, header, context);
+        assertFalse("Identity response should not be encoded", output.contains("Content-Encoding"));
+        assertTrue("Identity response should still vary", output.contains("Vary: Accept-Encoding\r\n"));
+        assertTrue("Unexpected body", output.endsWith("\r\n\r\noriginal"));
+
+        context.setPrecompressedEnabled(false);
+        header.setValue("Accept-Encoding", "gzip");
+        output = getRawResponse(file, header, context);
+        assertFalse("Disabled precompression should not vary", output.contains("Vary"));
+        assertTrue("Unexpected body", output.endsWith("\r\n\r\noriginal"));
+    }
+
+    /**
+     * Verifies that a text file is compressed for clients that accept gzip, and that the compressed copy has its own
+     * length and entity tag.
+     */
+    @Test
+    public void getResponseDynamicCompressionTest() throws InvalidRequestException, IOException {
+        StringBuilder content = new StringBuilder();
+
+        while (content.length() < 4096) {
+            content.append("<p>hello compression</p>");
+        }
+
+        File file = TempFileUtils.createFile(folder, "page.html", content.toString().getBytes("UTF-8"));
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setCompressedFileCache(new CompressedFileCache());
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Accept-Encoding", "gzip, deflate");
+
+        GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        request.getResponse().writeResponse(output);
+
+        byte[] raw = output.toByteArray();
+        String text = new String(raw, "ISO-8859-1");
+        int bodyStart = text.indexOf("\r\n\r\n") + 4;
+        String head = text.substring(0, bodyStart);
+
+        assertTrue("Unexpected content encoding", head.contains("Content-Encoding: gzip\r\n"));
+        assertTrue("Unexpected vary", head.contains("Vary: Accept-Encoding\r\n"));
+        assertTrue("Unexpected content length", head.contains("Content-Length: " + (raw.length - bodyStart) + "\r\n"));
+        assertTrue("Compressed copy should be smaller", raw.length - bodyStart < content.length());
+
+        String entityTag = FileMetadata.read(file.getAbsolutePath()).getEntityTag();
+        String compressedTag = entityTag.substring(0, entityTag.length() - 1) + "-gzip\"";
+        assertTrue("Unexpected entity tag", head.contains("ETag: " + compressedTag + "\r\n"));
+
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(raw, bodyStart, raw.length - bodyStart));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = gzip.read(buffer)) > 0) {
+            decompressed.write(buffer, 0, read);
+        }
+
+        assertEquals("Unexpected decompressed body", content.toString(), decompressed.toString("UTF-8"));
+
+        header.setValue("If-None-Match", compressedTag);
+        request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context);
+        assertEquals("Compressed tag should validate the compressed copy", HttpResponse.NotModified, request.getResponse().getResponse());
+
+        header.setValue("Accept-Encoding", "identity");
+        String identity = getRawResponse(file, header, context);
+        assertTrue("Compressed tag should not validate the original", identity.startsWith("HTTP/1.1 200"));
+        assertFalse("Identity response should not be encoded", identity.contains("Content-Encoding"));
+        assertTrue("Identity response should still vary", identity.contains("Vary: Accept-Encoding\r\n"));
+        assertTrue("Unexpected body", identity.endsWith("\r\n\r\n" + content));
+        assertEquals("File should only have been compressed once", 1, context.getCompressedFileCache().getCompressionCount());
+    }
+
+    /**
+     * Verifies that a file too large for the compressed file cache is compressed while it is sent, with a chunked body.
+     */
+    @Test
+    public void getResponseStreamCompressionTest() throws InvalidRequestException, IOException {
+        StringBuilder content = new StringBuilder();
+
+        while (content.length() < 100000) {
+            content.append("<p>streamed compression</p>");
+        }
+
+        File file = TempFileUtils.createFile(folder, "large.html", content.toString().getBytes("UTF-8"));
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setCompressedFileCache(new CompressedFileCache(1024 * 1024, 0, 1000, 6));
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Accept-Encoding", "gzip");
+        header.setValue("Range", "bytes=0-9");
+
+        GetRequest request = new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context);
+        WebServerResponse response = request.getResponse();
+        assertEquals("Ranges should not be served for a streamed body", HttpResponse.OK, response.getResponse());
+        assertTrue("Streamed body should be chunked", WebServerResponseFactory.setTransferHeaders(response, context, HttpVersion.HTTP_1_1));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.writeResponse(output);
+
+        byte[] raw = output.toByteArray();
+        String text = new String(raw, "ISO-8859-1");
+        int bodyStart = text.indexOf("\r\n\r\n") + 4;
+        String head = text.substring(0, bodyStart);
+
+        assertTrue("Unexpected content encoding", head.contains("Content-Encoding: gzip\r\n"));
+        assertTrue("Unexpected transfer encoding", head.contains("Transfer-Encoding: chunked\r\n"));
+        assertFalse("Streamed body should not have a length", head.contains("Content-Length"));
+        assertFalse("Streamed body should not offer ranges", head.contains("Accept-Ranges"));
+
+        // remove the chunk framing before decompressing
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int position = bodyStart;
+
+        while (true) {
+            int lineEnd = text.indexOf("\r\n", position);
+            int length = Integer.parseInt(text.substring(position, lineEnd), 16);
+
+            if (length == 0) {
+                break;
+            }
+
+            body.write(raw, lineEnd + 2, length);
+            position = lineEnd + 2 + length + 2;
+        }
+
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = gzip.read(buffer)) > 0) {
+            decompressed.write(buffer, 0, read);
+        }
+
+        assertEquals("Unexpected decompressed body", content.toString(), decompressed.toString("UTF-8"));
+        assertEquals("Streamed file should not be cached", 0, context.getCompressedFileCache().getCompressionCount());
+    }
 }
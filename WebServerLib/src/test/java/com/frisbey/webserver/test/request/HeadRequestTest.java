@@ -19,12 +19,26 @@ package com.frisbey.webserver.test.request;
 import com.frisbey.webserver.HttpMethod;
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileMetadata;
 import com.frisbey.webserver.exception.InvalidRequestException;
+import com.frisbey.webserver.request.GetRequest;
 import com.frisbey.webserver.request.HeadRequest;
 import com.frisbey.webserver.request.WebServerHeader;
 import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.response.WebServerResponseFactory;
 import com.frisbey.webserver.test.mock.MockHeadRequest;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import com.frisbey.webserver.utility.HttpDateUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 
 import static org.junit.Assert.*;
 
@@ -35,6 +49,9 @@ import static org.junit.Assert.*;
  */
 public class HeadRequestTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Verifies that the getResponse method works correctly with provided with valid input.
      */
@@ -50,4 +67,152 @@ public class HeadRequestTest {
         assertEquals("Unexpected HTTP response", HttpResponse.OK, response.getResponse());
         assertEquals("Unexpected Server header value", "AemWebServer", response.getHeaderValue("Server"));
     }
+
+    /**
+     * Verifies that HEAD requests advertise range support but ignore the Range header.
+     */
+    @Test
+    public void getResponseIgnoresRangeTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "digits.txt");
+
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Range", "bytes=2-4");
+
+        HeadRequest request = new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header);
+        WebServerResponse response = request.getResponse();
+
+        assertEquals("Unexpected HTTP response", HttpResponse.OK, response.getResponse());
+        assertEquals("Unexpected Content-Length header value", "10", response.getHeaderValue("Content-Length"));
+        assertEquals("Unexpected Accept-Ranges header value", "bytes", response.getHeaderValue("Accept-Ranges"));
+    }
+
+    /**
+     * Sends a HEAD request for a file with the given conditional header.
+     *
+     * @param file The file to request.
+     * @param key The name of the conditional header.
+     * @param value The value of the conditional header.
+     * @return The response to the request.
+     */
+    private WebServerResponse getConditionalResponse(File file, String key, String value) throws InvalidRequestException {
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue(key, value);
+
+        return new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header).getResponse();
+    }
+
+    /**
+     * Verifies that responses carry validators derived from the file's metadata.
+     */
+    @Test
+    public void getResponseValidatorsTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "validators.txt");
+        FileMetadata metadata = FileMetadata.read(file.getAbsolutePath());
+
+        WebServerResponse response = new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(false)).getResponse();
+
+        assertEquals("Unexpected ETag header value", metadata.getEntityTag(), response.getHeaderValue("ETag"));
+        assertEquals("Unexpected Last-Modified header value", HttpDateUtils.format(file.lastModified()), response.getHeaderValue("Last-Modified"));
+        assertTrue("ETag should be quoted", metadata.getEntityTag().startsWith("\"") && metadata.getEntityTag().endsWith("\""));
+    }
+
+    /**
+     * Verifies that a matching If-None-Match condition results in a 304 response without a Content-Length.
+     */
+    @Test
+    public void getResponseIfNoneMatchTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "validators.txt");
+        String entityTag = FileMetadata.read(file.getAbsolutePath()).getEntityTag();
+
+        WebServerResponse response = getConditionalResponse(file, "If-None-Match", "\"other\", W/" + entityTag);
+        assertEquals("Unexpected HTTP response", HttpResponse.NotModified, response.getResponse());
+        assertNull("304 response should not have a Content-Length", response.getHeaderValue("Content-Length"));
+        assertEquals("Unexpected ETag header value", entityTag, response.getHeaderValue("ETag"));
+
+        assertEquals("Wildcard should match", HttpResponse.NotModified, getConditionalResponse(file, "If-None-Match", "*").getResponse());
+        assertEquals("Other tags should not match", HttpResponse.OK, getConditionalResponse(file, "If-None-Match", "\"other\"").getResponse());
+    }
+
+    /**
+     * Verifies that If-Modified-Since compares dates to the second.
+     */
+    @Test
+    public void getResponseIfModifiedSinceTest() throws InvalidRequestException, IOException {
+        File file = TempFileUtils.createDigitsFile(folder, "validators.txt");
+
+        assertEquals("Same date should not be modified", HttpResponse.NotModified,
+                getConditionalResponse(file, "If-Modified-Since", HttpDateUtils.format(file.lastModified())).getResponse());
+        assertEquals("Earlier date should be modified", HttpResponse.OK,
+                getConditionalResponse(file, "If-Modified-Since", HttpDateUtils.format(file.lastModified() - 2000)).getResponse());
+        assertEquals("Invalid date should be ignored", HttpResponse.OK,
+                getConditionalResponse(file, "If-Modified-Since", "yesterday").getResponse());
+    }
+
+    /**
+     * Verifies that the content type comes from the server's registry.
+     */
+    @Test
+    public void getResponseContentTypeTest() throws InvalidRequestException, IOException {
+        File file = folder.newFile("logo.svg");
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+
+        HeadRequest request = new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(false), context);
+        assertEquals("Unexpected content type", "image/svg+xml", request.getResponse().getHeaderValue("Content-Type"));
+
+        MimeTypeRegistry registry = new MimeTypeRegistry();
+        registry.register("svg", "image/x-custom");
+        context.setMimeTypeRegistry(registry);
+
+        request = new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, new WebServerHeader(false), context);
+        assertEquals("Unexpected custom content type", "image/x-custom", request.getResponse().getHeaderValue("Content-Type"));
+    }
+
+    /**
+     * Verifies that a HEAD response for a file that is compressed while it is sent carries the same header as the GET
+     * response, including the chunked transfer coding for HTTP/1.1 clients, without a body.
+     */
+    @Test
+    public void getResponseStreamCompressionTest() throws InvalidRequestException, IOException {
+        StringBuilder content = new StringBuilder();
+
+        while (content.length() < 100000) {
+            content.append("<p>streamed compression</p>");
+        }
+
+        File file = TempFileUtils.createFile(folder, "large.html", content.toString().getBytes("UTF-8"));
+
+        WebServerContext context = new WebServerContext(folder.getRoot().getAbsolutePath());
+        context.setCompressedFileCache(new CompressedFileCache(1024 * 1024, 0, 1000, 6));
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Accept-Encoding", "gzip");
+
+        String get = getWrittenHeader(new GetRequest(HttpMethod.GET, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context), context);
+        String head = getWrittenHeader(new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_1, header, context), context);
+
+        assertTrue("GET body should be chunked", get.contains("Transfer-Encoding: chunked\r\n"));
+        assertEquals("HEAD header should match GET", get, head);
+
+        String headHttp10 = getWrittenHeader(new HeadRequest(HttpMethod.HEAD, file.getAbsolutePath(), HttpVersion.HTTP_1_0, header, context), context);
+        assertFalse("HTTP/1.0 clients do not understand chunked bodies", headHttp10.contains("Transfer-Encoding"));
+        assertFalse("Length should not be sent", headHttp10.contains("Content-Length"));
+    }
+
+    /**
+     * Prepares a request's response the way a connection does and writes it, returning only the status line and header.
+     *
+     * @param request The request to answer.
+     * @param context The configuration of the server.
+     * @return The status line and header, up to and including the blank line.
+     */
+    private String getWrittenHeader(HeadRequest request, WebServerContext context) throws InvalidRequestException, IOException {
+        WebServerResponse response = request.getResponse();
+        WebServerResponseFactory.setTransferHeaders(response, context, request.getVersion());
+        WebServerResponseFactory.setConnectionHeaders(response, context, false, 1);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.writeResponse(output);
+        String text = output.toString("ISO-8859-1");
+
+        return text.substring(0, text.indexOf("\r\n\r\n") + 4);
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserver.test.request;
+
+import com.frisbey.webserver.HttpMethod;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.request.HttpRequestParser;
+import com.frisbey.webserver.request.WebServerHeader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Exercises the HttpRequestParser.
+ */
+public class HttpRequestParserTest {
+
+    // a complete request with a header
+    private static final String kRequest = "GET /some%20uri HTTP/1.1\r\nHost: www.adobe.com\r\nAccept: text/html\r\n\r\n";
+
+    /**
+     * Wraps a string in a buffer.
+     *
+     * @param data The data to wrap.
+     * @return A buffer ready for reading.
+     */
+    private ByteBuffer toBuffer(String data) {
+        return ByteBuffer.wrap(data.getBytes(Charset.forName("ISO-8859-1")));
+    }
+
+    /**
+     * Verifies that a complete request is parsed in a single call.
+     */
+    @Test
+    public void parseCompleteTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertTrue(parser.parse(toBuffer(kRequest)));
+        assertTrue(parser.isComplete());
+        assertEquals(HttpMethod.GET, parser.getMethod());
+        assertEquals("GET", parser.getRawMethod());
+        assertEquals("/some%20uri", parser.getTarget());
+        assertEquals(HttpVersion.HTTP_1_1, parser.getVersion());
+        assertEquals(2, parser.getHeaderCount());
+        assertEquals("Host", parser.getHeaderName(0));
+        assertEquals("www.adobe.com", parser.getHeaderValue(0));
+        assertEquals("text/html", parser.getHeaderValue("accept"));
+        assertNull(parser.getHeaderValue("Connection"));
+
+        WebServerHeader header = parser.getHeader();
+        assertEquals("www.adobe.com", header.getValue("Host"));
+    }
+
+    /**
+     * Verifies that a request delivered one byte at a time is parsed the same as one delivered all at once.
+     */
+    @Test
+    public void parsePartialTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+        byte[] data = kRequest.getBytes(Charset.forName("ISO-8859-1"));
+
+        for (int i = 0; i < data.length - 1; i++) {
+            assertFalse(parser.parse(ByteBuffer.wrap(data, i, 1)));
+        }
+
+        assertTrue(parser.parse(ByteBuffer.wrap(data, data.length - 1, 1)));
+        assertTrue(parser.isComplete());
+        assertEquals("/some%20uri", parser.getTarget());
+        assertEquals("text/html", parser.getHeaderValue("Accept"));
+    }
+
+    /**
+     * Verifies that bytes following a request are left for the next request, and that a reset parser reads them.
+     */
+    @Test
+    public void parsePipelinedTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+        ByteBuffer input = toBuffer(kRequest + "\r\nHEAD /other HTTP/1.0\r\n\r\n");
+
+        assertTrue(parser.parse(input));
+        assertEquals(kRequest.length(), input.position());
+
+        parser.reset();
+        assertTrue(parser.parse(input));
+        assertTrue(parser.isComplete());
+        assertEquals(HttpMethod.HEAD, parser.getMethod());
+        assertEquals("/other", parser.getTarget());
+        assertEquals(HttpVersion.HTTP_1_0, parser.getVersion());
+        assertEquals(0, parser.getHeaderCount());
+        assertFalse(input.hasRemaining());
+    }
+
+    /**
+     * Verifies that the end of input completes a request that was not ended by a blank line.
+     */
+    @Test
+    public void endOfInputTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertFalse(parser.parse(toBuffer("GET /someuri HTTP/1.1\r\nHost: www.adobe.com")));
+        assertTrue(parser.isStarted());
+        assertTrue(parser.endOfInput());
+        assertTrue(parser.isComplete());
+        assertEquals("www.adobe.com", parser.getHeaderValue("host"));
+    }
+
+    /**
+     * Verifies that the end of input without any data is an error.
+     */
+    @Test
+    public void endOfInputEmptyTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertFalse(parser.parse(toBuffer("\r\n")));
+        assertFalse(parser.isStarted());
+        assertTrue(parser.endOfInput());
+        assertFalse(parser.isComplete());
+        assertNotNull(parser.getError());
+    }
+
+    /**
+     * Verifies that unknown methods and versions are reported without failing the parse.
+     */
+    @Test
+    public void parseUnknownMethodTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertTrue(parser.parse(toBuffer("BREW /pot HTTP/9.9\r\n\r\n")));
+        assertTrue(parser.isComplete());
+        assertNull(parser.getMethod());
+        assertEquals("BREW", parser.getRawMethod());
+        assertNull(parser.getVersion());
+        assertEquals("HTTP/9.9", parser.getRawVersion());
+    }
+
+    /**
+     * Verifies that an invalid request line fails the parse.
+     */
+    @Test
+    public void parseInvalidRequestLineTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertTrue(parser.parse(toBuffer("TOTALLY INVALID\r\n\r\n")));
+        assertFalse(parser.isComplete());
+        assertNotNull(parser.getError());
+    }
+
+    /**
+     * Verifies that an invalid header line fails the parse.
+     */
+    @Test
+    public void parseInvalidHeaderTest() {
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertTrue(parser.parse(toBuffer("GET /someuri HTTP/1.1\r\nnot a header\r\n\r\n")));
+        assertFalse(parser.isComplete());
+        assertNotNull(parser.getError());
+    }
+
+    /**
+     * Verifies that a request larger than the maximum size fails the parse.
+     */
+    @Test
+    public void parseTooLargeTest() {
+        HttpRequestParser parser = new HttpRequestParser(64);
+        StringBuilder request = new StringBuilder("GET /someuri HTTP/1.1\r\n");
+
+        for (int i = 0; i < 10; i++) {
+            request.append("X-Header-").append(i).append(": value\r\n");
+        }
+
+        assertTrue(parser.parse(toBuffer(request.toString())));
+        assertFalse(parser.isComplete());
+        assertNotNull(parser.getError());
+    }
+}
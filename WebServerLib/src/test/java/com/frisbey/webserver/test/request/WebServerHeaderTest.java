@@ -110,4 +110,67 @@ public class WebServerHeaderTest {
         header.setValue("Host", "adobe.com");
         assertEquals("Unexpected key value", "adobe.com", header.getValue("Host"));
     }
+
+    /**
+     * Verifies that header names are matched without regard to case while retaining their original spelling.
+     */
+    @Test
+    public void caseInsensitiveKeyTest() throws InvalidHeaderException {
+        WebServerHeader header = new WebServerHeader(false);
+        header.addRawValue("content-type: text/html");
+        header.setValue("Content-Type", "text/css");
+
+        assertEquals("Unexpected value for differently cased key", "text/css", header.getValue("CONTENT-TYPE"));
+        assertEquals("Unexpected key spelling", "content-type", header.getKeys().iterator().next());
+    }
+
+    /**
+     * Verifies that a header created without defaults is empty.
+     */
+    @Test
+    public void noDefaultsTest() {
+        WebServerHeader header = new WebServerHeader(false);
+        assertFalse("Header should not contain any keys", header.getKeys().iterator().hasNext());
+        assertNull("Header should not contain a default Connection value", header.getValue("Connection"));
+    }
+
+    /**
+     * Verifies the containsToken and removeValue methods.
+     */
+    @Test
+    public void containsTokenTest() {
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Connection", "Keep-Alive, Upgrade");
+
+        assertTrue("Token should have been found", header.containsToken("connection", "keep-alive"));
+        assertTrue("Token should have been found", header.containsToken("Connection", "upgrade"));
+        assertFalse("Token should not have been found", header.containsToken("Connection", "close"));
+
+        header.setValue("Connection", " ,close ,, TE");
+        assertTrue("Token should have been found", header.containsToken("Connection", "close"));
+        assertTrue("Token should have been found", header.containsToken("Connection", "te"));
+        assertFalse("Partial token should not have been found", header.containsToken("Connection", "clos"));
+
+        header.removeValue("CONNECTION");
+        assertFalse("Token should not be found after the key is removed", header.containsToken("Connection", "upgrade"));
+    }
+
+    /**
+     * Verifies that values can be retrieved by position, in the order their keys were first added.
+     */
+    @Test
+    public void indexedAccessTest() {
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Host", "www.adobe.com");
+        header.setValue("Accept", "text/html");
+        header.setValue("Connection", "close");
+        header.setValue("host", "www.example.com");
+        header.removeValue("Accept");
+
+        assertEquals("Unexpected number of values", 2, header.getCount());
+        assertEquals("Key should keep its original spelling", "Host", header.getKey(0));
+        assertEquals("Value should have been replaced", "www.example.com", header.getValue(0));
+        assertEquals("Unexpected key after removal", "Connection", header.getKey(1));
+        assertEquals("Unexpected value after removal", "close", header.getValue(1));
+    }
 }
@@ -16,8 +16,11 @@
 
 package com.frisbey.webserver.test.request;
 
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.exception.InvalidRequestException;
 import com.frisbey.webserver.request.GetRequest;
+import com.frisbey.webserver.request.HeadRequest;
+import com.frisbey.webserver.request.HttpRequestParser;
 import com.frisbey.webserver.request.WebServerRequest;
 import com.frisbey.webserver.request.WebServerRequestFactory;
 import com.frisbey.webserver.utility.StreamUtils;
@@ -25,9 +28,11 @@ import com.frisbey.webserver.utility.StringUtils;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -80,6 +85,15 @@ public class WebServerRequestFactoryTest {
         assertEquals("Unexpected header value", "www.adobe.com", request.getHeaderValue("Host"));
     }
 
+    /**
+     * Test that a HEAD request is recognized.
+     */
+    @Test
+    public void getRequestHeadTest() throws IOException, InvalidRequestException {
+        WebServerRequest request = WebServerRequestFactory.getRequest(getTestRawRequestInput("HEAD /someuri HTTP/1.1\r\n\r\n"), "/webserverroot");
+        assertEquals("Request retrieved from factory is of unexpected type", HeadRequest.class, request.getClass());
+    }
+
     /**
      * Test a request without a header or body.
      */
@@ -115,4 +129,41 @@ public class WebServerRequestFactoryTest {
         WebServerRequest request = WebServerRequestFactory.getRequest(getTestRawRequestInput(getTestRawRequest("INVALIDHEADER")), "/webserverroot");
         assertNull("Exception should have thrown by this point", request);
     }
+
+    /**
+     * Test that consecutive requests can be read from the same reader.
+     */
+    @Test
+    public void getRequestPersistentTest() throws IOException, InvalidRequestException {
+        BufferedReader reader = StreamUtils.getStreamReader(getTestRawRequestInput(
+                "GET /uri1 HTTP/1.1\r\nHost: www.adobe.com\r\n\r\nGET /uri2 HTTP/1.1\r\nConnection: close\r\n\r\n"));
+
+        WebServerRequest first = WebServerRequestFactory.getRequest(reader, "/webserverroot");
+        WebServerRequest second = WebServerRequestFactory.getRequest(reader, "/webserverroot");
+
+        assertEquals("Unexpected first request URI", "/webserverroot/uri1", first.getUri());
+        assertTrue("First request should keep the connection open", first.isKeepAlive());
+        assertEquals("Unexpected second request URI", "/webserverroot/uri2", second.getUri());
+        assertFalse("Second request should close the connection", second.isKeepAlive());
+    }
+
+    /**
+     * Test that a request built from a parser reads its header values from the parsed request, matching names without
+     * regard to case and letting the last of repeated values win.
+     */
+    @Test
+    public void getRequestFromParserTest() throws InvalidRequestException {
+        HttpRequestParser parser = new HttpRequestParser();
+        assertTrue("Request should be complete", parser.parse(ByteBuffer.wrap((
+                "GET /uri HTTP/1.1\r\nHost: www.adobe.com\r\nAccept: text/plain\r\naccept: text/html\r\n" +
+                "Connection: Upgrade , close\r\n\r\n").getBytes(Charset.forName("US-ASCII")))));
+
+        WebServerRequest request = WebServerRequestFactory.getRequest(parser, new WebServerContext("/webserverroot"));
+
+        assertEquals("Unexpected URI", "/webserverroot/uri", request.getUri());
+        assertEquals("Unexpected host", "www.adobe.com", request.getHeaderValue("HOST"));
+        assertEquals("Last value should win", "text/html", request.getHeaderValue("Accept"));
+        assertNull("Missing header should have no value", request.getHeaderValue("Range"));
+        assertFalse("Request should close the connection", request.isKeepAlive());
+    }
 }
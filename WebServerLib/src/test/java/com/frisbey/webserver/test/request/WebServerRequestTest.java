@@ -77,4 +77,20 @@ public class WebServerRequestTest {
         WebServerRequest request  = new HeadRequest(HttpMethod.GET, "uri", HttpVersion.HTTP_1_1, header);
         assertEquals("Unexpected header value", "www.adobe.com", request.getHeaderValue("Host"));
     }
+
+    /**
+     * Verifies the isKeepAlive method for the supported HTTP versions.
+     */
+    @Test
+    public void isKeepAliveTest() {
+        WebServerHeader header = new WebServerHeader(false);
+        assertTrue("HTTP 1.1 should default to a persistent connection", new HeadRequest(HttpMethod.GET, "uri", HttpVersion.HTTP_1_1, header).isKeepAlive());
+        assertFalse("HTTP 1.0 should default to closing the connection", new HeadRequest(HttpMethod.GET, "uri", HttpVersion.HTTP_1_0, header).isKeepAlive());
+
+        header.setValue("Connection", "close");
+        assertFalse("HTTP 1.1 should close when requested", new HeadRequest(HttpMethod.GET, "uri", HttpVersion.HTTP_1_1, header).isKeepAlive());
+
+        header.setValue("Connection", "Keep-Alive");
+        assertTrue("HTTP 1.0 should persist when requested", new HeadRequest(HttpMethod.GET, "uri", HttpVersion.HTTP_1_0, header).isKeepAlive());
+    }
 }
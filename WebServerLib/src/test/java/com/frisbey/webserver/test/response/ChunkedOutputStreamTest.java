@@ -0,0 +1,102 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.response;
+
+import com.frisbey.webserver.response.ChunkedOutputStream;
+import com.frisbey.webserver.response.ResponseOutput;
+import com.frisbey.webserver.utility.BufferPool;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the ChunkedOutputStream class.
+ *
+ * @author Mark Frisbey
+ */
+public class ChunkedOutputStreamTest {
+
+    /**
+     * Verifies that data is framed into chunks of the configured size, and that flushing sends a partial chunk.
+     */
+    @Test
+    public void writeTest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChunkedOutputStream chunked = new ChunkedOutputStream(new ResponseOutput(output), 16);
+
+        try {
+            chunked.write("0123456789abcdefXYZ".getBytes());
+            chunked.write('!');
+            chunked.flush();
+            assertEquals("Unexpected chunks after flush", "10\r\n0123456789abcdef\r\n4\r\nXYZ!", output.toString());
+
+            chunked.finish();
+            chunked.finish();
+        } finally {
+            chunked.close();
+        }
+
+        assertEquals("Unexpected body", "10\r\n0123456789abcdef\r\n4\r\nXYZ!\r\n0\r\n\r\n", output.toString());
+    }
+
+    /**
+     * Verifies that an empty body consists of only the last chunk.
+     */
+    @Test
+    public void emptyBodyTest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChunkedOutputStream chunked = new ChunkedOutputStream(new ResponseOutput(output), 16);
+
+        chunked.finish();
+        chunked.close();
+
+        assertEquals("Unexpected body", "0\r\n\r\n", output.toString());
+    }
+
+    /**
+     * Verifies that the chunk buffer is borrowed from the pool and returned when the stream is closed, and that chunks
+     * larger than the pool's buffers are still supported.
+     */
+    @Test
+    public void bufferPoolTest() throws IOException {
+        BufferPool pool = new BufferPool(32, 4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ChunkedOutputStream chunked = new ChunkedOutputStream(new ResponseOutput(output), 8, pool);
+        chunked.finish();
+        chunked.close();
+        assertEquals("Chunk buffer should have been returned to the pool", 1, pool.getPooledCount());
+
+        chunked = new ChunkedOutputStream(new ResponseOutput(output), 64, pool);
+        assertEquals("Chunk buffer should not have been borrowed", 1, pool.getPooledCount());
+        chunked.close();
+        assertEquals("Allocated buffer should not be added to the pool", 1, pool.getPooledCount());
+    }
+
+    /**
+     * Verifies that nothing can be written once the body is finished.
+     */
+    @Test(expected = IOException.class)
+    public void writeAfterFinishTest() throws IOException {
+        ChunkedOutputStream chunked = new ChunkedOutputStream(new ResponseOutput(new ByteArrayOutputStream()), 16);
+        chunked.finish();
+        chunked.write('x');
+    }
+}
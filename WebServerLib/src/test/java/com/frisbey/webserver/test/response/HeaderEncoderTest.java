@@ -0,0 +1,94 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserver.test.response;
+
+import com.frisbey.webserver.HttpResponse;
+import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.HeaderEncoder;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the HeaderEncoder class.
+ *
+ * @author Mark Frisbey
+ */
+public class HeaderEncoderTest {
+
+    /**
+     * Decodes the data that has been written to a buffer.
+     *
+     * @param buffer A buffer in write mode.
+     * @return The data written to the buffer.
+     */
+    private String decode(ByteBuffer buffer) {
+        buffer.flip();
+        return Charset.forName("ISO-8859-1").decode(buffer).toString();
+    }
+
+    /**
+     * Verifies that a status line and header are encoded in order, with common and uncommon header names.
+     */
+    @Test
+    public void encodeTest() {
+        WebServerHeader header = new WebServerHeader(false);
+        header.setValue("Content-Length", "12");
+        header.setValue("X-Custom", "value");
+
+        int length = HeaderEncoder.getEncodedLength(HttpVersion.HTTP_1_1, HttpResponse.NotFound, header);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        HeaderEncoder.encode(HttpVersion.HTTP_1_1, HttpResponse.NotFound, header, buffer);
+
+        assertEquals("Unexpected encoded length", length, buffer.position());
+        assertEquals("Unexpected encoded header", "HTTP/1.1 404 Not Found\r\nContent-Length: 12\r\nX-Custom: value\r\n\r\n", decode(buffer));
+    }
+
+    /**
+     * Verifies that a response without a header is encoded as just a status line.
+     */
+    @Test
+    public void encodeNoHeaderTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        HeaderEncoder.encode(HttpVersion.HTTP_1_0, HttpResponse.OK, null, buffer);
+
+        assertEquals("Unexpected encoded header", "HTTP/1.0 200 OK\r\n\r\n", decode(buffer));
+    }
+
+    /**
+     * Verifies that characters outside of ISO-8859-1 are replaced.
+     */
+    @Test
+    public void encodeUnmappableTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        HeaderEncoder.encodeHeader("X-Name", "caf\u00e9 \u2603", buffer);
+
+        assertEquals("Unexpected encoded header", "X-Name: caf\u00e9 ?\r\n", decode(buffer));
+    }
+
+    /**
+     * Verifies that an overflow is reported when the buffer is too small.
+     */
+    @Test(expected = BufferOverflowException.class)
+    public void encodeOverflowTest() {
+        HeaderEncoder.encode(HttpVersion.HTTP_1_1, HttpResponse.OK, new WebServerHeader(), ByteBuffer.allocate(8));
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.response;
+
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.FileBodySource;
+import com.frisbey.webserver.response.ResponseOutput;
+import com.frisbey.webserver.response.StreamBodySource;
+import com.frisbey.webserver.test.utility.TempFileUtils;
+import com.frisbey.webserver.utility.BufferPool;
+import com.frisbey.webserver.utility.StreamUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the ResponseOutput class and the body sources that write to it.
+ *
+ * @author Mark Frisbey
+ */
+public class ResponseOutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Verifies that a file is copied through a buffer when the output is only a stream.
+     */
+    @Test
+    public void transferFileToStreamTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "body.txt", "this is the body");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        // use a tiny buffer so the copy has to loop
+        ResponseOutput output = new ResponseOutput(stream, null, new BufferPool(3, 1));
+        new FileBodySource(file.getAbsolutePath()).writeTo(output);
+
+        assertFalse("Output should not report an available channel", output.isChannelAvailable());
+        assertEquals("Unexpected body", "this is the body", stream.toString());
+        assertEquals("Unexpected number of bytes written", 16, output.getBytesWritten());
+    }
+
+    /**
+     * Verifies that a file is transferred to a channel when one is available.
+     */
+    @Test
+    public void transferFileToChannelTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "body.txt", "this is the body");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        ResponseOutput output = new ResponseOutput(null, Channels.newChannel(stream));
+        new FileBodySource(file.getAbsolutePath()).writeTo(output);
+
+        assertTrue("Output should report an available channel", output.isChannelAvailable());
+        assertEquals("Unexpected body", "this is the body", stream.toString());
+        assertEquals("Unexpected number of bytes written", 16, output.getBytesWritten());
+    }
+
+    /**
+     * Verifies that a stream source is copied in full.
+     */
+    @Test
+    public void transferStreamTest() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        ResponseOutput output = new ResponseOutput(stream, null, new BufferPool(4, 1));
+        new StreamBodySource(StreamUtils.getInputStreamFromString("this is the body")).writeTo(output);
+
+        assertEquals("Unexpected body", "this is the body", stream.toString());
+        assertEquals("Unexpected number of bytes written", 16, output.getBytesWritten());
+    }
+
+    /**
+     * Verifies that direct buffers are written to a stream correctly.
+     */
+    @Test
+    public void writeDirectBufferTest() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put("this is the body".getBytes());
+        buffer.flip();
+
+        ResponseOutput output = new ResponseOutput(stream, null, new BufferPool(5, 1));
+        output.write(buffer);
+
+        assertEquals("Unexpected body", "this is the body", stream.toString());
+        assertFalse("Buffer should have been consumed", buffer.hasRemaining());
+    }
+
+    /**
+     * Verifies that a header and body are written to a gathering channel together.
+     */
+    @Test
+    public void gatherWriteToChannelTest() throws IOException {
+        File file = folder.newFile("gathered.txt");
+        RandomAccessFile target = new RandomAccessFile(file, "rw");
+
+        try {
+            FileChannel channel = target.getChannel();
+            ByteBuffer header = ByteBuffer.wrap("header|".getBytes());
+            ByteBuffer body = ByteBuffer.allocateDirect(4);
+            body.put("body".getBytes());
+            body.flip();
+
+            ResponseOutput output = new ResponseOutput(null, channel);
+            output.write(header, body);
+
+            assertFalse("Header should have been consumed", header.hasRemaining());
+            assertFalse("Body should have been consumed", body.hasRemaining());
+            assertEquals("Unexpected number of bytes written", 11, output.getBytesWritten());
+            assertEquals("Unexpected file size", 11, channel.size());
+        } finally {
+            target.close();
+        }
+
+        assertEquals("Unexpected contents", "header|body", new String(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Verifies that a header and body that fit in a pooled buffer reach a stream in a single write, and that larger
+     * ones are still written in full.
+     */
+    @Test
+    public void gatherWriteToStreamTest() throws IOException {
+        final int[] writes = new int[1];
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        OutputStream countingStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+                writes[0]++;
+                stream.write(b);
+            }
+
+            @Override
+            public void write(byte[] data, int offset, int length) {
+                writes[0]++;
+                stream.write(data, offset, length);
+            }
+        };
+
+        ResponseOutput output = new ResponseOutput(countingStream, null, new BufferPool(16, 1));
+        output.write(ByteBuffer.wrap("header|".getBytes()), ByteBuffer.wrap("body".getBytes()));
+
+        assertEquals("Unexpected contents", "header|body", stream.toString());
+        assertEquals("Header and body should be written together", 1, writes[0]);
+
+        stream.reset();
+        output.write(ByteBuffer.wrap("a longer header|".getBytes()), ByteBuffer.wrap("body".getBytes()));
+
+        assertEquals("Unexpected contents", "a longer header|body", stream.toString());
+        assertEquals("Unexpected number of bytes written", 31, output.getBytesWritten());
+    }
+
+    /**
+     * Verifies that body sources only read themselves into buffers that can hold the entire body.
+     */
+    @Test
+    public void readIntoTest() throws IOException {
+        File file = TempFileUtils.createFile(folder, "body.txt", "this is the body");
+        ByteBuffer small = ByteBuffer.allocate(8);
+        ByteBuffer large = ByteBuffer.allocate(32);
+
+        assertFalse("File should not fit", new FileBodySource(file.getAbsolutePath()).readInto(small));
+        assertFalse("Array should not fit", new ByteArrayBodySource("this is the body".getBytes()).readInto(small));
+        assertFalse("Stream of unknown length should not be read", new StreamBodySource(StreamUtils.getInputStreamFromString("body")).readInto(large));
+        assertEquals("Nothing should have been read", 0, small.position() + large.position());
+
+        assertTrue("File should fit", new FileBodySource(file.getAbsolutePath()).readInto(large));
+        assertTrue("Stream should fit", new StreamBodySource(StreamUtils.getInputStreamFromString("|body"), 5).readInto(large));
+        large.flip();
+
+        assertEquals("Unexpected contents", "this is the body|body", new String(large.array(), 0, large.limit()));
+    }
+
+    /**
+     * Verifies that an output cannot be created without a destination.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void noDestinationTest() {
+        new ResponseOutput(null, null);
+    }
+}
@@ -18,15 +18,22 @@ package com.frisbey.webserver.test.response;
 
 import com.frisbey.webserver.HttpResponse;
 import com.frisbey.webserver.HttpVersion;
+import com.frisbey.webserver.WebServerContext;
 import com.frisbey.webserver.request.WebServerHeader;
+import com.frisbey.webserver.response.ByteArrayBodySource;
+import com.frisbey.webserver.response.ResponseOutput;
+import com.frisbey.webserver.response.StreamBodySource;
 import com.frisbey.webserver.response.WebServerResponse;
+import com.frisbey.webserver.response.WebServerResponseFactory;
 import com.frisbey.webserver.test.mock.MockWebServerResponse;
 import com.frisbey.webserver.utility.StreamUtils;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import static org.junit.Assert.*;
 
@@ -98,7 +105,7 @@ public class WebServerResponseTest {
         response.writeResponse(output);
 
         String finalOutput = output.toString();
-        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\nHost: www.adobe.com\r\nContent-Length: 0\r\nConnection: close\r\nServer: AemWebServer\r\n\r\nthis is the body", finalOutput);
+        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\nServer: AemWebServer\r\nHost: www.adobe.com\r\n\r\nthis is the body", finalOutput);
     }
 
     /**
@@ -131,7 +138,7 @@ public class WebServerResponseTest {
         response.writeResponse(output);
 
         String finalOutput = output.toString();
-        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\nHost: www.adobe.com\r\nContent-Length: 0\r\nConnection: close\r\nServer: AemWebServer\r\n\r\n", finalOutput);
+        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\nServer: AemWebServer\r\nHost: www.adobe.com\r\n\r\n", finalOutput);
     }
 
     /**
@@ -164,4 +171,108 @@ public class WebServerResponseTest {
         String finalOutput = output.toString();
         assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\n\r\nthis is the body", finalOutput);
     }
+
+    /**
+     * Verifies the Keep-Alive header value, including limits too large for every value to be built ahead of time,
+     * settings that change after the context is created and timeouts that are not whole seconds.
+     */
+    @Test
+    public void setConnectionHeadersTest() {
+        WebServerContext context = new WebServerContext("/webserverroot");
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, new WebServerHeader());
+
+        WebServerResponseFactory.setConnectionHeaders(response, context, true, 1);
+        assertEquals("Unexpected connection", "keep-alive", response.getHeaderValue("Connection"));
+        assertEquals("Unexpected keep alive", "timeout=5, max=99", response.getHeaderValue("Keep-Alive"));
+
+        context.setKeepAliveTimeout(15000);
+        context.setMaxKeepAliveRequests(5000);
+        WebServerResponseFactory.setConnectionHeaders(response, context, true, 1);
+        assertEquals("Unexpected keep alive", "timeout=15, max=4999", response.getHeaderValue("Keep-Alive"));
+
+        WebServerResponseFactory.setConnectionHeaders(response, context, true, 4990);
+        assertEquals("Unexpected keep alive", "timeout=15, max=10", response.getHeaderValue("Keep-Alive"));
+
+        context.setKeepAliveTimeout(1500);
+        WebServerResponseFactory.setConnectionHeaders(response, context, true, 1);
+        assertEquals("Partial seconds should round up", "timeout=2, max=4999", response.getHeaderValue("Keep-Alive"));
+
+        WebServerResponseFactory.setConnectionHeaders(response, context, false, 4991);
+        assertEquals("Unexpected connection", "close", response.getHeaderValue("Connection"));
+    }
+
+    /**
+     * Verifies that a body within the gather write threshold is written together with the header, and that a body
+     * above it is written separately.
+     */
+    @Test
+    public void gatherWriteTest() throws IOException {
+        final int[] gatheredWrites = new int[1];
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ResponseOutput output = new ResponseOutput(stream) {
+            @Override
+            public void write(ByteBuffer first, ByteBuffer second) throws IOException {
+                gatheredWrites[0]++;
+                super.write(first, second);
+            }
+        };
+
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK);
+        response.setBody(new ByteArrayBodySource("this is the body".getBytes()));
+        response.writeResponse(output);
+
+        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\n\r\nthis is the body", stream.toString());
+        assertEquals("Header and body should be written together", 1, gatheredWrites[0]);
+
+        stream.reset();
+        output.setGatherWriteThreshold(15);
+        response.setBody(new ByteArrayBodySource("this is the body".getBytes()));
+        response.writeResponse(output);
+
+        assertEquals("Unexpected response output", "HTTP/1.1 200 OK\r\n\r\nthis is the body", stream.toString());
+        assertEquals("Body above the threshold should be written separately", 1, gatheredWrites[0]);
+    }
+
+    /**
+     * Verifies that a body of unknown length is chunked for HTTP/1.1 clients, and that older clients have the
+     * connection closed to end the body instead.
+     */
+    @Test
+    public void chunkedBodyTest() throws IOException {
+        WebServerContext context = new WebServerContext("/");
+        context.setChunkSize(4);
+
+        WebServerResponse response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, new WebServerHeader());
+        response.setBody(new StreamBodySource(new ByteArrayInputStream("hello world".getBytes())));
+        assertFalse("Stream length should be unknown", response.isBodyLengthKnown());
+        assertTrue("Chunked body should not require closing the connection",
+                WebServerResponseFactory.setTransferHeaders(response, context, HttpVersion.HTTP_1_1));
+        assertTrue("Response should be chunked", response.isChunked());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.writeResponse(output);
+
+        String raw = output.toString();
+        assertFalse("Chunked response should not have a length", raw.contains("Content-Length"));
+        assertTrue("Unexpected transfer encoding", raw.contains("Transfer-Encoding: chunked\r\n"));
+        assertTrue("Unexpected chunks", raw.endsWith("\r\n\r\n4\r\nhell\r\n4\r\no wo\r\n3\r\nrld\r\n0\r\n\r\n"));
+
+        response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, new WebServerHeader());
+        response.setBody(new StreamBodySource(new ByteArrayInputStream("hello".getBytes())));
+        assertFalse("HTTP/1.0 client should have the connection closed",
+                WebServerResponseFactory.setTransferHeaders(response, context, HttpVersion.HTTP_1_0));
+        assertFalse("HTTP/1.0 response should not be chunked", response.isChunked());
+
+        output = new ByteArrayOutputStream();
+        response.writeResponse(output);
+        raw = output.toString();
+        assertFalse("Close delimited response should not have a length", raw.contains("Content-Length"));
+        assertTrue("Unexpected body", raw.endsWith("\r\n\r\nhello"));
+
+        response = new WebServerResponse(HttpVersion.HTTP_1_1, HttpResponse.OK, new WebServerHeader());
+        response.setBody(new ByteArrayBodySource("hello".getBytes()));
+        assertTrue("Known length should not require closing the connection",
+                WebServerResponseFactory.setTransferHeaders(response, context, HttpVersion.HTTP_1_0));
+        assertFalse("Known length should not be chunked", response.isChunked());
+    }
 }
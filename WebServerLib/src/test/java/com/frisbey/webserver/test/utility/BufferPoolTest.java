@@ -0,0 +1,59 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.utility.BufferPool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the BufferPool class.
+ *
+ * @author Mark Frisbey
+ */
+public class BufferPoolTest {
+
+    /**
+     * Verifies that released buffers are handed out again.
+     */
+    @Test
+    public void reuseTest() {
+        BufferPool pool = new BufferPool(16, 2);
+        byte[] buffer = pool.acquire();
+        assertEquals("Unexpected buffer size", 16, buffer.length);
+
+        pool.release(buffer);
+        assertEquals("Unexpected pooled count after release", 1, pool.getPooledCount());
+        assertSame("Released buffer should have been reused", buffer, pool.acquire());
+        assertEquals("Unexpected pooled count after reuse", 0, pool.getPooledCount());
+    }
+
+    /**
+     * Verifies that the pool does not grow past its maximum size and ignores foreign buffers.
+     */
+    @Test
+    public void maxPooledTest() {
+        BufferPool pool = new BufferPool(16, 1);
+        pool.release(pool.acquire());
+        pool.release(new byte[16]);
+        pool.release(new byte[8]);
+        pool.release(null);
+
+        assertEquals("Pool should not exceed its maximum size", 1, pool.getPooledCount());
+    }
+}
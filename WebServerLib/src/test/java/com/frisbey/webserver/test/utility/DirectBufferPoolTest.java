@@ -0,0 +1,66 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.utility.DirectBufferPool;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the DirectBufferPool class.
+ *
+ * @author Mark Frisbey
+ */
+public class DirectBufferPoolTest {
+
+    /**
+     * Verifies that released buffers are cleared and handed out again.
+     */
+    @Test
+    public void reuseTest() {
+        DirectBufferPool pool = new DirectBufferPool(16, 2);
+        ByteBuffer buffer = pool.acquire();
+        assertTrue("Buffer should be direct", buffer.isDirect());
+        assertEquals("Unexpected buffer size", 16, buffer.capacity());
+
+        buffer.put((byte) 1).flip();
+        pool.release(buffer);
+        assertEquals("Unexpected pooled count after release", 1, pool.getPooledCount());
+
+        ByteBuffer reused = pool.acquire();
+        assertSame("Released buffer should have been reused", buffer, reused);
+        assertEquals("Reused buffer should have been cleared", 16, reused.remaining());
+        assertEquals("Unexpected pooled count after reuse", 0, pool.getPooledCount());
+    }
+
+    /**
+     * Verifies that the pool does not grow past its maximum size and ignores foreign buffers.
+     */
+    @Test
+    public void maxPooledTest() {
+        DirectBufferPool pool = new DirectBufferPool(16, 1);
+        pool.release(pool.acquire());
+        pool.release(ByteBuffer.allocateDirect(16));
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocateDirect(8));
+        pool.release(null);
+
+        assertEquals("Pool should not exceed its maximum size", 1, pool.getPooledCount());
+    }
+}
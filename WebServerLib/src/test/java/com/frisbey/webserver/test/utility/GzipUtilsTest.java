@@ -0,0 +1,109 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.utility.DeflaterPool;
+import com.frisbey.webserver.utility.GzipUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the DeflaterPool and GzipUtils classes.
+ *
+ * @author Mark Frisbey
+ */
+public class GzipUtilsTest {
+
+    /**
+     * Decompresses gzip data with the JDK's own reader.
+     *
+     * @param compressed The gzip data.
+     * @return The decompressed bytes.
+     */
+    private byte[] decompress(byte[] compressed) throws IOException {
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = input.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Verifies that compressed data can be read by a standard gzip reader, including data larger than the buffer used
+     * to compress it and empty input.
+     */
+    @Test
+    public void compressRoundTripTest() throws IOException {
+        DeflaterPool pool = new DeflaterPool(6, 2);
+        byte[] text = new byte[200000];
+        Random random = new Random(42);
+
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        byte[] compressed = GzipUtils.compress(text, 0, text.length, pool);
+        assertTrue("Repetitive data should get smaller", compressed.length < text.length / 2);
+        assertArrayEquals("Unexpected decompressed data", text, decompress(compressed));
+
+        assertArrayEquals("Empty input should round trip", new byte[0], decompress(GzipUtils.compress(new byte[0], 0, 0, pool)));
+
+        byte[] slice = GzipUtils.compress("xxhelloxx".getBytes(), 2, 5, pool);
+        assertEquals("Only the requested slice should be compressed", "hello", new String(decompress(slice)));
+    }
+
+    /**
+     * Verifies that deflaters are reused and that the pool never holds more than its limit.
+     */
+    @Test
+    public void poolReuseTest() {
+        DeflaterPool pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, 1);
+
+        Deflater first = pool.acquire();
+        Deflater second = pool.acquire();
+        assertNotSame("Pool should create a new deflater when empty", first, second);
+
+        pool.release(first);
+        pool.release(second);
+        assertEquals("Pool should be limited to one deflater", 1, pool.getPooledCount());
+        assertSame("Released deflater should be reused", first, pool.acquire());
+
+        pool.release(null);
+        assertEquals("Releasing null should do nothing", 0, pool.getPooledCount());
+    }
+
+    /**
+     * Verifies that invalid pool settings are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void poolInvalidLevelTest() {
+        new DeflaterPool(10, 1);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.utility.HttpDateUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises the HttpDateUtils class.
+ *
+ * @author Mark Frisbey
+ */
+public class HttpDateUtilsTest {
+
+    /**
+     * Verifies that dates are written in the HTTP format and can be read back.
+     */
+    @Test
+    public void formatAndParseTest() {
+        assertEquals("Unexpected date format", "Sun, 06 Nov 1994 08:49:37 GMT", HttpDateUtils.format(784111777000L));
+        assertEquals("Unexpected parsed date", 784111777000L, HttpDateUtils.parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals("Invalid date should not be parsed", -1, HttpDateUtils.parse("Sunday"));
+        assertEquals("Missing date should not be parsed", -1, HttpDateUtils.parse(null));
+    }
+
+    /**
+     * Verifies that modification times are compared to the second.
+     */
+    @Test
+    public void isSameSecondTest() {
+        assertTrue("Fractions of a second should be ignored", HttpDateUtils.isSameSecond(784111777000L, 784111777999L));
+        assertFalse("Different seconds should not match", HttpDateUtils.isSameSecond(784111777000L, 784111778000L));
+        assertFalse("Invalid dates should not match", HttpDateUtils.isSameSecond(-1, 784111777000L));
+    }
+}
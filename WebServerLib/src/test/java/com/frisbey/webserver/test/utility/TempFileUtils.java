@@ -0,0 +1,133 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.cache.FileMetadata;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A collection of helper methods used by tests to create files in a temporary folder.
+ *
+ * @author Mark Frisbey
+ */
+public class TempFileUtils {
+
+    /**
+     * Creates a file in the root of a temporary folder with the given contents, replacing the file if it exists.
+     *
+     * @param folder The temporary folder in which the file will be created.
+     * @param name The name of the file.
+     * @param content The contents of the file.
+     * @return The file that was created.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static File createFile(TemporaryFolder folder, String name, byte[] content) throws IOException {
+        return writeFile(new File(folder.getRoot(), name), content);
+    }
+
+    /**
+     * Creates a file in the root of a temporary folder with the given contents, replacing the file if it exists.
+     *
+     * @param folder The temporary folder in which the file will be created.
+     * @param name The name of the file.
+     * @param content The contents of the file.
+     * @return The file that was created.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static File createFile(TemporaryFolder folder, String name, String content) throws IOException {
+        return createFile(folder, name, content.getBytes());
+    }
+
+    /**
+     * Creates a file in the root of a temporary folder containing the digits 0 through 9.
+     *
+     * @param folder The temporary folder in which the file will be created.
+     * @param name The name of the file.
+     * @return The file that was created.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static File createDigitsFile(TemporaryFolder folder, String name) throws IOException {
+        return createFile(folder, name, "0123456789");
+    }
+
+    /**
+     * Creates a file in the root of a temporary folder with the given contents and reads its attributes.
+     *
+     * @param folder The temporary folder in which the file will be created.
+     * @param name The name of the file.
+     * @param content The contents of the file.
+     * @return The attributes of the file that was created.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static FileMetadata createFileMetadata(TemporaryFolder folder, String name, String content) throws IOException {
+        return FileMetadata.read(createFile(folder, name, content).getAbsolutePath());
+    }
+
+    /**
+     * Creates a file in the root of a temporary folder that repeats a character and reads its attributes.
+     *
+     * @param folder The temporary folder in which the file will be created.
+     * @param name The name of the file.
+     * @param length The size of the file.
+     * @param fill The character that fills the file.
+     * @return The attributes of the file that was created.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static FileMetadata createFileMetadata(TemporaryFolder folder, String name, int length, char fill) throws IOException {
+        char[] content = new char[length];
+        Arrays.fill(content, fill);
+
+        return createFileMetadata(folder, name, new String(content));
+    }
+
+    /**
+     * Replaces the contents of a file.
+     *
+     * @param file The file to write.
+     * @param content The new contents of the file.
+     * @return The file that was written.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static File writeFile(File file, byte[] content) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try {
+            stream.write(content);
+        } finally {
+            stream.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * Replaces the contents of a file.
+     *
+     * @param file The file to write.
+     * @param content The new contents of the file.
+     * @return The file that was written.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static File writeFile(File file, String content) throws IOException {
+        return writeFile(file, content.getBytes());
+    }
+}
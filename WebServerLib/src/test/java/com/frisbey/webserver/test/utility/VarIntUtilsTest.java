@@ -0,0 +1,87 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserver.test.utility;
+
+import com.frisbey.webserver.utility.VarIntUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static junit.framework.TestCase.*;
+
+/**
+ * Exercises the VarIntUtils class.
+ *
+ * @author Mark Frisbey
+ */
+public class VarIntUtilsTest {
+
+    /**
+     * Validates that unsigned values survive a round trip and take the expected number of bytes.
+     */
+    @Test
+    public void unsignedTest() {
+        long[] values = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1 };
+        int[] sizes = { 1, 1, 1, 2, 2, 2, 3, 5, 9, 10 };
+        ByteBuffer buffer = ByteBuffer.allocate(VarIntUtils.kMaxVarLongSize);
+
+        for (int i = 0; i < values.length; i++) {
+            buffer.clear();
+            VarIntUtils.putVarLong(buffer, values[i]);
+            buffer.flip();
+
+            assertEquals("Unexpected size of " + values[i], sizes[i], buffer.remaining());
+            assertEquals("Unexpected calculated size of " + values[i], sizes[i], VarIntUtils.getVarLongSize(values[i]));
+            assertEquals("Unexpected value after round trip", values[i], VarIntUtils.getVarLong(buffer));
+            assertFalse("Value should be read completely", buffer.hasRemaining());
+        }
+    }
+
+    /**
+     * Validates that small signed values take a single byte and that extreme values survive a round trip.
+     */
+    @Test
+    public void signedTest() {
+        long[] values = { 0, -1, 1, -64, 63, -65, Long.MIN_VALUE, Long.MAX_VALUE };
+        int[] sizes = { 1, 1, 1, 1, 1, 2, 10, 10 };
+        ByteBuffer buffer = ByteBuffer.allocate(VarIntUtils.kMaxVarLongSize);
+
+        for (int i = 0; i < values.length; i++) {
+            buffer.clear();
+            VarIntUtils.putSignedVarLong(buffer, values[i]);
+            buffer.flip();
+
+            assertEquals("Unexpected size of " + values[i], sizes[i], buffer.remaining());
+            assertEquals("Unexpected value after round trip", values[i], VarIntUtils.getSignedVarLong(buffer));
+        }
+    }
+
+    /**
+     * Validates that a value with too many continuation bytes is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void overlongTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+
+        for (int i = 0; i < 11; i++) {
+            buffer.put((byte) 0x80);
+        }
+
+        buffer.flip();
+        VarIntUtils.getVarLong(buffer);
+    }
+}
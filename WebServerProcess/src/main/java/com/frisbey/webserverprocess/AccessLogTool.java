@@ -0,0 +1,244 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserverprocess;
+
+import com.frisbey.webserver.accesslog.AccessLogFormat;
+import com.frisbey.webserver.accesslog.AccessLogRecord;
+import com.frisbey.webserver.accesslog.BinaryLogReader;
+import com.frisbey.webserver.accesslog.TextLogSink;
+import com.frisbey.webserver.metrics.HistogramSnapshot;
+import com.frisbey.webserver.metrics.LatencyHistogram;
+import com.frisbey.webserver.utility.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the segments written by the server's binary access log, either to convert them to text or to summarize the
+ * requests they hold.
+ *
+ * <p>Usage:</p>
+ * <p>
+ *     {@code java -cp [path to web server jar] com.frisbey.webserverprocess.AccessLogTool decode [--format=combined] [segment files]}
+ * </p>
+ * <p>
+ *     {@code java -cp [path to web server jar] com.frisbey.webserverprocess.AccessLogTool summary [--top=10] [segment files]}
+ * </p>
+ * <p>Segments are read in the order they are given, so a shell wildcard such as {@code access-*.wbl} decodes them in
+ * the order they were written.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class AccessLogTool {
+
+    private final static String kUsageTab = "  ";
+
+    // prefix that distinguishes an option from a file name
+    private final static String kOptionPrefix = "--";
+
+    /**
+     * Entry point for the access log tool.
+     *
+     * @param args Values that were given to the program from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            printUsage();
+            return;
+        }
+
+        Map<String, String> options = new HashMap<String, String>();
+        List<File> files = new ArrayList<File>();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(kOptionPrefix)) {
+                String option = args[i].substring(kOptionPrefix.length());
+                int separator = option.indexOf('=');
+                options.put(separator < 0 ? option : option.substring(0, separator), separator < 0 ? "" : option.substring(separator + 1));
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+
+        if (files.isEmpty()) {
+            printUsage();
+            return;
+        }
+
+        if ("decode".equals(args[0])) {
+            AccessLogFormat format = AccessLogFormat.fromString(options.containsKey("format") ? options.get("format") : "combined");
+
+            if (format == null) {
+                System.err.println("Unknown format " + options.get("format"));
+                return;
+            }
+
+            decode(files, format);
+        } else if ("summary".equals(args[0])) {
+            summarize(files, options.containsKey("top") ? Integer.parseInt(options.get("top")) : 10);
+        } else {
+            printUsage();
+        }
+    }
+
+    /**
+     * Writes the records of segments to standard output as text.
+     *
+     * @param files The segments to decode.
+     * @param format The layout of the lines.
+     * @throws IOException thrown if a segment cannot be read.
+     */
+    private static void decode(List<File> files, AccessLogFormat format) throws IOException {
+        TextLogSink sink = new TextLogSink(System.out, format);
+
+        for (File file : files) {
+            BinaryLogReader reader = new BinaryLogReader(file);
+
+            try {
+                AccessLogRecord record;
+
+                while ((record = reader.next()) != null) {
+                    sink.write(record);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        // standard output is left open
+        sink.flush();
+    }
+
+    /**
+     * Writes a summary of the records of segments to standard output: the number of requests and bytes, the period
+     * they cover, the number of responses with each status code, the most requested paths, and the latency.
+     *
+     * @param files The segments to summarize.
+     * @param top The number of paths to list.
+     * @throws IOException thrown if a segment cannot be read.
+     */
+    private static void summarize(List<File> files, int top) throws IOException {
+        long requests = 0;
+        long bytes = 0;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        Map<Integer, Long> statuses = new TreeMap<Integer, Long>();
+        Map<String, Long> paths = new HashMap<String, Long>();
+        LatencyHistogram latency = new LatencyHistogram();
+
+        for (File file : files) {
+            BinaryLogReader reader = new BinaryLogReader(file);
+
+            try {
+                AccessLogRecord record;
+
+                while ((record = reader.next()) != null) {
+                    requests++;
+                    bytes += record.getBytes();
+                    first = Math.min(first, record.getTimestamp());
+                    last = Math.max(last, record.getTimestamp());
+                    latency.record(record.getLatencyNanos());
+                    increment(statuses, record.getStatus());
+
+                    if (record.getTarget() != null) {
+                        increment(paths, StringUtils.trimQueryString(record.getTarget()));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        System.out.println(String.format("Requests: %d", requests));
+        System.out.println(String.format("Bytes:    %d", bytes));
+
+        if (requests == 0) {
+            return;
+        }
+
+        System.out.println(String.format("From:     %s", Instant.ofEpochMilli(first)));
+        System.out.println(String.format("To:       %s", Instant.ofEpochMilli(last)));
+
+        HistogramSnapshot snapshot = latency.snapshot();
+        System.out.println(String.format("Latency:  mean %.3f ms, p50 %s, p99 %s", snapshot.getMean() / 1000000.0,
+                formatBound(snapshot.getPercentile(50)), formatBound(snapshot.getPercentile(99))));
+
+        System.out.println();
+        System.out.println(String.format("%-8s %12s %8s", "STATUS", "REQUESTS", "SHARE"));
+
+        for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+            System.out.println(String.format("%-8d %12d %7.1f%%", entry.getKey(), entry.getValue(), 100.0 * entry.getValue() / requests));
+        }
+
+        List<Map.Entry<String, Long>> sorted = new ArrayList<Map.Entry<String, Long>>(paths.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> left, Map.Entry<String, Long> right) {
+                int result = Long.compare(right.getValue(), left.getValue());
+
+                return result != 0 ? result : left.getKey().compareTo(right.getKey());
+            }
+        });
+
+        System.out.println();
+        System.out.println(String.format("%12s  %s", "REQUESTS", "PATH"));
+
+        for (int i = 0; i < Math.min(top, sorted.size()); i++) {
+            System.out.println(String.format("%12d  %s", sorted.get(i).getValue(), sorted.get(i).getKey()));
+        }
+    }
+
+    /**
+     * Adds one to the count of a key.
+     *
+     * @param counts The counts.
+     * @param key The key whose count is incremented.
+     */
+    private static <K> void increment(Map<K, Long> counts, K key) {
+        Long count = counts.get(key);
+        counts.put(key, count != null ? count + 1 : 1L);
+    }
+
+    /**
+     * Formats the upper bound of a latency bucket for display.
+     *
+     * @param micros A time in microseconds, or Long.MAX_VALUE for the overflow bucket.
+     * @return The time in milliseconds, such as "<=2.5 ms".
+     */
+    private static String formatBound(long micros) {
+        return micros == Long.MAX_VALUE ? ">max" : "<=" + (micros / 1000.0) + " ms";
+    }
+
+    /**
+     * Prints the usage details for the tool.
+     */
+    private static void printUsage() {
+        System.out.println("Usage:");
+        System.out.println(kUsageTab+"java -cp [path to web server jar] "+AccessLogTool.class.getName()+" decode [--format=FORMAT] FILE...");
+        System.out.println(kUsageTab+kUsageTab+"Write the requests in binary access log segments as text. FORMAT is common, combined or timed. Defaults to combined.");
+        System.out.println(kUsageTab+"java -cp [path to web server jar] "+AccessLogTool.class.getName()+" summary [--top=COUNT] FILE...");
+        System.out.println(kUsageTab+kUsageTab+"Summarize the requests in binary access log segments: totals, status codes, latency, and the COUNT most requested paths. Defaults to 10.");
+    }
+}
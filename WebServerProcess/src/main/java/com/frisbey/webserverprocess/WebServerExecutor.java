@@ -16,15 +16,39 @@
 
 package com.frisbey.webserverprocess;
 
-import com.frisbey.webserver.WebServer;
+import com.frisbey.webserver.MimeTypeRegistry;
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerEngine;
 import com.frisbey.webserver.WebServerFactory;
+import com.frisbey.webserver.accesslog.AccessLog;
+import com.frisbey.webserver.accesslog.AccessLogFormat;
+import com.frisbey.webserver.accesslog.BinaryLogSink;
+import com.frisbey.webserver.accesslog.OverflowPolicy;
+import com.frisbey.webserver.cache.CompressedFileCache;
+import com.frisbey.webserver.cache.FileCache;
+import com.frisbey.webserver.cache.FileChannelCache;
+import com.frisbey.webserver.cache.FileMetadataCache;
+import com.frisbey.webserver.cache.MappedFileCache;
+import com.frisbey.webserver.cache.OffHeapFileCache;
+import com.frisbey.webserver.metrics.AdminServer;
 import com.frisbey.webserver.utility.StreamUtils;
 import com.frisbey.webserver.utility.StringUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides an executable for starting a {@link com.frisbey.webserver.WebServer}.
@@ -36,8 +60,10 @@ import java.util.concurrent.Executors;
  *
  * <p>Usage of the executor process is as follows:</p>
  * <p>
- *     {@code java -jar [path to web server jar] [port (required)] [server root path (required)] [max threads (optional-default 10)}
+ *     {@code java -jar [path to web server jar] [port (required)] [server root path (required)] [max threads (optional-default 10)] [options]}
  * </p>
+ * <p>Options are provided in the form {@code --name=value} and may appear anywhere on the command line. See the usage
+ * message for the list of supported options.</p>
  * <p>The result of the previous command will be a web server listening on the given [port]. When the server receives a
  * request, it will look in the given [server root path] for any resources requested as part of the request. Each request
  * will be launched in its own thread, but the number of threads executing at a single time will never
@@ -49,27 +75,41 @@ public class WebServerExecutor {
 
     private final static String kUsageTab = "  ";
 
+    // prefix that distinguishes an option from a positional argument
+    private final static String kOptionPrefix = "--";
+
     /**
      * Entry point for the web server executor program.
      *
      * @param args Values that were given to the program from the command line.
      */
-    public static void main(String[] args) {
+    public static void main(String[] rawArgs) {
+
+        List<String> args = new ArrayList<String>();
+        Map<String, String> options = parseOptions(rawArgs, args);
 
-        if (args.length < 2) {
+        if (args.size() < 2) {
             printUsage();
             return;
         }
 
         int port = -1;
         int poolSize = 10;
+        int eventLoops = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int metricsInterval = 0;
+        int adminPort = -1;
+        AccessLogFormat accessLogFormat = AccessLogFormat.COMBINED;
+        OverflowPolicy accessLogOverflow = OverflowPolicy.DROP;
+        int accessLogBuffer = AccessLog.kDefaultCapacity;
+        boolean binaryAccessLog = false;
+        long accessLogSegmentSize = BinaryLogSink.kDefaultSegmentSize;
 
         // ensure port and pool size are valid integers
         try {
-            port = Integer.parseInt(args[0]);
+            port = Integer.parseInt(args.get(0));
 
-            if (args.length > 2) {
-                poolSize = Integer.parseInt(args[2]);
+            if (args.size() > 2) {
+                poolSize = Integer.parseInt(args.get(2));
             }
 
         } catch (NumberFormatException ex) {
@@ -77,10 +117,184 @@ public class WebServerExecutor {
             return;
         }
 
-        String webServerRoot = args[1];
+        String webServerRoot = args.get(1);
+
+        WebServerContext context = new WebServerContext(webServerRoot);
+
+        try {
+            if (options.containsKey("keep-alive-timeout")) {
+                context.setKeepAliveTimeout(Integer.parseInt(options.get("keep-alive-timeout")));
+            }
+
+            if (options.containsKey("max-keep-alive-requests")) {
+                context.setMaxKeepAliveRequests(Integer.parseInt(options.get("max-keep-alive-requests")));
+            }
+
+            if (options.containsKey("max-queued-connections")) {
+                context.setMaxQueuedConnections(Integer.parseInt(options.get("max-queued-connections")));
+            }
+
+            if (options.containsKey("retry-after")) {
+                context.setRetryAfter(Integer.parseInt(options.get("retry-after")));
+            }
+
+            if (options.containsKey("file-cache-size") || options.containsKey("max-cached-file-size")) {
+                long cacheSize = options.containsKey("file-cache-size") ? Long.parseLong(options.get("file-cache-size")) : FileCache.kDefaultMaxSize;
+                long maxFileSize = options.containsKey("max-cached-file-size") ? Long.parseLong(options.get("max-cached-file-size")) : FileCache.kDefaultMaxFileSize;
+
+                context.setFileCache(cacheSize > 0 ? new FileCache(cacheSize, maxFileSize) : null);
+            }
+
+            // the server's context lives as long as the process, so it shares open files unless told not to
+            int maxOpenFiles = options.containsKey("open-file-cache") ? Integer.parseInt(options.get("open-file-cache")) : FileChannelCache.kDefaultMaxOpenFiles;
+            long idleTimeout = options.containsKey("open-file-idle") ? Long.parseLong(options.get("open-file-idle")) : FileChannelCache.kDefaultIdleTimeout;
+
+            context.setChannelCache(maxOpenFiles > 0 ? new FileChannelCache(maxOpenFiles, idleTimeout) : null);
+
+            if (options.containsKey("mmap-cache-size")) {
+                long maxMappedBytes = Long.parseLong(options.get("mmap-cache-size"));
+                long minFileSize = options.containsKey("mmap-min-size") ? Long.parseLong(options.get("mmap-min-size")) : MappedFileCache.kDefaultMinFileSize;
+
+                context.setMappedFileCache(maxMappedBytes > 0 ? new MappedFileCache(maxMappedBytes, minFileSize) : null);
+            }
+
+            if (options.containsKey("off-heap-cache-size")) {
+                long maxOffHeapBytes = Long.parseLong(options.get("off-heap-cache-size"));
+                int slabSize = options.containsKey("off-heap-slab-size") ? Integer.parseInt(options.get("off-heap-slab-size")) : OffHeapFileCache.kDefaultSlabSize;
+
+                if (maxOffHeapBytes > 0) {
+                    context.setOffHeapFileCache(new OffHeapFileCache(maxOffHeapBytes, slabSize));
+
+                    // the off-heap cache replaces the heap cache unless both were asked for
+                    if (!options.containsKey("file-cache-size")) {
+                        context.setFileCache(null);
+                    }
+                }
+            }
+
+            if (options.containsKey("stat-cache-ttl")) {
+                long timeToLive = Long.parseLong(options.get("stat-cache-ttl"));
+
+                context.setMetadataCache(timeToLive > 0 ? new FileMetadataCache(timeToLive, FileMetadataCache.kDefaultMaxEntries) : null);
+            }
+
+            if (options.containsKey("gather-write-threshold")) {
+                context.setGatherWriteThreshold(Integer.parseInt(options.get("gather-write-threshold")));
+            }
+
+            if (options.containsKey("chunk-size")) {
+                context.setChunkSize(Integer.parseInt(options.get("chunk-size")));
+            }
+
+            if (options.containsKey("tcp-nodelay")) {
+                context.setTcpNoDelay(parseBooleanOption("tcp-nodelay", options.get("tcp-nodelay")));
+            }
+
+            if (options.containsKey("precompressed")) {
+                context.setPrecompressedEnabled(parseBooleanOption("precompressed", options.get("precompressed")));
+            }
+
+            if (options.containsKey("gzip-cache-size")) {
+                long cacheSize = Long.parseLong(options.get("gzip-cache-size"));
+
+                if (cacheSize > 0) {
+                    long minFileSize = options.containsKey("gzip-min-size") ? Long.parseLong(options.get("gzip-min-size")) : CompressedFileCache.kDefaultMinFileSize;
+                    long maxFileSize = options.containsKey("gzip-max-size") ? Long.parseLong(options.get("gzip-max-size")) : CompressedFileCache.kDefaultMaxFileSize;
+                    int level = options.containsKey("gzip-level") ? Integer.parseInt(options.get("gzip-level")) : CompressedFileCache.kDefaultCompressionLevel;
+                    CompressedFileCache compressedCache = new CompressedFileCache(cacheSize, minFileSize, maxFileSize, level);
+
+                    if (options.containsKey("gzip-stream")) {
+                        compressedCache.setStreamingEnabled(parseBooleanOption("gzip-stream", options.get("gzip-stream")));
+                    }
+
+                    if (options.containsKey("gzip-types")) {
+                        compressedCache.setCompressibleTypes(parseContentTypes(options.get("gzip-types")));
+                    }
+
+                    context.setCompressedFileCache(compressedCache);
+                }
+            }
+
+            if (options.containsKey("mime-types")) {
+                MimeTypeRegistry registry = MimeTypeRegistry.createDefault();
+
+                try {
+                    registry.load(options.get("mime-types"));
+                } catch (IOException ex) {
+                    throw new IllegalArgumentException("unable to read content types from " + options.get("mime-types"), ex);
+                }
+
+                context.setMimeTypeRegistry(registry);
+            }
+
+            if (options.containsKey("event-loops")) {
+                eventLoops = Integer.parseInt(options.get("event-loops"));
+            }
+
+            if (options.containsKey("metrics-interval")) {
+                metricsInterval = Integer.parseInt(options.get("metrics-interval"));
+
+                if (metricsInterval < 0) {
+                    throw new IllegalArgumentException("metrics interval must not be negative");
+                }
+            }
+
+            if ("binary".equalsIgnoreCase(options.get("access-log-format"))) {
+                binaryAccessLog = true;
+            } else if (options.containsKey("access-log-format")) {
+                accessLogFormat = AccessLogFormat.fromString(options.get("access-log-format"));
+
+                if (accessLogFormat == null) {
+                    throw new IllegalArgumentException("unknown access log format " + options.get("access-log-format"));
+                }
+            }
+
+            if (options.containsKey("access-log-overflow")) {
+                // valueOf throws an IllegalArgumentException for unknown policies
+                accessLogOverflow = OverflowPolicy.valueOf(options.get("access-log-overflow").toUpperCase(Locale.ENGLISH));
+            }
+
+            if (options.containsKey("access-log-buffer")) {
+                accessLogBuffer = Integer.parseInt(options.get("access-log-buffer"));
+
+                if (accessLogBuffer <= 0) {
+                    throw new IllegalArgumentException("access log buffer must hold at least one record");
+                }
+            }
+
+            if (options.containsKey("access-log-segment-size")) {
+                accessLogSegmentSize = Long.parseLong(options.get("access-log-segment-size"));
+
+                if (accessLogSegmentSize < BinaryLogSink.kMinSegmentSize || accessLogSegmentSize > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("access log segment size must be between " + BinaryLogSink.kMinSegmentSize + " and " + Integer.MAX_VALUE + " bytes");
+                }
+            }
+
+            if (options.containsKey("admin-port")) {
+                adminPort = Integer.parseInt(options.get("admin-port"));
+
+                if (adminPort < 0 || adminPort > 65535) {
+                    throw new IllegalArgumentException("admin port must be between 0 and 65535");
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // NumberFormatException is also an IllegalArgumentException
+            printUsage("Invalid option value: " + ex.getMessage());
+            return;
+        }
 
         File rootDir = new File(webServerRoot);
 
+        if (options.containsKey("nio") && options.containsKey("virtual-threads")) {
+            printUsage("The --nio and --virtual-threads options cannot be used together");
+            return;
+        }
+
+        if (options.containsKey("virtual-threads") && !WebServerFactory.isVirtualThreadSupported()) {
+            printUsage("The --virtual-threads option requires Java 21 or later");
+            return;
+        }
+
         // ensure root directory exists
         if (!rootDir.exists() || !rootDir.isDirectory()) {
             printUsage("The web server root must exist and must be a directory");
@@ -89,29 +303,212 @@ public class WebServerExecutor {
 
         // let's do this! fire up a thread pool for the server itself
         ExecutorService service = Executors.newFixedThreadPool(5);
+        ScheduledExecutorService reporter = null;
+        AdminServer adminServer = null;
+        AccessLog accessLog = null;
 
         try {
-            WebServer server = WebServerFactory.getFixedThreadPoolServer(port, poolSize, webServerRoot);
+            WebServerEngine server;
+
+            if (options.containsKey("access-log") && binaryAccessLog) {
+                BinaryLogSink sink = new BinaryLogSink(new File(options.get("access-log")), "access", accessLogSegmentSize);
+                accessLog = AccessLog.open(sink, accessLogBuffer, accessLogOverflow);
+                context.setAccessLog(accessLog);
+            } else if (options.containsKey("access-log")) {
+                accessLog = AccessLog.open(options.get("access-log"), accessLogFormat, accessLogBuffer, accessLogOverflow);
+                context.setAccessLog(accessLog);
+            }
+
+            if (options.containsKey("nio")) {
+                System.out.println(String.format("Using non-blocking engine with %d event loops", eventLoops));
+                server = WebServerFactory.getNonBlockingServer(port, poolSize, eventLoops, context);
+            } else if (options.containsKey("virtual-threads")) {
+                System.out.println("Using a virtual thread for each connection");
+                server = WebServerFactory.getVirtualThreadServer(port, context);
+            } else {
+                server = WebServerFactory.getFixedThreadPoolServer(port, poolSize, context);
+            }
 
             System.out.println("Starting Server");
             service.execute(server);
 
             System.out.println(String.format("Server started on port %d. Press <Enter> to stop server.", port));
 
+            if (metricsInterval > 0) {
+                reporter = startMetricsReporter(server, metricsInterval);
+            }
+
+            if (adminPort >= 0) {
+                adminServer = WebServerFactory.getAdminServer(adminPort, server);
+                service.execute(adminServer);
+                System.out.println(String.format("Metrics available at http://localhost:%d%s", adminServer.getLocalPort(), AdminServer.kMetricsPath));
+            }
+
             BufferedReader in = StreamUtils.getStreamReader(System.in);
 
             in.read();
 
-            System.out.println(String.format("Stopping Server. Processed a total of %d requests.", server.getRequestsProcessed()));
+            System.out.println(String.format("Stopping Server. Processed a total of %d requests and rejected %d connections.", server.getRequestsProcessed(), server.getRejectedConnections()));
             server.stop();
+
+            if (adminServer != null) {
+                adminServer.stop();
+            }
+
+            if (accessLog != null) {
+                accessLog.close();
+                System.out.println(String.format("Access log: %d requests logged, %d dropped.", accessLog.getLoggedCount(), accessLog.getDroppedCount()));
+            }
+
+            System.out.println("Metrics: " + server.getMetricsSnapshot());
+
+            FileCache cache = context.getFileCache();
+
+            if (cache != null) {
+                System.out.println(String.format("File cache: %d hits, %d misses, %d evictions, %d files using %d bytes.",
+                        cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount(), cache.getEntryCount(), cache.getSize()));
+            }
+
+            FileChannelCache channelCache = context.getChannelCache();
+
+            if (channelCache != null) {
+                System.out.println(String.format("Open file cache: %d hits, %d misses, %d evictions, %d overflows, %d files open.",
+                        channelCache.getHitCount(), channelCache.getMissCount(), channelCache.getEvictionCount(),
+                        channelCache.getOverflowCount(), channelCache.getOpenCount()));
+                channelCache.clear();
+            }
+
+            MappedFileCache mappedCache = context.getMappedFileCache();
+
+            if (mappedCache != null) {
+                System.out.println(String.format("Mapped file cache: %d hits, %d misses, %d evictions, %d rejections, %d files using %d bytes.",
+                        mappedCache.getHitCount(), mappedCache.getMissCount(), mappedCache.getEvictionCount(),
+                        mappedCache.getRejectionCount(), mappedCache.getEntryCount(), mappedCache.getMappedBytes()));
+                mappedCache.clear();
+            }
+
+            OffHeapFileCache offHeapCache = context.getOffHeapFileCache();
+
+            if (offHeapCache != null) {
+                System.out.println(String.format("Off-heap file cache: %d hits, %d misses, %d evictions, %d rejections, %d reassigned slabs, %d files using %d of %d bytes (occupancy %.3f, fragmentation %.3f).",
+                        offHeapCache.getHitCount(), offHeapCache.getMissCount(), offHeapCache.getEvictionCount(),
+                        offHeapCache.getRejectionCount(), offHeapCache.getReassignmentCount(), offHeapCache.getEntryCount(),
+                        offHeapCache.getStoredBytes(), offHeapCache.getAllocatedBytes(), offHeapCache.getOccupancy(),
+                        offHeapCache.getFragmentation()));
+                offHeapCache.clear();
+            }
+
+            CompressedFileCache compressedCache = context.getCompressedFileCache();
+
+            if (compressedCache != null) {
+                System.out.println(String.format("Compression: %d hits, %d files compressed from %d to %d bytes (ratio %.3f) using %d ms of CPU time.",
+                        compressedCache.getHitCount(), compressedCache.getCompressionCount(), compressedCache.getUncompressedBytes(),
+                        compressedCache.getCompressedBytes(), compressedCache.getCompressionRatio(), compressedCache.getCompressionTime() / 1000000));
+            }
+
             System.out.println("Exiting");
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+
             service.shutdown();
         }
     }
 
+    /**
+     * Starts a background thread that prints a summary of the server's metrics at a fixed interval. The thread is a
+     * daemon, so it never keeps the process alive on its own.
+     *
+     * @param server The server whose metrics will be printed.
+     * @param interval The number of seconds between summaries.
+     * @return The executor that prints the summaries. Must be shut down when the server stops.
+     */
+    private static ScheduledExecutorService startMetricsReporter(final WebServerEngine server, int interval) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "webserver-metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                System.out.println("Metrics: " + server.getMetricsSnapshot());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        return reporter;
+    }
+
+    /**
+     * Separates the options in a list of command line arguments from the positional arguments. Options take the form
+     * {@code --name=value}; an option without a value is given the value "true".
+     *
+     * @param args The raw command line arguments.
+     * @param positional Will be populated with the arguments that are not options, in their original order.
+     * @return The options that were provided, keyed by name.
+     */
+    private static Map<String, String> parseOptions(String[] args, List<String> positional) {
+        Map<String, String> options = new HashMap<String, String>();
+
+        for (String arg : args) {
+            if (arg.startsWith(kOptionPrefix)) {
+                String option = arg.substring(kOptionPrefix.length());
+                int separator = option.indexOf('=');
+
+                if (separator >= 0) {
+                    options.put(option.substring(0, separator), option.substring(separator + 1));
+                } else {
+                    options.put(option, "true");
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * Interprets the value of an option that turns a feature on or off.
+     *
+     * @param name The name of the option, used in the error message.
+     * @param value The value of the option.
+     * @return The value as a boolean.
+     * @throws IllegalArgumentException thrown if the value is neither "true" nor "false".
+     */
+    private static boolean parseBooleanOption(String name, String value) {
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw new IllegalArgumentException(name + " must be true or false");
+        }
+
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Interprets a comma separated list of content types, such as "text/html,text/css".
+     *
+     * @param value The value of the option.
+     * @return The content types in the list, in lower case.
+     */
+    private static Set<String> parseContentTypes(String value) {
+        Set<String> types = new HashSet<String>();
+
+        for (String name : value.split(",")) {
+            if (!name.trim().isEmpty()) {
+                types.add(name.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        return types;
+    }
+
     /**
      * Prints general instructions for using the program.
      */
@@ -130,7 +527,7 @@ public class WebServerExecutor {
         }
 
         System.out.println("SYNOPSIS");
-        System.out.println(kUsageTab+"java -jar PATH_TO_WEBSERVER.JAR PORT WEB_SERVER_ROOT [MAX_THREADS]");
+        System.out.println(kUsageTab+"java -jar PATH_TO_WEBSERVER.JAR PORT WEB_SERVER_ROOT [MAX_THREADS] [OPTIONS]");
         System.out.println("");
 
         System.out.println("DESCRIPTION");
@@ -151,5 +548,76 @@ public class WebServerExecutor {
         System.out.println(kUsageTab+kUsageTab+"The full path to a local directory where the web server will look for requested resources.");
         System.out.println(kUsageTab+"MAX_THREADS");
         System.out.println(kUsageTab+kUsageTab+"Maximum number of request threads that the web server will spawn at any time. The parameter is optional and defaults to 10.");
+        System.out.println("");
+
+        System.out.println("OPTIONS");
+        System.out.println(kUsageTab+"--nio");
+        System.out.println(kUsageTab+kUsageTab+"Use the non-blocking engine. Connections are watched by a few event loop threads and MAX_THREADS only limits the number of requests processed at once.");
+        System.out.println(kUsageTab+"--virtual-threads");
+        System.out.println(kUsageTab+kUsageTab+"Run each connection on its own virtual thread instead of a fixed pool. MAX_THREADS is ignored. Requires Java 21 or later.");
+        System.out.println(kUsageTab+"--event-loops=COUNT");
+        System.out.println(kUsageTab+kUsageTab+"Number of event loop threads used by the non-blocking engine. Defaults to half the number of processors.");
+        System.out.println(kUsageTab+"--metrics-interval=SECONDS");
+        System.out.println(kUsageTab+kUsageTab+"Print a summary of requests, status codes, latency, bytes sent and connections at this interval. A value of 0 disables the summary. Defaults to 0.");
+        System.out.println(kUsageTab+"--access-log=PATH");
+        System.out.println(kUsageTab+kUsageTab+"Append a line for every answered request to this file. Lines are written by a background thread, so serving requests never waits on the disk. With the binary format this is a directory. Disabled by default.");
+        System.out.println(kUsageTab+"--access-log-format=FORMAT");
+        System.out.println(kUsageTab+kUsageTab+"Layout of access log lines: common, combined, timed (combined followed by the latency in microseconds), or binary (compact segment files that can be read with "+AccessLogTool.class.getName()+"). Defaults to combined.");
+        System.out.println(kUsageTab+"--access-log-segment-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Size of each binary access log segment before a new one is started. Defaults to "+BinaryLogSink.kDefaultSegmentSize+".");
+        System.out.println(kUsageTab+"--access-log-buffer=RECORDS");
+        System.out.println(kUsageTab+kUsageTab+"Number of requests that can wait to be written to the access log. Defaults to "+AccessLog.kDefaultCapacity+".");
+        System.out.println(kUsageTab+"--access-log-overflow=POLICY");
+        System.out.println(kUsageTab+kUsageTab+"What happens when the access log buffer is full: drop (the request is not logged) or block (the request waits for room). Defaults to drop.");
+        System.out.println(kUsageTab+"--admin-port=PORT");
+        System.out.println(kUsageTab+kUsageTab+"Publish metrics in the Prometheus text format at http://HOST:PORT"+AdminServer.kMetricsPath+". The admin port should not be reachable by the server's clients. Disabled by default.");
+        System.out.println(kUsageTab+"--max-queued-connections=COUNT");
+        System.out.println(kUsageTab+kUsageTab+"Number of connections that may wait for a free thread. Further connections receive a 503 Service Unavailable response. Defaults to "+WebServerContext.kDefaultMaxQueuedConnections+".");
+        System.out.println(kUsageTab+"--retry-after=SECONDS");
+        System.out.println(kUsageTab+kUsageTab+"Value of the Retry-After header sent with 503 Service Unavailable responses. Defaults to "+WebServerContext.kDefaultRetryAfter+".");
+        System.out.println(kUsageTab+"--file-cache-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Memory available for caching static files. A value of 0 disables the cache. Defaults to "+FileCache.kDefaultMaxSize+".");
+        System.out.println(kUsageTab+"--max-cached-file-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Largest file that will be held in the cache. Larger files are read from disk for every request. Defaults to "+FileCache.kDefaultMaxFileSize+".");
+        System.out.println(kUsageTab+"--open-file-cache=COUNT");
+        System.out.println(kUsageTab+kUsageTab+"Number of files that are held open and shared between requests, for files that are not held in memory. Keep well below the process's open file limit. A value of 0 opens the file for every request. Defaults to "+FileChannelCache.kDefaultMaxOpenFiles+".");
+        System.out.println(kUsageTab+"--open-file-idle=MILLISECONDS");
+        System.out.println(kUsageTab+kUsageTab+"How long an unused file is held open before it is closed. Defaults to "+FileChannelCache.kDefaultIdleTimeout+".");
+        System.out.println(kUsageTab+"--mmap-cache-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Address space available for mapping large files into memory, so that clients downloading the same file share one mapping. Meant for files that are replaced rather than modified in place. Disabled by default.");
+        System.out.println(kUsageTab+"--mmap-min-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Smallest file that will be mapped. Defaults to "+MappedFileCache.kDefaultMinFileSize+".");
+        System.out.println(kUsageTab+"--off-heap-cache-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Direct memory available for caching static files outside the garbage collected heap. Replaces the heap file cache unless --file-cache-size is also given. Disabled by default.");
+        System.out.println(kUsageTab+"--off-heap-slab-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Size of each block of memory in the off-heap cache, which is also the largest file it will hold. Defaults to "+OffHeapFileCache.kDefaultSlabSize+".");
+        System.out.println(kUsageTab+"--stat-cache-ttl=MILLISECONDS");
+        System.out.println(kUsageTab+kUsageTab+"How long the existence and size of a file are remembered before the file is examined again. A value of 0 disables the cache. Defaults to "+FileMetadataCache.kDefaultTimeToLive+".");
+        System.out.println(kUsageTab+"--keep-alive-timeout=MILLISECONDS");
+        System.out.println(kUsageTab+kUsageTab+"How long an idle persistent connection is kept open. Defaults to "+WebServerContext.kDefaultKeepAliveTimeout+".");
+        System.out.println(kUsageTab+"--max-keep-alive-requests=COUNT");
+        System.out.println(kUsageTab+kUsageTab+"Maximum number of requests served over one connection. A value of 1 disables persistent connections. Defaults to "+WebServerContext.kDefaultMaxKeepAliveRequests+".");
+        System.out.println(kUsageTab+"--gather-write-threshold=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Largest body that is sent in the same write as its header. Larger bodies are sent separately. A value of 0 always sends them separately. Defaults to "+WebServerContext.kDefaultGatherWriteThreshold+".");
+        System.out.println(kUsageTab+"--chunk-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Size of each chunk when a body of unknown length is sent to an HTTP/1.1 client with chunked transfer encoding. Defaults to "+WebServerContext.kDefaultChunkSize+".");
+        System.out.println(kUsageTab+"--tcp-nodelay=BOOLEAN");
+        System.out.println(kUsageTab+kUsageTab+"Whether Nagle's algorithm is disabled on client connections so that responses are not delayed waiting for acknowledgements. Defaults to true.");
+        System.out.println(kUsageTab+"--precompressed=BOOLEAN");
+        System.out.println(kUsageTab+kUsageTab+"Whether a precompressed copy of a file (FILE.br or FILE.gz) is served in its place to clients that accept the encoding. Defaults to true.");
+        System.out.println(kUsageTab+"--gzip-cache-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Memory available for gzip compressed copies of files, which are created as clients request them. A value of 0 disables dynamic compression. Defaults to 0.");
+        System.out.println(kUsageTab+"--gzip-min-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Smallest file that will be compressed. Defaults to "+CompressedFileCache.kDefaultMinFileSize+".");
+        System.out.println(kUsageTab+"--gzip-max-size=BYTES");
+        System.out.println(kUsageTab+kUsageTab+"Largest file that will be compressed. Defaults to "+CompressedFileCache.kDefaultMaxFileSize+".");
+        System.out.println(kUsageTab+"--gzip-level=LEVEL");
+        System.out.println(kUsageTab+kUsageTab+"Compression level from 1 (fastest) to 9 (smallest). Defaults to "+CompressedFileCache.kDefaultCompressionLevel+".");
+        System.out.println(kUsageTab+"--gzip-stream=BOOLEAN");
+        System.out.println(kUsageTab+kUsageTab+"Whether files larger than --gzip-max-size are compressed while they are sent, using chunked transfer encoding. Defaults to true.");
+        System.out.println(kUsageTab+"--gzip-types=TYPES");
+        System.out.println(kUsageTab+kUsageTab+"Comma separated content types that will be compressed, for example text/html,text/css. Defaults to "+String.join(",", CompressedFileCache.kDefaultCompressibleTypes)+".");
+        System.out.println(kUsageTab+"--mime-types=PATH");
+        System.out.println(kUsageTab+kUsageTab+"A file in the mime.types format whose content types are added to, or replace, the bundled ones.");
     }
 }
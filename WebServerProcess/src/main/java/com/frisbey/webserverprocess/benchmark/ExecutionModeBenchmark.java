@@ -0,0 +1,258 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.frisbey.webserverprocess.benchmark;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerEngine;
+import com.frisbey.webserver.WebServerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the throughput of the server's execution modes when a large number of clients hold persistent connections
+ * open at the same time.
+ *
+ * <p>For each mode the benchmark starts a server on a free local port, opens every client connection up front, and
+ * then releases all clients at once. Each client sends its requests one after another over its own connection and
+ * waits for every response. With a fixed thread pool a connection occupies a pool thread for as long as it is open,
+ * so clients beyond the pool size wait for earlier clients to finish; with virtual threads or the non-blocking
+ * engine every client is served concurrently.</p>
+ *
+ * <p>Usage:</p>
+ * <p>
+ *     {@code java -cp [path to web server jar] com.frisbey.webserverprocess.benchmark.ExecutionModeBenchmark [connections (default 1000)] [requests per connection (default 10)] [pool size (default 10)]}
+ * </p>
+ * <p>The virtual thread mode is skipped when the benchmark is not running on Java 21 or later.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class ExecutionModeBenchmark {
+
+    // the name of the file that every client requests
+    private static final String kFileName = "benchmark.html";
+
+    // the size of the file that every client requests
+    private static final int kFileSize = 1024;
+
+    // the number of milliseconds that a client will wait for a response before giving up
+    private static final int kClientTimeout = 60000;
+
+    // the execution modes that can be compared
+    private enum Mode {
+        FixedPool, VirtualThreads, NonBlocking
+    }
+
+    /**
+     * Entry point for the benchmark.
+     *
+     * @param args Values that were given to the program from the command line.
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        File root = createRoot();
+
+        try {
+            System.out.println(String.format("%d connections, %d requests per connection, pool size %d", connections, requests, poolSize));
+            System.out.println(String.format("%-16s %12s %14s %10s", "MODE", "TIME (ms)", "REQUESTS/SEC", "FAILURES"));
+
+            for (Mode mode : Mode.values()) {
+                if (mode == Mode.VirtualThreads && !WebServerFactory.isVirtualThreadSupported()) {
+                    System.out.println(String.format("%-16s skipped, virtual threads require Java 21 or later", mode));
+                    continue;
+                }
+
+                run(mode, root, connections, requests, poolSize);
+            }
+        } finally {
+            new File(root, kFileName).delete();
+            root.delete();
+        }
+    }
+
+    /**
+     * Runs the benchmark against a single execution mode and prints the results.
+     *
+     * @param mode The execution mode to measure.
+     * @param root The directory that the server will serve.
+     * @param connections The number of concurrent client connections.
+     * @param requests The number of requests each client will send.
+     * @param poolSize The number of threads in the server's pool, where the mode uses one.
+     */
+    private static void run(Mode mode, File root, int connections, int requests, int poolSize) throws Exception {
+        WebServerContext context = new WebServerContext(root.getAbsolutePath());
+        context.setMaxKeepAliveRequests(Math.max(requests, WebServerContext.kDefaultMaxKeepAliveRequests));
+        context.setKeepAliveTimeout(kClientTimeout);
+        // every client should eventually be served, so the queue must be able to hold all of them
+        context.setMaxQueuedConnections(connections);
+
+        WebServerEngine server = createServer(mode, poolSize, context);
+        Thread serverThread = new Thread(server, "benchmark-server");
+        serverThread.start();
+
+        Socket[] sockets = new Socket[connections];
+        Thread[] clients = new Thread[connections];
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger(0);
+
+        try {
+            for (int i = 0; i < connections; i++) {
+                sockets[i] = new Socket();
+                sockets[i].connect(new InetSocketAddress("localhost", server.getLocalPort()));
+                sockets[i].setSoTimeout(kClientTimeout);
+
+                clients[i] = new Thread(new Client(sockets[i], requests, start, failures), "benchmark-client-" + i);
+                clients[i].start();
+            }
+
+            long startTime = System.nanoTime();
+            start.countDown();
+
+            for (Thread client : clients) {
+                client.join();
+            }
+
+            long elapsed = (System.nanoTime() - startTime) / 1000000;
+            long total = (long) connections * requests;
+
+            System.out.println(String.format("%-16s %12d %14.0f %10d", mode, elapsed, total * 1000.0 / Math.max(elapsed, 1), failures.get()));
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+
+            server.stop();
+            serverThread.join();
+        }
+    }
+
+    /**
+     * Creates a server that uses the given execution mode.
+     *
+     * @param mode The execution mode the server should use.
+     * @param poolSize The number of threads in the server's pool, where the mode uses one.
+     * @param context The configuration that the server will use.
+     * @return A server listening on a free local port.
+     * @throws IOException thrown if the server cannot be created.
+     */
+    private static WebServerEngine createServer(Mode mode, int poolSize, WebServerContext context) throws IOException {
+        switch (mode) {
+            case VirtualThreads:
+                return WebServerFactory.getVirtualThreadServer(0, context);
+            case NonBlocking:
+                return WebServerFactory.getNonBlockingServer(0, poolSize, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), context);
+            default:
+                return WebServerFactory.getFixedThreadPoolServer(0, poolSize, context);
+        }
+    }
+
+    /**
+     * Creates a temporary directory containing the file that the clients will request.
+     *
+     * @return The directory that the server will serve.
+     * @throws IOException thrown if the directory or file cannot be created.
+     */
+    private static File createRoot() throws IOException {
+        File root = File.createTempFile("webserver-benchmark", "");
+
+        if (!root.delete() || !root.mkdir()) {
+            throw new IOException("Unable to create benchmark directory " + root.getAbsolutePath());
+        }
+
+        byte[] content = new byte[kFileSize];
+        Arrays.fill(content, (byte) 'x');
+
+        FileOutputStream output = new FileOutputStream(new File(root, kFileName));
+
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+
+        return root;
+    }
+
+    /**
+     * A client that sends a series of requests over one persistent connection.
+     */
+    private static class Client implements Runnable {
+
+        // the connection to the server
+        private Socket socket;
+
+        // the number of requests to send
+        private int requests;
+
+        // released when every client is connected and the measurement begins
+        private CountDownLatch start;
+
+        // counts the clients that did not receive every response
+        private AtomicInteger failures;
+
+        /**
+         * Initializes a new client.
+         *
+         * @param socket The connection to the server.
+         * @param requests The number of requests to send.
+         * @param start Released when every client is connected and the measurement begins.
+         * @param failures Counts the clients that did not receive every response.
+         */
+        public Client(Socket socket, int requests, CountDownLatch start, AtomicInteger failures) {
+            this.socket = socket;
+            this.requests = requests;
+            this.start = start;
+            this.failures = failures;
+        }
+
+        /**
+         * Waits for the measurement to begin and then sends the client's requests.
+         */
+        @Override
+        public void run() {
+            try {
+                this.start.await();
+
+                HttpClientConnection connection = new HttpClientConnection(this.socket);
+                byte[] keepAliveRequest = String.format("GET /%s HTTP/1.1\r\nHost: localhost\r\nConnection: keep-alive\r\n\r\n", kFileName).getBytes();
+                byte[] closeRequest = String.format("GET /%s HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n", kFileName).getBytes();
+
+                for (int i = 0; i < this.requests; i++) {
+                    byte[] request = i == this.requests - 1 ? closeRequest : keepAliveRequest;
+
+                    if (connection.exchange(request, true) != 200) {
+                        this.failures.incrementAndGet();
+                        return;
+                    }
+                }
+            } catch (Exception ex) {
+                this.failures.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverprocess.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A minimal blocking HTTP client connection used by the benchmark tools. It sends pre-encoded requests and reads their
+ * responses, discarding the bodies. Only the parts of a response needed to find where it ends are interpreted.
+ *
+ * @author Mark Frisbey
+ */
+public class HttpClientConnection {
+
+    // the largest response line that will be read
+    private static final int kMaxLineLength = 8192;
+
+    // the connection to the server
+    private Socket socket;
+
+    // the stream to which requests are written
+    private OutputStream output;
+
+    // the stream from which responses are read
+    private InputStream input;
+
+    // holds the line that is currently being read
+    private byte[] line;
+
+    // whether the server asked for the connection to be closed after the last response
+    private boolean closeRequested;
+
+    // the number of body bytes in the last response
+    private long bodyLength;
+
+    /**
+     * Initializes a client on a socket that is already connected.
+     *
+     * @param socket The connection to the server. The client assumes ownership of the socket.
+     * @throws IOException thrown if the socket's streams cannot be retrieved.
+     */
+    public HttpClientConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.output = socket.getOutputStream();
+        this.input = new BufferedInputStream(socket.getInputStream());
+        this.line = new byte[kMaxLineLength];
+        this.closeRequested = false;
+    }
+
+    /**
+     * Opens a new connection to a server.
+     *
+     * @param host The name of the server's host.
+     * @param port The port on which the server is listening.
+     * @param timeout The number of milliseconds to wait when connecting or reading before giving up.
+     * @return A connected client.
+     * @throws IOException thrown if the connection cannot be opened.
+     */
+    public static HttpClientConnection connect(String host, int port, int timeout) throws IOException {
+        Socket socket = new Socket();
+
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), timeout);
+            socket.setSoTimeout(timeout);
+
+            return new HttpClientConnection(socket);
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sends a request and reads the server's response to it.
+     *
+     * @param request The raw bytes of the request, including the blank line that ends its header.
+     * @param expectBody false if the response will not have a body regardless of its header, as with HEAD requests.
+     * @return The status code of the response.
+     * @throws IOException thrown if the exchange fails or the server closes the connection before responding.
+     */
+    public int exchange(byte[] request, boolean expectBody) throws IOException {
+        this.output.write(request);
+        this.output.flush();
+
+        return readResponse(expectBody);
+    }
+
+    /**
+     * Reads one response from the server, including its body.
+     *
+     * @param expectBody false if the response will not have a body regardless of its header.
+     * @return The status code of the response.
+     * @throws IOException thrown if the response cannot be read or is malformed.
+     */
+    public int readResponse(boolean expectBody) throws IOException {
+        int length = readLine();
+
+        // the status line has the form "HTTP/1.1 200 OK"
+        int codeStart = indexOf(' ', 0, length) + 1;
+
+        if (codeStart == 0 || codeStart + 3 > length) {
+            throw new IOException("Malformed status line in response");
+        }
+
+        int status = (int) parseNumber(codeStart, codeStart + 3);
+        long contentLength = -1;
+        boolean isChunked = false;
+        this.closeRequested = false;
+
+        while ((length = readLine()) > 0) {
+            int separator = indexOf(':', 0, length);
+
+            if (separator <= 0) {
+                continue;
+            }
+
+            if (isHeader("Content-Length", separator)) {
+                contentLength = parseNumber(separator + 1, length);
+            } else if (isHeader("Transfer-Encoding", separator)) {
+                isChunked = new String(this.line, separator + 1, length - separator - 1, "ISO-8859-1").trim().equalsIgnoreCase("chunked");
+            } else if (isHeader("Connection", separator)) {
+                this.closeRequested = new String(this.line, separator + 1, length - separator - 1, "ISO-8859-1").trim().equalsIgnoreCase("close");
+            }
+        }
+
+        this.bodyLength = 0;
+
+        // 1xx, 204 and 304 responses never have a body
+        if (expectBody && status >= 200 && status != 204 && status != 304) {
+            if (isChunked) {
+                this.bodyLength = skipChunks();
+            } else if (contentLength >= 0) {
+                skip(contentLength);
+                this.bodyLength = contentLength;
+            } else if (this.closeRequested) {
+                // without a length the body ends when the server closes the connection
+                while (this.input.read() != -1) {
+                    this.bodyLength++;
+                }
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Retrieves a value indicating whether the server asked for the connection to be closed after the last response.
+     *
+     * @return true if the connection should not be reused.
+     */
+    public boolean isCloseRequested() {
+        return this.closeRequested;
+    }
+
+    /**
+     * Retrieves the number of body bytes in the last response.
+     *
+     * @return A number of bytes.
+     */
+    public long getBodyLength() {
+        return this.bodyLength;
+    }
+
+    /**
+     * Closes the connection to the server.
+     */
+    public void close() {
+        try {
+            this.socket.close();
+        } catch (IOException ex) {
+            // nothing else can be done with the connection at this point
+        }
+    }
+
+    /**
+     * Reads a single line terminated by a line feed into the line buffer. A preceding carriage return is removed.
+     *
+     * @return The length of the line.
+     * @throws IOException thrown if the stream ends before the line or the line is too long.
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        int current;
+
+        while ((current = this.input.read()) != '\n') {
+            if (current == -1) {
+                throw new EOFException("Connection closed before the response was complete");
+            }
+
+            if (length == this.line.length) {
+                throw new IOException("Response line is too long");
+            }
+
+            this.line[length++] = (byte) current;
+        }
+
+        if (length > 0 && this.line[length - 1] == '\r') {
+            length--;
+        }
+
+        return length;
+    }
+
+    /**
+     * Discards body bytes from the input.
+     *
+     * @param count The number of bytes to discard.
+     * @throws IOException thrown if the stream ends first.
+     */
+    private void skip(long count) throws IOException {
+        while (count > 0) {
+            long skipped = this.input.skip(count);
+
+            if (skipped <= 0) {
+                if (this.input.read() == -1) {
+                    throw new EOFException("Connection closed before the response body was complete");
+                }
+                skipped = 1;
+            }
+
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Discards a body sent with the chunked transfer coding, including any trailer that follows the last chunk.
+     *
+     * @return The number of body bytes in the chunks.
+     * @throws IOException thrown if the stream ends first or a chunk size is malformed.
+     */
+    private long skipChunks() throws IOException {
+        long total = 0;
+        long chunkLength;
+
+        do {
+            int length = readLine();
+            int extension = indexOf(';', 0, length);
+
+            chunkLength = parseHexNumber(0, extension >= 0 ? extension : length);
+            skip(chunkLength);
+            total += chunkLength;
+
+            if (chunkLength > 0) {
+                // the line break that ends the chunk's data
+                readLine();
+            }
+        } while (chunkLength > 0);
+
+        // trailer fields, if any, end with a blank line
+        while (readLine() > 0) {
+            // discard
+        }
+
+        return total;
+    }
+
+    /**
+     * Finds a character within the line buffer.
+     *
+     * @param value The character to find.
+     * @param start The first position to check.
+     * @param end The position after the last position to check.
+     * @return The position of the character, or -1 if it was not found.
+     */
+    private int indexOf(char value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (this.line[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Determines whether the header in the line buffer has the given name.
+     *
+     * @param name The header name to compare against.
+     * @param separator The position of the colon that ends the header name.
+     * @return true if the names match, ignoring case.
+     */
+    private boolean isHeader(String name, int separator) {
+        if (separator != name.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < separator; i++) {
+            if (Character.toLowerCase(this.line[i]) != Character.toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a decimal number from the line buffer, ignoring surrounding spaces.
+     *
+     * @param start The first position of the number.
+     * @param end The position after the number.
+     * @return The number.
+     * @throws IOException thrown if the value is not a number.
+     */
+    private long parseNumber(int start, int end) throws IOException {
+        long value = 0;
+        int digits = 0;
+
+        for (int i = start; i < end; i++) {
+            byte current = this.line[i];
+
+            if (current >= '0' && current <= '9') {
+                value = value * 10 + (current - '0');
+                digits++;
+            } else if (current != ' ' && current != '\t') {
+                throw new IOException("Malformed number in response");
+            }
+        }
+
+        // eighteen digits always fit in a long
+        if (digits == 0 || digits > 18) {
+            throw new IOException("Malformed number in response");
+        }
+
+        return value;
+    }
+
+    /**
+     * Parses a hexadecimal number, such as a chunk size, from the line buffer, ignoring surrounding spaces.
+     *
+     * @param start The first position of the number.
+     * @param end The position after the number.
+     * @return The number.
+     * @throws IOException thrown if the value is not a number.
+     */
+    private long parseHexNumber(int start, int end) throws IOException {
+        long value = 0;
+        int digits = 0;
+
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(this.line[i], 16);
+
+            if (digit >= 0) {
+                value = value * 16 + digit;
+                digits++;
+            } else if (this.line[i] != ' ' && this.line[i] != '\t') {
+                throw new IOException("Malformed chunk size in response");
+            }
+        }
+
+        // fifteen digits always fit in a long
+        if (digits == 0 || digits > 15) {
+            throw new IOException("Malformed chunk size in response");
+        }
+
+        return value;
+    }
+}
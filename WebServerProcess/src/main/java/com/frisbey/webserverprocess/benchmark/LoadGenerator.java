@@ -0,0 +1,588 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverprocess.benchmark;
+
+import com.frisbey.webserver.WebServerContext;
+import com.frisbey.webserver.WebServerEngine;
+import com.frisbey.webserver.WebServerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a reproducible load against a web server and reports the latency and throughput of its responses as JSON.
+ *
+ * <p>The generator either targets a server that is already running on a local port, or starts a server in the same
+ * process. An in-process server serves a temporary directory of small, medium and large files unless another root is
+ * given. Each connection sends requests chosen from a weighted {@link com.frisbey.webserverprocess.benchmark.RequestMix},
+ * reusing its connection or opening a new one for every request.</p>
+ *
+ * <p>Without a rate the generator runs closed-loop, with every connection sending as fast as the server responds,
+ * which measures the server's maximum throughput. With a rate it runs open-loop, sending requests on a fixed schedule
+ * spread evenly across the connections, which measures latency at a realistic load. Latency percentiles are reported
+ * both with and without correction for coordinated omission; see
+ * {@link com.frisbey.webserverprocess.benchmark.LoadReport}.</p>
+ *
+ * <p>Usage:</p>
+ * <p>
+ *     {@code java -cp [path to web server jar] com.frisbey.webserverprocess.benchmark.LoadGenerator [OPTIONS]}
+ * </p>
+ * <p>Run with {@code --help} for the list of options.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class LoadGenerator {
+
+    // prefix that distinguishes an option from a positional argument
+    private static final String kOptionPrefix = "--";
+
+    // the files that are created for an in-process server when no root is given, with their sizes
+    private static final String[] kGeneratedFiles = {"small.html", "medium.html", "large.html"};
+    private static final int[] kGeneratedFileSizes = {1024, 64 * 1024, 1024 * 1024};
+
+    // the request mix used with the generated files
+    private static final String kGeneratedMix = "/small.html:8,/medium.html:2,/large.html:1";
+
+    // the request mix used when serving any other root
+    private static final String kDefaultMix = "/index.html";
+
+    // the number of milliseconds to wait when connecting or reading before giving up
+    public static final int kDefaultTimeout = 10000;
+
+    // the name of the server's host
+    private String host;
+
+    // the port on which the server is listening
+    private int port;
+
+    // describes the server, for the report
+    private String serverDescription;
+
+    // the requests to send
+    private RequestMix mix;
+
+    // the number of concurrent connections
+    private int connections;
+
+    // the total number of requests to send per second, or 0 to send as fast as possible
+    private int rate;
+
+    // the number of seconds of the run that are measured
+    private int duration;
+
+    // the number of seconds that run before measurement begins
+    private int warmup;
+
+    // whether connections are reused for multiple requests
+    private boolean keepAlive;
+
+    // milliseconds to wait when connecting or reading before giving up
+    private int timeout;
+
+    // seeds the choice of requests, so that runs can be repeated
+    private long seed;
+
+    /**
+     * Initializes a generator that targets a server.
+     *
+     * @param host The name of the server's host.
+     * @param port The port on which the server is listening.
+     * @param mix The requests to send.
+     */
+    public LoadGenerator(String host, int port, RequestMix mix) {
+        this.host = host;
+        this.port = port;
+        this.mix = mix;
+        this.serverDescription = "external";
+        this.connections = 16;
+        this.rate = 0;
+        this.duration = 10;
+        this.warmup = 2;
+        this.keepAlive = true;
+        this.timeout = kDefaultTimeout;
+        this.seed = 1;
+    }
+
+    /**
+     * Entry point for the load generator.
+     *
+     * @param args Values that were given to the program from the command line.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        if (options.containsKey("help")) {
+            printUsage();
+            return;
+        }
+
+        File generatedRoot = null;
+        WebServerEngine server = null;
+        Thread serverThread = null;
+
+        try {
+            String host = "localhost";
+            int port;
+            String serverMode = null;
+            String mixDescription = options.get("mix");
+
+            if (options.containsKey("target")) {
+                String target = options.get("target");
+                int separator = target.lastIndexOf(':');
+
+                if (separator > 0) {
+                    host = target.substring(0, separator);
+                }
+
+                port = Integer.parseInt(target.substring(separator + 1));
+            } else {
+                String root = options.get("root");
+
+                if (root == null) {
+                    generatedRoot = createRoot();
+                    root = generatedRoot.getAbsolutePath();
+
+                    if (mixDescription == null) {
+                        mixDescription = kGeneratedMix;
+                    }
+                }
+
+                serverMode = options.containsKey("server") ? options.get("server") : "fixed";
+                int poolSize = options.containsKey("pool-size") ? Integer.parseInt(options.get("pool-size")) : 10;
+                int connections = options.containsKey("connections") ? Integer.parseInt(options.get("connections")) : 16;
+
+                server = createServer(serverMode, poolSize, connections, root);
+                serverThread = new Thread(server, "load-generator-server");
+                serverThread.start();
+                port = server.getLocalPort();
+            }
+
+            LoadGenerator generator = new LoadGenerator(host, port, RequestMix.parse(mixDescription != null ? mixDescription : kDefaultMix, host));
+
+            if (serverMode != null) {
+                generator.setServerDescription(serverMode);
+            }
+
+            if (options.containsKey("connections")) {
+                generator.setConnections(Integer.parseInt(options.get("connections")));
+            }
+
+            if (options.containsKey("rate")) {
+                generator.setRate(Integer.parseInt(options.get("rate")));
+            }
+
+            if (options.containsKey("duration")) {
+                generator.setDuration(Integer.parseInt(options.get("duration")));
+            }
+
+            if (options.containsKey("warmup")) {
+                generator.setWarmup(Integer.parseInt(options.get("warmup")));
+            }
+
+            if (options.containsKey("keep-alive")) {
+                generator.setKeepAlive(Boolean.parseBoolean(options.get("keep-alive")));
+            }
+
+            if (options.containsKey("timeout")) {
+                generator.setTimeout(Integer.parseInt(options.get("timeout")));
+            }
+
+            if (options.containsKey("seed")) {
+                generator.setSeed(Long.parseLong(options.get("seed")));
+            }
+
+            System.err.println(String.format("Generating load against %s:%d for %d seconds after a %d second warmup",
+                    generator.getHost(), generator.getPort(), generator.getDuration(), generator.getWarmup()));
+
+            String json = generator.run().toJson();
+
+            if (options.containsKey("output")) {
+                OutputStream output = new FileOutputStream(options.get("output"));
+
+                try {
+                    output.write(json.getBytes(Charset.forName("UTF-8")));
+                } finally {
+                    output.close();
+                }
+
+                System.err.println("Report written to " + options.get("output"));
+            } else {
+                System.out.print(json);
+            }
+        } catch (IllegalArgumentException ex) {
+            // NumberFormatException is also an IllegalArgumentException
+            System.err.println("Invalid option value: " + ex.getMessage());
+            System.err.println("");
+            printUsage();
+        } catch (UnsupportedOperationException ex) {
+            System.err.println(ex.getMessage());
+        } finally {
+            if (server != null) {
+                server.stop();
+                serverThread.join();
+            }
+
+            if (generatedRoot != null) {
+                for (String name : kGeneratedFiles) {
+                    new File(generatedRoot, name).delete();
+                }
+
+                generatedRoot.delete();
+            }
+        }
+    }
+
+    /**
+     * Runs the load and collects the results.
+     *
+     * @return The results of the run.
+     * @throws InterruptedException thrown if the thread is interrupted while waiting for the run to finish.
+     */
+    public LoadReport run() throws InterruptedException {
+        long now = System.nanoTime();
+
+        // give every worker time to start before the first request is scheduled
+        long startTime = now + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureStart = startTime + TimeUnit.SECONDS.toNanos(this.warmup);
+        long endTime = measureStart + TimeUnit.SECONDS.toNanos(this.duration);
+
+        // each connection sends its share of the rate, offset so that the requests are spread evenly
+        long interval = this.rate > 0 ? TimeUnit.SECONDS.toNanos(this.connections) / this.rate : 0;
+        long offset = interval / this.connections;
+
+        LoadWorker[] workers = new LoadWorker[this.connections];
+        Thread[] threads = new Thread[this.connections];
+
+        for (int i = 0; i < this.connections; i++) {
+            workers[i] = new LoadWorker(this.mix, this.host, this.port, this.timeout, this.keepAlive,
+                    startTime + i * offset, interval, measureStart, endTime, this.seed + i);
+            threads[i] = new Thread(workers[i], "load-generator-" + i);
+            threads[i].start();
+        }
+
+        LoadReport report = new LoadReport(this, measureStart, endTime);
+
+        for (int i = 0; i < this.connections; i++) {
+            threads[i].join();
+            report.add(workers[i]);
+        }
+
+        return report;
+    }
+
+    /**
+     * Creates a server that uses the given execution mode on a free local port.
+     *
+     * @param mode fixed, nio or virtual.
+     * @param poolSize The number of threads in the server's pool, where the mode uses one.
+     * @param connections The number of connections the generator will open, which the server must be able to queue.
+     * @param root The directory that the server will serve.
+     * @return A server that has not been started.
+     * @throws IOException thrown if the server cannot be created.
+     */
+    private static WebServerEngine createServer(String mode, int poolSize, int connections, String root) throws IOException {
+        WebServerContext context = new WebServerContext(root);
+        context.setMaxKeepAliveRequests(Integer.MAX_VALUE);
+        context.setKeepAliveTimeout(kDefaultTimeout);
+        context.setMaxQueuedConnections(Math.max(connections, WebServerContext.kDefaultMaxQueuedConnections));
+
+        if ("nio".equals(mode)) {
+            return WebServerFactory.getNonBlockingServer(0, poolSize, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), context);
+        } else if ("virtual".equals(mode)) {
+            return WebServerFactory.getVirtualThreadServer(0, context);
+        } else if ("fixed".equals(mode)) {
+            return WebServerFactory.getFixedThreadPoolServer(0, poolSize, context);
+        }
+
+        throw new IllegalArgumentException("Unknown server mode " + mode);
+    }
+
+    /**
+     * Creates a temporary directory containing files of several sizes.
+     *
+     * @return The directory that the server will serve.
+     * @throws IOException thrown if the directory or files cannot be created.
+     */
+    private static File createRoot() throws IOException {
+        File root = File.createTempFile("webserver-load", "");
+
+        if (!root.delete() || !root.mkdir()) {
+            throw new IOException("Unable to create load generator directory " + root.getAbsolutePath());
+        }
+
+        for (int i = 0; i < kGeneratedFiles.length; i++) {
+            byte[] content = new byte[kGeneratedFileSizes[i]];
+            Arrays.fill(content, (byte) 'x');
+
+            FileOutputStream output = new FileOutputStream(new File(root, kGeneratedFiles[i]));
+
+            try {
+                output.write(content);
+            } finally {
+                output.close();
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Parses command line options of the form {@code --name=value}. An option without a value is given the value
+     * "true".
+     *
+     * @param args The raw command line arguments.
+     * @return The options that were provided, keyed by name.
+     * @throws IllegalArgumentException thrown if an argument is not an option.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+
+        for (String arg : args) {
+            if (!arg.startsWith(kOptionPrefix)) {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+
+            String option = arg.substring(kOptionPrefix.length());
+            int separator = option.indexOf('=');
+
+            if (separator >= 0) {
+                options.put(option.substring(0, separator), option.substring(separator + 1));
+            } else {
+                options.put(option, "true");
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * Prints instructions for using the program.
+     */
+    private static void printUsage() {
+        System.err.println("OPTIONS");
+        System.err.println("  --target=HOST:PORT      Generate load against a running server instead of starting one in-process.");
+        System.err.println("  --server=MODE           Execution mode of the in-process server: fixed (default), nio or virtual.");
+        System.err.println("  --pool-size=COUNT       Thread pool size of the in-process server. Defaults to 10.");
+        System.err.println("  --root=PATH             Directory served by the in-process server. Defaults to generated files.");
+        System.err.println("  --mix=REQUESTS          Comma separated [METHOD@]PATH[:WEIGHT] entries, e.g. /a.html:3,HEAD@/b.png");
+        System.err.println("  --connections=COUNT     Number of concurrent connections. Defaults to 16.");
+        System.err.println("  --rate=REQUESTS         Requests per second across all connections. Omit to send as fast as possible.");
+        System.err.println("  --duration=SECONDS      Length of the measured run. Defaults to 10.");
+        System.err.println("  --warmup=SECONDS        Length of the unmeasured warmup. Defaults to 2.");
+        System.err.println("  --keep-alive=BOOLEAN    Reuse connections for multiple requests. Defaults to true.");
+        System.err.println("  --timeout=MILLISECONDS  Connect and read timeout. Defaults to 10000.");
+        System.err.println("  --seed=NUMBER           Seeds the choice of requests. Defaults to 1.");
+        System.err.println("  --output=FILE           Write the JSON report to a file instead of standard output.");
+    }
+
+    /**
+     * Retrieves the name of the server's host.
+     *
+     * @return A host name.
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * Retrieves the port on which the server is listening.
+     *
+     * @return A port number.
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Retrieves the description of the server, for the report.
+     *
+     * @return The server's execution mode, or "external".
+     */
+    public String getServerDescription() {
+        return this.serverDescription;
+    }
+
+    /**
+     * Sets the description of the server, for the report.
+     *
+     * @param serverDescription The server's execution mode, or "external".
+     */
+    public void setServerDescription(String serverDescription) {
+        this.serverDescription = serverDescription;
+    }
+
+    /**
+     * Retrieves the requests that will be sent.
+     *
+     * @return The request mix.
+     */
+    public RequestMix getMix() {
+        return this.mix;
+    }
+
+    /**
+     * Retrieves the number of concurrent connections.
+     *
+     * @return A number of connections.
+     */
+    public int getConnections() {
+        return this.connections;
+    }
+
+    /**
+     * Sets the number of concurrent connections.
+     *
+     * @param connections A number of connections. Must be at least 1.
+     */
+    public void setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection is required");
+        }
+
+        this.connections = connections;
+    }
+
+    /**
+     * Retrieves the total number of requests sent per second.
+     *
+     * @return A number of requests, or 0 if requests are sent as fast as possible.
+     */
+    public int getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Sets the total number of requests sent per second.
+     *
+     * @param rate A number of requests, or 0 to send requests as fast as possible.
+     */
+    public void setRate(int rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rate cannot be negative");
+        }
+
+        this.rate = rate;
+    }
+
+    /**
+     * Retrieves the length of the measured part of the run.
+     *
+     * @return A number of seconds.
+     */
+    public int getDuration() {
+        return this.duration;
+    }
+
+    /**
+     * Sets the length of the measured part of the run.
+     *
+     * @param duration A number of seconds. Must be at least 1.
+     */
+    public void setDuration(int duration) {
+        if (duration < 1) {
+            throw new IllegalArgumentException("Duration must be at least one second");
+        }
+
+        this.duration = duration;
+    }
+
+    /**
+     * Retrieves the length of the warmup that runs before measurement begins.
+     *
+     * @return A number of seconds.
+     */
+    public int getWarmup() {
+        return this.warmup;
+    }
+
+    /**
+     * Sets the length of the warmup that runs before measurement begins.
+     *
+     * @param warmup A number of seconds.
+     */
+    public void setWarmup(int warmup) {
+        if (warmup < 0) {
+            throw new IllegalArgumentException("Warmup cannot be negative");
+        }
+
+        this.warmup = warmup;
+    }
+
+    /**
+     * Retrieves a value indicating whether connections are reused for multiple requests.
+     *
+     * @return true if connections are kept alive.
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * Sets a value indicating whether connections are reused for multiple requests.
+     *
+     * @param keepAlive true to keep connections alive, false to open a new connection for every request.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Retrieves the number of milliseconds to wait when connecting or reading before giving up.
+     *
+     * @return A timeout in milliseconds.
+     */
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Sets the number of milliseconds to wait when connecting or reading before giving up.
+     *
+     * @param timeout A timeout in milliseconds. Must be positive.
+     */
+    public void setTimeout(int timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+
+        this.timeout = timeout;
+    }
+
+    /**
+     * Retrieves the value that seeds the choice of requests.
+     *
+     * @return A seed.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Sets the value that seeds the choice of requests, so that runs can be repeated.
+     *
+     * @param seed A seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverprocess.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Locale;
+
+/**
+ * The results of a {@link com.frisbey.webserverprocess.benchmark.LoadGenerator} run, combined from all of its workers.
+ * The report is written as JSON so that runs can be stored and compared.
+ *
+ * <p>Two latency distributions are reported. The uncorrected distribution measures each response from the moment its
+ * request was sent. The corrected distribution accounts for coordinated omission: in open-loop runs each response is
+ * measured from the moment its request was scheduled, and in closed-loop runs, which have no schedule, the histogram is
+ * back-filled with the requests that a stalled connection would have sent at the run's mean latency.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class LoadReport {
+
+    // the percentiles reported for each latency distribution
+    private static final double[] kPercentiles = {50, 90, 99, 99.9, 99.99};
+
+    // the generator whose run is being reported
+    private LoadGenerator generator;
+
+    // latency measured from the time each request was scheduled, in microseconds
+    private Histogram scheduledLatency;
+
+    // latency measured from the time each request was sent, in microseconds
+    private Histogram serviceLatency;
+
+    // the number of responses for each status code
+    private long[] statusCounts;
+
+    // the number of requests that failed without a response
+    private long errors;
+
+    // the number of body bytes received
+    private long bytesReceived;
+
+    // the number of connections that were opened
+    private long connectionsOpened;
+
+    // the time, in nanoseconds, at which measurement began
+    private long measureStart;
+
+    // the time, in nanoseconds, at which the measured part of the run ended
+    private long measureEnd;
+
+    /**
+     * Initializes an empty report.
+     *
+     * @param generator The generator whose run is being reported.
+     * @param measureStart The time, in nanoseconds, at which measurement began.
+     * @param measureEnd The time, in nanoseconds, after which no more requests were scheduled.
+     */
+    public LoadReport(LoadGenerator generator, long measureStart, long measureEnd) {
+        this.generator = generator;
+        this.measureStart = measureStart;
+        this.measureEnd = measureEnd;
+        this.scheduledLatency = new Histogram(LoadWorker.kMaxRecordableLatency, LoadWorker.kSignificantDigits);
+        this.serviceLatency = new Histogram(LoadWorker.kMaxRecordableLatency, LoadWorker.kSignificantDigits);
+        this.statusCounts = new long[600];
+    }
+
+    /**
+     * Adds the results of a worker to the report.
+     *
+     * @param worker A worker that has finished running.
+     */
+    public void add(LoadWorker worker) {
+        this.scheduledLatency.add(worker.getScheduledLatency());
+        this.serviceLatency.add(worker.getServiceLatency());
+        this.errors += worker.getErrors();
+        this.bytesReceived += worker.getBytesReceived();
+        this.connectionsOpened += worker.getConnectionsOpened();
+
+        // responses that arrive after the last request was scheduled extend the measured time
+        if (worker.getLastReceived() - this.measureEnd > 0) {
+            this.measureEnd = worker.getLastReceived();
+        }
+
+        long[] counts = worker.getStatusCounts();
+
+        for (int i = 0; i < counts.length; i++) {
+            this.statusCounts[i] += counts[i];
+        }
+    }
+
+    /**
+     * Retrieves the number of responses that were received.
+     *
+     * @return A number of responses.
+     */
+    public long getResponses() {
+        return this.serviceLatency.getTotalCount();
+    }
+
+    /**
+     * Retrieves the number of requests that failed without a response.
+     *
+     * @return A number of requests.
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Retrieves the number of responses received per second during the measured part of the run. The measured part
+     * lasts until the last recorded response arrived, so a server that falls behind an open-loop schedule is not
+     * credited with the scheduled rate.
+     *
+     * @return A rate in responses per second.
+     */
+    public double getThroughput() {
+        return getResponses() * 1e9 / Math.max(this.measureEnd - this.measureStart, 1);
+    }
+
+    /**
+     * Retrieves the latency distribution measured from the time each request was sent.
+     *
+     * @return A histogram of latencies in microseconds.
+     */
+    public Histogram getUncorrectedLatency() {
+        return this.serviceLatency;
+    }
+
+    /**
+     * Retrieves the latency distribution corrected for coordinated omission.
+     *
+     * @return A histogram of latencies in microseconds.
+     */
+    public Histogram getCorrectedLatency() {
+        if (this.generator.getRate() > 0) {
+            return this.scheduledLatency;
+        }
+
+        long expectedInterval = (long) this.serviceLatency.getMean();
+
+        return expectedInterval > 0 ? this.serviceLatency.copyCorrectedForCoordinatedOmission(expectedInterval) : this.serviceLatency;
+    }
+
+    /**
+     * Writes the report as a JSON document.
+     *
+     * @return The report.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n");
+        appendField(json, 1, "target", this.generator.getHost() + ":" + this.generator.getPort()).append(",\n");
+        appendField(json, 1, "server", this.generator.getServerDescription()).append(",\n");
+        appendField(json, 1, "loop", this.generator.getRate() > 0 ? "open" : "closed").append(",\n");
+        appendField(json, 1, "connections", this.generator.getConnections()).append(",\n");
+        appendField(json, 1, "keepAlive", this.generator.isKeepAlive()).append(",\n");
+        appendField(json, 1, "targetRate", this.generator.getRate()).append(",\n");
+        appendField(json, 1, "durationSeconds", this.generator.getDuration()).append(",\n");
+        appendField(json, 1, "warmupSeconds", this.generator.getWarmup()).append(",\n");
+        appendField(json, 1, "seed", this.generator.getSeed()).append(",\n");
+
+        indent(json, 1).append("\"mix\": [\n");
+        boolean first = true;
+
+        for (RequestMix.Entry entry : this.generator.getMix().getEntries()) {
+            if (!first) {
+                json.append(",\n");
+            }
+            first = false;
+
+            indent(json, 2).append("{");
+            appendField(json, 0, "method", entry.getMethod()).append(", ");
+            appendField(json, 0, "path", entry.getPath()).append(", ");
+            appendField(json, 0, "weight", entry.getWeight()).append("}");
+        }
+
+        json.append("\n");
+        indent(json, 1).append("],\n");
+
+        appendField(json, 1, "responses", getResponses()).append(",\n");
+        appendField(json, 1, "errors", this.errors).append(",\n");
+        appendField(json, 1, "connectionsOpened", this.connectionsOpened).append(",\n");
+        appendField(json, 1, "bytesReceived", this.bytesReceived).append(",\n");
+        appendField(json, 1, "throughput", getThroughput()).append(",\n");
+
+        indent(json, 1).append("\"statusCodes\": {");
+        first = true;
+
+        for (int i = 0; i < this.statusCounts.length; i++) {
+            if (this.statusCounts[i] == 0) {
+                continue;
+            }
+
+            if (!first) {
+                json.append(", ");
+            }
+            first = false;
+
+            // status codes outside the expected range are counted under 0
+            appendField(json, 0, Integer.toString(i), this.statusCounts[i]);
+        }
+
+        json.append("},\n");
+
+        indent(json, 1).append("\"latencyMicros\": {\n");
+        appendField(json, 2, "coordinatedOmissionCorrection", this.generator.getRate() > 0 ? "scheduled-start" : "expected-interval").append(",\n");
+        appendLatency(json, "corrected", getCorrectedLatency()).append(",\n");
+        appendLatency(json, "uncorrected", this.serviceLatency).append("\n");
+        indent(json, 1).append("}\n");
+        json.append("}\n");
+
+        return json.toString();
+    }
+
+    /**
+     * Appends a summary of a latency distribution to a JSON document.
+     *
+     * @param json The document.
+     * @param name The name of the summary.
+     * @param histogram The latency distribution.
+     * @return The document.
+     */
+    private static StringBuilder appendLatency(StringBuilder json, String name, Histogram histogram) {
+        indent(json, 2).append("\"").append(name).append("\": {");
+        appendField(json, 0, "count", histogram.getTotalCount()).append(", ");
+        appendField(json, 0, "mean", histogram.getMean()).append(", ");
+
+        for (double percentile : kPercentiles) {
+            String label = "p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile));
+            appendField(json, 0, label, histogram.getValueAtPercentile(percentile)).append(", ");
+        }
+
+        appendField(json, 0, "max", histogram.getMaxValue()).append("}");
+
+        return json;
+    }
+
+    /**
+     * Appends indentation to a JSON document.
+     *
+     * @param json The document.
+     * @param level The nesting level.
+     * @return The document.
+     */
+    private static StringBuilder indent(StringBuilder json, int level) {
+        for (int i = 0; i < level; i++) {
+            json.append("  ");
+        }
+
+        return json;
+    }
+
+    /**
+     * Appends a field with a string value to a JSON document.
+     *
+     * @param json The document.
+     * @param level The nesting level.
+     * @param name The name of the field.
+     * @param value The value of the field.
+     * @return The document.
+     */
+    private static StringBuilder appendField(StringBuilder json, int level, String name, String value) {
+        indent(json, level).append("\"").append(name).append("\": \"");
+
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+
+            if (current == '"' || current == '\\') {
+                json.append('\\').append(current);
+            } else if (current < 0x20) {
+                json.append(String.format("\\u%04x", (int) current));
+            } else {
+                json.append(current);
+            }
+        }
+
+        return json.append("\"");
+    }
+
+    /**
+     * Appends a field with a whole number value to a JSON document.
+     *
+     * @param json The document.
+     * @param level The nesting level.
+     * @param name The name of the field.
+     * @param value The value of the field.
+     * @return The document.
+     */
+    private static StringBuilder appendField(StringBuilder json, int level, String name, long value) {
+        return indent(json, level).append("\"").append(name).append("\": ").append(value);
+    }
+
+    /**
+     * Appends a field with a decimal value to a JSON document.
+     *
+     * @param json The document.
+     * @param level The nesting level.
+     * @param name The name of the field.
+     * @param value The value of the field.
+     * @return The document.
+     */
+    private static StringBuilder appendField(StringBuilder json, int level, String name, double value) {
+        return indent(json, level).append("\"").append(name).append("\": ").append(String.format(Locale.ROOT, "%.2f", value));
+    }
+
+    /**
+     * Appends a field with a boolean value to a JSON document.
+     *
+     * @param json The document.
+     * @param level The nesting level.
+     * @param name The name of the field.
+     * @param value The value of the field.
+     * @return The document.
+     */
+    private static StringBuilder appendField(StringBuilder json, int level, String name, boolean value) {
+        return indent(json, level).append("\"").append(name).append("\": ").append(value);
+    }
+}
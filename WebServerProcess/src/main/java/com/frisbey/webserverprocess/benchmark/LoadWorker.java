@@ -0,0 +1,274 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverprocess.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests to a server from a single client connection on behalf of a
+ * {@link com.frisbey.webserverprocess.benchmark.LoadGenerator}, and records the latency of each response.
+ *
+ * <p>In closed-loop mode the worker sends its next request as soon as the previous response arrives. In open-loop mode
+ * requests are sent on a fixed schedule, and the latency of a request is measured from the time it was scheduled to be
+ * sent rather than the time it was actually sent. A server that stalls therefore cannot hide the requests that would
+ * have been sent during the stall, which is known as coordinated omission.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class LoadWorker implements Runnable {
+
+    // the highest latency, in microseconds, that can be recorded
+    public static final long kMaxRecordableLatency = TimeUnit.HOURS.toMicros(1);
+
+    // the number of significant decimal digits kept by the latency histograms
+    public static final int kSignificantDigits = 3;
+
+    // the requests to choose from
+    private RequestMix mix;
+
+    // the name of the server's host
+    private String host;
+
+    // the port on which the server is listening
+    private int port;
+
+    // milliseconds to wait when connecting or reading before giving up
+    private int timeout;
+
+    // whether connections are reused for multiple requests
+    private boolean keepAlive;
+
+    // the time, in nanoseconds, at which the first request is scheduled
+    private long startTime;
+
+    // the nanoseconds between scheduled requests, or 0 to send requests as fast as possible
+    private long interval;
+
+    // responses to requests scheduled before this time, in nanoseconds, are not recorded
+    private long measureStart;
+
+    // no requests are scheduled at or after this time, in nanoseconds
+    private long endTime;
+
+    // chooses requests from the mix
+    private Random random;
+
+    // latency measured from the time each request was scheduled
+    private Histogram scheduledLatency;
+
+    // latency measured from the time each request was actually sent
+    private Histogram serviceLatency;
+
+    // the number of recorded responses for each status code
+    private long[] statusCounts;
+
+    // the number of recorded requests that failed without a response
+    private long errors;
+
+    // the number of body bytes in recorded responses
+    private long bytesReceived;
+
+    // the number of connections that were opened
+    private long connectionsOpened;
+
+    // the time, in nanoseconds, at which the last recorded response was received
+    private long lastReceived;
+
+    /**
+     * Initializes a worker.
+     *
+     * @param mix The requests to choose from.
+     * @param host The name of the server's host.
+     * @param port The port on which the server is listening.
+     * @param timeout Milliseconds to wait when connecting or reading before giving up.
+     * @param keepAlive true to reuse a connection for multiple requests.
+     * @param startTime The time, in nanoseconds, at which the first request is scheduled.
+     * @param interval The nanoseconds between scheduled requests, or 0 to send requests as fast as possible.
+     * @param measureStart Responses to requests scheduled before this time, in nanoseconds, are not recorded.
+     * @param endTime No requests are scheduled at or after this time, in nanoseconds.
+     * @param seed Seeds the worker's choice of requests, so that runs can be repeated.
+     */
+    public LoadWorker(RequestMix mix, String host, int port, int timeout, boolean keepAlive, long startTime, long interval, long measureStart, long endTime, long seed) {
+        this.mix = mix;
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.keepAlive = keepAlive;
+        this.startTime = startTime;
+        this.interval = interval;
+        this.measureStart = measureStart;
+        this.endTime = endTime;
+        this.random = new Random(seed);
+        this.scheduledLatency = new Histogram(kMaxRecordableLatency, kSignificantDigits);
+        this.serviceLatency = new Histogram(kMaxRecordableLatency, kSignificantDigits);
+        this.statusCounts = new long[600];
+    }
+
+    /**
+     * Sends requests until the end of the run.
+     */
+    @Override
+    public void run() {
+        HttpClientConnection connection = null;
+        long nextScheduled = this.startTime;
+
+        try {
+            while (true) {
+                // in closed-loop mode each request is scheduled for the moment the previous response arrived
+                long scheduled = this.interval > 0 ? nextScheduled : Math.max(System.nanoTime(), this.startTime);
+                nextScheduled += this.interval;
+
+                if (scheduled >= this.endTime) {
+                    break;
+                }
+
+                waitUntil(scheduled);
+
+                RequestMix.Entry request = this.mix.next(this.random);
+                boolean isMeasured = scheduled >= this.measureStart;
+                long sent = System.nanoTime();
+
+                try {
+                    if (connection == null) {
+                        connection = HttpClientConnection.connect(this.host, this.port, this.timeout);
+                        this.connectionsOpened++;
+                    }
+
+                    int status = connection.exchange(request.getRequest(this.keepAlive), request.hasResponseBody());
+                    long received = System.nanoTime();
+
+                    if (isMeasured) {
+                        this.scheduledLatency.recordValue(toMicros(received - scheduled));
+                        this.serviceLatency.recordValue(toMicros(received - sent));
+                        this.statusCounts[status < this.statusCounts.length ? status : 0]++;
+                        this.bytesReceived += connection.getBodyLength();
+                        this.lastReceived = received;
+                    }
+
+                    if (!this.keepAlive || connection.isCloseRequested()) {
+                        connection.close();
+                        connection = null;
+                    }
+                } catch (IOException ex) {
+                    if (isMeasured) {
+                        this.errors++;
+                    }
+
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
+                    }
+                }
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Waits until the given time.
+     *
+     * @param time A time in nanoseconds. The method returns immediately if the time has passed.
+     */
+    private static void waitUntil(long time) {
+        long remaining;
+
+        while ((remaining = time - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Converts a duration to microseconds, limited to the range that the histograms can record.
+     *
+     * @param nanos A duration in nanoseconds.
+     * @return The duration in microseconds.
+     */
+    private static long toMicros(long nanos) {
+        return Math.min(Math.max(nanos / 1000, 0), kMaxRecordableLatency);
+    }
+
+    /**
+     * Retrieves the latency of recorded responses, measured from the time each request was scheduled.
+     *
+     * @return A histogram of latencies in microseconds.
+     */
+    public Histogram getScheduledLatency() {
+        return this.scheduledLatency;
+    }
+
+    /**
+     * Retrieves the latency of recorded responses, measured from the time each request was actually sent.
+     *
+     * @return A histogram of latencies in microseconds.
+     */
+    public Histogram getServiceLatency() {
+        return this.serviceLatency;
+    }
+
+    /**
+     * Retrieves the number of recorded responses for each status code.
+     *
+     * @return Counts indexed by status code. Status codes outside the expected range are counted at index 0.
+     */
+    public long[] getStatusCounts() {
+        return this.statusCounts;
+    }
+
+    /**
+     * Retrieves the number of recorded requests that failed without a response.
+     *
+     * @return A number of requests.
+     */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Retrieves the number of body bytes in recorded responses.
+     *
+     * @return A number of bytes.
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    /**
+     * Retrieves the time at which the last recorded response was received. A server that cannot keep up with the
+     * schedule will still be responding after the last request was scheduled.
+     *
+     * @return A time in nanoseconds, or 0 if no responses were recorded.
+     */
+    public long getLastReceived() {
+        return this.lastReceived;
+    }
+
+    /**
+     * Retrieves the number of connections that the worker opened.
+     *
+     * @return A number of connections.
+     */
+    public long getConnectionsOpened() {
+        return this.connectionsOpened;
+    }
+}
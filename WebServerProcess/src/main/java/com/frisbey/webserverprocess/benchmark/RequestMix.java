@@ -0,0 +1,252 @@
+/*
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package com.frisbey.webserverprocess.benchmark;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A weighted set of requests that a load generator chooses from. Every request is encoded once, up front, in both its
+ * persistent and non-persistent forms so that choosing and sending a request does not allocate.
+ *
+ * <p>A mix is described by a comma separated list of entries of the form {@code [METHOD@]PATH[:WEIGHT]}. The method
+ * defaults to GET and the weight defaults to 1. For example, {@code /index.html:3,HEAD@/logo.png} sends three GET
+ * requests for the index page for every HEAD request for the logo.</p>
+ *
+ * @author Mark Frisbey
+ */
+public class RequestMix {
+
+    // separates the entries of a mix description
+    private static final String kEntrySeparator = ",";
+
+    // separates an entry's method from its path
+    private static final char kMethodSeparator = '@';
+
+    // separates an entry's path from its weight
+    private static final char kWeightSeparator = ':';
+
+    // the encoding of request data
+    private static final Charset kCharset = Charset.forName("ISO-8859-1");
+
+    // the requests in the mix
+    private List<Entry> entries;
+
+    // the sum of the weights of the requests in the mix
+    private int totalWeight;
+
+    /**
+     * Initializes an empty mix.
+     */
+    public RequestMix() {
+        this.entries = new ArrayList<Entry>();
+        this.totalWeight = 0;
+    }
+
+    /**
+     * Creates a mix from its description.
+     *
+     * @param description A comma separated list of entries of the form {@code [METHOD@]PATH[:WEIGHT]}.
+     * @param host The value of the Host header sent with every request.
+     * @return The described mix.
+     * @throws IllegalArgumentException thrown if the description is invalid.
+     */
+    public static RequestMix parse(String description, String host) {
+        RequestMix mix = new RequestMix();
+
+        for (String rawEntry : description.split(kEntrySeparator)) {
+            String entry = rawEntry.trim();
+
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            String method = "GET";
+            int weight = 1;
+            int methodEnd = entry.indexOf(kMethodSeparator);
+
+            if (methodEnd > 0) {
+                method = entry.substring(0, methodEnd).toUpperCase();
+                entry = entry.substring(methodEnd + 1);
+            }
+
+            int weightStart = entry.lastIndexOf(kWeightSeparator);
+
+            if (weightStart > 0) {
+                weight = Integer.parseInt(entry.substring(weightStart + 1));
+                entry = entry.substring(0, weightStart);
+            }
+
+            mix.add(method, entry, weight, host);
+        }
+
+        if (mix.entries.isEmpty()) {
+            throw new IllegalArgumentException("A request mix must contain at least one request");
+        }
+
+        return mix;
+    }
+
+    /**
+     * Adds a request to the mix.
+     *
+     * @param method The HTTP method of the request.
+     * @param path The path that the request targets. Must begin with a forward slash.
+     * @param weight The relative frequency of the request. Must be at least 1.
+     * @param host The value of the Host header sent with the request.
+     * @throws IllegalArgumentException thrown if the request is invalid.
+     */
+    public void add(String method, String path, int weight, String host) {
+        if (!path.startsWith("/") || path.indexOf(' ') >= 0) {
+            throw new IllegalArgumentException("Request path must begin with a forward slash and contain no spaces: " + path);
+        }
+
+        if (weight < 1) {
+            throw new IllegalArgumentException("Request weight must be at least 1: " + weight);
+        }
+
+        this.entries.add(new Entry(method, path, weight, host));
+        this.totalWeight += weight;
+    }
+
+    /**
+     * Chooses a request at random according to the weights of the requests in the mix.
+     *
+     * @param random The source of randomness.
+     * @return The chosen request.
+     */
+    public Entry next(Random random) {
+        int target = random.nextInt(this.totalWeight);
+
+        for (Entry entry : this.entries) {
+            target -= entry.weight;
+
+            if (target < 0) {
+                return entry;
+            }
+        }
+
+        // unreachable, the weights always add up to the total
+        return this.entries.get(this.entries.size() - 1);
+    }
+
+    /**
+     * Retrieves the requests in the mix.
+     *
+     * @return The mix's requests, in the order they were added.
+     */
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * A single request in a mix.
+     */
+    public static class Entry {
+
+        // the HTTP method of the request
+        private String method;
+
+        // the path that the request targets
+        private String path;
+
+        // the relative frequency of the request
+        private int weight;
+
+        // the encoded request, asking for the connection to be kept open
+        private byte[] keepAliveRequest;
+
+        // the encoded request, asking for the connection to be closed
+        private byte[] closeRequest;
+
+        /**
+         * Initializes and encodes a request.
+         *
+         * @param method The HTTP method of the request.
+         * @param path The path that the request targets.
+         * @param weight The relative frequency of the request.
+         * @param host The value of the Host header.
+         */
+        private Entry(String method, String path, int weight, String host) {
+            this.method = method;
+            this.path = path;
+            this.weight = weight;
+            this.keepAliveRequest = encode(method, path, host, "keep-alive");
+            this.closeRequest = encode(method, path, host, "close");
+        }
+
+        /**
+         * Encodes a request.
+         *
+         * @param method The HTTP method of the request.
+         * @param path The path that the request targets.
+         * @param host The value of the Host header.
+         * @param connection The value of the Connection header.
+         * @return The raw bytes of the request.
+         */
+        private static byte[] encode(String method, String path, String host, String connection) {
+            return String.format("%s %s HTTP/1.1\r\nHost: %s\r\nConnection: %s\r\n\r\n", method, path, host, connection).getBytes(kCharset);
+        }
+
+        /**
+         * Retrieves the HTTP method of the request.
+         *
+         * @return A method name such as GET.
+         */
+        public String getMethod() {
+            return this.method;
+        }
+
+        /**
+         * Retrieves the path that the request targets.
+         *
+         * @return A path beginning with a forward slash.
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        /**
+         * Retrieves the relative frequency of the request.
+         *
+         * @return A weight of at least 1.
+         */
+        public int getWeight() {
+            return this.weight;
+        }
+
+        /**
+         * Retrieves a value indicating whether the response to the request has a body.
+         *
+         * @return false for HEAD requests.
+         */
+        public boolean hasResponseBody() {
+            return !"HEAD".equals(this.method);
+        }
+
+        /**
+         * Retrieves the encoded request.
+         *
+         * @param keepAlive true to ask the server to keep the connection open after responding.
+         * @return The raw bytes of the request.
+         */
+        public byte[] getRequest(boolean keepAlive) {
+            return keepAlive ? this.keepAliveRequest : this.closeRequest;
+        }
+    }
+}